@@ -0,0 +1,89 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CacheManager} 按策略编号投递写入，strategies 为缓存中的策略数
+ * 写入由各策略的写线程异步应用，这里测的是调用方的投递开销；snapshot 为读方取快照的开销。
+ * 订单在 setup 中推进到 PART_FILLED，之后每次更新的累计成交数量都比上一次大，是状态机接受的
+ * PART_FILLED → PART_FILLED 变化，写线程走完整的成交路径而不是拒绝路径
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheManagerBenchmark {
+    private static final int ORDERS_PER_STRATEGY = 100;
+
+    @Param({"1", "100"})
+    public int strategies;
+
+    private final CacheManager manager = new CacheManager();
+    private String[] strategyIds;
+    private String[] cliIds;
+    // 全局递增的累计成交数量，对每个订单也是递增的；多线程时偶有后取号的先到，先到者之后的那次被拒绝
+    private final AtomicLong execAmount = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        strategyIds = new String[strategies];
+        cliIds = new String[ORDERS_PER_STRATEGY];
+        for (int j = 0; j < ORDERS_PER_STRATEGY; j++) {
+            cliIds[j] = "cli-" + j;
+        }
+        for (int i = 0; i < strategies; i++) {
+            strategyIds[i] = "bench-" + i;
+            manager.init(strategyIds[i]);
+            for (int j = 0; j < ORDERS_PER_STRATEGY; j++) {
+                manager.add(strategyIds[i], new Order(cliIds[j], "BTC-USDT", ExchangeEnums.OrderSide.BUY,
+                    ExchangeEnums.Direction.LONG, ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.01"),
+                    BigDecimal.valueOf(40_000 + j))).join();
+                manager.update(strategyIds[i], cliIds[j], OrderStatus.NEW).join();
+                manager.update(strategyIds[i], cliIds[j], BigDecimal.ZERO, OrderStatus.PART_FILLED, 0).join();
+            }
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<Boolean> updateHit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return manager.update(strategyIds[random.nextInt(strategies)], cliIds[random.nextInt(ORDERS_PER_STRATEGY)],
+            BigDecimal.valueOf(execAmount.incrementAndGet(), 8), OrderStatus.PART_FILLED, 0);
+    }
+
+    @Benchmark
+    public CompletableFuture<Boolean> addUnknownStrategy() {
+        return manager.add("missing", null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CompletableFuture<Boolean> updateHitContended() {
+        return updateHit();
+    }
+
+    @Benchmark
+    public PositionSnapshot snapshot() {
+        return manager.snapshot(strategyIds[ThreadLocalRandom.current().nextInt(strategies)]);
+    }
+}
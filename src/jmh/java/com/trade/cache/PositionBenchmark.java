@@ -0,0 +1,76 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Position} 挂单增删改，book 为预先挂着的订单数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark {
+    @Param({"10", "1000"})
+    public int book;
+
+    private Position position;
+    private Order[] probes;
+    private String[] cliIds;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        position = new Position();
+        cliIds = new String[book];
+        for (int i = 0; i < book; i++) {
+            cliIds[i] = "open-" + i;
+            position.add(order(cliIds[i], i % 2 == 0 ? ExchangeEnums.Direction.LONG : ExchangeEnums.Direction.SHORT,
+                i % 2 == 0 ? ExchangeEnums.OrderSide.BUY : ExchangeEnums.OrderSide.SELL, 40_000 + i));
+        }
+        // 探针订单挂在已有挂单区间之外的价位
+        probes = new Order[64];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = order("probe-" + i, ExchangeEnums.Direction.LONG, ExchangeEnums.OrderSide.BUY,
+                30_000 + i * 0.5);
+        }
+    }
+
+    @Benchmark
+    public boolean addRemove() {
+        Order order = probes[cursor++ & (probes.length - 1)];
+        position.add(order);
+        return position.remove(order.getCliId());
+    }
+
+    @Benchmark
+    public boolean updateStatus() {
+        return position.update(cliIds[cursor++ % book], (cursor & 1) == 0 ? OrderStatus.NEW : OrderStatus.PART_FILLED);
+    }
+
+    @Benchmark
+    public boolean updateFill() {
+        return position.update(cliIds[cursor++ % book], BigDecimal.ONE, OrderStatus.PART_FILLED, 0);
+    }
+
+    private static Order order(String cliId, ExchangeEnums.Direction direction, ExchangeEnums.OrderSide side,
+                               double price) {
+        return new Order(cliId, "BTC-USDT", side, direction, ExchangeEnums.OrderType.LIMIT,
+            new BigDecimal("0.01"), BigDecimal.valueOf(price));
+    }
+}
@@ -0,0 +1,128 @@
+package com.trade.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GridStrategy 的均价、网格价和比例计算，原 BigDecimal + MathContext(8) 写法与 {@link FixedDecimal} 对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedDecimalBenchmark {
+    private static final MathContext MC = new MathContext(8, RoundingMode.HALF_UP);
+    private static final FixedDecimal FX = FixedDecimal.of(8);
+    private static final int GRID = 10;
+
+    private BigDecimal position;
+    private BigDecimal avgPrice;
+    private BigDecimal price;
+    private BigDecimal amount;
+    private BigDecimal spread;
+    private BigDecimal ratio;
+
+    private long fixedPosition;
+    private long fixedAvgPrice;
+    private long fixedPrice;
+    private long fixedAmount;
+    private long fixedSpread;
+    private long fixedRatio;
+
+    @Setup
+    public void setup() {
+        position = new BigDecimal("1.25");
+        avgPrice = new BigDecimal("45012.5");
+        price = new BigDecimal("45123.4");
+        amount = new BigDecimal("0.01");
+        spread = new BigDecimal("0.01");
+        ratio = new BigDecimal("1.0");
+        fixedPosition = FX.valueOf(position);
+        fixedAvgPrice = FX.valueOf(avgPrice);
+        fixedPrice = FX.valueOf(price);
+        fixedAmount = FX.valueOf(amount);
+        fixedSpread = FX.valueOf(spread);
+        fixedRatio = FX.valueOf(ratio);
+    }
+
+    @Benchmark
+    public BigDecimal avgPriceBigDecimal() {
+        BigDecimal newPosition = position.add(amount);
+        return avgPrice.multiply(position, MC)
+            .add(price.multiply(amount, MC))
+            .divide(newPosition, MC);
+    }
+
+    /**
+     * 原先的写法：两次乘法各舍入一次再相除
+     */
+    @Benchmark
+    public long avgPriceFixedNotional() {
+        long newPosition = FixedDecimal.add(fixedPosition, fixedAmount);
+        long notional = FixedDecimal.add(FX.multiply(fixedAvgPrice, fixedPosition), FX.multiply(fixedPrice, fixedAmount));
+        return FX.divide(notional, newPosition);
+    }
+
+    @Benchmark
+    public long avgPriceFixed() {
+        return FixedDecimal.average(fixedAvgPrice, fixedPosition, fixedPrice, fixedAmount);
+    }
+
+    @Benchmark
+    public BigDecimal gridPricesBigDecimal() {
+        BigDecimal step = price.multiply(spread, MC);
+        BigDecimal last = null;
+        for (int i = 1; i <= GRID; i++) {
+            last = price.add(step.multiply(BigDecimal.valueOf(i).setScale(8, RoundingMode.HALF_UP), MC));
+        }
+        return last;
+    }
+
+    @Benchmark
+    public long gridPricesFixed() {
+        long step = FX.multiply(fixedPrice, fixedSpread);
+        long last = 0;
+        for (int i = 1; i <= GRID; i++) {
+            last = FixedDecimal.add(fixedPrice, Math.multiplyExact(step, i));
+        }
+        return last;
+    }
+
+    @Benchmark
+    public boolean imbalanceBigDecimal() {
+        BigDecimal current = position.divide(avgPrice.movePointLeft(4), MC);
+        return current.compareTo(ratio.multiply(new BigDecimal("0.9"), MC)) < 0
+            || current.compareTo(ratio.multiply(new BigDecimal("1.1"), MC)) > 0;
+    }
+
+    @Benchmark
+    public boolean imbalanceFixed() {
+        long current = FX.divide(fixedPosition, fixedAvgPrice / 10_000);
+        return current < FX.multiply(fixedRatio, 90_000_000L) || current > FX.multiply(fixedRatio, 110_000_000L);
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal("45123.4").setScale(8, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public long parseFixed() {
+        return FX.parse("45123.4");
+    }
+}
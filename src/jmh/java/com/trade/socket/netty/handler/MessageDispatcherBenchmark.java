@@ -0,0 +1,75 @@
+package com.trade.socket.netty.handler;
+
+import com.trade.socket.netty.replay.ReplayClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageDispatcher#dispatch} 同步分发的扇出开销
+ * global：每条消息经过全部全局处理器；routed：按 (channel, instId) 只交给订阅了该交易对的处理器
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDispatcherBenchmark {
+    private static final String TICKER = "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"INST-7\"},\"data\":[{"
+        + "\"instType\":\"SPOT\",\"instId\":\"INST-7\",\"last\":\"42219.9\",\"lastSz\":\"0.1\","
+        + "\"askPx\":\"42220\",\"askSz\":\"11\",\"bidPx\":\"42219.8\",\"bidSz\":\"5\",\"ts\":\"1597026383085\"}]}";
+
+    @Param({"1", "4", "16"})
+    public int handlers;
+
+    /**
+     * 路由表中的交易对数
+     */
+    @Param({"64"})
+    public int instruments;
+
+    private MessageDispatcher<String> global;
+    private MessageDispatcher<String> routed;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        global = new MessageDispatcher<>(new ReplayClient());
+        routed = new MessageDispatcher<>(new ReplayClient());
+        for (int i = 0; i < handlers; i++) {
+            global.addHandler((message, ctx) -> {
+                blackhole.consume(message);
+                return true;
+            });
+        }
+        for (int i = 0; i < instruments; i++) {
+            for (int j = 0; j < handlers; j++) {
+                routed.subscribe("tickers", "INST-" + i, (message, ctx) -> {
+                    blackhole.consume(message);
+                    return true;
+                });
+            }
+        }
+    }
+
+    @Benchmark
+    public void global() {
+        global.dispatch(TICKER);
+    }
+
+    @Benchmark
+    public void routed() {
+        routed.dispatch(TICKER);
+    }
+}
@@ -0,0 +1,52 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.replay.ReplayClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OkxHandler#handle} 解析一条推送的耗时和分配
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OkxHandlerBenchmark {
+    private static final String TICKER = "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{"
+        + "\"instType\":\"SPOT\",\"instId\":\"BTC-USDT\",\"last\":\"42219.9\",\"lastSz\":\"0.1\","
+        + "\"askPx\":\"42220\",\"askSz\":\"11\",\"bidPx\":\"42219.8\",\"bidSz\":\"5\","
+        + "\"open24h\":\"41000\",\"high24h\":\"42500\",\"low24h\":\"40800\",\"volCcy24h\":\"2222\","
+        + "\"vol24h\":\"2222\",\"sodUtc0\":\"41500\",\"sodUtc8\":\"41600\",\"ts\":\"1597026383085\"}]}";
+    private static final String EVENT = "{\"event\":\"subscribe\",\"arg\":{\"channel\":\"tickers\","
+        + "\"instId\":\"BTC-USDT\"},\"connId\":\"a4d3ae55\"}";
+
+    private final OkxHandler handler = new OkxHandler();
+    private final MessageHandler.HandlerContext ctx = new MessageHandler.HandlerContext(new ReplayClient());
+
+    @Benchmark
+    public boolean ticker() {
+        return handler.handle(TICKER, ctx);
+    }
+
+    @Benchmark
+    public boolean event() {
+        return handler.handle(EVENT, ctx);
+    }
+
+    @Benchmark
+    public boolean pong() {
+        return handler.handle("pong", ctx);
+    }
+}
@@ -0,0 +1,51 @@
+package com.trade.strategy.impl;
+
+import com.trade.common.DataMessage;
+import com.trade.domain.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网格初始化 GridStrategy.initGridOrders，通过每条行情都会触发的 {@link GridStrategy#change} 调用
+ * 不调用 start()，不创建策略的挂单簿及其写线程，只测调用线程上的网格计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridStrategyBenchmark {
+    private GridStrategy strategy;
+    private DataMessage<String> message;
+
+    @Setup
+    public void setup() {
+        Strategy domain = new Strategy();
+        domain.setName("bench-grid");
+        domain.setParams("{}");
+        strategy = new GridStrategy();
+        strategy.init(domain);
+        strategy.onParamsUpdate();
+        message = new DataMessage<>();
+        message.setExchange("okx");
+        message.setChannel("tickers");
+        message.setData("{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{\"last\":\"45000\"}]}");
+    }
+
+    @Benchmark
+    public int initGridOrders() {
+        strategy.change(message);
+        return strategy.getLongOrders().size() + strategy.getShortOrders().size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.trade.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClientOrderIdAllocator} 每个线程各持有一个序号段，与 {@link SnowflakeIdGeneratorBenchmark} 对比
+ * 多线程下只有领取新段时才访问共享计数器；编码到复用缓冲区，不分配对象
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientOrderIdAllocatorBenchmark {
+    private static final ClientOrderIdAllocator ALLOCATOR = new ClientOrderIdAllocator();
+
+    @State(Scope.Thread)
+    public static class StrategyThread {
+        final ClientOrderIdAllocator.Sequence sequence = ALLOCATOR.sequence("grid01");
+        final byte[] buffer = new byte[ClientOrderIdAllocator.MAX_LENGTH];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int encode(StrategyThread thread) {
+        return thread.sequence.next(thread.buffer, 0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int encodeContended4(StrategyThread thread) {
+        return thread.sequence.next(thread.buffer, 0);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int encodeContended16(StrategyThread thread) {
+        return thread.sequence.next(thread.buffer, 0);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String nextString(StrategyThread thread) {
+        return thread.sequence.nextString();
+    }
+}
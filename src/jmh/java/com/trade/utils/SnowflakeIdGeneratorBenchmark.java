@@ -0,0 +1,46 @@
+package com.trade.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SnowflakeIdGenerator#nextId} 单线程与多线程争用同一个生成器
+ * 每毫秒最多 4096 个号，超出后自旋等待下一毫秒，吞吐上限约 409 万/秒
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 1);
+
+    @Benchmark
+    @Threads(1)
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdContended4() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long nextIdContended16() {
+        return generator.nextId();
+    }
+}
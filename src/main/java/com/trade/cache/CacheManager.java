@@ -3,38 +3,200 @@ package com.trade.cache;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 @Slf4j
 //@Component
 public class CacheManager {
-    // {策略唯一编号: {交易对: {方向: 仓位}}}
-    private static Map<String, Position> CACHE = new ConcurrentHashMap<>();
+    // {策略唯一编号: 挂单簿}，每个挂单簿只有一个写线程，见 PositionBook
+    private static Map<String, PositionBook> CACHE = new ConcurrentHashMap<>();
     private static Map<String,Order> ORDERS = new ConcurrentHashMap<>();
+    // {交易对: 挂过该交易对订单的挂单簿}，标记价格只更新这些挂单簿；订单只能经 add 或日志恢复进入挂单簿，敞口不会出现在别处
+    private static final Map<String, CopyOnWriteArrayList<PositionBook>> BOOKS_BY_INSTRUMENT = new ConcurrentHashMap<>();
+    // 挂单簿本地日志根目录，每个策略一个子目录；为 null 时不记录，重启后挂单需从交易所重建
+    private static volatile Path JOURNAL_DIR;
+
+    /**
+     * 设置后新建的挂单簿从 {@code dir/策略编号} 下的快照和日志恢复，并记录之后的修改，需在 init 之前调用
+     */
+    public static void setJournalDir(Path dir){
+        JOURNAL_DIR = dir;
+    }
+
     public boolean init(String key){
+        return init(key, Position.DEFAULT_TICK_SIZE);
+    }
+
+    /**
+     * @param tickSize 价格档位间距，见 {@link PriceLadder}
+     */
+    public boolean init(String key, BigDecimal tickSize){
         log.info("{}",CACHE.containsKey(key));
-        if(!CACHE.containsKey(key)){
-            CACHE.put(key,new Position());
-        }
+        Path journalDir = JOURNAL_DIR;
+        CACHE.computeIfAbsent(key, k -> {
+            PositionBook book = journalDir == null
+                ? new PositionBook(k, tickSize)
+                : new PositionBook(k, tickSize, PositionBook.DEFAULT_BUFFER_SIZE, WaitStrategy.parking(100_000),
+                    new PositionJournal(journalDir.resolve(k)));
+            // 从日志恢复的订单和敞口
+            PositionSnapshot recovered = book.snapshot();
+            for (List<PositionSnapshot.OrderState> orders : List.of(recovered.getLongOrders(), recovered.getShortOrders(),
+                recovered.getCloseLongOrders(), recovered.getCloseShortOrders())) {
+                orders.forEach(order -> index(order.getSymbol(), book));
+            }
+            book.getExposure().instruments().forEach(instId -> index(instId, book));
+            return book;
+        });
         return true;
     }
 
 
-    public boolean add(String strategyId, Order order){
-        if(!CACHE.containsKey(strategyId)){
+    /**
+     * 写入在策略的写线程上异步应用，策略不存在时结果为 false
+     */
+    public CompletableFuture<Boolean> add(String strategyId, Order order){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
+            return CompletableFuture.completedFuture(false);
+        }
+        index(order.getSymbol(), book);
+        return book.add(order);
+    }
+
+
+    /**
+     * @param status 枚举名或 okx state 取值，不认识时结果为 false
+     */
+    public CompletableFuture<Boolean> update(String strategyId,String cliId,String status){
+        OrderStatus parsed = OrderStatus.of(status);
+        if(parsed == null){
+            log.warn("Unknown order status {} for {}", status, cliId);
+            return CompletableFuture.completedFuture(false);
+        }
+        return update(strategyId,cliId,parsed);
+    }
+
+    /**
+     * 状态变化不合法（如终态之后的推送）时结果为 false
+     */
+    public CompletableFuture<Boolean> update(String strategyId,String cliId,OrderStatus status){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
+            return CompletableFuture.completedFuture(false);
+        }
+        return book.update(cliId,status);
+    }
+
+    /**
+     * 成交回报，状态和成交数量同时生效
+     * @param seq 推送序号，用于丢弃乱序到达的旧推送，0 表示不按序号判断
+     */
+    public CompletableFuture<Boolean> update(String strategyId,String cliId,BigDecimal execAmount,OrderStatus status,long seq){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
+            return CompletableFuture.completedFuture(false);
+        }
+        return book.update(cliId,execAmount,status,seq);
+    }
+
+    /**
+     * 标记价格推送，更新所有持有该交易对的策略的未实现盈亏
+     */
+    public void mark(String instId, BigDecimal markPrice){
+        List<PositionBook> books = BOOKS_BY_INSTRUMENT.get(instId);
+        if (books == null) {
+            return;
+        }
+        long price = Order.FIXED.valueOf(markPrice.setScale(Order.FIXED.getScale(), RoundingMode.HALF_UP));
+        for (PositionBook book : books) {
+            book.getExposure().onMark(instId, price);
+        }
+    }
+
+    /**
+     * 平仓后策略的全部持仓清零，已实现盈亏保留；在挂单簿写线程上执行并记入日志
+     * @return 策略不存在时结果为 false
+     */
+    public CompletableFuture<Boolean> resetExposure(String strategyId){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
+            return CompletableFuture.completedFuture(false);
+        }
+        return book.resetExposure();
+    }
+
+    /**
+     * 策略的敞口与盈亏，随成交和标记价格实时更新
+     * @return 策略不存在时返回 null
+     */
+    public ExposureLedger exposure(String strategyId){
+        PositionBook book = CACHE.get(strategyId);
+        return book == null ? null : book.getExposure();
+    }
+
+    /**
+     * 订阅策略的订单状态变化
+     * @return 策略不存在时返回 false
+     */
+    public boolean listen(String strategyId, OrderListener listener){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
             return false;
         }
-        return CACHE.get(strategyId).add(order);
+        book.addListener(listener);
+        return true;
     }
 
+    public void unlisten(String strategyId, OrderListener listener){
+        PositionBook book = CACHE.get(strategyId);
+        if(book != null){
+            book.removeListener(listener);
+        }
+    }
+
+    public CompletableFuture<Boolean> remove(String strategyId,String cliId){
+        PositionBook book = CACHE.get(strategyId);
+        if(book == null){
+            return CompletableFuture.completedFuture(false);
+        }
+        return book.remove(cliId);
+    }
 
-    public boolean update(String strategyId,String cliId,String status){
-        return CACHE.get(strategyId).update(cliId,status);
+    /**
+     * 策略挂单的只读快照，不加锁，可供接口和风控随时读取
+     * @return 策略不存在时返回 null
+     */
+    public PositionSnapshot snapshot(String strategyId){
+        PositionBook book = CACHE.get(strategyId);
+        return book == null ? null : book.snapshot();
     }
 
 
 
+    private static void index(String instId, PositionBook book) {
+        if (instId == null) {
+            return;
+        }
+        CopyOnWriteArrayList<PositionBook> books = BOOKS_BY_INSTRUMENT.computeIfAbsent(instId,
+            k -> new CopyOnWriteArrayList<>());
+        // 已登记时只读，不复制
+        if (!books.contains(book)) {
+            books.addIfAbsent(book);
+        }
+    }
+
     public void print(){
-        log.info("{}", JSONObject.toJSONString(CACHE));
+        Map<String, PositionSnapshot> snapshots = new LinkedHashMap<>();
+        CACHE.forEach((key, book) -> snapshots.put(key, book.snapshot()));
+        log.info("{}", JSONObject.toJSONString(snapshots));
     }
 }
@@ -0,0 +1,188 @@
+package com.trade.cache;
+
+import com.trade.socket.netty.util.TopicIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 行情合并缓存
+ * <p>
+ * 按 (channel, instId) 只保留最新一条行情。写入时若该主题尚未被消费，只覆盖值并不再排队；
+ * 消费者通过 {@link #drain(Drainer, int)} 取出所有有更新的主题，每个主题一次，直接拿到最新值。
+ * 消费者落后时跳过中间价格，处理量只与交易对数量有关，与行情频率无关。
+ * <p>
+ * 写入可多线程并发；drain 只能由单个消费线程调用。值会被跨线程读取，必须是不可变对象。
+ *
+ * @param <V> 值类型
+ */
+@Slf4j
+public class ConflatingCache<V> {
+    private final TopicIndex topics;
+    private final int capacity;
+    private final AtomicReferenceArray<V> values;
+    private final AtomicIntegerArray dirty;
+    // 每个主题被覆盖（未消费即被新值替换）的次数
+    private final AtomicLongArray conflated;
+    private final AtomicLong rejected = new AtomicLong();
+    private final DirtyQueue dirtyQueue;
+
+    /**
+     * @param topics 主题索引，主题编号即槽位下标
+     * @param capacity 最大主题数
+     */
+    public ConflatingCache(TopicIndex topics, int capacity) {
+        this.topics = topics;
+        this.capacity = capacity;
+        this.values = new AtomicReferenceArray<>(capacity);
+        this.dirty = new AtomicIntegerArray(capacity);
+        this.conflated = new AtomicLongArray(capacity);
+        this.dirtyQueue = new DirtyQueue(capacity);
+    }
+
+    /**
+     * 写入最新值
+     * @param channel 频道
+     * @param instId 交易对
+     * @param value 值
+     * @return 主题是否新进入待消费队列
+     */
+    public boolean put(String channel, String instId, V value) {
+        return put(topics.register(channel, instId), value);
+    }
+
+    /**
+     * 写入最新值
+     * @param topic 主题编号
+     * @param value 值
+     * @return 主题是否新进入待消费队列，false 表示覆盖了尚未消费的值或超出容量
+     */
+    public boolean put(int topic, V value) {
+        if (topic >= capacity) {
+            if (rejected.getAndIncrement() == 0) {
+                log.warn("Conflating cache capacity {} exceeded by topic {}", capacity, topic);
+            }
+            return false;
+        }
+        values.set(topic, value);
+        if (dirty.compareAndSet(topic, 0, 1)) {
+            dirtyQueue.offer(topic);
+            return true;
+        }
+        conflated.incrementAndGet(topic);
+        return false;
+    }
+
+    /**
+     * 取出有更新的主题的最新值
+     * @param drainer 回调
+     * @param limit 本次最多处理的主题数
+     * @return 处理的主题数
+     */
+    public int drain(Drainer<V> drainer, int limit) {
+        int count = 0;
+        while (count < limit) {
+            int topic = dirtyQueue.poll();
+            if (topic < 0) {
+                break;
+            }
+            // 先清除标记再读值：之后的写入会重新排队，不会丢失更新
+            dirty.set(topic, 0);
+            drainer.accept(topic, values.get(topic));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 取出全部有更新的主题的最新值
+     */
+    public int drain(Drainer<V> drainer) {
+        return drain(drainer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 读取最新值，不影响更新标记
+     */
+    public V get(String channel, String instId) {
+        int topic = topics.find(channel, instId);
+        return topic < 0 || topic >= capacity ? null : values.get(topic);
+    }
+
+    public boolean isDirty(int topic) {
+        return dirty.get(topic) == 1;
+    }
+
+    /**
+     * 等待消费的主题数
+     */
+    public int getPendingCount() {
+        return dirtyQueue.size();
+    }
+
+    /**
+     * 主题被合并掉的更新次数
+     */
+    public long getConflatedCount(int topic) {
+        return conflated.get(topic);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public TopicIndex getTopics() {
+        return topics;
+    }
+
+    /**
+     * drain 回调
+     */
+    @FunctionalInterface
+    public interface Drainer<V> {
+        void accept(int topic, V value);
+    }
+
+    /**
+     * 有界多生产者单消费者 int 队列
+     * 每个主题同一时刻最多入队一次，容量等于主题数即不会写满
+     */
+    private static final class DirtyQueue {
+        private final AtomicIntegerArray slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        DirtyQueue(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+            this.slots = new AtomicIntegerArray(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                slots.set(i, -1);
+            }
+        }
+
+        void offer(int topic) {
+            long index = tail.getAndIncrement();
+            slots.lazySet((int) index & mask, topic);
+        }
+
+        int poll() {
+            int index = (int) head & mask;
+            int topic = slots.get(index);
+            if (topic < 0) {
+                return -1;
+            }
+            slots.lazySet(index, -1);
+            head++;
+            return topic;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.common.FixedDecimal;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 单个策略在单个交易对、单个持仓方向上的敞口与盈亏
+ * <p>
+ * 每笔成交和每次标记价格变化都以O(1)增量更新持仓数量、成交均价（VWAP）、已实现盈亏和按标记价格计算的未实现盈亏，
+ * 读方直接取当前值，不需要重新汇总订单。所有数值为 {@link Order#FIXED} 精度的定点数，盈亏单位为计价币。
+ * <p>
+ * 成交（挂单簿写线程）和标记价格（行情线程）可能来自不同线程，写入由 {@link StampedLock} 串行；
+ * 读取走乐观读，不阻塞写线程，需要多个字段一致时使用 {@link #snapshot()}。
+ */
+public class Exposure {
+    private static final FixedDecimal FX = Order.FIXED;
+
+    @Getter
+    private final String instId;
+    @Getter
+    private final ExchangeEnums.Direction direction;
+    /**
+     * 每张合约对应的币数量（okx ctVal），数量以币为单位时为1
+     */
+    private final long contractValue;
+    private final StampedLock lock = new StampedLock();
+
+    private long quantity;
+    private long avgPrice;
+    private long realizedPnl;
+    private long markPrice;
+    private long unrealizedPnl;
+
+    public Exposure(String instId, ExchangeEnums.Direction direction, long contractValue) {
+        if (contractValue <= 0) {
+            throw new IllegalArgumentException("contractValue must be positive: " + contractValue);
+        }
+        this.instId = instId;
+        this.direction = direction;
+        this.contractValue = contractValue;
+    }
+
+    /**
+     * 成交：与持仓方向同向的买卖为开仓，更新均价；反向为平仓，按均价结算已实现盈亏，超出持仓的部分忽略
+     * @param price 成交价格
+     * @param quantity 本次成交数量，非累计
+     * @return 本次成交产生的已实现盈亏
+     */
+    public long onFill(ExchangeEnums.OrderSide side, long price, long quantity) {
+        if (quantity <= 0) {
+            return 0;
+        }
+        boolean opening = (direction == ExchangeEnums.Direction.LONG) == (side == ExchangeEnums.OrderSide.BUY);
+        long stamp = lock.writeLock();
+        try {
+            long realized = 0;
+            if (opening) {
+                avgPrice = FixedDecimal.average(avgPrice, this.quantity, price, quantity);
+                this.quantity = FixedDecimal.add(this.quantity, quantity);
+            } else {
+                long closed = Math.min(quantity, this.quantity);
+                realized = pnl(price, closed);
+                realizedPnl = FixedDecimal.add(realizedPnl, realized);
+                this.quantity -= closed;
+                if (this.quantity == 0) {
+                    avgPrice = 0;
+                }
+            }
+            if (markPrice == 0) {
+                markPrice = price;
+            }
+            unrealizedPnl = pnl(markPrice, this.quantity);
+            return realized;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 标记价格变化，重新计算未实现盈亏
+     */
+    public void onMark(long price) {
+        long stamp = lock.writeLock();
+        try {
+            markPrice = price;
+            unrealizedPnl = pnl(price, quantity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 平掉持仓后清零，已实现盈亏保留
+     */
+    public void reset() {
+        long stamp = lock.writeLock();
+        try {
+            quantity = 0;
+            avgPrice = 0;
+            unrealizedPnl = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 从 {@link PositionJournal} 快照恢复，未实现盈亏按恢复的标记价格重新计算
+     */
+    void restore(long quantity, long avgPrice, long realizedPnl, long markPrice) {
+        long stamp = lock.writeLock();
+        try {
+            this.quantity = quantity;
+            this.avgPrice = avgPrice;
+            this.realizedPnl = realizedPnl;
+            this.markPrice = markPrice;
+            this.unrealizedPnl = pnl(markPrice, quantity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long getQuantity() {
+        long stamp = lock.tryOptimisticRead();
+        long value = quantity;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = quantity;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 已实现与未实现盈亏之和，两者取自同一时刻
+     */
+    public long getTotalPnl() {
+        long stamp = lock.tryOptimisticRead();
+        long realized = realizedPnl;
+        long unrealized = unrealizedPnl;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                realized = realizedPnl;
+                unrealized = unrealizedPnl;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return FixedDecimal.add(realized, unrealized);
+    }
+
+    /**
+     * 所有字段同一时刻的副本，供接口和风控读取
+     */
+    public Snapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        Snapshot snapshot = new Snapshot(this);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                snapshot = new Snapshot(this);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 多头为 (价格 - 均价) * 数量 * 合约面值，空头取反
+     */
+    private long pnl(long price, long quantity) {
+        if (quantity == 0) {
+            return 0;
+        }
+        long value = FX.multiply(FX.multiply(FixedDecimal.subtract(price, avgPrice), quantity), contractValue);
+        return direction == ExchangeEnums.Direction.LONG ? value : Math.negateExact(value);
+    }
+
+    @Getter
+    public static final class Snapshot {
+        private final String instId;
+        private final ExchangeEnums.Direction direction;
+        private final BigDecimal contractValue;
+        private final BigDecimal quantity;
+        private final BigDecimal avgPrice;
+        private final BigDecimal realizedPnl;
+        private final BigDecimal markPrice;
+        private final BigDecimal unrealizedPnl;
+
+        private Snapshot(Exposure exposure) {
+            this.instId = exposure.instId;
+            this.direction = exposure.direction;
+            this.contractValue = FX.toBigDecimal(exposure.contractValue);
+            this.quantity = FX.toBigDecimal(exposure.quantity);
+            this.avgPrice = FX.toBigDecimal(exposure.avgPrice);
+            this.realizedPnl = FX.toBigDecimal(exposure.realizedPnl);
+            this.markPrice = FX.toBigDecimal(exposure.markPrice);
+            this.unrealizedPnl = FX.toBigDecimal(exposure.unrealizedPnl);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个策略按交易对、持仓方向划分的 {@link Exposure} 集合
+ * <p>
+ * 交易对第一次成交时创建对应敞口，之后的成交和标记价格只做一次哈希查找加O(1)更新。
+ * 标记价格只更新已有敞口，没有持仓过的交易对直接忽略。
+ */
+@Slf4j
+public class ExposureLedger {
+    private static final long ONE = Order.FIXED.valueOf(1);
+
+    private final Map<String, Exposure[]> exposures = new ConcurrentHashMap<>();
+    private final Map<String, Long> contractValues = new ConcurrentHashMap<>();
+
+    /**
+     * 设置交易对的合约面值（okx ctVal），需在该交易对第一次成交前设置，未设置时按1计算
+     */
+    public void setContractValue(String instId, BigDecimal contractValue) {
+        contractValues.put(instId, Order.FIXED.valueOf(contractValue));
+    }
+
+    /**
+     * @param price 成交价格（定点数）
+     * @param quantity 本次成交数量（定点数），非累计
+     * @return 本次成交产生的已实现盈亏
+     */
+    public long onFill(String instId, ExchangeEnums.Direction direction, ExchangeEnums.OrderSide side,
+                       long price, long quantity) {
+        long realized = pair(instId, contractValues.getOrDefault(instId, ONE))[direction.ordinal()]
+            .onFill(side, price, quantity);
+        if (log.isDebugEnabled()) {
+            log.debug("Fill {} {} {} {}@{} realized {}", instId, direction, side, Order.FIXED.toString(quantity),
+                Order.FIXED.toString(price), Order.FIXED.toString(realized));
+        }
+        return realized;
+    }
+
+    /**
+     * 从 {@link PositionJournal} 快照恢复单个敞口，合约面值沿用快照时的取值
+     */
+    void restore(String instId, ExchangeEnums.Direction direction, long contractValue, long quantity,
+                 long avgPrice, long realizedPnl, long markPrice) {
+        contractValues.putIfAbsent(instId, contractValue);
+        pair(instId, contractValue)[direction.ordinal()].restore(quantity, avgPrice, realizedPnl, markPrice);
+    }
+
+    /**
+     * @param markPrice 标记价格（定点数）
+     */
+    public void onMark(String instId, long markPrice) {
+        Exposure[] pair = exposures.get(instId);
+        if (pair != null) {
+            pair[0].onMark(markPrice);
+            pair[1].onMark(markPrice);
+        }
+    }
+
+    /**
+     * @return 尚未成交过的交易对返回 null
+     */
+    public Exposure get(String instId, ExchangeEnums.Direction direction) {
+        Exposure[] pair = exposures.get(instId);
+        return pair == null ? null : pair[direction.ordinal()];
+    }
+
+    /**
+     * 持仓数量，尚未成交过时为0
+     */
+    public long getQuantity(String instId, ExchangeEnums.Direction direction) {
+        Exposure exposure = get(instId, direction);
+        return exposure == null ? 0 : exposure.getQuantity();
+    }
+
+    /**
+     * 所有交易对、方向的已实现加未实现盈亏
+     */
+    public long getTotalPnl() {
+        long total = 0;
+        for (Exposure[] pair : exposures.values()) {
+            total = Math.addExact(total, Math.addExact(pair[0].getTotalPnl(), pair[1].getTotalPnl()));
+        }
+        return total;
+    }
+
+    public List<Exposure.Snapshot> snapshot() {
+        List<Exposure.Snapshot> snapshots = new ArrayList<>(exposures.size() * 2);
+        for (Exposure[] pair : exposures.values()) {
+            snapshots.add(pair[0].snapshot());
+            snapshots.add(pair[1].snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 有过持仓的交易对
+     */
+    public Set<String> instruments() {
+        return Collections.unmodifiableSet(exposures.keySet());
+    }
+
+    /**
+     * 全部持仓清零，已实现盈亏保留。挂单簿的敞口只能由其写线程清零，见 {@link PositionBook#resetExposure()}
+     */
+    void reset() {
+        for (Exposure[] pair : exposures.values()) {
+            pair[0].reset();
+            pair[1].reset();
+        }
+    }
+
+    private Exposure[] pair(String instId, long contractValue) {
+        return exposures.computeIfAbsent(instId, k -> new Exposure[]{
+            new Exposure(k, ExchangeEnums.Direction.LONG, contractValue),
+            new Exposure(k, ExchangeEnums.Direction.SHORT, contractValue)});
+    }
+}
@@ -0,0 +1,307 @@
+package com.trade.cache;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 一侧挂单的持久化有序表，由 {@link PositionBook} 的写线程维护，发布给读方的是某一时刻的不可变视图
+ * <p>
+ * 订单按 (rank, seq) 排序：rank 为档位，降序梯子取负值使最优档在前；seq 为加入顺序，同档位内先进先出，
+ * 与 {@link PriceLadder} 的遍历顺序一致。内部是按 seq 散列取优先级的 treap，新增、删除、替换都只复制根到目标节点的
+ * 路径，期望 O(log N)，未修改的子树在新旧视图之间共享，发布一次视图为 O(1)。
+ * <p>
+ * 上一次发布之后新建或复制的节点还不可见，同一批内再次修改时原地写入，不重复复制；
+ * {@link #publish()} 之后这些节点冻结，后续修改重新复制路径。恢复时大量写入之间不发布，全部原地完成。
+ * 非线程安全，只能由写线程调用。
+ */
+final class LadderSnapshot {
+    private Node root;
+    // 节点的 epoch 等于当前值时尚未发布，可以原地修改
+    private long epoch = 1;
+    // split 的两个结果，避免每次分裂分配对象
+    private Node splitLeft;
+    private Node splitRight;
+
+    /**
+     * 加入新订单，(rank, seq) 不能已存在
+     */
+    void insert(long rank, long seq, PositionSnapshot.OrderState state) {
+        root = insert(root, new Node(rank, seq, state, epoch));
+    }
+
+    /**
+     * 替换已存在订单的副本，位置不变
+     */
+    void replace(long rank, long seq, PositionSnapshot.OrderState state) {
+        root = replace(root, rank, seq, state);
+    }
+
+    void remove(long rank, long seq) {
+        root = remove(root, rank, seq);
+    }
+
+    int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * 返回当前内容的不可变视图，之后的修改不影响该视图
+     */
+    List<PositionSnapshot.OrderState> publish() {
+        epoch++;
+        return new View(root);
+    }
+
+    private Node insert(Node t, Node node) {
+        if (t == null) {
+            return node;
+        }
+        if (node.priority > t.priority) {
+            split(t, node.rank, node.seq);
+            node.left = splitLeft;
+            node.right = splitRight;
+            node.size = sizeOf(node.left) + sizeOf(node.right) + 1;
+            return node;
+        }
+        Node c = editable(t);
+        if (compare(node.rank, node.seq, c) < 0) {
+            c.left = insert(c.left, node);
+        } else {
+            c.right = insert(c.right, node);
+        }
+        c.size++;
+        return c;
+    }
+
+    /**
+     * 把 t 分为小于和大于 (rank, seq) 的两部分，放在 splitLeft、splitRight
+     */
+    private void split(Node t, long rank, long seq) {
+        if (t == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        Node c = editable(t);
+        if (compare(rank, seq, c) > 0) {
+            split(c.right, rank, seq);
+            c.right = splitLeft;
+            c.size = sizeOf(c.left) + sizeOf(c.right) + 1;
+            splitLeft = c;
+        } else {
+            split(c.left, rank, seq);
+            c.left = splitRight;
+            c.size = sizeOf(c.left) + sizeOf(c.right) + 1;
+            splitRight = c;
+        }
+    }
+
+    private Node replace(Node t, long rank, long seq, PositionSnapshot.OrderState state) {
+        if (t == null) {
+            throw new IllegalStateException("No order at " + rank + "/" + seq);
+        }
+        Node c = editable(t);
+        int cmp = compare(rank, seq, c);
+        if (cmp == 0) {
+            c.state = state;
+        } else if (cmp < 0) {
+            c.left = replace(c.left, rank, seq, state);
+        } else {
+            c.right = replace(c.right, rank, seq, state);
+        }
+        return c;
+    }
+
+    private Node remove(Node t, long rank, long seq) {
+        if (t == null) {
+            throw new IllegalStateException("No order at " + rank + "/" + seq);
+        }
+        int cmp = compare(rank, seq, t);
+        if (cmp == 0) {
+            return merge(t.left, t.right);
+        }
+        Node c = editable(t);
+        if (cmp < 0) {
+            c.left = remove(c.left, rank, seq);
+        } else {
+            c.right = remove(c.right, rank, seq);
+        }
+        c.size--;
+        return c;
+    }
+
+    /**
+     * 合并两棵树，a 中的节点都排在 b 之前
+     */
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        Node c;
+        if (a.priority > b.priority) {
+            c = editable(a);
+            c.right = merge(c.right, b);
+        } else {
+            c = editable(b);
+            c.left = merge(a, c.left);
+        }
+        c.size = sizeOf(c.left) + sizeOf(c.right) + 1;
+        return c;
+    }
+
+    private Node editable(Node node) {
+        return node.epoch == epoch ? node : new Node(node, epoch);
+    }
+
+    private static int compare(long rank, long seq, Node node) {
+        int cmp = Long.compare(rank, node.rank);
+        return cmp != 0 ? cmp : Long.compare(seq, node.seq);
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final long rank;
+        private final long seq;
+        private final int priority;
+        private final long epoch;
+        private PositionSnapshot.OrderState state;
+        private Node left;
+        private Node right;
+        private int size;
+
+        private Node(long rank, long seq, PositionSnapshot.OrderState state, long epoch) {
+            this.rank = rank;
+            this.seq = seq;
+            this.state = state;
+            this.epoch = epoch;
+            this.priority = priority(seq);
+            this.size = 1;
+        }
+
+        private Node(Node other, long epoch) {
+            this.rank = other.rank;
+            this.seq = other.seq;
+            this.priority = other.priority;
+            this.state = other.state;
+            this.left = other.left;
+            this.right = other.right;
+            this.size = other.size;
+            this.epoch = epoch;
+        }
+
+        /**
+         * seq 单调递增，经 splitmix64 混合后作为随机优先级
+         */
+        private static int priority(long seq) {
+            long z = seq + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return (int) (z ^ (z >>> 31));
+        }
+    }
+
+    /**
+     * 已发布的视图，节点冻结后不再修改；按下标访问 O(log N)，遍历为中序遍历
+     */
+    private static final class View extends AbstractList<PositionSnapshot.OrderState> {
+        private final Node root;
+
+        private View(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public PositionSnapshot.OrderState get(int index) {
+            if (index < 0 || index >= sizeOf(root)) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + sizeOf(root));
+            }
+            Node node = root;
+            while (true) {
+                int left = sizeOf(node.left);
+                if (index < left) {
+                    node = node.left;
+                } else if (index > left) {
+                    index -= left + 1;
+                    node = node.right;
+                } else {
+                    return node.state;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return sizeOf(root);
+        }
+
+        @Override
+        public Iterator<PositionSnapshot.OrderState> iterator() {
+            return new Iterator<>() {
+                private final ArrayDeque<Node> path = new ArrayDeque<>();
+
+                {
+                    descend(root);
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !path.isEmpty();
+                }
+
+                @Override
+                public PositionSnapshot.OrderState next() {
+                    Node node = path.pollFirst();
+                    if (node == null) {
+                        throw new NoSuchElementException();
+                    }
+                    descend(node.right);
+                    return node.state;
+                }
+
+                private void descend(Node node) {
+                    for (; node != null; node = node.left) {
+                        path.addFirst(node);
+                    }
+                }
+            };
+        }
+
+        // 空视图的 clear 等也要拒绝，与非空时一致
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super PositionSnapshot.OrderState> filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<PositionSnapshot.OrderState> operator) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
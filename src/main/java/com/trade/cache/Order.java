@@ -1,8 +1,7 @@
 package com.trade.cache;
 
 import com.trade.common.ExchangeEnums;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.trade.common.FixedDecimal;
 import lombok.Getter;
 
 import java.math.BigDecimal;
@@ -15,7 +14,13 @@ import java.math.BigDecimal;
  * 平空：买入平空（side 填写 buy； posSide 填写 short ）
  */
 @Getter
-public class Order {
+public class Order implements OrderRecord {
+    /**
+     * {@link #fixedPrice}、{@link #fixedAmount}、{@link #fixedExecAmount} 的精度。
+     * 挂单簿、敞口和日志跨交易对共用这一精度，交易对自己的 tickSz/lotSz 精度见 {@link #priceScale}、{@link #amountScale}
+     */
+    public static final FixedDecimal FIXED = FixedDecimal.of(8);
+
     private String cliId;
     private String symbol;
     private ExchangeEnums.OrderSide side;
@@ -24,10 +29,24 @@ public class Order {
     private BigDecimal amount;
     private BigDecimal price;
     private BigDecimal execAmount;
-    // INIT 初始化订单； NEW 新订单- 挂单成功； PART_FILLED 部分成交； FILLED 全部成交； CANCELED 已撤销； REJECTED 已拒绝；
-    private String status;
+    // 价格、数量按交易对 tickSz、lotSz 取的精度，不能超过 FIXED；超出精度的价格和数量直接拒绝，不做舍入
+    private FixedDecimal priceScale;
+    private FixedDecimal amountScale;
+    // 与上面三个字段对应的 FIXED 精度定点数，创建和更新时精确换算一次，策略计算直接使用
+    private long fixedPrice;
+    private long fixedAmount;
+    private long fixedExecAmount;
+    // 只能通过 transition 按 OrderStatus 的规则向前推进
+    private OrderStatus status;
+    // 最近一次生效的推送序号（如 okx 的 uTime），更小的推送视为过期
+    private long seq;
     private String closeCli;
     private Long ts;
+
+    /**
+     * 价格、数量按 {@link #FIXED} 精度校验
+     * @throws IllegalArgumentException 价格或数量超出精度或范围
+     */
     public Order(String cliId,
                  String symbol,
                  ExchangeEnums.OrderSide side,
@@ -35,6 +54,29 @@ public class Order {
                  ExchangeEnums.OrderType type,
                  BigDecimal amount,
                  BigDecimal price) {
+        this(cliId, symbol, side, direction, type, amount, price, FIXED, FIXED);
+    }
+
+    /**
+     * @param priceScale 交易对价格精度，如 {@code FixedDecimal.ofTick(tickSz)}
+     * @param amountScale 交易对数量精度，如 {@code FixedDecimal.ofTick(lotSz)}
+     * @throws IllegalArgumentException 精度超过 {@link #FIXED}，或价格、数量超出交易对精度或范围
+     */
+    public Order(String cliId,
+                 String symbol,
+                 ExchangeEnums.OrderSide side,
+                 ExchangeEnums.Direction direction,
+                 ExchangeEnums.OrderType type,
+                 BigDecimal amount,
+                 BigDecimal price,
+                 FixedDecimal priceScale,
+                 FixedDecimal amountScale) {
+        if (priceScale.getScale() > FIXED.getScale() || amountScale.getScale() > FIXED.getScale()) {
+            throw new IllegalArgumentException("Order " + cliId + " scale finer than " + FIXED + ": price "
+                + priceScale + ", amount " + amountScale);
+        }
+        this.priceScale = priceScale;
+        this.amountScale = amountScale;
         this.symbol = symbol;
         this.side = side;
         this.direction = direction;
@@ -42,18 +84,75 @@ public class Order {
         this.cliId = cliId;
         this.amount = amount;
         this.price = price;
-        this.status = "INIT";
+        try {
+            this.fixedAmount = toFixed(amount, amountScale);
+            this.fixedPrice = toFixed(price, priceScale);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Order " + cliId + " amount " + amount + " or price " + price
+                + " does not fit " + amountScale + "/" + priceScale, e);
+        }
+        this.status = OrderStatus.INIT;
         this.ts = System.currentTimeMillis();
     }
 
-    public void updaet(String status,BigDecimal execAmount){
-        this.status = status;
-        this.execAmount = execAmount;
+    /**
+     * 状态变化，不带成交数量
+     * @return 变化不合法或是过期推送时返回 false，订单不变
+     */
+    public boolean transition(OrderStatus next) {
+        return transition(next, null, 0);
+    }
+
+    public boolean transition(OrderStatus next, BigDecimal execAmount) {
+        return transition(next, execAmount, 0);
+    }
+
+    /**
+     * 成交回报，状态和累计成交数量一起生效
+     * @param seq 推送序号，0 表示不按序号判断
+     * @return 成交数量超出数量精度时同样返回 false
+     */
+    public boolean transition(OrderStatus next, BigDecimal execAmount, long seq) {
+        if (seq > 0 && seq < this.seq) {
+            return false;
+        }
+        long fixed = -1;
+        if (execAmount != null) {
+            try {
+                fixed = toFixed(execAmount, amountScale);
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+        if (!status.accepts(next, fixedExecAmount, fixed)) {
+            return false;
+        }
+        this.status = next;
+        if (execAmount != null) {
+            this.execAmount = execAmount;
+            this.fixedExecAmount = fixed;
+        }
+        this.seq = Math.max(this.seq, seq);
         this.ts = System.currentTimeMillis();
+        return true;
     }
-    public void updaet(String status){
+
+    /**
+     * 从 {@link PositionJournal} 恢复已生效的状态，不按状态机校验，也不刷新时间戳
+     */
+    void restore(OrderStatus status, BigDecimal execAmount, long seq, Long ts) {
         this.status = status;
-        this.ts = System.currentTimeMillis();
+        this.execAmount = execAmount;
+        this.fixedExecAmount = toFixed(execAmount, FIXED);
+        this.seq = seq;
+        this.ts = ts;
+    }
 
+    /**
+     * 按交易对精度精确换算后放大到 {@link #FIXED}
+     * @throws ArithmeticException 超出精度或范围
+     */
+    private static long toFixed(BigDecimal value, FixedDecimal scale) {
+        return value == null ? 0 : FIXED.convert(scale.valueOf(value), scale);
     }
 }
@@ -0,0 +1,29 @@
+package com.trade.cache;
+
+/**
+ * 订单事件回调，由 {@link PositionBook} 的写线程在包含该变化的快照发布后调用
+ * <p>
+ * 被拒绝的过期推送、重复推送不会触发回调。回调应尽快返回，耗时处理需转交其他线程，否则会拖慢挂单簿的所有写入。
+ */
+@FunctionalInterface
+public interface OrderListener {
+    /**
+     * @param order 变化后的订单
+     * @param from 变化前的状态
+     */
+    void onTransition(PositionSnapshot.OrderState order, OrderStatus from);
+
+    /**
+     * 新订单加入挂单簿
+     */
+    default void onAdd(PositionSnapshot.OrderState order) {
+    }
+
+    /**
+     * 成交，在对应的 {@link #onTransition} 之后调用
+     * @param price 成交价格（{@link Order#FIXED} 定点数）
+     * @param quantity 本次成交数量（定点数），非累计
+     */
+    default void onFill(PositionSnapshot.OrderState order, long price, long quantity) {
+    }
+}
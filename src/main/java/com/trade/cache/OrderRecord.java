@@ -0,0 +1,41 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+
+import java.math.BigDecimal;
+
+/**
+ * 订单的只读字段，{@link Order} 与 {@link OrderStore} 的视图都实现它，读方代码可以不关心订单存放在哪里
+ */
+public interface OrderRecord {
+    String getCliId();
+
+    String getSymbol();
+
+    ExchangeEnums.OrderSide getSide();
+
+    ExchangeEnums.Direction getDirection();
+
+    ExchangeEnums.OrderType getType();
+
+    BigDecimal getAmount();
+
+    BigDecimal getPrice();
+
+    BigDecimal getExecAmount();
+
+    OrderStatus getStatus();
+
+    String getCloseCli();
+
+    Long getTs();
+
+    /**
+     * 按 {@link Order#FIXED} 放大的价格
+     */
+    long getFixedPrice();
+
+    long getFixedAmount();
+
+    long getFixedExecAmount();
+}
@@ -0,0 +1,83 @@
+package com.trade.cache;
+
+import lombok.Getter;
+
+/**
+ * 订单生命周期状态
+ * <p>
+ * INIT → NEW → PART_FILLED → FILLED / CANCELED，INIT 也可直接被拒绝（REJECTED）或跳到后续任一状态。
+ * 私有频道的推送可能乱序或重复到达，{@link #accepts(OrderStatus, long, long)} 只接受向前推进的变化：
+ * 状态不能回退，终态之后不再变化，部分成交之间以累计成交数量是否增加区分新旧。
+ */
+public enum OrderStatus {
+    INIT("init", "初始化"),
+    NEW("live", "挂单成功"),
+    PART_FILLED("partially_filled", "部分成交"),
+    FILLED("filled", "全部成交"),
+    CANCELED("canceled", "已撤销"),
+    REJECTED("rejected", "已拒绝"),
+    ;
+
+    private static final OrderStatus[] VALUES = values();
+
+    /**
+     * okx 订单频道的 state 取值
+     */
+    @Getter
+    private final String code;
+    @Getter
+    private final String msg;
+
+    OrderStatus(String code, String msg) {
+        this.code = code;
+        this.msg = msg;
+    }
+
+    /**
+     * 按枚举名或 okx state 取值查找，不认识时返回 null
+     */
+    public static OrderStatus of(String status) {
+        if (status == null) {
+            return null;
+        }
+        for (OrderStatus value : VALUES) {
+            if (value.name().equals(status) || value.code.equals(status)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public static OrderStatus ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public boolean isTerminal() {
+        return this == FILLED || this == CANCELED || this == REJECTED;
+    }
+
+    /**
+     * 当前状态能否变为 next
+     * @param execAmount 当前累计成交数量（定点数）
+     * @param nextExecAmount 推送中的累计成交数量，负数表示推送不带成交数量
+     */
+    public boolean accepts(OrderStatus next, long execAmount, long nextExecAmount) {
+        if (nextExecAmount >= 0 && nextExecAmount < execAmount) {
+            // 成交数量只增不减，变少说明是更早的推送
+            return false;
+        }
+        switch (this) {
+            case INIT:
+                return next != INIT;
+            case NEW:
+                return next == PART_FILLED || next == FILLED || next == CANCELED;
+            case PART_FILLED:
+                if (next == PART_FILLED) {
+                    return nextExecAmount > execAmount;
+                }
+                return next == FILLED || next == CANCELED;
+            default:
+                return false;
+        }
+    }
+}
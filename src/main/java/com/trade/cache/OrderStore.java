@@ -0,0 +1,458 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 按列存放的订单仓库
+ * <p>
+ * 每个字段一组并行的基本类型数组，订单占用一个槽位（数组下标）：价格、数量、成交数量为 {@link Order#FIXED} 精度的定点数，
+ * 交易对映射为小整数，状态等枚举存序号，遍历和按槽位读取不经过 BigDecimal。
+ * 目前 {@link Position} 和 {@link PositionBook} 仍然持有 {@link Order} 对象，这里的订单是独立的副本，不会减少挂单簿的内存占用。
+ * <p>
+ * 撤出的槽位进入空闲栈优先复用；cliId 索引为开放寻址表，只保存槽位号。
+ * 读取通过 {@link View} 享元，一个视图可以反复 {@link View#moveTo(int)} 到不同槽位，遍历时不创建对象。
+ * 非线程安全，与 {@link Position} 一样由单个写线程访问。
+ */
+public class OrderStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte HAS_PRICE = 1;
+    private static final byte HAS_EXEC = 2;
+    private static final ExchangeEnums.OrderSide[] SIDES = ExchangeEnums.OrderSide.values();
+    private static final ExchangeEnums.Direction[] DIRECTIONS = ExchangeEnums.Direction.values();
+    private static final ExchangeEnums.OrderType[] TYPES = ExchangeEnums.OrderType.values();
+
+    private final Interner symbols = new Interner();
+
+    private String[] cliIds;
+    private String[] closeClis;
+    private long[] prices;
+    private long[] amounts;
+    private long[] execAmounts;
+    private long[] timestamps;
+    private long[] seqs;
+    private int[] symbolCodes;
+    private byte[] statusCodes;
+    private byte[] sides;
+    private byte[] directions;
+    private byte[] types;
+    private byte[] flags;
+    /**
+     * 槽位每次被释放时加一，视图据此判断是否已失效
+     */
+    private int[] generations;
+
+    private int[] free;
+    private int freeCount;
+    private int highWater;
+    private int size;
+
+    /**
+     * cliId 索引，存放槽位号加一，0 表示空位；线性探测，删除时回移后继元素，不留墓碑
+     */
+    private int[] index;
+    private int indexMask;
+
+    public OrderStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public OrderStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        cliIds = new String[capacity];
+        closeClis = new String[capacity];
+        prices = new long[capacity];
+        amounts = new long[capacity];
+        execAmounts = new long[capacity];
+        timestamps = new long[capacity];
+        seqs = new long[capacity];
+        symbolCodes = new int[capacity];
+        statusCodes = new byte[capacity];
+        sides = new byte[capacity];
+        directions = new byte[capacity];
+        types = new byte[capacity];
+        flags = new byte[capacity];
+        generations = new int[capacity];
+        free = new int[capacity];
+        index = new int[tableSize(capacity)];
+        indexMask = index.length - 1;
+    }
+
+    /**
+     * 复制订单的当前状态
+     * @return 槽位号，cliId 已存在时返回 -1
+     */
+    public int add(Order order) {
+        int slot = add(order.getCliId(), order.getSymbol(), order.getSide(), order.getDirection(), order.getType(),
+            order.getFixedAmount(), order.getPrice() == null ? -1 : order.getFixedPrice(), order.getStatus(),
+            order.getTs() == null ? 0 : order.getTs());
+        if (slot >= 0) {
+            closeClis[slot] = order.getCloseCli();
+            seqs[slot] = order.getSeq();
+            if (order.getExecAmount() != null) {
+                execAmounts[slot] = order.getFixedExecAmount();
+                flags[slot] |= HAS_EXEC;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * @param price 定点价格，负数表示无价格（市价单）
+     * @return 槽位号，cliId 已存在时返回 -1
+     */
+    public int add(String cliId, String symbol, ExchangeEnums.OrderSide side, ExchangeEnums.Direction direction,
+                   ExchangeEnums.OrderType type, long amount, long price, OrderStatus status, long ts) {
+        int position = probe(cliId);
+        if (index[position] != 0) {
+            return -1;
+        }
+        int slot = freeCount > 0 ? free[--freeCount] : highWater++;
+        if (slot == cliIds.length) {
+            grow();
+            position = probe(cliId);
+        }
+        cliIds[slot] = cliId;
+        closeClis[slot] = null;
+        symbolCodes[slot] = symbols.code(symbol);
+        sides[slot] = (byte) side.ordinal();
+        directions[slot] = (byte) direction.ordinal();
+        types[slot] = (byte) type.ordinal();
+        amounts[slot] = amount;
+        prices[slot] = Math.max(price, 0);
+        execAmounts[slot] = 0;
+        flags[slot] = price >= 0 ? HAS_PRICE : 0;
+        statusCodes[slot] = (byte) status.ordinal();
+        timestamps[slot] = ts;
+        seqs[slot] = 0;
+        index[position] = slot + 1;
+        size++;
+        return slot;
+    }
+
+    /**
+     * @return cliId 所在槽位，不存在时返回 -1
+     */
+    public int find(String cliId) {
+        return index[probe(cliId)] - 1;
+    }
+
+    /**
+     * 状态变化，规则见 {@link OrderStatus#accepts(OrderStatus, long, long)}
+     * @return 订单不存在或变化不合法时返回 false
+     */
+    public boolean update(String cliId, OrderStatus status) {
+        return update(cliId, -1, status);
+    }
+
+    /**
+     * 成交回报
+     * @param execAmount 定点累计成交数量，负数表示不带成交数量
+     */
+    public boolean update(String cliId, long execAmount, OrderStatus status) {
+        return update(cliId, execAmount, status, 0);
+    }
+
+    /**
+     * 成交回报，规则与 {@link Order#transition(OrderStatus, BigDecimal, long)} 相同
+     * @param execAmount 定点累计成交数量，负数表示不带成交数量
+     * @param seq 推送序号，0 表示不按序号判断，更小的推送视为过期
+     */
+    public boolean update(String cliId, long execAmount, OrderStatus status, long seq) {
+        int slot = find(cliId);
+        if (slot < 0 || (seq > 0 && seq < seqs[slot])
+            || !OrderStatus.ofOrdinal(statusCodes[slot]).accepts(status, execAmounts[slot], execAmount)) {
+            return false;
+        }
+        seqs[slot] = Math.max(seqs[slot], seq);
+        if (execAmount >= 0) {
+            execAmounts[slot] = execAmount;
+            flags[slot] |= HAS_EXEC;
+        }
+        statusCodes[slot] = (byte) status.ordinal();
+        timestamps[slot] = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * 撤出订单，槽位进入空闲栈，指向它的视图随之失效
+     */
+    public boolean remove(String cliId) {
+        int position = probe(cliId);
+        int slot = index[position] - 1;
+        if (slot < 0) {
+            return false;
+        }
+        deleteIndex(position);
+        cliIds[slot] = null;
+        closeClis[slot] = null;
+        generations[slot]++;
+        free[freeCount++] = slot;
+        size--;
+        return true;
+    }
+
+    public boolean isLive(int slot) {
+        return slot >= 0 && slot < highWater && cliIds[slot] != null;
+    }
+
+    /**
+     * 还原为独立的 {@link Order} 对象，用于需要长期持有或跨线程传递的场合；状态、成交数量、推送序号和时间戳原样带回
+     */
+    public Order toOrder(int slot) {
+        View view = view(slot);
+        Order order = new Order(view.getCliId(), view.getSymbol(), view.getSide(), view.getDirection(), view.getType(),
+            view.getAmount(), view.getPrice());
+        order.restore(view.getStatus(), view.getExecAmount(), seqs[slot], timestamps[slot]);
+        return order;
+    }
+
+    public View view() {
+        return new View();
+    }
+
+    public View view(int slot) {
+        return new View().moveTo(slot);
+    }
+
+    /**
+     * 用同一个视图依次访问所有订单，回调内不要增删订单
+     */
+    public void forEach(Consumer<View> action) {
+        View view = new View();
+        for (int slot = 0; slot < highWater; slot++) {
+            if (cliIds[slot] != null) {
+                action.accept(view.moveTo(slot));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return cliIds.length;
+    }
+
+    /**
+     * 已映射的交易对数量
+     */
+    public int symbolCount() {
+        return symbols.size();
+    }
+
+    private void grow() {
+        int capacity = cliIds.length << 1;
+        cliIds = Arrays.copyOf(cliIds, capacity);
+        closeClis = Arrays.copyOf(closeClis, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        execAmounts = Arrays.copyOf(execAmounts, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        symbolCodes = Arrays.copyOf(symbolCodes, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        sides = Arrays.copyOf(sides, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        types = Arrays.copyOf(types, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        free = Arrays.copyOf(free, capacity);
+        int[] oldIndex = index;
+        index = new int[tableSize(capacity)];
+        indexMask = index.length - 1;
+        for (int entry : oldIndex) {
+            if (entry != 0) {
+                index[probe(cliIds[entry - 1])] = entry;
+            }
+        }
+    }
+
+    /**
+     * cliId 所在位置，不存在时为应插入的空位
+     */
+    private int probe(String cliId) {
+        int position = mix(cliId.hashCode()) & indexMask;
+        while (true) {
+            int entry = index[position];
+            if (entry == 0 || cliId.equals(cliIds[entry - 1])) {
+                return position;
+            }
+            position = (position + 1) & indexMask;
+        }
+    }
+
+    private void deleteIndex(int position) {
+        int hole = position;
+        int next = (hole + 1) & indexMask;
+        while (index[next] != 0) {
+            int home = mix(cliIds[index[next] - 1].hashCode()) & indexMask;
+            // home 不在 (hole, next] 区间内时，该元素可以回移到空洞
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = 0;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 装载因子不超过 0.5
+     */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 2;
+    }
+
+    /**
+     * 槽位上订单的享元视图
+     * <p>
+     * 只持有槽位号，getter 直接读取仓库的数组；槽位被撤出后视图失效，可用 {@link #isValid()} 检查。
+     * BigDecimal 形式的 getter 每次创建新对象，热路径应使用定点 getter。
+     */
+    public final class View implements OrderRecord {
+        private int slot = -1;
+        private int generation;
+
+        public View moveTo(int slot) {
+            if (!isLive(slot)) {
+                throw new IllegalArgumentException("Slot " + slot + " is not live");
+            }
+            this.slot = slot;
+            this.generation = generations[slot];
+            return this;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public boolean isValid() {
+            return slot >= 0 && generations[slot] == generation && cliIds[slot] != null;
+        }
+
+        @Override
+        public String getCliId() {
+            return cliIds[slot];
+        }
+
+        @Override
+        public String getSymbol() {
+            return symbols.value(symbolCodes[slot]);
+        }
+
+        public int getSymbolCode() {
+            return symbolCodes[slot];
+        }
+
+        @Override
+        public ExchangeEnums.OrderSide getSide() {
+            return SIDES[sides[slot]];
+        }
+
+        @Override
+        public ExchangeEnums.Direction getDirection() {
+            return DIRECTIONS[directions[slot]];
+        }
+
+        @Override
+        public ExchangeEnums.OrderType getType() {
+            return TYPES[types[slot]];
+        }
+
+        @Override
+        public BigDecimal getAmount() {
+            return Order.FIXED.toBigDecimal(amounts[slot]);
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return (flags[slot] & HAS_PRICE) != 0 ? Order.FIXED.toBigDecimal(prices[slot]) : null;
+        }
+
+        @Override
+        public BigDecimal getExecAmount() {
+            return (flags[slot] & HAS_EXEC) != 0 ? Order.FIXED.toBigDecimal(execAmounts[slot]) : null;
+        }
+
+        @Override
+        public OrderStatus getStatus() {
+            return OrderStatus.ofOrdinal(statusCodes[slot]);
+        }
+
+        @Override
+        public String getCloseCli() {
+            return closeClis[slot];
+        }
+
+        @Override
+        public Long getTs() {
+            return timestamps[slot];
+        }
+
+        /**
+         * 最近一次生效的推送序号
+         */
+        public long getSeq() {
+            return seqs[slot];
+        }
+
+        @Override
+        public long getFixedPrice() {
+            return prices[slot];
+        }
+
+        @Override
+        public long getFixedAmount() {
+            return amounts[slot];
+        }
+
+        @Override
+        public long getFixedExecAmount() {
+            return execAmounts[slot];
+        }
+    }
+
+    /**
+     * 字符串到小整数的映射，只增不减；交易对的取值很有限
+     */
+    private static final class Interner {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[16];
+
+        int code(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = codes.size();
+            if (next == values.length) {
+                values = Arrays.copyOf(values, next << 1);
+            }
+            values[next] = value;
+            codes.put(value, next);
+            return next;
+        }
+
+        String value(int code) {
+            return code < 0 ? null : values[code];
+        }
+
+        int size() {
+            return codes.size();
+        }
+    }
+}
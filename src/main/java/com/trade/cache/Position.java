@@ -4,34 +4,50 @@ import com.trade.common.ExchangeEnums;
 import lombok.Data;
 
 import java.math.BigDecimal;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 单个策略的挂单，按开多/开空/平多/平空分为四个价格档位队列
+ * <p>
+ * 非线程安全，由 {@link PositionBook} 的写线程独占访问
+ */
 @Data
 public class Position {
+    /**
+     * 默认档位间距，价格精度更细的交易对应通过 {@link #Position(BigDecimal)} 指定
+     */
+    public static final BigDecimal DEFAULT_TICK_SIZE = new BigDecimal("0.01");
+
     // 预挂单金额
 //    private BigDecimal preOpenAmount;
 //    // 已挂单金额
 //    private BigDecimal entrustOpenAmount;
-    private TreeSet<Order> longOrders;
-    private TreeSet<Order> shortOrders;
+    // 买单价高者优先，卖单价低者优先，同价按加入顺序
+    private PriceLadder longOrders;
+    private PriceLadder shortOrders;
 
-    private TreeSet<Order> closeLongOrders;
-    private TreeSet<Order> closeShortOrders;
+    private PriceLadder closeLongOrders;
+    private PriceLadder closeShortOrders;
     // 缓存cliId 和订单映射，方便更新
     private transient Map<String, Order> orderMap;
 
 
     public Position() {
-        this.shortOrders = new TreeSet<>(Comparator.comparing(Order::getPrice));
-        this.longOrders = new TreeSet<>(Comparator.comparing(Order::getPrice).reversed());
+        this(DEFAULT_TICK_SIZE);
+    }
+
+    /**
+     * @param tickSize 价格档位间距，一般取交易对的最小价格变动
+     */
+    public Position(BigDecimal tickSize) {
+        this.shortOrders = new PriceLadder(tickSize, false);
+        this.longOrders = new PriceLadder(tickSize, true);
 
-        this.closeLongOrders = new TreeSet<>(Comparator.comparing(Order::getPrice));
-        this.closeShortOrders = new TreeSet<>(Comparator.comparing(Order::getPrice).reversed());
+        this.closeLongOrders = new PriceLadder(tickSize, false);
+        this.closeShortOrders = new PriceLadder(tickSize, true);
 
-        orderMap = new ConcurrentHashMap<>();
+        orderMap = new HashMap<>();
 //        this.preAmount = BigDecimal.ZERO;
 //        this.entrustAmount = BigDecimal.ZERO;
     }
@@ -46,58 +62,58 @@ public class Position {
         if (orderMap.containsKey(order.getCliId())) {
             return false;
         }
+        PriceLadder ladder = ladderOf(order);
+        if (ladder == null || !ladder.add(order)) {
+            return false;
+        }
         orderMap.put(order.getCliId(), order);
 //        this.preAmount = this.preAmount.add(order.getAmount());
-        if (order.getDirection() == ExchangeEnums.Direction.LONG && order.getSide() == ExchangeEnums.OrderSide.BUY) {
-            return this.longOrders.add(order);
-        } else if (order.getDirection() == ExchangeEnums.Direction.SHORT && order.getSide() == ExchangeEnums.OrderSide.SELL) {
-            return this.shortOrders.add(order);
-        } else if (order.getDirection() == ExchangeEnums.Direction.LONG && order.getSide() == ExchangeEnums.OrderSide.SELL) {
-            return this.closeLongOrders.add(order);
-        } else if (order.getDirection() == ExchangeEnums.Direction.SHORT && order.getSide() == ExchangeEnums.OrderSide.BUY) {
-            return this.closeShortOrders.add(order);
-        }
-        return false;
+        return true;
     }
 
     public boolean remove(String cliId) {
-        if (!orderMap.containsKey(cliId)) {
+        Order order = orderMap.remove(cliId);
+        if (order == null) {
             return false;
         }
-        Order order = orderMap.get(cliId);
-        orderMap.remove(cliId);
+        PriceLadder ladder = ladderOf(order);
+        return ladder != null && ladder.remove(cliId) != null;
+    }
+
+    PriceLadder ladderOf(Order order) {
         if (order.getDirection() == ExchangeEnums.Direction.LONG && order.getSide() == ExchangeEnums.OrderSide.BUY) {
-            return this.longOrders.remove(order);
+            return this.longOrders;
         } else if (order.getDirection() == ExchangeEnums.Direction.SHORT && order.getSide() == ExchangeEnums.OrderSide.SELL) {
-            return this.shortOrders.remove(order);
+            return this.shortOrders;
         } else if (order.getDirection() == ExchangeEnums.Direction.LONG && order.getSide() == ExchangeEnums.OrderSide.SELL) {
-            return this.closeLongOrders.remove(order);
+            return this.closeLongOrders;
         } else if (order.getDirection() == ExchangeEnums.Direction.SHORT && order.getSide() == ExchangeEnums.OrderSide.BUY) {
-            return this.closeShortOrders.remove(order);
+            return this.closeShortOrders;
         }
-        return false;
+        return null;
     }
 
-    public boolean update(String cliId, String status) {
-        if (!orderMap.containsKey(cliId)) {
-            return false;
-        }
+    /**
+     * @return 订单不存在、状态变化不合法或推送已过期时返回 false
+     */
+    public boolean update(String cliId, OrderStatus status) {
         Order order = orderMap.get(cliId);
-        order.updaet(status);
-        return true;
+        return order != null && order.transition(status);
     }
 
-    public void update(String cliId, BigDecimal execAmount, String status) {
+    /**
+     * 成交回报，见 {@link Order#transition(OrderStatus, BigDecimal, long)}
+     */
+    public boolean update(String cliId, BigDecimal execAmount, OrderStatus status, long seq) {
         Order order = orderMap.get(cliId);
-        if (order == null) {
-            return;
-        }
-        order.updaet(status,execAmount);
+        return order != null && order.transition(status, execAmount, seq);
     }
 
     public void clear() {
         orderMap.clear();
         longOrders.clear();
         shortOrders.clear();
+        closeLongOrders.clear();
+        closeShortOrders.clear();
     }
 }
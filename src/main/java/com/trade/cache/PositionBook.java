@@ -0,0 +1,476 @@
+package com.trade.cache;
+
+import com.trade.socket.netty.handler.ring.RingBufferStage;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 单个策略的挂单簿，单线程写入、无锁读取
+ * <p>
+ * 私有频道回报、策略线程等任意线程的写入都作为命令发布到多生产者 {@link RingBufferStage}，
+ * 由该簿唯一的写线程依次应用到 {@link Position}，Position 本身不需要任何同步。
+ * 写线程每处理完一批命令发布一次 {@link PositionSnapshot}，读方通过 volatile 引用取得完整的不可变快照，
+ * 不加锁也不会看到应用了一半的修改。快照中的订单保存在 {@link LadderSnapshot} 中，每次修改只复制 O(log N) 个节点，
+ * 发布本身不随挂单数量增长。
+ * <p>
+ * 写入方法立即返回，结果在命令被应用且包含它的快照发布后完成；只有命令缓冲区写满时发布方才会等待。
+ * 状态变化按 {@link OrderStatus} 的规则校验，乱序到达的过期推送结果为 false，不计入版本也不通知 {@link OrderListener}。
+ * 生效的成交按累计成交数量的增量记入 {@link ExposureLedger}，平仓后的持仓清零同样作为命令由写线程执行并记入日志。
+ * 配置了 {@link PositionJournal} 时，生效的修改由写线程追加到本地日志，创建时先从快照和日志恢复再开始接收命令。
+ * 订单加入后归挂单簿所有，调用方不应再修改它。
+ */
+@Slf4j
+public class PositionBook {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int STATUS = 2;
+    private static final int FILL = 3;
+    private static final int CLOSE = 4;
+    private static final int RESET = 5;
+
+    @Getter
+    private final String strategyId;
+    private final RingBufferStage<Command> stage;
+    private volatile PositionSnapshot snapshot = PositionSnapshot.EMPTY;
+    private volatile boolean closed;
+    private final List<OrderListener> listeners = new CopyOnWriteArrayList<>();
+    private final PositionJournal journal;
+    /**
+     * 成交由写线程记入，标记价格由行情线程写入，任意线程可读
+     */
+    @Getter
+    private final ExposureLedger exposure = new ExposureLedger();
+
+    // 以下字段只由写线程访问
+    private final Position position;
+    /**
+     * 与 position 的四个梯子一一对应的持久化副本，修改只复制一条路径，每批发布时不再逐个复制订单
+     */
+    private final LadderSnapshot longStates = new LadderSnapshot();
+    private final LadderSnapshot shortStates = new LadderSnapshot();
+    private final LadderSnapshot closeLongStates = new LadderSnapshot();
+    private final LadderSnapshot closeShortStates = new LadderSnapshot();
+    /**
+     * 各订单在副本中的位置
+     */
+    private final Map<String, Slot> slots = new HashMap<>();
+    private long nextSeq;
+    private final List<Command> pending = new ArrayList<>();
+    private long version;
+    private boolean dirty;
+
+    public PositionBook(String strategyId, BigDecimal tickSize) {
+        this(strategyId, tickSize, DEFAULT_BUFFER_SIZE, WaitStrategy.parking(100_000));
+    }
+
+    /**
+     * @param strategyId 策略编号，用于写线程名
+     * @param tickSize 价格档位间距，见 {@link PriceLadder}
+     * @param bufferSize 命令缓冲区容量，必须为2的幂
+     * @param waitStrategy 写线程空闲、发布方遇到缓冲区已满时的等待策略
+     */
+    public PositionBook(String strategyId, BigDecimal tickSize, int bufferSize, WaitStrategy waitStrategy) {
+        this(strategyId, tickSize, bufferSize, waitStrategy, null);
+    }
+
+    /**
+     * @param journal 本地事件日志，为 null 时不记录；恢复失败抛出 {@link UncheckedIOException}，
+     *                不会以空挂单簿继续写同一份日志
+     */
+    public PositionBook(String strategyId, BigDecimal tickSize, int bufferSize, WaitStrategy waitStrategy,
+                        PositionJournal journal) {
+        this.strategyId = strategyId;
+        this.position = new Position(tickSize);
+        this.journal = journal;
+        if (journal != null) {
+            recover();
+        }
+        this.stage = new RingBufferStage<>("position-" + strategyId, bufferSize, waitStrategy, true);
+        stage.addConsumer("writer", this::apply);
+        stage.start();
+    }
+
+    /**
+     * 新增挂单
+     * @return cliId 已存在时结果为 false
+     */
+    public CompletableFuture<Boolean> add(Order order) {
+        return submit(ADD, order, order.getCliId(), null, null, null, 0);
+    }
+
+    public CompletableFuture<Boolean> remove(String cliId) {
+        return submit(REMOVE, null, cliId, null, null, null, 0);
+    }
+
+    /**
+     * @return 订单不存在或状态变化不合法时结果为 false
+     */
+    public CompletableFuture<Boolean> update(String cliId, OrderStatus status) {
+        return submit(STATUS, null, cliId, null, null, status, 0);
+    }
+
+    /**
+     * 成交回报，状态和成交数量在同一次修改中生效
+     */
+    public CompletableFuture<Boolean> update(String cliId, BigDecimal execAmount, OrderStatus status) {
+        return submit(FILL, null, cliId, execAmount, null, status, 0);
+    }
+
+    /**
+     * @param seq 推送序号，小于订单已生效序号的推送被丢弃，0 表示不按序号判断
+     */
+    public CompletableFuture<Boolean> update(String cliId, BigDecimal execAmount, OrderStatus status, long seq) {
+        return update(cliId, execAmount, null, status, seq);
+    }
+
+    /**
+     * @param fillPrice 本次成交价格（okx fillPx），为 null 时按委托价格记入敞口
+     * @param seq 推送序号，小于订单已生效序号的推送被丢弃，0 表示不按序号判断
+     */
+    public CompletableFuture<Boolean> update(String cliId, BigDecimal execAmount, BigDecimal fillPrice,
+                                             OrderStatus status, long seq) {
+        return submit(FILL, null, cliId, execAmount, fillPrice, status, seq);
+    }
+
+    /**
+     * 平仓后全部持仓清零，已实现盈亏保留，见 {@link ExposureLedger#reset()}
+     */
+    public CompletableFuture<Boolean> resetExposure() {
+        return submit(RESET, null, null, null, null, null, 0);
+    }
+
+    public void addListener(OrderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OrderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 最近一次发布的快照，不加锁
+     */
+    public PositionSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 待写线程处理的命令数
+     */
+    public long getBacklog() {
+        return stage.getQueueDepth();
+    }
+
+    /**
+     * 停止写线程，之后的写入结果均为 false，尚在缓冲区中的命令被丢弃且其结果不再完成
+     * <p>
+     * 配置了日志时先由写线程处理完缓冲区中的命令，写一次快照后关闭日志，下次启动无需重放
+     */
+    public void close() {
+        closed = true;
+        if (journal != null) {
+            Command command = new Command(CLOSE, null, null, null, null, null, 0);
+            stage.publish(command);
+            try {
+                command.result.get(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Position book {} journal not closed cleanly", strategyId, e);
+            }
+        }
+        stage.stop();
+    }
+
+    private CompletableFuture<Boolean> submit(int type, Order order, String cliId, BigDecimal execAmount,
+                                              BigDecimal fillPrice, OrderStatus status, long seq) {
+        if (closed) {
+            return CompletableFuture.completedFuture(false);
+        }
+        Command command = new Command(type, order, cliId, execAmount, fillPrice, status, seq);
+        stage.publish(command);
+        return command.result;
+    }
+
+    private void apply(Command command, boolean endOfBatch) {
+        try {
+            if (command.type == CLOSE) {
+                // 同一批中之前的修改先发布，快照从发布的视图生成
+                if (dirty) {
+                    publish();
+                    dirty = false;
+                }
+                journal.snapshot(snapshot, exposure);
+                journal.close();
+            } else {
+                command.applied = applyToPosition(command);
+            }
+            if (command.applied) {
+                version++;
+                dirty = true;
+                if (journal != null) {
+                    journal(command);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Position book {} failed to apply command {} for {}", strategyId, command.type, command.cliId, e);
+            command.error = e;
+        }
+        pending.add(command);
+        if (!endOfBatch) {
+            return;
+        }
+        // 先把记录交给操作系统再发布，读方看到的修改在进程崩溃后都能恢复
+        if (journal != null) {
+            journal.endOfBatch();
+        }
+        if (dirty) {
+            publish();
+            dirty = false;
+        }
+        if (journal != null && journal.isSnapshotDue()) {
+            journal.snapshot(snapshot, exposure);
+        }
+        // 回调和结果都在快照发布之后，此时快照中已包含本次修改
+        for (Command done : pending) {
+            if (done.applied && done.state != null && !listeners.isEmpty()) {
+                notifyListeners(done);
+            }
+            if (done.error != null) {
+                done.result.completeExceptionally(done.error);
+            } else {
+                done.result.complete(done.applied);
+            }
+        }
+        pending.clear();
+    }
+
+    private boolean applyToPosition(Command command) {
+        switch (command.type) {
+            case ADD:
+                if (!position.add(command.order)) {
+                    return false;
+                }
+                command.state = new PositionSnapshot.OrderState(command.order);
+                insertState(command.order, command.state);
+                return true;
+            case REMOVE:
+                if (!position.remove(command.cliId)) {
+                    return false;
+                }
+                Slot removed = slots.remove(command.cliId);
+                removed.states.remove(removed.rank, removed.seq);
+                return true;
+            case STATUS:
+            case FILL:
+                Order order = position.getOrderMap().get(command.cliId);
+                if (order == null) {
+                    return false;
+                }
+                OrderStatus from = order.getStatus();
+                long execBefore = order.getFixedExecAmount();
+                boolean changed = command.type == STATUS
+                    ? position.update(command.cliId, command.status)
+                    : position.update(command.cliId, command.execAmount, command.status, command.seq);
+                if (!changed) {
+                    log.debug("Position book {} dropped {} -> {} for {}", strategyId, from, command.status, command.cliId);
+                    return false;
+                }
+                recordFill(command, order, order.getFixedExecAmount() - execBefore);
+                command.from = from;
+                command.state = new PositionSnapshot.OrderState(order);
+                Slot slot = slots.get(command.cliId);
+                slot.states.replace(slot.rank, slot.seq, command.state);
+                return true;
+            case RESET:
+                exposure.reset();
+                return true;
+            default:
+                throw new IllegalStateException("Unknown command " + command.type);
+        }
+    }
+
+    private void journal(Command command) {
+        switch (command.type) {
+            case ADD:
+                journal.appendAdd(version, command.order);
+                break;
+            case REMOVE:
+                journal.appendRemove(version, command.cliId);
+                break;
+            case STATUS:
+                journal.appendStatus(version, command.cliId, command.status);
+                break;
+            case RESET:
+                journal.appendReset(version);
+                break;
+            default:
+                journal.appendFill(version, command.cliId, command.execAmount, command.fillPrice, command.status,
+                    command.seq);
+        }
+    }
+
+    /**
+     * 在写线程启动前把快照和日志重放到 Position，重放走与实时命令相同的应用逻辑，敞口随成交一起重建
+     */
+    private void recover() {
+        PositionJournal.Replay replay = new PositionJournal.Replay() {
+            @Override
+            public void add(Order order) {
+                replay(new Command(ADD, order, order.getCliId(), null, null, null, 0));
+            }
+
+            @Override
+            public void remove(String cliId) {
+                replay(new Command(REMOVE, null, cliId, null, null, null, 0));
+            }
+
+            @Override
+            public void status(String cliId, OrderStatus status) {
+                replay(new Command(STATUS, null, cliId, null, null, status, 0));
+            }
+
+            @Override
+            public void fill(String cliId, BigDecimal execAmount, BigDecimal fillPrice, OrderStatus status,
+                             long seq) {
+                replay(new Command(FILL, null, cliId, execAmount, fillPrice, status, seq));
+            }
+
+            @Override
+            public void resetExposure() {
+                replay(new Command(RESET, null, null, null, null, null, 0));
+            }
+        };
+        try {
+            version = journal.recover(replay, exposure);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Position book " + strategyId + " failed to recover from "
+                + journal.getDir(), e);
+        }
+        publish();
+    }
+
+    private void replay(Command command) {
+        if (!applyToPosition(command)) {
+            log.warn("Position book {} replay of {} for {} had no effect", strategyId, command.type, command.cliId);
+        }
+    }
+
+    private void recordFill(Command command, Order order, long filled) {
+        if (filled <= 0) {
+            return;
+        }
+        if (command.fillPrice == null && order.getPrice() == null) {
+            log.warn("Position book {} has no price for fill on {}, exposure not updated", strategyId, order.getCliId());
+            return;
+        }
+        long price = command.fillPrice != null
+            ? Order.FIXED.valueOf(command.fillPrice.setScale(Order.FIXED.getScale(), RoundingMode.HALF_UP))
+            : order.getFixedPrice();
+        exposure.onFill(order.getSymbol(), order.getDirection(), order.getSide(), price, filled);
+        command.filledPrice = price;
+        command.filledQuantity = filled;
+    }
+
+    private void notifyListeners(Command command) {
+        for (OrderListener listener : listeners) {
+            try {
+                if (command.type == ADD) {
+                    listener.onAdd(command.state);
+                    continue;
+                }
+                listener.onTransition(command.state, command.from);
+                if (command.filledQuantity > 0) {
+                    listener.onFill(command.state, command.filledPrice, command.filledQuantity);
+                }
+            } catch (RuntimeException e) {
+                log.error("Position book {} listener failed on {}", strategyId, command.cliId, e);
+            }
+        }
+    }
+
+    private void insertState(Order order, PositionSnapshot.OrderState state) {
+        PriceLadder ladder = position.ladderOf(order);
+        long tick = ladder.toTicks(order);
+        Slot slot = new Slot(statesOf(ladder), ladder.isDescending() ? -tick : tick, nextSeq++);
+        slot.states.insert(slot.rank, slot.seq, state);
+        slots.put(order.getCliId(), slot);
+    }
+
+    private LadderSnapshot statesOf(PriceLadder ladder) {
+        if (ladder == position.getLongOrders()) {
+            return longStates;
+        } else if (ladder == position.getShortOrders()) {
+            return shortStates;
+        } else if (ladder == position.getCloseLongOrders()) {
+            return closeLongStates;
+        }
+        return closeShortStates;
+    }
+
+    private void publish() {
+        snapshot = new PositionSnapshot(version, longStates.publish(), shortStates.publish(),
+            closeLongStates.publish(), closeShortStates.publish());
+    }
+
+    /**
+     * 订单在 {@link LadderSnapshot} 中的排序键
+     */
+    private static final class Slot {
+        private final LadderSnapshot states;
+        private final long rank;
+        private final long seq;
+
+        private Slot(LadderSnapshot states, long rank, long seq) {
+            this.states = states;
+            this.rank = rank;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Command {
+        private final int type;
+        private final Order order;
+        private final String cliId;
+        private final BigDecimal execAmount;
+        private final BigDecimal fillPrice;
+        private final OrderStatus status;
+        private final long seq;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private boolean applied;
+        private RuntimeException error;
+        // 新增或状态变化生效后由写线程填入，用于回调
+        private OrderStatus from;
+        private PositionSnapshot.OrderState state;
+        private long filledPrice;
+        private long filledQuantity;
+
+        private Command(int type, Order order, String cliId, BigDecimal execAmount, BigDecimal fillPrice,
+                        OrderStatus status, long seq) {
+            this.type = type;
+            this.order = order;
+            this.cliId = cliId;
+            this.execAmount = execAmount;
+            this.fillPrice = fillPrice;
+            this.status = status;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,719 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.common.FixedDecimal;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 单个 {@link PositionBook} 的本地事件日志与快照，用于进程重启后不依赖交易所接口恢复挂单
+ * <p>
+ * 写线程每应用一条生效的修改就追加一条二进制记录，序号即挂单簿版本；每批命令结束时刷到操作系统，
+ * 打开 fsync 时同时落盘。累计 {@link #getSnapshotEvery()} 条记录后把全部挂单和敞口写成快照。
+ * <p>
+ * 写线程只切换到以快照版本命名的新日志文件并复制敞口，挂单取自挂单簿已发布的不可变快照；
+ * 序列化、落盘、原子改名和删除旧日志都在后台线程，写线程的停顿与挂单数量无关，记在
+ * {@link #getMaxSnapshotPauseNanos()}。快照改名之前崩溃时，旧快照和新旧日志都还在，恢复不受影响。
+ * <p>
+ * 恢复时加载快照，再按顺序重放快照版本之后的记录。记录带 CRC32 校验，进程崩溃留下的半条记录被截掉。
+ * 目录结构：
+ * <pre>
+ *     snapshot.bin                 [magic][format][version][交易对表][订单数][订单...][敞口数][敞口...][crc]
+ *     events-00000000000000000000.log  [长度][类型 序号 内容][crc] ...
+ * </pre>
+ * 除 {@link #recover} 和 getter 外所有方法只由挂单簿写线程调用。写入失败只记日志并停止记录，不影响交易。
+ */
+@Slf4j
+public class PositionJournal implements Closeable {
+    public static final int DEFAULT_SNAPSHOT_EVERY = 100_000;
+
+    private static final FixedDecimal FX = Order.FIXED;
+    private static final int MAGIC = 0x504A4E4C;
+    private static final int FORMAT = 1;
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String EVENTS_PREFIX = "events-";
+    private static final String EVENTS_SUFFIX = ".log";
+    private static final int MAX_RECORD = 1 << 20;
+    private static final byte NULL_SCALE = -1;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte STATUS = 3;
+    private static final byte FILL = 4;
+    private static final byte RESET = 5;
+
+    private static final ExchangeEnums.OrderSide[] SIDES = ExchangeEnums.OrderSide.values();
+    private static final ExchangeEnums.Direction[] DIRECTIONS = ExchangeEnums.Direction.values();
+    private static final ExchangeEnums.OrderType[] TYPES = ExchangeEnums.OrderType.values();
+
+    @Getter
+    private final Path dir;
+    @Getter
+    private final int snapshotEvery;
+    private final boolean fsync;
+
+    private final RecordBuffer record = new RecordBuffer(256);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    // 快照落盘和删除旧日志，单线程保证按版本顺序完成
+    private final ExecutorService snapshotWriter;
+    private FileChannel channel;
+    private Path current;
+    private DataOutputStream events;
+    private long sinceSnapshot;
+    private long snapshotVersion = -1;
+    private boolean failed;
+    /**
+     * 写快照时写线程停顿的最长时间
+     */
+    @Getter
+    private volatile long maxSnapshotPauseNanos;
+
+    public PositionJournal(Path dir) {
+        this(dir, DEFAULT_SNAPSHOT_EVERY, false);
+    }
+
+    /**
+     * @param dir 日志目录，每个挂单簿独占
+     * @param snapshotEvery 每追加多少条记录写一次快照
+     * @param fsync 每批命令结束时是否落盘；为 false 时只保证进程崩溃不丢，断电可能丢失最后几批
+     */
+    public PositionJournal(Path dir, int snapshotEvery, boolean fsync) {
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("snapshotEvery must be positive: " + snapshotEvery);
+        }
+        this.dir = dir;
+        this.snapshotEvery = snapshotEvery;
+        this.fsync = fsync;
+        this.snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "position-journal-" + dir.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 重放到挂单簿的回调，与挂单簿的写入方法一一对应
+     */
+    interface Replay {
+        void add(Order order);
+
+        void remove(String cliId);
+
+        void status(String cliId, OrderStatus status);
+
+        void fill(String cliId, BigDecimal execAmount, BigDecimal fillPrice, OrderStatus status, long seq);
+
+        void resetExposure();
+    }
+
+    /**
+     * 加载快照并重放之后的日志，完成后打开日志等待追加，只在写线程启动前调用一次
+     * @param exposure 快照中的敞口直接恢复到这里，重放的成交由挂单簿照常记入
+     * @return 恢复到的版本，没有任何记录时为0
+     */
+    long recover(Replay replay, ExposureLedger exposure) throws IOException {
+        Files.createDirectories(dir);
+        long started = System.nanoTime();
+        long version = loadSnapshot(replay, exposure);
+        long snapshotVersion = version;
+        List<Path> files = eventFiles();
+        Path last = null;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            long[] result = replayEvents(file, version, replay);
+            version = result[0];
+            last = file;
+            if (result[1] != Files.size(file)) {
+                log.warn("Journal {} truncated at {} of {} bytes", file, result[1], Files.size(file));
+                try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    truncate.truncate(result[1]);
+                }
+                // 中间文件损坏时后面的记录已经接不上
+                for (Path later : files.subList(i + 1, files.size())) {
+                    log.error("Journal {} dropped after corrupt {}", later, file);
+                    Files.delete(later);
+                }
+                break;
+            }
+        }
+        sinceSnapshot = version - snapshotVersion;
+        this.snapshotVersion = snapshotVersion;
+        open(last != null ? last : eventFile(version));
+        log.info("Journal {} recovered to version {} ({} after snapshot {}) in {} ms", dir, version, sinceSnapshot,
+            snapshotVersion, (System.nanoTime() - started) / 1_000_000);
+        return version;
+    }
+
+    void appendAdd(long seq, Order order) {
+        if (begin(ADD, seq)) {
+            try {
+                writeOrder(recordOut, order);
+            } catch (IOException e) {
+                fail(e);
+            }
+            end();
+        }
+    }
+
+    void appendRemove(long seq, String cliId) {
+        if (begin(REMOVE, seq)) {
+            try {
+                recordOut.writeUTF(cliId);
+            } catch (IOException e) {
+                fail(e);
+            }
+            end();
+        }
+    }
+
+    void appendStatus(long seq, String cliId, OrderStatus status) {
+        if (begin(STATUS, seq)) {
+            try {
+                recordOut.writeUTF(cliId);
+                recordOut.writeByte(status.ordinal());
+            } catch (IOException e) {
+                fail(e);
+            }
+            end();
+        }
+    }
+
+    void appendFill(long seq, String cliId, BigDecimal execAmount, BigDecimal fillPrice, OrderStatus status,
+                    long orderSeq) {
+        if (begin(FILL, seq)) {
+            try {
+                recordOut.writeUTF(cliId);
+                recordOut.writeByte(status.ordinal());
+                writeDecimal(recordOut, execAmount);
+                writeDecimal(recordOut, fillPrice);
+                recordOut.writeLong(orderSeq);
+            } catch (IOException e) {
+                fail(e);
+            }
+            end();
+        }
+    }
+
+    /**
+     * 全部持仓清零，没有内容
+     */
+    void appendReset(long seq) {
+        if (begin(RESET, seq)) {
+            end();
+        }
+    }
+
+    /**
+     * 一批命令处理完，把缓冲的记录交给操作系统
+     */
+    void endOfBatch() {
+        if (failed || events == null) {
+            return;
+        }
+        try {
+            events.flush();
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 距上次快照的记录数达到间隔
+     */
+    boolean isSnapshotDue() {
+        return !failed && events != null && sinceSnapshot >= snapshotEvery;
+    }
+
+    /**
+     * 切换日志文件并在后台从已发布的快照生成快照文件，快照写入失败时旧日志保留，恢复照常重放
+     * @param snapshot 挂单簿最新发布的快照，包含已追加的全部记录
+     */
+    void snapshot(PositionSnapshot snapshot, ExposureLedger exposure) {
+        long version = snapshot.getVersion();
+        if (failed || events == null || version == snapshotVersion) {
+            return;
+        }
+        long started = System.nanoTime();
+        FileChannel previous = channel;
+        DataOutputStream previousEvents = events;
+        Path next = eventFile(version);
+        try {
+            events.flush();
+            if (!next.equals(current)) {
+                // 旧日志已交给操作系统，落盘和关闭由后台完成
+                open(next);
+            } else {
+                previous = null;
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        // 敞口只有每个交易对一份，在写线程上复制；挂单视图不可变，可以交给后台
+        List<Exposure.Snapshot> exposures = exposure.snapshot();
+        sinceSnapshot = 0;
+        snapshotVersion = version;
+        long pause = System.nanoTime() - started;
+        if (pause > maxSnapshotPauseNanos) {
+            maxSnapshotPauseNanos = pause;
+        }
+        FileChannel rotated = previous;
+        DataOutputStream rotatedEvents = previousEvents;
+        snapshotWriter.execute(() -> {
+            if (rotated != null) {
+                try {
+                    rotated.force(false);
+                    rotatedEvents.close();
+                } catch (IOException e) {
+                    log.warn("Journal {} failed to close rotated log", dir, e);
+                }
+            }
+            writeSnapshot(snapshot, exposures, pause);
+        });
+    }
+
+    private static byte[] serialize(PositionSnapshot snapshot, List<Exposure.Snapshot> exposures)
+        throws IOException {
+        RecordBuffer buffer = new RecordBuffer(1 << 16);
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT);
+        data.writeLong(snapshot.getVersion());
+        List<List<PositionSnapshot.OrderState>> ladders = List.of(snapshot.getLongOrders(),
+            snapshot.getShortOrders(), snapshot.getCloseLongOrders(), snapshot.getCloseShortOrders());
+        // 交易对只写一次，订单中记下标
+        Map<String, Integer> symbols = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (List<PositionSnapshot.OrderState> ladder : ladders) {
+            for (PositionSnapshot.OrderState state : ladder) {
+                symbols.computeIfAbsent(state.getSymbol(), k -> {
+                    table.add(k);
+                    return table.size() - 1;
+                });
+            }
+        }
+        data.writeInt(table.size());
+        for (String symbol : table) {
+            data.writeUTF(symbol);
+        }
+        data.writeInt(snapshot.size());
+        // 按档位和档内先后顺序写出，恢复时依次加入即得到相同的排队顺序
+        for (List<PositionSnapshot.OrderState> ladder : ladders) {
+            for (PositionSnapshot.OrderState state : ladder) {
+                writeState(data, state, symbols);
+            }
+        }
+        data.writeInt(exposures.size());
+        for (Exposure.Snapshot e : exposures) {
+            data.writeUTF(e.getInstId());
+            data.writeByte(e.getDirection().ordinal());
+            data.writeLong(FX.valueOf(e.getContractValue()));
+            data.writeLong(FX.valueOf(e.getQuantity()));
+            data.writeLong(FX.valueOf(e.getAvgPrice()));
+            data.writeLong(FX.valueOf(e.getRealizedPnl()));
+            data.writeLong(FX.valueOf(e.getMarkPrice()));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.size());
+        data.writeLong(crc.getValue());
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 后台线程上调用：先写临时文件落盘再原子改名，之后删除快照版本之前的日志
+     */
+    private void writeSnapshot(PositionSnapshot snapshot, List<Exposure.Snapshot> exposures, long pause) {
+        long started = System.nanoTime();
+        long version = snapshot.getVersion();
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try {
+            byte[] bytes = serialize(snapshot, exposures);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+            // 文件名定长，字典序在快照版本之前的日志都已包含在快照中
+            String next = eventFile(version).getFileName().toString();
+            for (Path file : eventFiles()) {
+                if (file.getFileName().toString().compareTo(next) < 0) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Journal {} failed to write snapshot at version {}", dir, version, e);
+            return;
+        }
+        log.info("Journal {} snapshot {} with {} orders, writer paused {} us, written in {} ms", dir, version,
+            snapshot.size(), pause / 1_000, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeEvents();
+        } catch (IOException e) {
+            log.warn("Journal {} close failed", dir, e);
+        }
+        snapshotWriter.shutdown();
+        try {
+            if (!snapshotWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Journal {} snapshot still being written at close", dir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long loadSnapshot(Replay replay, ExposureLedger exposure) throws IOException {
+        Path file = dir.resolve(SNAPSHOT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        // 一次读入再校验，避免逐字节经过校验流
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 8) {
+            throw new IOException("Snapshot too short: " + file);
+        }
+        int length = bytes.length - 8;
+        crc.reset();
+        crc.update(bytes, 0, length);
+        if (ByteBuffer.wrap(bytes, length, 8).getLong() != crc.getValue()) {
+            // 快照只在完整落盘后才改名，校验失败说明文件被外部破坏，不能再信任后面的日志
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+        // 直接按下标读数组，比逐字节经过 DataInputStream 快，恢复耗时主要在这里
+        ByteBuffer data = ByteBuffer.wrap(bytes, 0, length);
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != FORMAT) {
+                throw new IOException("Unknown snapshot format: " + file);
+            }
+            long version = data.getLong();
+            String[] symbols = new String[data.getInt()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = readUTF(data);
+            }
+            int orders = data.getInt();
+            for (int i = 0; i < orders; i++) {
+                replay.add(readOrder(data, symbols));
+            }
+            int exposures = data.getInt();
+            for (int i = 0; i < exposures; i++) {
+                String instId = readUTF(data);
+                ExchangeEnums.Direction direction = DIRECTIONS[data.get()];
+                exposure.restore(instId, direction, data.getLong(), data.getLong(), data.getLong(),
+                    data.getLong(), data.getLong());
+            }
+            return version;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot truncated: " + file, e);
+        }
+    }
+
+    /**
+     * @return [重放后的版本, 最后一条完整记录的结束位置]
+     */
+    private long[] replayEvents(Path file, long version, Replay replay) throws IOException {
+        long valid = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            byte[] buffer = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD) {
+                    break;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                long checksum;
+                try {
+                    data.readFully(buffer, 0, length);
+                    checksum = data.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                valid += 4 + length + 8;
+                ByteBuffer body = ByteBuffer.wrap(buffer, 0, length);
+                byte type;
+                long seq;
+                try {
+                    type = body.get();
+                    seq = body.getLong();
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Journal record truncated in " + file, e);
+                }
+                if (seq <= version) {
+                    continue;
+                }
+                if (seq != version + 1) {
+                    log.warn("Journal {} gap from version {} to {}", file, version, seq);
+                }
+                apply(type, body, replay);
+                version = seq;
+            }
+        }
+        return new long[]{version, valid};
+    }
+
+    private void apply(byte type, ByteBuffer body, Replay replay) throws IOException {
+        try {
+            applyRecord(type, body, replay);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Journal record " + type + " truncated", e);
+        }
+    }
+
+    private void applyRecord(byte type, ByteBuffer body, Replay replay) throws IOException {
+        switch (type) {
+            case ADD:
+                replay.add(readOrder(body, null));
+                break;
+            case REMOVE:
+                replay.remove(readUTF(body));
+                break;
+            case STATUS:
+                replay.status(readUTF(body), OrderStatus.ofOrdinal(body.get()));
+                break;
+            case FILL:
+                String cliId = readUTF(body);
+                OrderStatus status = OrderStatus.ofOrdinal(body.get());
+                BigDecimal execAmount = readDecimal(body);
+                BigDecimal fillPrice = readDecimal(body);
+                replay.fill(cliId, execAmount, fillPrice, status, body.getLong());
+                break;
+            case RESET:
+                replay.resetExposure();
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    private boolean begin(byte type, long seq) {
+        if (failed || events == null) {
+            return false;
+        }
+        record.reset();
+        try {
+            recordOut.writeByte(type);
+            recordOut.writeLong(seq);
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+        return true;
+    }
+
+    private void end() {
+        if (failed) {
+            return;
+        }
+        crc.reset();
+        crc.update(record.array(), 0, record.size());
+        try {
+            events.writeInt(record.size());
+            events.write(record.array(), 0, record.size());
+            events.writeLong(crc.getValue());
+            sinceSnapshot++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (!failed) {
+            failed = true;
+            log.error("Journal {} write failed, journaling disabled until restart", dir, e);
+        }
+    }
+
+    private void open(Path file) throws IOException {
+        current = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        events = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    private void closeEvents() throws IOException {
+        if (events != null) {
+            events.flush();
+            channel.force(false);
+            events.close();
+            events = null;
+            channel = null;
+        }
+    }
+
+    private Path eventFile(long version) {
+        return dir.resolve(String.format("%s%020d%s", EVENTS_PREFIX, version, EVENTS_SUFFIX));
+    }
+
+    /**
+     * 按起始版本排序，文件名定长所以字典序即数值序
+     */
+    private List<Path> eventFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            list.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(EVENTS_PREFIX) && name.endsWith(EVENTS_SUFFIX);
+            }).sorted().forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * 日志记录中的订单，直接写交易对；格式与 {@link #writeState} 除交易对外一致，读取都用 {@link #readOrder}
+     */
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeUTF(order.getCliId());
+        out.writeUTF(order.getSymbol());
+        out.writeByte(order.getSide().ordinal());
+        out.writeByte(order.getDirection().ordinal());
+        out.writeByte(order.getType().ordinal());
+        out.writeByte(order.getStatus().ordinal());
+        writeDecimal(out, order.getAmount());
+        writeDecimal(out, order.getPrice());
+        writeDecimal(out, order.getExecAmount());
+        out.writeLong(order.getSeq());
+        out.writeLong(order.getTs() == null ? 0 : order.getTs());
+    }
+
+    /**
+     * 快照中的订单，交易对写成交易对表的下标
+     */
+    private static void writeState(DataOutputStream out, PositionSnapshot.OrderState state,
+                                   Map<String, Integer> symbols) throws IOException {
+        out.writeUTF(state.getCliId());
+        out.writeInt(symbols.get(state.getSymbol()));
+        out.writeByte(state.getSide().ordinal());
+        out.writeByte(state.getDirection().ordinal());
+        out.writeByte(state.getType().ordinal());
+        out.writeByte(state.getStatus().ordinal());
+        writeDecimal(out, state.getAmount());
+        writeDecimal(out, state.getPrice());
+        writeDecimal(out, state.getExecAmount());
+        out.writeLong(state.getSeq());
+        out.writeLong(state.getTs() == null ? 0 : state.getTs());
+    }
+
+    private static Order readOrder(ByteBuffer in, String[] symbols) throws IOException {
+        String cliId = readUTF(in);
+        String symbol = symbols == null ? readUTF(in) : symbols[in.getInt()];
+        ExchangeEnums.OrderSide side = SIDES[in.get()];
+        ExchangeEnums.Direction direction = DIRECTIONS[in.get()];
+        ExchangeEnums.OrderType type = TYPES[in.get()];
+        OrderStatus status = OrderStatus.ofOrdinal(in.get());
+        BigDecimal amount = readDecimal(in);
+        BigDecimal price = readDecimal(in);
+        BigDecimal execAmount = readDecimal(in);
+        long seq = in.getLong();
+        long ts = in.getLong();
+        Order order = new Order(cliId, symbol, side, direction, type, amount, price);
+        order.restore(status, execAmount, seq, ts == 0 ? null : ts);
+        return order;
+    }
+
+    /**
+     * 数值写成 [精度][非标度值]，恢复后与原值 equals；精度或数值超出范围时按 {@link Order#FIXED} 精度四舍五入
+     */
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_SCALE);
+            return;
+        }
+        if (value.scale() < 0 || value.scale() > FixedDecimal.MAX_SCALE || value.unscaledValue().bitLength() > 63) {
+            value = value.setScale(FX.getScale(), RoundingMode.HALF_UP);
+        }
+        out.writeByte(value.scale());
+        out.writeLong(value.unscaledValue().longValueExact());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        byte scale = in.get();
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(in.getLong(), scale);
+    }
+
+    /**
+     * 读取 {@link DataOutputStream#writeUTF} 写出的字符串；订单号和交易对都是ASCII，直接构造，其它按 modified UTF-8 解码
+     */
+    private static String readUTF(ByteBuffer in) throws IOException {
+        int length = in.getShort() & 0xFFFF;
+        byte[] array = in.array();
+        int start = in.arrayOffset() + in.position();
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + length);
+        for (int i = start; i < start + length; i++) {
+            if (array[i] < 0) {
+                return new DataInputStream(new ByteArrayInputStream(array, start - 2, length + 2)).readUTF();
+            }
+        }
+        return new String(array, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 复用的记录缓冲区，直接取底层数组计算校验和
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        private RecordBuffer(int size) {
+            super(size);
+        }
+
+        private byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * {@link PositionBook} 某一时刻的不可变快照
+ * <p>
+ * 由写线程在一批修改全部应用后整体发布，读方拿到的要么是修改前、要么是修改后的状态，
+ * 不会看到只更新了状态而成交数量尚未更新的订单。
+ */
+@Getter
+public final class PositionSnapshot {
+    static final PositionSnapshot EMPTY = new PositionSnapshot(0, List.of(), List.of(), List.of(), List.of());
+
+    /**
+     * 已生效的写入次数（未找到订单等无效写入不计），随每次发布单调递增
+     */
+    private final long version;
+    private final List<OrderState> longOrders;
+    private final List<OrderState> shortOrders;
+    private final List<OrderState> closeLongOrders;
+    private final List<OrderState> closeShortOrders;
+
+    PositionSnapshot(long version, List<OrderState> longOrders, List<OrderState> shortOrders,
+                     List<OrderState> closeLongOrders, List<OrderState> closeShortOrders) {
+        this.version = version;
+        this.longOrders = longOrders;
+        this.shortOrders = shortOrders;
+        this.closeLongOrders = closeLongOrders;
+        this.closeShortOrders = closeShortOrders;
+    }
+
+    public int size() {
+        return longOrders.size() + shortOrders.size() + closeLongOrders.size() + closeShortOrders.size();
+    }
+
+    /**
+     * 订单在某一时刻的只读副本
+     */
+    @Getter
+    public static final class OrderState {
+        private final String cliId;
+        private final String symbol;
+        private final ExchangeEnums.OrderSide side;
+        private final ExchangeEnums.Direction direction;
+        private final ExchangeEnums.OrderType type;
+        private final BigDecimal amount;
+        private final BigDecimal price;
+        private final BigDecimal execAmount;
+        private final OrderStatus status;
+        private final Long ts;
+        /**
+         * 最近一次生效推送的序号，0 表示还没有按序号更新过
+         */
+        private final long seq;
+
+        OrderState(Order order) {
+            this.cliId = order.getCliId();
+            this.symbol = order.getSymbol();
+            this.side = order.getSide();
+            this.direction = order.getDirection();
+            this.type = order.getType();
+            this.amount = order.getAmount();
+            this.price = order.getPrice();
+            this.execAmount = order.getExecAmount();
+            this.status = order.getStatus();
+            this.ts = order.getTs();
+            this.seq = order.getSeq();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.trade.cache;
+
+import com.trade.common.FixedDecimal;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractCollection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 按价格档位组织的挂单队列
+ * <p>
+ * 价格按 {@code tickSize} 换算为整数档位，档位放在连续数组中，数组按需扩展覆盖所有挂单的价格区间；
+ * 每档内按加入顺序排队，同价多单都会保留。另有位图标记非空档位，最优档被清空时按位图跳到下一个非空档。
+ * 按 cliId 索引到队列节点，撤单为O(1)。遍历顺序为从最优档到最差档，档内先进先出。
+ * <p>
+ * 档位由 {@link Order#getFixedPrice()} 整除档位间距得到，加入时不做 BigDecimal 运算；档位间距不能小于 10^-8。
+ * 不在档位上的价格四舍五入归入最近的档位。非线程安全，与 {@link Position} 一样由调用方保证单线程写入。
+ */
+public class PriceLadder extends AbstractCollection<Order> {
+    private static final int INITIAL_LEVELS = 256;
+    /**
+     * 档位数组的上限，超出（挂单价格跨度过大）时拒绝加入
+     */
+    static final int MAX_LEVELS = 1 << 24;
+
+    @Getter
+    private final BigDecimal tickSize;
+    /**
+     * true 表示价格越高越优（买单），false 表示价格越低越优（卖单）
+     */
+    @Getter
+    private final boolean descending;
+    private final long fixedTick;
+    private final Map<String, Node> index = new HashMap<>();
+
+    private Level[] levels = new Level[INITIAL_LEVELS];
+    private long[] occupied = new long[INITIAL_LEVELS >>> 6];
+    /**
+     * levels[0] 对应的档位，始终是64的整数倍，扩容时位图可以按字整体搬移
+     */
+    private long base;
+    private long bestTick;
+    private int levelCount;
+
+    public PriceLadder(BigDecimal tickSize, boolean descending) {
+        if (tickSize == null || tickSize.signum() <= 0) {
+            throw new IllegalArgumentException("tickSize must be positive: " + tickSize);
+        }
+        if (tickSize.stripTrailingZeros().scale() > Order.FIXED.getScale()) {
+            throw new IllegalArgumentException("tickSize finer than " + Order.FIXED + ": " + tickSize);
+        }
+        this.tickSize = tickSize;
+        this.descending = descending;
+        this.fixedTick = Order.FIXED.valueOf(tickSize);
+    }
+
+    /**
+     * 加入到所在档位的队尾
+     * @return cliId 已存在或价格超出可容纳的区间时返回 false
+     */
+    @Override
+    public boolean add(Order order) {
+        if (order.getPrice() == null) {
+            throw new IllegalArgumentException("Order " + order.getCliId() + " has no price");
+        }
+        if (index.containsKey(order.getCliId())) {
+            return false;
+        }
+        long tick = toTicks(order);
+        if (!ensureCovered(tick)) {
+            return false;
+        }
+        int i = (int) (tick - base);
+        Level level = levels[i];
+        if (level == null) {
+            level = new Level();
+            levels[i] = level;
+        }
+        Node node = new Node(order, tick);
+        if (level.tail == null) {
+            level.head = node;
+            occupied[i >>> 6] |= 1L << i;
+            if (levelCount++ == 0 || isBetter(tick, bestTick)) {
+                bestTick = tick;
+            }
+        } else {
+            level.tail.next = node;
+            node.prev = level.tail;
+        }
+        level.tail = node;
+        level.size++;
+        index.put(order.getCliId(), node);
+        return true;
+    }
+
+    /**
+     * 按 cliId 撤出
+     * @return 被撤出的订单，不存在时返回 null
+     */
+    public Order remove(String cliId) {
+        Node node = index.remove(cliId);
+        if (node == null) {
+            return null;
+        }
+        int i = (int) (node.tick - base);
+        Level level = levels[i];
+        if (node.prev == null) {
+            level.head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            level.tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        if (--level.size == 0) {
+            occupied[i >>> 6] &= ~(1L << i);
+            if (--levelCount > 0 && node.tick == bestTick) {
+                bestTick = base + (descending ? previousOccupied(i - 1) : nextOccupied(i + 1));
+            }
+        }
+        return node.order;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Order && remove(((Order) o).getCliId()) != null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Order)) {
+            return false;
+        }
+        Node node = index.get(((Order) o).getCliId());
+        return node != null && node.order == o;
+    }
+
+    public Order get(String cliId) {
+        Node node = index.get(cliId);
+        return node != null ? node.order : null;
+    }
+
+    /**
+     * 最优档最早加入的订单
+     */
+    public Order best() {
+        return levelCount == 0 ? null : levels[(int) (bestTick - base)].head.order;
+    }
+
+    /**
+     * 最优档的档位价格，空时返回 null
+     */
+    public BigDecimal bestPrice() {
+        return levelCount == 0 ? null : tickSize.multiply(BigDecimal.valueOf(bestTick));
+    }
+
+    /**
+     * 指定价格所在档位的挂单数
+     */
+    public int levelSize(BigDecimal price) {
+        long i = toTicks(price) - base;
+        if (i < 0 || i >= levels.length || levels[(int) i] == null) {
+            return 0;
+        }
+        return levels[(int) i].size;
+    }
+
+    /**
+     * 非空档位数
+     */
+    public int levelCount() {
+        return levelCount;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        levels = new Level[INITIAL_LEVELS];
+        occupied = new long[INITIAL_LEVELS >>> 6];
+        levelCount = 0;
+    }
+
+    @Override
+    public Iterator<Order> iterator() {
+        return new Iterator<Order>() {
+            private Node next = levelCount == 0 ? null : levels[(int) (bestTick - base)].head;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Order next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Node current = next;
+                next = current.next;
+                if (next == null) {
+                    int i = (int) (current.tick - base);
+                    int j = descending ? previousOccupied(i - 1) : nextOccupied(i + 1);
+                    next = j < 0 ? null : levels[j].head;
+                }
+                return current.order;
+            }
+        };
+    }
+
+    /**
+     * 订单所在的档位，与 {@link #add(Order)} 的换算一致
+     */
+    long toTicks(Order order) {
+        return FixedDecimal.mulDiv(order.getFixedPrice(), 1, fixedTick);
+    }
+
+    long toTicks(BigDecimal price) {
+        return FixedDecimal.mulDiv(Order.FIXED.valueOf(price.setScale(Order.FIXED.getScale(), RoundingMode.HALF_UP)), 1,
+            fixedTick);
+    }
+
+    private boolean isBetter(long tick, long than) {
+        return descending ? tick > than : tick < than;
+    }
+
+    /**
+     * 扩展档位数组使其覆盖 tick，空梯子直接以 tick 为中心重新定位
+     */
+    private boolean ensureCovered(long tick) {
+        int length = levels.length;
+        if (tick >= base && tick < base + length) {
+            return true;
+        }
+        if (levelCount == 0) {
+            base = Math.floorDiv(tick - length / 2, 64) * 64;
+            return true;
+        }
+        long low = Math.min(base, Math.floorDiv(tick, 64) * 64);
+        long high = Math.max(base + length, tick + 1);
+        if (high - low > MAX_LEVELS) {
+            return false;
+        }
+        int newLength = length;
+        while (newLength < high - low) {
+            newLength <<= 1;
+        }
+        newLength = Math.min(Math.max(newLength, length << 1), MAX_LEVELS);
+        // 向扩展方向留出余量，连续朝一个方向挂单时不必每次扩容；base 和 length 都是64的倍数，新的 base 也对齐
+        long newBase = tick < base ? base + length - newLength : base;
+        int offset = (int) (base - newBase);
+        Level[] newLevels = new Level[newLength];
+        System.arraycopy(levels, 0, newLevels, offset, length);
+        long[] newOccupied = new long[newLength >>> 6];
+        System.arraycopy(occupied, 0, newOccupied, offset >>> 6, occupied.length);
+        levels = newLevels;
+        occupied = newOccupied;
+        base = newBase;
+        return true;
+    }
+
+    /**
+     * from 及之后第一个非空档，没有时返回 -1
+     */
+    private int nextOccupied(int from) {
+        if (from >= levels.length) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = occupied[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == occupied.length) {
+                return -1;
+            }
+            word = occupied[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * from 及之前第一个非空档，没有时返回 -1
+     */
+    private int previousOccupied(int from) {
+        if (from < 0) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = occupied[w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (w-- == 0) {
+                return -1;
+            }
+            word = occupied[w];
+        }
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    private static final class Level {
+        private Node head;
+        private Node tail;
+        private int size;
+    }
+
+    private static final class Node {
+        private final Order order;
+        private final long tick;
+        private Node prev;
+        private Node next;
+
+        private Node(Order order, long tick) {
+            this.order = order;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.trade.common;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * long 定点小数
+ * <p>
+ * 数值按 {@link #getScale()} 位小数放大为 long 保存（scale 为 8 时 1.5 保存为 150000000），实例只描述小数位数，
+ * 运算都是对原始 long 的静态计算，不创建对象。不同交易对按价格/数量精度各取一个实例，见 {@link #ofTick(BigDecimal)}。
+ * <p>
+ * 加减乘除溢出时抛出 {@link ArithmeticException}；乘除的中间结果按128位计算，结果按四舍五入（远离零）舍入。
+ * 与字符串、{@link BigDecimal} 之间的转换是精确的，超出精度的输入直接报错而不是截断。
+ */
+public final class FixedDecimal {
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS = new long[MAX_SCALE + 1];
+    private static final FixedDecimal[] INSTANCES = new FixedDecimal[MAX_SCALE + 1];
+
+    static {
+        long power = 1;
+        for (int i = 0; i <= MAX_SCALE; i++) {
+            POWERS[i] = power;
+            INSTANCES[i] = new FixedDecimal(i, power);
+            power *= 10;
+        }
+    }
+
+    @Getter
+    private final int scale;
+    /**
+     * 10^scale，即数值 1 的原始表示
+     */
+    @Getter
+    private final long factor;
+    /**
+     * 绝对值不超过它的数乘以 factor 不会溢出
+     */
+    private final long maxExact;
+    /**
+     * 余数绝对值超过它时进位，即 (factor - 1) / 2
+     */
+    private final long halfDown;
+
+    private FixedDecimal(int scale, long factor) {
+        this.scale = scale;
+        this.factor = factor;
+        this.maxExact = Long.MAX_VALUE / factor;
+        this.halfDown = (factor - 1) / 2;
+    }
+
+    public static FixedDecimal of(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale out of range [0, " + MAX_SCALE + "]: " + scale);
+        }
+        return INSTANCES[scale];
+    }
+
+    /**
+     * 按交易所给出的最小变动单位（如 tickSz "0.1"、lotSz "0.0001"）取精度
+     */
+    public static FixedDecimal ofTick(BigDecimal tickSize) {
+        return of(Math.max(tickSize.stripTrailingZeros().scale(), 0));
+    }
+
+    /**
+     * 解析交易所字符串，如 "-0.015"、"45000"
+     * @throws NumberFormatException 格式错误
+     * @throws ArithmeticException 小数位数超出精度（末尾的0除外）或溢出
+     */
+    public long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public long parse(CharSequence text, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty decimal");
+        }
+        boolean negative = text.charAt(start) == '-';
+        if (negative || text.charAt(start) == '+') {
+            start++;
+        }
+        long value = 0;
+        int fraction = -1;
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid decimal: " + text.subSequence(start, end));
+            }
+            digits = true;
+            if (fraction >= 0 && ++fraction > scale) {
+                if (c != '0') {
+                    throw new ArithmeticException("More than " + scale + " decimal places: " + text.subSequence(start, end));
+                }
+                continue;
+            }
+            // 负数按负值累加，可以取到 Long.MIN_VALUE
+            value = Math.subtractExact(Math.multiplyExact(value, 10), c - '0');
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid decimal: " + text.subSequence(start, end));
+        }
+        value = Math.multiplyExact(value, POWERS[scale - Math.min(Math.max(fraction, 0), scale)]);
+        return negative ? value : Math.negateExact(value);
+    }
+
+    /**
+     * 按精度写出完整小数位，如 scale 为 4 时 15000 写作 "1.5000"
+     */
+    public StringBuilder append(StringBuilder out, long value) {
+        long integer = value / factor;
+        long fraction = Math.abs(value % factor);
+        if (value < 0 && integer == 0) {
+            out.append('-');
+        }
+        out.append(integer);
+        if (scale > 0) {
+            out.append('.');
+            for (int i = scale - 1; i >= 0; i--) {
+                out.append((char) ('0' + fraction / POWERS[i] % 10));
+            }
+        }
+        return out;
+    }
+
+    public String toString(long value) {
+        return append(new StringBuilder(24), value).toString();
+    }
+
+    /**
+     * @throws ArithmeticException 超出精度或溢出
+     */
+    public long valueOf(BigDecimal value) {
+        return value.setScale(scale).unscaledValue().longValueExact();
+    }
+
+    public long valueOf(long integer) {
+        return Math.multiplyExact(integer, factor);
+    }
+
+    public BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    /**
+     * 从另一精度换算到本精度，降低精度时四舍五入
+     */
+    public long convert(long value, FixedDecimal from) {
+        if (from.scale <= scale) {
+            return Math.multiplyExact(value, POWERS[scale - from.scale]);
+        }
+        return mulDiv(value, 1, POWERS[from.scale - scale]);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * 两个同精度数相乘
+     */
+    public long multiply(long a, long b) {
+        if (Math.abs(a) < Math.abs(b)) {
+            long t = a;
+            a = b;
+            b = t;
+        }
+        if (b > maxExact || b < -maxExact || a == Long.MIN_VALUE) {
+            return mulDiv(a, b, factor);
+        }
+        // a = high * factor + low，a * b / factor = high * b + low * b / factor，两部分同号，low * b 不会溢出
+        long high = a / factor;
+        long product = (a - high * factor) * b;
+        long quotient = product / factor;
+        long remainder = product - quotient * factor;
+        long result = Math.addExact(Math.multiplyExact(high, b), quotient);
+        if (remainder > halfDown) {
+            return Math.incrementExact(result);
+        } else if (remainder < -halfDown) {
+            return Math.decrementExact(result);
+        }
+        return result;
+    }
+
+    /**
+     * 两个同精度数相除
+     * @throws ArithmeticException 除数为0或溢出
+     */
+    public long divide(long a, long b) {
+        if (b == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (b > maxExact || b < -maxExact || a == Long.MIN_VALUE) {
+            return mulDiv(a, factor, b);
+        }
+        // a * factor / b = (a / b) * factor + (a % b) * factor / b，两部分同号，余数乘 factor 不会溢出
+        long quotient = a / b;
+        long scaled = (a - quotient * b) * factor;
+        long fraction = scaled / b;
+        long remainder = Math.abs(scaled - fraction * b);
+        long result = Math.addExact(Math.multiplyExact(quotient, factor), fraction);
+        if (remainder > (Math.abs(b) - 1) / 2) {
+            return (a ^ b) < 0 ? Math.decrementExact(result) : Math.incrementExact(result);
+        }
+        return result;
+    }
+
+    /**
+     * 按权重增量更新均价：(average * weight + value * added) / (weight + added)，
+     * 写成 average + (value - average) * added / (weight + added)，只在最后舍入一次。
+     * 三个数同精度时精度互相抵消，价差与新增权重的乘积通常不超过64位，只做一次整数除法
+     * @throws ArithmeticException 总权重为0或溢出
+     */
+    public static long average(long average, long weight, long value, long added) {
+        long total = Math.addExact(weight, added);
+        return Math.addExact(average, mulDiv(Math.subtractExact(value, average), added, total));
+    }
+
+    /**
+     * 按四舍五入计算 a * b / c，中间结果为128位
+     */
+    public static long mulDiv(long a, long b, long c) {
+        if (c == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (a == Long.MIN_VALUE || b == Long.MIN_VALUE || c == Long.MIN_VALUE) {
+            throw new ArithmeticException("long overflow");
+        }
+        boolean negative = (a < 0) ^ (b < 0) ^ (c < 0);
+        a = Math.abs(a);
+        b = Math.abs(b);
+        c = Math.abs(c);
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long quotient;
+        long remainder;
+        if (high == 0 && low >= 0) {
+            quotient = low / c;
+            remainder = low - quotient * c;
+        } else {
+            if (high >= c) {
+                throw new ArithmeticException("long overflow");
+            }
+            quotient = divideUnsigned128(high, low, c);
+            remainder = low - quotient * c;
+            if (quotient < 0) {
+                throw new ArithmeticException("long overflow");
+            }
+        }
+        if (remainder > (c - 1) / 2) {
+            quotient = Math.incrementExact(quotient);
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * 无符号128位数 high:low 除以 divisor，要求 high < divisor，返回64位无符号商（Hacker's Delight divlu）
+     */
+    private static long divideUnsigned128(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(divisor);
+        divisor <<= shift;
+        long divisorHigh = divisor >>> 32;
+        long divisorLow = divisor & 0xFFFFFFFFL;
+        long numerator32 = (high << shift) | (shift == 0 ? 0 : low >>> (64 - shift));
+        long numerator10 = low << shift;
+        long numerator1 = numerator10 >>> 32;
+        long numerator0 = numerator10 & 0xFFFFFFFFL;
+
+        long q1 = Long.divideUnsigned(numerator32, divisorHigh);
+        long rhat = numerator32 - q1 * divisorHigh;
+        while (Long.compareUnsigned(q1, base) >= 0
+            || Long.compareUnsigned(q1 * divisorLow, (rhat << 32) + numerator1) > 0) {
+            q1--;
+            rhat += divisorHigh;
+            if (rhat >= base) {
+                break;
+            }
+        }
+
+        long numerator21 = (numerator32 << 32) + numerator1 - q1 * divisor;
+        long q0 = Long.divideUnsigned(numerator21, divisorHigh);
+        rhat = numerator21 - q0 * divisorHigh;
+        while (Long.compareUnsigned(q0, base) >= 0
+            || Long.compareUnsigned(q0 * divisorLow, (rhat << 32) + numerator0) > 0) {
+            q0--;
+            rhat += divisorHigh;
+            if (rhat >= base) {
+                break;
+            }
+        }
+        return (q1 << 32) + q0;
+    }
+
+    @Override
+    public String toString() {
+        return "FixedDecimal(" + scale + ")";
+    }
+}
@@ -5,19 +5,45 @@ import com.trade.service.RunStrategyService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/run")
 public class RunStrategyController {
     @Autowired
     private RunStrategyService runStrategyService;
+
+    /**
+     * @param latency 延迟等级 LOW / NORMAL，默认 NORMAL
+     */
     @GetMapping
-    public Result runStrategy(@RequestParam("id")Long id) {
-        runStrategyService.start(id);
+    public Result<Void> runStrategy(@RequestParam("id")Long id,
+                              @RequestParam(value = "latency", required = false) String latency) {
+        runStrategyService.start(id, latency);
+        return Result.success();
+    }
+
+    @GetMapping("/stop")
+    public Result<Void> stopStrategy(@RequestParam("id")Long id) {
+        runStrategyService.stop(id);
         return Result.success();
     }
+
+    @PostMapping("/params")
+    public Result<Void> updateParams(@RequestParam("id")Long id, @RequestBody String params) {
+        runStrategyService.updateParams(id, params);
+        return Result.success();
+    }
+
+    @GetMapping("/status")
+    public Result<Map<String, Object>> status(@RequestParam("id")Long id) {
+        return Result.success(runStrategyService.status(id));
+    }
 }
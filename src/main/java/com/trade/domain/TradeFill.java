@@ -0,0 +1,28 @@
+package com.trade.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 单笔成交，(strategy_id, cli_id, exec_amount) 唯一，重复写入被忽略
+ */
+@Data
+@TableName("trade_fill")
+public class TradeFill {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String strategyId;
+    private String cliId;
+    private String symbol;
+    private String side;
+    private String direction;
+    private BigDecimal price;
+    private BigDecimal quantity;
+    // 本次成交后的累计成交数量，同一订单内唯一
+    private BigDecimal execAmount;
+    private Long ts;
+}
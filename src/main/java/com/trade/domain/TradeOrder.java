@@ -0,0 +1,30 @@
+package com.trade.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 订单最新状态，(strategy_id, cli_id) 唯一，由写后持久化批量 upsert
+ */
+@Data
+@TableName("trade_order")
+public class TradeOrder {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String strategyId;
+    private String cliId;
+    private String symbol;
+    private String side;
+    private String direction;
+    private String type;
+    private BigDecimal price;
+    private BigDecimal amount;
+    private BigDecimal execAmount;
+    private String status;
+    // 订单最近一次修改的时间戳（毫秒），只用于查询；upsert 按状态和成交数量判断新旧，见 TradeOrderMapper
+    private Long ts;
+}
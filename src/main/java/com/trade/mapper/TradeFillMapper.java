@@ -0,0 +1,25 @@
+package com.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.trade.domain.TradeFill;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface TradeFillMapper extends BaseMapper<TradeFill> {
+
+    /**
+     * 多行插入，已写入过的成交（重试、溢出文件回放）被唯一键忽略
+     */
+    @Insert({"<script>",
+        "INSERT IGNORE INTO trade_fill (strategy_id, cli_id, symbol, side, direction, price, quantity, exec_amount, ts) VALUES",
+        "<foreach collection='list' item='f' separator=','>",
+        "(#{f.strategyId}, #{f.cliId}, #{f.symbol}, #{f.side}, #{f.direction}, #{f.price}, #{f.quantity},",
+        " #{f.execAmount}, #{f.ts})",
+        "</foreach>",
+        "</script>"})
+    int insertBatch(@Param("list") List<TradeFill> fills);
+}
@@ -0,0 +1,36 @@
+package com.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.trade.domain.TradeOrder;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface TradeOrderMapper extends BaseMapper<TradeOrder> {
+    /**
+     * 状态在生命周期中的先后，终态之间互斥，同为最后一级
+     */
+    String STATUS_RANK_NEW = "CASE VALUES(status) WHEN 'INIT' THEN 0 WHEN 'NEW' THEN 1 WHEN 'PART_FILLED' THEN 2 ELSE 3 END";
+    String STATUS_RANK_OLD = "CASE status WHEN 'INIT' THEN 0 WHEN 'NEW' THEN 1 WHEN 'PART_FILLED' THEN 2 ELSE 3 END";
+
+    /**
+     * 多行 upsert，已存在的订单只向前推进：状态按生命周期先后（见 {@link com.trade.cache.OrderStatus}）只进不退，
+     * 累计成交数量只增不减，两列各自单调，同一毫秒内的多次修改或乱序到达的旧行都不会让订单回退。
+     * ts 只取较大值，不参与比较。
+     */
+    @Insert({"<script>",
+        "INSERT INTO trade_order (strategy_id, cli_id, symbol, side, direction, type, price, amount, exec_amount, status, ts) VALUES",
+        "<foreach collection='list' item='o' separator=','>",
+        "(#{o.strategyId}, #{o.cliId}, #{o.symbol}, #{o.side}, #{o.direction}, #{o.type}, #{o.price}, #{o.amount},",
+        " #{o.execAmount}, #{o.status}, #{o.ts})",
+        "</foreach>",
+        "ON DUPLICATE KEY UPDATE",
+        " exec_amount = IF(COALESCE(VALUES(exec_amount), 0) > COALESCE(exec_amount, 0), VALUES(exec_amount), exec_amount),",
+        " status = IF(" + STATUS_RANK_NEW + " > " + STATUS_RANK_OLD + ", VALUES(status), status),",
+        " ts = GREATEST(ts, VALUES(ts))",
+        "</script>"})
+    int upsertBatch(@Param("list") List<TradeOrder> orders);
+}
@@ -0,0 +1,35 @@
+package com.trade.persist;
+
+import com.trade.domain.TradeFill;
+import com.trade.domain.TradeOrder;
+import com.trade.mapper.TradeFillMapper;
+import com.trade.mapper.TradeOrderMapper;
+
+import java.util.List;
+
+/**
+ * 每批订单一条多行 upsert、每批成交一条多行 INSERT IGNORE，见 {@link TradeOrderMapper#upsertBatch(List)}
+ */
+public class MybatisPersistSink implements PersistSink {
+    private final TradeOrderMapper orderMapper;
+    private final TradeFillMapper fillMapper;
+
+    public MybatisPersistSink(TradeOrderMapper orderMapper, TradeFillMapper fillMapper) {
+        this.orderMapper = orderMapper;
+        this.fillMapper = fillMapper;
+    }
+
+    @Override
+    public void writeOrders(List<TradeOrder> orders) {
+        if (!orders.isEmpty()) {
+            orderMapper.upsertBatch(orders);
+        }
+    }
+
+    @Override
+    public void writeFills(List<TradeFill> fills) {
+        if (!fills.isEmpty()) {
+            fillMapper.insertBatch(fills);
+        }
+    }
+}
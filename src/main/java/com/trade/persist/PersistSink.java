@@ -0,0 +1,17 @@
+package com.trade.persist;
+
+import com.trade.domain.TradeFill;
+import com.trade.domain.TradeOrder;
+
+import java.util.List;
+
+/**
+ * 批量写入目标，由 {@link WriteBehindWriter} 的刷写线程调用
+ * <p>
+ * 两个方法都必须幂等：失败重试和溢出文件回放会重复写入同一批数据。抛出任何异常都视为本批写入失败。
+ */
+public interface PersistSink {
+    void writeOrders(List<TradeOrder> orders);
+
+    void writeFills(List<TradeFill> fills);
+}
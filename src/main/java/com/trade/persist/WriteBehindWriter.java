@@ -0,0 +1,408 @@
+package com.trade.persist;
+
+import com.alibaba.fastjson2.JSON;
+import com.trade.cache.Order;
+import com.trade.cache.OrderListener;
+import com.trade.cache.OrderStatus;
+import com.trade.cache.PositionSnapshot;
+import com.trade.domain.TradeFill;
+import com.trade.domain.TradeOrder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单与成交的写后持久化
+ * <p>
+ * 交易线程只把行数据放入有界队列，{@link #offer} 从不阻塞；队列满时丢弃并计数，不拖慢交易。
+ * 单个刷写线程攒够 batchSize 行或距本批第一行超过 flushInterval 时写一批：同一订单的多次修改合并为最后一次，
+ * 订单和成交各一条多行语句，见 {@link PersistSink}。
+ * <p>
+ * 写入失败按退避重试 maxRetries 次，仍失败则把本批追加到 spillDir 下的溢出文件，在 retryBackoff 内的后续批次也直接溢出；
+ * 数据库写入变慢导致队列积压超过四分之三时同样溢出。数据库恢复后先回放溢出文件再删除，
+ * 回放依赖写入的幂等性（订单按状态先后和累计成交数量单调 upsert，成交按累计成交数量去重），中途失败下次从头回放即可。
+ */
+@Slf4j
+public class WriteBehindWriter implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 65536;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 1000;
+
+    static final String SPILL_FILE = "spill.jsonl";
+    static final String REPLAY_FILE = "replay.jsonl";
+    private static final char ORDER = 'O';
+    private static final char FILL = 'F';
+
+    private final PersistSink sink;
+    private final BlockingQueue<Object> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final Path spillDir;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastDropLog;
+    private volatile long written;
+    private volatile long spilled;
+
+    // 以下字段只由刷写线程访问
+    private BufferedWriter spillWriter;
+    private boolean spillPending;
+    /**
+     * 在此时间之前数据库视为不可用，批次直接溢出
+     */
+    private long unhealthyUntil;
+
+    public WriteBehindWriter(PersistSink sink, Path spillDir) {
+        this(sink, spillDir, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_RETRIES,
+            DEFAULT_RETRY_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param capacity 队列容量（行）
+     * @param batchSize 每批最多写入的行数
+     * @param flushIntervalMillis 一批从第一行到写出的最长等待
+     * @param maxRetries 每批失败后的重试次数
+     * @param retryBackoffMillis 重试间隔的基数，第 n 次重试等待 n 倍；也是失败后直接溢出的时长
+     */
+    public WriteBehindWriter(PersistSink sink, Path spillDir, int capacity, int batchSize, long flushIntervalMillis,
+                             int maxRetries, long retryBackoffMillis) {
+        this.sink = sink;
+        this.spillDir = spillDir;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        try {
+            Files.createDirectories(spillDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill directory " + spillDir, e);
+        }
+        // 上次退出时未回放完的溢出文件
+        this.spillPending = Files.exists(spillDir.resolve(SPILL_FILE)) || Files.exists(spillDir.resolve(REPLAY_FILE));
+        this.flusher = new Thread(this::run, "write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @return 队列已满或已关闭时返回 false，该行被丢弃
+     */
+    public boolean offer(TradeOrder order) {
+        return enqueue(order);
+    }
+
+    public boolean offer(TradeFill fill) {
+        return enqueue(fill);
+    }
+
+    /**
+     * 把挂单簿的订单事件转为持久化行，通过 {@code CacheManager.listen} 注册
+     */
+    public OrderListener listener(String strategyId) {
+        return new OrderListener() {
+            @Override
+            public void onTransition(PositionSnapshot.OrderState order, OrderStatus from) {
+                offer(toOrder(strategyId, order));
+            }
+
+            @Override
+            public void onAdd(PositionSnapshot.OrderState order) {
+                offer(toOrder(strategyId, order));
+            }
+
+            @Override
+            public void onFill(PositionSnapshot.OrderState order, long price, long quantity) {
+                offer(toFill(strategyId, order, price, quantity));
+            }
+        };
+    }
+
+    /**
+     * 队列中等待写出的行数
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 已写入数据库的行数（合并后），含回放
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    public long getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * 停止接收新行，写出队列中剩余的行后返回
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean enqueue(Object row) {
+        if (running && queue.offer(row)) {
+            return true;
+        }
+        long count = dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDropLog >= 1000) {
+            lastDropLog = now;
+            log.error("Write-behind queue full or closed, {} rows dropped so far", count);
+        }
+        return false;
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            collect(batch);
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+            if (spillPending && running && System.currentTimeMillis() >= unhealthyUntil
+                && queue.remainingCapacity() >= capacity / 2) {
+                replay();
+            }
+        }
+        closeSpill();
+        log.info("Write-behind flusher stopped, written {} spilled {} dropped {}", written, spilled, dropped.get());
+    }
+
+    /**
+     * 等待第一行，然后在 flushInterval 内继续收集，直到凑满一批
+     * <p>
+     * 被中断时视为停止：恢复中断标记，不再接收新行，之后每次只不等待地取出队列中剩余的行，写完后线程退出
+     */
+    private void collect(List<Object> batch) {
+        try {
+            Object first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (batch.size() < batchSize) {
+                if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !running) {
+                    return;
+                }
+                Object next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (running) {
+                running = false;
+                log.warn("Write-behind flusher interrupted, flushing {} queued rows and stopping", queue.size());
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void flush(List<Object> batch) {
+        Map<String, TradeOrder> orders = new LinkedHashMap<>();
+        List<TradeFill> fills = new ArrayList<>();
+        for (Object row : batch) {
+            if (row instanceof TradeOrder) {
+                TradeOrder order = (TradeOrder) row;
+                orders.put(order.getStrategyId() + '\u0000' + order.getCliId(), order);
+            } else {
+                fills.add((TradeFill) row);
+            }
+        }
+        List<TradeOrder> orderRows = new ArrayList<>(orders.values());
+        boolean backlogged = queue.remainingCapacity() < capacity / 4;
+        if (System.currentTimeMillis() < unhealthyUntil || backlogged || !write(orderRows, fills, maxRetries)) {
+            spill(orderRows, fills);
+        }
+    }
+
+    /**
+     * @return 重试后仍失败时返回 false
+     */
+    private boolean write(List<TradeOrder> orders, List<TradeFill> fills, int retries) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sink.writeOrders(orders);
+                sink.writeFills(fills);
+                written += orders.size() + fills.size();
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= retries) {
+                    log.error("Write-behind batch of {} orders and {} fills failed after {} attempts",
+                        orders.size(), fills.size(), attempt + 1, e);
+                    unhealthyUntil = System.currentTimeMillis() + retryBackoffMillis;
+                    return false;
+                }
+                log.warn("Write-behind batch failed, retry {}/{}: {}", attempt + 1, retries, e.toString());
+                try {
+                    Thread.sleep(retryBackoffMillis * (attempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    unhealthyUntil = System.currentTimeMillis() + retryBackoffMillis;
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void spill(List<TradeOrder> orders, List<TradeFill> fills) {
+        try {
+            if (spillWriter == null) {
+                spillWriter = Files.newBufferedWriter(spillDir.resolve(SPILL_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (TradeOrder order : orders) {
+                spillWriter.append(ORDER).append(' ').append(JSON.toJSONString(order)).append('\n');
+            }
+            for (TradeFill fill : fills) {
+                spillWriter.append(FILL).append(' ').append(JSON.toJSONString(fill)).append('\n');
+            }
+            spillWriter.flush();
+            spilled += orders.size() + fills.size();
+            spillPending = true;
+        } catch (IOException e) {
+            dropped.addAndGet(orders.size() + fills.size());
+            log.error("Write-behind spill failed, {} orders and {} fills lost", orders.size(), fills.size(), e);
+        }
+    }
+
+    /**
+     * 把溢出文件改名为回放文件后逐批写入，新的溢出写到新文件；失败时保留回放文件，下次从头回放
+     */
+    private void replay() {
+        closeSpill();
+        Path spill = spillDir.resolve(SPILL_FILE);
+        Path replay = spillDir.resolve(REPLAY_FILE);
+        try {
+            if (!Files.exists(replay)) {
+                if (!Files.exists(spill)) {
+                    spillPending = false;
+                    return;
+                }
+                Files.move(spill, replay);
+            }
+            long count = 0;
+            List<TradeOrder> orders = new ArrayList<>();
+            List<TradeFill> fills = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(replay, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() < 2) {
+                        continue;
+                    }
+                    if (line.charAt(0) == ORDER) {
+                        orders.add(JSON.parseObject(line.substring(2), TradeOrder.class));
+                    } else {
+                        fills.add(JSON.parseObject(line.substring(2), TradeFill.class));
+                    }
+                    if (orders.size() + fills.size() >= batchSize) {
+                        // 回放让位于实时数据，积压时下次再回放
+                        if (queue.remainingCapacity() < capacity / 2 || !write(orders, fills, 0)) {
+                            return;
+                        }
+                        count += orders.size() + fills.size();
+                        orders.clear();
+                        fills.clear();
+                    }
+                }
+            }
+            if (!write(orders, fills, 0)) {
+                return;
+            }
+            count += orders.size() + fills.size();
+            Files.delete(replay);
+            spillPending = Files.exists(spill);
+            log.info("Write-behind replayed {} spilled rows", count);
+        } catch (IOException | RuntimeException e) {
+            log.error("Write-behind replay of {} failed", replay, e);
+            unhealthyUntil = System.currentTimeMillis() + retryBackoffMillis;
+        }
+    }
+
+    private void closeSpill() {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            log.error("Write-behind spill close failed", e);
+        }
+        spillWriter = null;
+    }
+
+    private static TradeOrder toOrder(String strategyId, PositionSnapshot.OrderState state) {
+        TradeOrder order = new TradeOrder();
+        order.setStrategyId(strategyId);
+        order.setCliId(state.getCliId());
+        order.setSymbol(state.getSymbol());
+        order.setSide(state.getSide().name());
+        order.setDirection(state.getDirection().name());
+        order.setType(state.getType().name());
+        order.setPrice(state.getPrice());
+        order.setAmount(state.getAmount());
+        order.setExecAmount(state.getExecAmount());
+        order.setStatus(state.getStatus().name());
+        order.setTs(state.getTs());
+        return order;
+    }
+
+    private static TradeFill toFill(String strategyId, PositionSnapshot.OrderState state, long price, long quantity) {
+        TradeFill fill = new TradeFill();
+        fill.setStrategyId(strategyId);
+        fill.setCliId(state.getCliId());
+        fill.setSymbol(state.getSymbol());
+        fill.setSide(state.getSide().name());
+        fill.setDirection(state.getDirection().name());
+        fill.setPrice(Order.FIXED.toBigDecimal(price));
+        fill.setQuantity(Order.FIXED.toBigDecimal(quantity));
+        fill.setExecAmount(state.getExecAmount());
+        fill.setTs(state.getTs());
+        return fill;
+    }
+}
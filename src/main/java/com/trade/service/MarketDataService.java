@@ -0,0 +1,189 @@
+package com.trade.service;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.trade.cache.CacheManager;
+import com.trade.domain.Exchange;
+import com.trade.socket.netty.client.BaseNettyClient;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.handler.impl.ConflatingHandler;
+import com.trade.socket.netty.handler.impl.MarkPriceHandler;
+import com.trade.socket.netty.manager.DefaultConnectionManager;
+import com.trade.socket.netty.manager.DefaultSubscriptionManager;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个交易所一条公共行情连接，运行中的策略共用
+ * <p>
+ * 第一次订阅时建立连接，按 (channel, instId) 订阅的处理器挂在连接的 {@link DefaultSubscriptionManager} 上，
+ * 频道的第一个处理器加入时才向服务端发送订阅，断线重连后自动重放。连接地址取交易所参数中的 wsUrl，
+ * 未配置时使用 trading.websocket.public-url。
+ * <p>
+ * 策略声明的交易对同时订阅 mark-price 频道，推送由每条连接共用的 {@link MarkPriceHandler} 交给
+ * {@link CacheManager#mark}，多个策略订阅同一交易对时按引用计数只订阅一次。
+ * <p>
+ * tickers、mark-price、books5 等快照类频道开启合并（{@link ConflatingHandler}），处理器落后时只处理每个交易对的最新一条；
+ * 其它频道在I/O线程上逐条处理。
+ */
+@Slf4j
+@Service
+public class MarketDataService implements AutoCloseable {
+    private static final String WS_URL = "wsUrl";
+    // 每条连接最多合并的主题数
+    private static final int CONFLATION_CAPACITY = 4096;
+
+    @Value("${trading.websocket.public-url:wss://ws.okx.com:8443/ws/v5/public}")
+    private String publicUrl;
+    @Value("${trading.websocket.heartbeat-interval:30000}")
+    private long heartbeatInterval;
+
+    private final Map<Long, Feed> feeds = new ConcurrentHashMap<>();
+    private final MarkPriceHandler markPriceHandler = new MarkPriceHandler(new CacheManager());
+
+    public MarketDataService() {
+    }
+
+    /**
+     * @param publicUrl 交易所参数中没有 wsUrl 时使用的地址
+     * @param heartbeatInterval 心跳间隔（毫秒）
+     */
+    public MarketDataService(String publicUrl, long heartbeatInterval) {
+        this.publicUrl = publicUrl;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * 订阅频道，推送在连接的I/O线程上交给处理器
+     * @param instId 交易对，可为空
+     */
+    public void subscribe(Exchange exchange, String channel, String instId, MessageHandler<String> handler) {
+        feed(exchange).subscriptions.subscribe(channel, instId, handler);
+    }
+
+    public void unsubscribe(Exchange exchange, String channel, String instId, MessageHandler<String> handler) {
+        Feed feed = feeds.get(exchange.getId());
+        if (feed != null) {
+            feed.subscriptions.unsubscribe(channel, instId, handler);
+        }
+    }
+
+    /**
+     * 订阅交易对的标记价格，用于更新策略的未实现盈亏；与 {@link #unsubscribeMarkPrice} 成对调用
+     */
+    public void subscribeMarkPrice(Exchange exchange, String instId) {
+        Feed feed = feed(exchange);
+        synchronized (feed.markPrices) {
+            if (feed.markPrices.merge(instId, 1, Integer::sum) == 1) {
+                feed.subscriptions.subscribe(MarkPriceHandler.CHANNEL, instId, markPriceHandler);
+            }
+        }
+    }
+
+    public void unsubscribeMarkPrice(Exchange exchange, String instId) {
+        Feed feed = feeds.get(exchange.getId());
+        if (feed == null) {
+            return;
+        }
+        synchronized (feed.markPrices) {
+            Integer count = feed.markPrices.get(instId);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                feed.markPrices.put(instId, count - 1);
+            } else {
+                feed.markPrices.remove(instId);
+                feed.subscriptions.unsubscribe(MarkPriceHandler.CHANNEL, instId, markPriceHandler);
+            }
+        }
+    }
+
+    /**
+     * 接收连接上的全部推送，用于没有声明订阅的处理器
+     */
+    public void addHandler(Exchange exchange, MessageHandler<String> handler) {
+        feed(exchange).dispatcher.addHandler(handler);
+    }
+
+    public void removeHandler(Exchange exchange, MessageHandler<String> handler) {
+        Feed feed = feeds.get(exchange.getId());
+        if (feed != null) {
+            feed.dispatcher.removeHandler(handler);
+        }
+    }
+
+    /**
+     * 交易所的行情连接是否已建立
+     */
+    public boolean isConnected(Long exchangeId) {
+        Feed feed = feeds.get(exchangeId);
+        return feed != null && feed.connection.isConnected();
+    }
+
+    /**
+     * 关闭所有连接，不再重连
+     */
+    @Override
+    public void close() {
+        feeds.values().forEach(feed -> {
+            feed.connection.shutdown();
+            feed.dispatcher.disableConflation();
+        });
+        feeds.clear();
+    }
+
+    private Feed feed(Exchange exchange) {
+        return feeds.computeIfAbsent(exchange.getId(), id -> open(exchange));
+    }
+
+    private Feed open(Exchange exchange) {
+        String url = url(exchange);
+        WebSocketURLParser.WebSocketURL wsUrl = WebSocketURLParser.parse(url);
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        BaseNettyClient<String> client = new BaseNettyClient<>(wsUrl,
+            (int) Math.max(1, heartbeatInterval / 1000), "ping", dispatcher);
+        dispatcher.setClient(client);
+        dispatcher.enableConflation(ConflatingHandler.SNAPSHOT_CHANNELS, CONFLATION_CAPACITY);
+        DefaultSubscriptionManager<String> subscriptions = new DefaultSubscriptionManager<>(client, dispatcher);
+        // 行情连接随服务一直运行，断线后不限次数重连，不可用时由熔断限制频率
+        DefaultConnectionManager connection = new DefaultConnectionManager(wsUrl.getHost(), wsUrl.getPort(), client,
+            DefaultConnectionManager.UNLIMITED_RETRIES, 500);
+        subscriptions.bind(connection);
+        connection.initConnection();
+        log.info("Opening market data connection for exchange {} to {}", exchange.getName(), url);
+        return new Feed(dispatcher, subscriptions, connection);
+    }
+
+    private String url(Exchange exchange) {
+        String params = exchange.getParams();
+        if (params != null && !params.isBlank()) {
+            String url = JSONObject.parseObject(params).getString(WS_URL);
+            if (url != null && !url.isEmpty()) {
+                return url;
+            }
+        }
+        return publicUrl;
+    }
+
+    private static final class Feed {
+        final MessageDispatcher<String> dispatcher;
+        final DefaultSubscriptionManager<String> subscriptions;
+        final DefaultConnectionManager connection;
+        // 各交易对标记价格的订阅次数
+        final Map<String, Integer> markPrices = new HashMap<>();
+
+        Feed(MessageDispatcher<String> dispatcher, DefaultSubscriptionManager<String> subscriptions,
+             DefaultConnectionManager connection) {
+            this.dispatcher = dispatcher;
+            this.subscriptions = subscriptions;
+            this.connection = connection;
+        }
+    }
+}
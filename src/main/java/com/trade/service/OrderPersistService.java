@@ -0,0 +1,52 @@
+package com.trade.service;
+
+import com.trade.cache.CacheManager;
+import com.trade.mapper.TradeFillMapper;
+import com.trade.mapper.TradeOrderMapper;
+import com.trade.persist.MybatisPersistSink;
+import com.trade.persist.WriteBehindWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+
+/**
+ * 订单与成交落库，交易线程不等待数据库，见 {@link WriteBehindWriter}
+ */
+@Slf4j
+@Service
+public class OrderPersistService implements AutoCloseable {
+    private final WriteBehindWriter writer;
+
+    public OrderPersistService(TradeOrderMapper orderMapper,
+                               TradeFillMapper fillMapper,
+                               @Value("${trading.persist.spill-dir:data/spill}") String spillDir,
+                               @Value("${trading.persist.capacity:65536}") int capacity,
+                               @Value("${trading.persist.batch-size:500}") int batchSize,
+                               @Value("${trading.persist.flush-interval:200}") long flushIntervalMillis,
+                               @Value("${trading.persist.max-retries:3}") int maxRetries,
+                               @Value("${trading.persist.retry-backoff:1000}") long retryBackoffMillis) {
+        this.writer = new WriteBehindWriter(new MybatisPersistSink(orderMapper, fillMapper), Paths.get(spillDir),
+            capacity, batchSize, flushIntervalMillis, maxRetries, retryBackoffMillis);
+    }
+
+    /**
+     * 持久化策略挂单簿中的订单和成交
+     * @return 策略未初始化时返回 false
+     */
+    public boolean track(CacheManager cacheManager, String strategyId) {
+        boolean tracked = cacheManager.listen(strategyId, writer.listener(strategyId));
+        log.info("Persisting orders of strategy {}: {}", strategyId, tracked);
+        return tracked;
+    }
+
+    public WriteBehindWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
@@ -1,23 +1,218 @@
 package com.trade.service;
 
+import com.trade.cache.CacheManager;
 import com.trade.domain.Exchange;
 import com.trade.domain.Strategy;
+import com.trade.exception.BusinessException;
+import com.trade.exception.ErrorCode;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.strategy.LatencyClass;
+import com.trade.strategy.StrategyRunner;
+import com.trade.strategy.StrategyRuntime;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 策略运行管理，每个策略实例在 {@link StrategyRuntime} 中独占一个线程
+ * <p>
+ * 启动时创建策略的挂单簿，订单事件转入策略线程，订单和成交交给 {@link OrderPersistService} 落库。
+ * 行情按策略声明的 {@link com.trade.strategy.AbstractStrategy#getSubscriptions()} 通过 {@link MarketDataService}
+ * 订阅到交易所连接，推送由 {@link StrategyRuntime#marketDataHandler} 投递到策略的收件箱，停止时取消订阅。
+ * 声明的交易对同时订阅标记价格，策略挂单簿中的敞口随之更新未实现盈亏。
+ */
 @Slf4j
 @Service
-public class RunStrategyService {
+public class RunStrategyService implements AutoCloseable {
     @Autowired
     private TradeService tradeService;
     @Autowired
     private ExchangeService exchangeService;
+    @Autowired
+    private OrderPersistService orderPersistService;
+    @Autowired
+    private MarketDataService marketDataService;
+    @Value("${trading.journal.dir:}")
+    private String journalDir;
+
+    private final CacheManager cacheManager = new CacheManager();
+    private final StrategyRuntime runtime = new StrategyRuntime();
+    // 挂单簿在策略停止后保留，落库只需登记一次
+    private final Set<String> persisted = ConcurrentHashMap.newKeySet();
+    private final Map<Long, MarketData> marketData = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!journalDir.isEmpty()) {
+            CacheManager.setJournalDir(Paths.get(journalDir));
+        }
+    }
+
     public void start(Long id){
+        start(id, LatencyClass.NORMAL.name());
+    }
 
+    /**
+     * @param latencyClass {@link LatencyClass} 名称，为空时为 NORMAL
+     */
+    public StrategyRunner start(Long id, String latencyClass){
+        LatencyClass latency;
+        try {
+            latency = LatencyClass.of(latencyClass);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAM_VALIDATION_ERROR, "Unknown latency class: " + latencyClass);
+        }
         Strategy strategy = tradeService.getById(id);
+        if (strategy == null) {
+            throw new BusinessException(ErrorCode.STRATEGY_NOT_FOUND);
+        }
+        if (runtime.get(id) != null) {
+            throw new BusinessException(ErrorCode.STRATEGY_ALREADY_EXISTS, "Strategy " + id + " is already running");
+        }
         Exchange exchange = exchangeService.getById(strategy.getExchangeId());
-        log.info("Starting strategy {}", exchange);
+        if (exchange == null) {
+            throw new BusinessException(ErrorCode.INVALID_TRADE_PARAM,
+                "Exchange " + strategy.getExchangeId() + " of strategy " + id + " does not exist");
+        }
+        String key = String.valueOf(id);
+        cacheManager.init(key);
+        if (persisted.add(key)) {
+            orderPersistService.track(cacheManager, key);
+        }
+        StrategyRunner runner = runtime.start(strategy, latency);
+        cacheManager.listen(key, runner);
+        try {
+            marketData.put(id, subscribe(runner, exchange));
+        } catch (RuntimeException e) {
+            cacheManager.unlisten(key, runner);
+            runtime.stop(id);
+            throw e;
+        }
+        log.info("Starting strategy {} on {}", id, exchange);
+        return runner;
+    }
+
+    public void stop(Long id){
+        StrategyRunner runner = requireRunning(id);
+        MarketData data = marketData.remove(id);
+        if (data != null) {
+            data.unsubscribe(marketDataService);
+        }
+        cacheManager.unlisten(String.valueOf(id), runner);
+        runtime.stop(id);
+    }
+
+    /**
+     * 在策略线程上应用新参数，不修改数据库中的配置
+     */
+    public void updateParams(Long id, String params){
+        requireRunning(id);
+        runtime.updateParams(id, params);
+    }
+
+    public Map<String, Object> status(Long id){
+        StrategyRunner runner = requireRunning(id);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", runner.getInstance().getStatus());
+        status.put("latencyClass", runner.getLatencyClass());
+        status.put("backlog", runner.getBacklog());
+        status.put("pendingOrderEvents", runner.getPendingOrderEvents());
+        status.put("dropped", runner.getDropped());
+        return status;
+    }
+
+    public StrategyRuntime getRuntime() {
+        return runtime;
+    }
+
+    @Override
+    public void close() {
+        marketData.values().forEach(data -> data.unsubscribe(marketDataService));
+        marketData.clear();
+        runtime.close();
+    }
+
+    private StrategyRunner requireRunning(Long id) {
+        StrategyRunner runner = runtime.get(id);
+        if (runner == null) {
+            throw new BusinessException(ErrorCode.STRATEGY_NOT_FOUND, "Strategy " + id + " is not running");
+        }
+        return runner;
+    }
+
+    /**
+     * 策略启动后在其线程上读取订阅，按频道订阅到交易所连接；没有声明订阅时接收连接上的全部推送
+     */
+    private MarketData subscribe(StrategyRunner runner, Exchange exchange) {
+        Map<String, List<String>> subscriptions;
+        try {
+            subscriptions = runner.submit(runner.getInstance()::getSubscriptions)
+                .get(StrategyRuntime.STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Interrupted while starting strategy");
+        } catch (ExecutionException | TimeoutException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR,
+                "Strategy " + runner.getStrategy().getId() + " did not report its subscriptions: " + e);
+        }
+        MessageHandler<String> handler = runtime.marketDataHandler(runner.getStrategy().getId(), exchange.getName());
+        MarketData data = new MarketData(exchange, handler, subscriptions);
+        if (subscriptions.isEmpty()) {
+            marketDataService.addHandler(exchange, handler);
+        } else {
+            subscriptions.forEach((channel, instIds) ->
+                instIds.forEach(instId -> marketDataService.subscribe(exchange, channel, instId, handler)));
+        }
+        data.instIds().forEach(instId -> marketDataService.subscribeMarkPrice(exchange, instId));
+        return data;
+    }
+
+    /**
+     * 一个策略在交易所连接上的订阅，停止时按原样取消
+     */
+    private static final class MarketData {
+        final Exchange exchange;
+        final MessageHandler<String> handler;
+        final Map<String, List<String>> subscriptions;
+
+        MarketData(Exchange exchange, MessageHandler<String> handler, Map<String, List<String>> subscriptions) {
+            this.exchange = exchange;
+            this.handler = handler;
+            this.subscriptions = subscriptions;
+        }
+
+        /**
+         * 订阅涉及的交易对，每个只出现一次
+         */
+        Set<String> instIds() {
+            Set<String> instIds = new LinkedHashSet<>();
+            subscriptions.values().forEach(ids -> ids.stream()
+                .filter(instId -> instId != null && !instId.isEmpty())
+                .forEach(instIds::add));
+            return instIds;
+        }
 
+        void unsubscribe(MarketDataService service) {
+            if (subscriptions.isEmpty()) {
+                service.removeHandler(exchange, handler);
+            } else {
+                subscriptions.forEach((channel, instIds) ->
+                    instIds.forEach(instId -> service.unsubscribe(exchange, channel, instId, handler)));
+            }
+            instIds().forEach(instId -> service.unsubscribeMarkPrice(exchange, instId));
+        }
     }
 }
@@ -0,0 +1,196 @@
+package com.trade.socket.netty.book;
+
+import java.util.Arrays;
+
+/**
+ * 订单簿单边
+ * <p>
+ * 以价格档位（价格 / tick）为下标的定长窗口，数量、原始小数位数存放在基本类型数组中，
+ * 另用位图标记有挂单的档位，查找下一档时按 64 位字跳过空档。
+ * 买方最优为最高档位，卖方最优为最低档位。
+ */
+final class BookSide {
+    private final boolean bid;
+    private final int capacity;
+    private final long[] sizes;
+    private final byte[] priceDigits;
+    private final byte[] sizeDigits;
+    private final long[] occupied;
+    private long baseTick;
+    private int count;
+    private int best = -1;
+
+    BookSide(boolean bid, int capacity) {
+        this.bid = bid;
+        this.capacity = capacity;
+        this.sizes = new long[capacity];
+        this.priceDigits = new byte[capacity];
+        this.sizeDigits = new byte[capacity];
+        this.occupied = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * 档位对应的下标
+     * @return 下标，不在窗口内返回 -1
+     */
+    int slot(long tick) {
+        long slot = tick - baseTick;
+        return slot >= 0 && slot < capacity ? (int) slot : -1;
+    }
+
+    long tick(int slot) {
+        return baseTick + slot;
+    }
+
+    void put(int slot, long size, int priceDigits, int sizeDigits) {
+        if (size == 0) {
+            remove(slot);
+            return;
+        }
+        if (!isSet(slot)) {
+            occupied[slot >>> 6] |= 1L << slot;
+            count++;
+        }
+        sizes[slot] = size;
+        this.priceDigits[slot] = (byte) priceDigits;
+        this.sizeDigits[slot] = (byte) sizeDigits;
+        if (best < 0 || (bid ? slot > best : slot < best)) {
+            best = slot;
+        }
+    }
+
+    void remove(int slot) {
+        if (!isSet(slot)) {
+            return;
+        }
+        occupied[slot >>> 6] &= ~(1L << slot);
+        count--;
+        if (slot == best) {
+            best = next(slot);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(occupied, 0);
+        count = 0;
+        best = -1;
+    }
+
+    /**
+     * 从最优方向看的下一档
+     * @return 下标，没有返回 -1
+     */
+    int next(int slot) {
+        return bid ? previousSetBit(slot - 1) : nextSetBit(slot + 1);
+    }
+
+    /**
+     * 移动窗口，窗口外的档位丢弃
+     * @param newBaseTick 新的起始档位
+     */
+    void moveTo(long newBaseTick) {
+        long delta = newBaseTick - baseTick;
+        if (delta == 0) {
+            return;
+        }
+        // delta > 0 时旧下标大于新下标，按升序复制不会覆盖未读数据；反之按降序
+        if (delta > 0) {
+            for (int i = 0; i < capacity; i++) {
+                moveSlot(i, i + delta);
+            }
+        } else {
+            for (int i = capacity - 1; i >= 0; i--) {
+                moveSlot(i, i + delta);
+            }
+        }
+        baseTick = newBaseTick;
+        count = 0;
+        for (long word : occupied) {
+            count += Long.bitCount(word);
+        }
+        best = bid ? previousSetBit(capacity - 1) : nextSetBit(0);
+    }
+
+    private void moveSlot(int target, long source) {
+        if (source >= 0 && source < capacity && isSet((int) source)) {
+            int from = (int) source;
+            sizes[target] = sizes[from];
+            priceDigits[target] = priceDigits[from];
+            sizeDigits[target] = sizeDigits[from];
+            occupied[target >>> 6] |= 1L << target;
+        } else {
+            occupied[target >>> 6] &= ~(1L << target);
+        }
+    }
+
+    boolean isSet(int slot) {
+        return (occupied[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int nextSetBit(int from) {
+        if (from >= capacity) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long word = occupied[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int slot = (index << 6) + Long.numberOfTrailingZeros(word);
+                return slot < capacity ? slot : -1;
+            }
+            if (++index == occupied.length) {
+                return -1;
+            }
+            word = occupied[index];
+        }
+    }
+
+    private int previousSetBit(int from) {
+        if (from < 0) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long word = occupied[index] & (-1L >>> (63 - (from & 63)));
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + 63 - Long.numberOfLeadingZeros(word);
+            }
+            if (index-- == 0) {
+                return -1;
+            }
+            word = occupied[index];
+        }
+    }
+
+    long size(int slot) {
+        return sizes[slot];
+    }
+
+    int priceDigits(int slot) {
+        return priceDigits[slot];
+    }
+
+    int sizeDigits(int slot) {
+        return sizeDigits[slot];
+    }
+
+    int best() {
+        return best;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long baseTick() {
+        return baseTick;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void setBaseTick(long baseTick) {
+        this.baseTick = baseTick;
+    }
+}
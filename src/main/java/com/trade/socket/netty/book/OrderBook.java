@@ -0,0 +1,376 @@
+package com.trade.socket.netty.book;
+
+import com.trade.socket.netty.codec.MarketDataEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.zip.CRC32;
+
+/**
+ * 单个交易对的L2订单簿
+ * <p>
+ * 由 books / books-l2-tbt 等频道的全量 + 增量推送维护，价格按 tick 转为档位下标存放在定长窗口的基本类型数组中，
+ * 最优价 O(1)，按档位深度查询不创建对象。价格、数量与 {@link MarketDataEvent} 一致，为放大 10^8 的定点数。
+ * <p>
+ * 每次更新检查 prevSeqId 是否与上一条的 seqId 连续，并按交易所规则校验前25档的 CRC32；
+ * 不连续或校验失败时进入 {@link State#RESYNC}，忽略后续增量直到收到新的全量。
+ * tick 未指定时由全量推送中价格的最大公约数推断。窗口外的深档位会被丢弃；
+ * 盘口移出窗口时以盘口为中心移动窗口。
+ * <p>
+ * 非线程安全，应在解码所在的IO线程上更新和查询。
+ */
+@Getter
+public class OrderBook {
+    public enum State {
+        /** 尚未收到全量 */
+        EMPTY,
+        LIVE,
+        /** 序号不连续或校验失败，等待新的全量 */
+        RESYNC
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final int CHECKSUM_DEPTH = 25;
+
+    private final String instId;
+    private long tickSize;
+    private State state = State.EMPTY;
+    private long seqId;
+    private long updateCount;
+    private long gapCount;
+    private long checksumFailures;
+    private long droppedLevels;
+    private String lastError;
+
+    @Getter(AccessLevel.NONE)
+    private final BookSide bids;
+    @Getter(AccessLevel.NONE)
+    private final BookSide asks;
+    @Getter(AccessLevel.NONE)
+    private final CRC32 crc = new CRC32();
+    @Getter(AccessLevel.NONE)
+    private final byte[] checksumBuffer = new byte[CHECKSUM_DEPTH * 4 * 32];
+
+    public OrderBook(String instId) {
+        this(instId, 0, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param instId 交易对
+     * @param tickSize 最小价格变动（放大 10^8），0 表示从全量推送推断
+     * @param capacity 每边窗口的档位数
+     */
+    public OrderBook(String instId, long tickSize, int capacity) {
+        this.instId = instId;
+        this.tickSize = tickSize;
+        this.bids = new BookSide(true, capacity);
+        this.asks = new BookSide(false, capacity);
+    }
+
+    /**
+     * 应用一条深度推送
+     * @param event BOOK 类型事件
+     * @return 订单簿是否有效；返回 false 时需要重新订阅以获取全量
+     */
+    public boolean apply(MarketDataEvent event) {
+        if (event.isSnapshot()) {
+            return applySnapshot(event);
+        }
+        if (state != State.LIVE) {
+            return false;
+        }
+        if ((event.getSeqId() != 0 || event.getPrevSeqId() != 0) && event.getPrevSeqId() != seqId) {
+            gapCount++;
+            return invalidate("Sequence gap: expected prevSeqId " + seqId + " but got " + event.getPrevSeqId());
+        }
+        for (int i = 0; i < event.getBidCount(); i++) {
+            if (!update(bids, event.bidPrice(i), event.bidSize(i), event.bidPriceDigits(i), event.bidSizeDigits(i))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < event.getAskCount(); i++) {
+            if (!update(asks, event.askPrice(i), event.askSize(i), event.askPriceDigits(i), event.askSizeDigits(i))) {
+                return false;
+            }
+        }
+        seqId = event.getSeqId();
+        updateCount++;
+        return verify(event);
+    }
+
+    private boolean applySnapshot(MarketDataEvent event) {
+        bids.clear();
+        asks.clear();
+        long tick = tickSize;
+        for (int i = 0; i < event.getBidCount(); i++) {
+            tick = gcd(tick, event.bidPrice(i));
+        }
+        for (int i = 0; i < event.getAskCount(); i++) {
+            tick = gcd(tick, event.askPrice(i));
+        }
+        if (tick <= 0) {
+            return invalidate("Cannot determine tick size");
+        }
+        tickSize = tick;
+
+        long center;
+        if (event.getBidCount() > 0 && event.getAskCount() > 0) {
+            center = (event.bidPrice(0) / tick + event.askPrice(0) / tick) >> 1;
+        } else if (event.getBidCount() > 0) {
+            center = event.bidPrice(0) / tick;
+        } else if (event.getAskCount() > 0) {
+            center = event.askPrice(0) / tick;
+        } else {
+            center = 0;
+        }
+        long base = center - (bids.capacity() >> 1);
+        bids.setBaseTick(base);
+        asks.setBaseTick(base);
+
+        state = State.LIVE;
+        for (int i = 0; i < event.getBidCount(); i++) {
+            if (!update(bids, event.bidPrice(i), event.bidSize(i), event.bidPriceDigits(i), event.bidSizeDigits(i))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < event.getAskCount(); i++) {
+            if (!update(asks, event.askPrice(i), event.askSize(i), event.askPriceDigits(i), event.askSizeDigits(i))) {
+                return false;
+            }
+        }
+        seqId = event.getSeqId();
+        updateCount++;
+        return verify(event);
+    }
+
+    private boolean update(BookSide side, long price, long size, int priceDigits, int sizeDigits) {
+        if (price % tickSize != 0) {
+            // tick 推断偏大，缩小后等待全量重建
+            tickSize = gcd(tickSize, price);
+            return invalidate("Price " + price + " is not a multiple of tick size");
+        }
+        long tick = price / tickSize;
+        int slot = side.slot(tick);
+        if (slot < 0) {
+            if (size == 0) {
+                return true;
+            }
+            if (!towardsTouch(side, tick)) {
+                droppedLevels++;
+                return true;
+            }
+            recenter(side, tick);
+            slot = side.slot(tick);
+        }
+        side.put(slot, size, priceDigits, sizeDigits);
+        return true;
+    }
+
+    /**
+     * 窗口外的档位是否在盘口一侧（买方高于窗口、卖方低于窗口），是则需要移动窗口
+     */
+    private boolean towardsTouch(BookSide side, long tick) {
+        return side == bids ? tick >= side.baseTick() + side.capacity() : tick < side.baseTick();
+    }
+
+    /**
+     * 以新档位和对手方最优档位的中点为中心移动窗口
+     */
+    private void recenter(BookSide side, long tick) {
+        BookSide opposite = side == bids ? asks : bids;
+        long center = opposite.best() < 0 ? tick : (tick + opposite.tick(opposite.best())) >> 1;
+        long base = center - (bids.capacity() >> 1);
+        if (tick < base || tick >= base + bids.capacity()) {
+            // 买卖价差超过窗口，以新档位为中心
+            base = tick - (bids.capacity() >> 1);
+        }
+        int before = bids.count() + asks.count();
+        bids.moveTo(base);
+        asks.moveTo(base);
+        droppedLevels += before - bids.count() - asks.count();
+    }
+
+    private boolean verify(MarketDataEvent event) {
+        if (event.getChecksum() == 0 || checksum() == event.getChecksum()) {
+            return true;
+        }
+        checksumFailures++;
+        return invalidate("Checksum mismatch at seqId " + seqId);
+    }
+
+    private boolean invalidate(String reason) {
+        state = State.RESYNC;
+        lastError = reason;
+        return false;
+    }
+
+    /**
+     * 标记为失效，等待新的全量
+     */
+    public void reset() {
+        bids.clear();
+        asks.clear();
+        state = State.EMPTY;
+        seqId = 0;
+    }
+
+    /**
+     * 按OKX规则计算前25档校验和：bid价:bid量:ask价:ask量 交替拼接，一方不足时只拼另一方，取CRC32的有符号值
+     */
+    public int checksum() {
+        byte[] out = checksumBuffer;
+        int length = 0;
+        int bid = bids.best();
+        int ask = asks.best();
+        for (int i = 0; i < CHECKSUM_DEPTH && (bid >= 0 || ask >= 0); i++) {
+            if (bid >= 0) {
+                if (length > 0) {
+                    out[length++] = ':';
+                }
+                length = writeLevel(out, length, bids, bid);
+                bid = bids.next(bid);
+            }
+            if (ask >= 0) {
+                if (length > 0) {
+                    out[length++] = ':';
+                }
+                length = writeLevel(out, length, asks, ask);
+                ask = asks.next(ask);
+            }
+        }
+        crc.reset();
+        crc.update(out, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private int writeLevel(byte[] out, int pos, BookSide side, int slot) {
+        pos = writeDecimal(out, pos, side.tick(slot) * tickSize, side.priceDigits(slot));
+        out[pos++] = ':';
+        return writeDecimal(out, pos, side.size(slot), side.sizeDigits(slot));
+    }
+
+    /**
+     * 按原始小数位数写出定点数
+     */
+    static int writeDecimal(byte[] out, int pos, long value, int digits) {
+        long integer = value / MarketDataEvent.SCALE_FACTOR;
+        long fraction = value % MarketDataEvent.SCALE_FACTOR;
+        if (integer == 0) {
+            out[pos++] = '0';
+        } else {
+            int start = pos;
+            for (long v = integer; v > 0; v /= 10) {
+                out[pos++] = (byte) ('0' + v % 10);
+            }
+            for (int i = start, j = pos - 1; i < j; i++, j--) {
+                byte b = out[i];
+                out[i] = out[j];
+                out[j] = b;
+            }
+        }
+        if (digits > 0) {
+            out[pos++] = '.';
+            long divisor = MarketDataEvent.SCALE_FACTOR / 10;
+            for (int i = 0; i < digits; i++) {
+                out[pos++] = (byte) ('0' + fraction / divisor % 10);
+                divisor /= 10;
+            }
+        } else if (digits == 0) {
+            out[pos++] = '.';
+        }
+        return pos;
+    }
+
+    public long getBestBid() {
+        return bids.best() < 0 ? 0 : bids.tick(bids.best()) * tickSize;
+    }
+
+    public long getBestBidSize() {
+        return bids.best() < 0 ? 0 : bids.size(bids.best());
+    }
+
+    public long getBestAsk() {
+        return asks.best() < 0 ? 0 : asks.tick(asks.best()) * tickSize;
+    }
+
+    public long getBestAskSize() {
+        return asks.best() < 0 ? 0 : asks.size(asks.best());
+    }
+
+    public int getBidLevels() {
+        return bids.count();
+    }
+
+    public int getAskLevels() {
+        return asks.count();
+    }
+
+    /**
+     * 某价位的买方数量
+     * @return 数量，无挂单或不在窗口内返回 0
+     */
+    public long bidSizeAt(long price) {
+        return sizeAt(bids, price);
+    }
+
+    public long askSizeAt(long price) {
+        return sizeAt(asks, price);
+    }
+
+    private long sizeAt(BookSide side, long price) {
+        if (tickSize == 0 || price % tickSize != 0) {
+            return 0;
+        }
+        int slot = side.slot(price / tickSize);
+        return slot >= 0 && side.isSet(slot) ? side.size(slot) : 0;
+    }
+
+    /**
+     * 买方前若干档，写入调用方提供的数组
+     * @return 实际档数
+     */
+    public int bids(long[] prices, long[] sizes, int depth) {
+        return levels(bids, prices, sizes, depth);
+    }
+
+    public int asks(long[] prices, long[] sizes, int depth) {
+        return levels(asks, prices, sizes, depth);
+    }
+
+    private int levels(BookSide side, long[] prices, long[] sizes, int depth) {
+        int n = 0;
+        for (int slot = side.best(); slot >= 0 && n < depth; slot = side.next(slot)) {
+            prices[n] = side.tick(slot) * tickSize;
+            sizes[n++] = side.size(slot);
+        }
+        return n;
+    }
+
+    /**
+     * 前若干档的累计数量
+     * @param bid 买方还是卖方
+     * @param depth 档数
+     */
+    public long cumulativeSize(boolean bid, int depth) {
+        BookSide side = bid ? bids : asks;
+        long total = 0;
+        int n = 0;
+        for (int slot = side.best(); slot >= 0 && n < depth; slot = side.next(slot), n++) {
+            total += side.size(slot);
+        }
+        return total;
+    }
+
+    public boolean isLive() {
+        return state == State.LIVE;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+}
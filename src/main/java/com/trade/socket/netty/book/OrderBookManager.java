@@ -0,0 +1,126 @@
+package com.trade.socket.netty.book;
+
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.codec.InstrumentRegistry;
+import com.trade.socket.netty.codec.MarketDataEvent;
+import com.trade.socket.netty.codec.MarketDataListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 订单簿管理
+ * 接收解码后的深度事件，按 {@link InstrumentRegistry} 句柄维护各交易对的 {@link OrderBook}。
+ * 订单簿失效时回调 {@link ResyncListener}，由调用方重新订阅以获取全量。
+ * 其它类型的事件转发给下一个监听器。
+ */
+@Slf4j
+public class OrderBookManager implements MarketDataListener {
+    private final InstrumentRegistry registry;
+    private final ResyncListener resyncListener;
+    private final MarketDataListener next;
+    private final int capacity;
+    private volatile OrderBook[] books = new OrderBook[64];
+
+    public OrderBookManager(ResyncListener resyncListener) {
+        this(InstrumentRegistry.DEFAULT, resyncListener, null, OrderBook.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param registry 交易对注册表，需与解码器一致
+     * @param resyncListener 订单簿失效回调
+     * @param next 非深度事件的下一个监听器，可为空
+     * @param capacity 每边窗口的档位数
+     */
+    public OrderBookManager(InstrumentRegistry registry, ResyncListener resyncListener,
+                            MarketDataListener next, int capacity) {
+        this.registry = registry;
+        this.resyncListener = resyncListener;
+        this.next = next;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 预先指定交易对的最小价格变动，未注册的交易对从全量推送推断
+     * @param instId 交易对
+     * @param tickSize 最小价格变动，如 0.1
+     */
+    public synchronized OrderBook register(String instId, BigDecimal tickSize) {
+        long tick = tickSize.movePointRight(MarketDataEvent.SCALE).longValueExact();
+        int handle = registry.handle(instId);
+        ensureCapacity(handle);
+        OrderBook book = new OrderBook(instId, tick, capacity);
+        books[handle] = book;
+        return book;
+    }
+
+    @Override
+    public void onMarketData(MarketDataEvent event) {
+        if (event.getType() != MarketDataEvent.Type.BOOK) {
+            if (next != null) {
+                next.onMarketData(event);
+            }
+            return;
+        }
+        OrderBook book = book(event.getInstrument());
+        OrderBook.State before = book.getState();
+        if (!book.apply(event) && before == OrderBook.State.LIVE) {
+            log.warn("Order book {} needs resync: {}", book.getInstId(), book.getLastError());
+            if (resyncListener != null) {
+                resyncListener.onResync(book);
+            }
+        }
+    }
+
+    /**
+     * 获取订单簿
+     * @return 订单簿，未收到过推送返回 null
+     */
+    public OrderBook getBook(String instId) {
+        int handle = registry.find(instId, 0, instId.length());
+        OrderBook[] current = books;
+        return handle >= 0 && handle < current.length ? current[handle] : null;
+    }
+
+    private OrderBook book(int handle) {
+        OrderBook[] current = books;
+        if (handle < current.length && current[handle] != null) {
+            return current[handle];
+        }
+        synchronized (this) {
+            ensureCapacity(handle);
+            if (books[handle] == null) {
+                books[handle] = new OrderBook(registry.name(handle), 0, capacity);
+            }
+            return books[handle];
+        }
+    }
+
+    private void ensureCapacity(int handle) {
+        if (handle >= books.length) {
+            books = Arrays.copyOf(books, Math.max(books.length << 1, handle + 1));
+        }
+    }
+
+    /**
+     * 订单簿失效回调
+     */
+    @FunctionalInterface
+    public interface ResyncListener {
+        void onResync(OrderBook book);
+    }
+
+    /**
+     * 通过取消再订阅获取新的全量
+     * @param client 行情连接
+     * @param channel 深度频道，如 books
+     */
+    public static ResyncListener resubscribe(NettyClient client, String channel) {
+        return book -> {
+            String arg = "[{\"channel\":\"" + channel + "\",\"instId\":\"" + book.getInstId() + "\"}]";
+            client.send("{\"op\":\"unsubscribe\",\"args\":" + arg + "}");
+            client.send("{\"op\":\"subscribe\",\"args\":" + arg + "}");
+        };
+    }
+}
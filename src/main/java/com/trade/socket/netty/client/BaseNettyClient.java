@@ -1,12 +1,14 @@
 package com.trade.socket.netty.client;
 
+import com.trade.socket.netty.codec.MarketDataListener;
 import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.journal.Journal;
+import com.trade.socket.netty.journal.JournalingHandler;
+import com.trade.socket.netty.latency.LatencyProbe;
 import com.trade.socket.netty.util.WebSocketURLParser;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
@@ -17,70 +19,131 @@ import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.ScheduledFuture;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.URI;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Netty基础客户端实现
  */
 @Slf4j
 public class BaseNettyClient<T> implements NettyClient {
+    private static final long HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    private static final AtomicInteger CONNECTION_IDS = new AtomicInteger();
+
     private final int heartbeatInterval;
     private final String heartbeatMessage;
     private final MessageDispatcher<String> messageDispatcher;
     private final WebSocketURLParser.WebSocketURL socketUrl;
-    private EventLoopGroup workerGroup;
-    private Channel channel;
+    private final NettyTransport transport;
+    private volatile Channel channel;
+    // 在事件循环上创建，disconnect 可能在其它线程上取消
+    private volatile ScheduledFuture<?> heartbeatTask;
     private volatile boolean running;
-    private WebSocketClientHandshaker handshaker;
+    private volatile WebSocketClientHandshaker handshaker;
+    private SslContext sslContext;
+    private volatile MarketDataListener marketDataListener;
+    private volatile Journal journal;
+    private volatile LatencyProbe latencyProbe;
+    private final int connectionId = CONNECTION_IDS.incrementAndGet();
 
     public BaseNettyClient(WebSocketURLParser.WebSocketURL socketUrl, int heartbeatInterval, String heartbeatMessage, MessageDispatcher<String> messageDispatcher) {
+        this(socketUrl, heartbeatInterval, heartbeatMessage, messageDispatcher, NettyTransport.shared());
+    }
+
+    /**
+     * @param transport 共享传输层，多个客户端共用同一组IO线程
+     */
+    public BaseNettyClient(WebSocketURLParser.WebSocketURL socketUrl, int heartbeatInterval, String heartbeatMessage,
+                           MessageDispatcher<String> messageDispatcher, NettyTransport transport) {
+        this.transport = transport;
         this.socketUrl = socketUrl;
         this.heartbeatInterval = heartbeatInterval;
         this.heartbeatMessage = heartbeatMessage;
         this.messageDispatcher = messageDispatcher;
     }
 
+    /**
+     * 开启二进制行情解码，tickers/trades/books推送不再经过 {@link MessageDispatcher}，其余消息不变
+     * 需在 {@link #connect()} 之前设置，重连时沿用
+     * @param marketDataListener 行情监听器，null 表示关闭
+     */
+    public void setMarketDataListener(MarketDataListener marketDataListener) {
+        this.marketDataListener = marketDataListener;
+    }
+
+    /**
+     * 开启原始帧日志，每个入站数据帧在处理前写入日志
+     * 需在 {@link #connect()} 之前设置，重连时沿用
+     * @param journal 日志，多个客户端可共用，null 表示关闭
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * 开启行情到下单的延迟打点
+     * 需在 {@link #connect()} 之前设置，重连时沿用
+     * @param latencyProbe 探针，null 表示关闭
+     */
+    public void setLatencyProbe(LatencyProbe latencyProbe) {
+        this.latencyProbe = latencyProbe;
+    }
+
+    /**
+     * 客户端编号，写入日志记录用于区分连接
+     */
+    public int getConnectionId() {
+        return connectionId;
+    }
+
+    /**
+     * 异步连接，不阻塞调用线程
+     * @return TCP连接和WebSocket握手都完成后成功，任一步失败或握手超时则失败并关闭连接
+     */
     @Override
     public ChannelFuture connect() {
-        workerGroup = new NioEventLoopGroup();
         running = true;
 
         try {
-            // 配置SSL上下文（如果需要）
-            SslContext sslContext;
-            if (socketUrl.isSsl()) {
+            // 配置SSL上下文（如果需要），重连时复用
+            if (socketUrl.isSsl() && sslContext == null) {
                 sslContext = SslContextBuilder.forClient()
                     .trustManager(InsecureTrustManagerFactory.INSTANCE)
                     .build();
-            } else {
-                sslContext = null;
             }
+            SslContext sslContext = this.sslContext;
 
             // 创建WebSocket握手器
-            handshaker = WebSocketClientHandshakerFactory.newHandshaker(
+            WebSocketClientHandshaker handshaker = WebSocketClientHandshakerFactory.newHandshaker(
                 new URI(socketUrl.getUrl()), WebSocketVersion.V13, null, true, new DefaultHttpHeaders());
+            this.handshaker = handshaker;
+            LatencyProbe latencyProbe = this.latencyProbe;
+            NettyHandlerObjectMessage messageHandler = new NettyHandlerObjectMessage(messageDispatcher, handshaker,
+                marketDataListener, latencyProbe);
+            Journal journal = this.journal;
 
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(workerGroup)
-                    .channel(NioSocketChannel.class)
-                    .option(ChannelOption.SO_KEEPALIVE, true)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            if (sslContext != null) {
-                                ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), socketUrl.getHost(), socketUrl.getPort()));
-                            }
-                            // 添加HTTP编解码器
-                            ch.pipeline().addLast(new HttpClientCodec());
-                            // 添加HTTP消息聚合器
-                            ch.pipeline().addLast(new HttpObjectAggregator(65536));
+            Bootstrap bootstrap = transport.bootstrap();
+            bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    if (latencyProbe != null) {
+                        ch.pipeline().addLast(latencyProbe.readStampHandler());
+                    }
+                    if (sslContext != null) {
+                        ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), socketUrl.getHost(), socketUrl.getPort()));
+                    }
+                    // 添加HTTP编解码器
+                    ch.pipeline().addLast(new HttpClientCodec());
+                    // 添加HTTP消息聚合器
+                    ch.pipeline().addLast(new HttpObjectAggregator(65536));
 
 //                            ch.pipeline().addLast(new WebSocketClientProtocolHandler(handshaker));
 
-                            ch.pipeline().addLast(new IdleStateHandler(0, 20, 0, TimeUnit.SECONDS));
+                    ch.pipeline().addLast(new IdleStateHandler(0, 20, 0, TimeUnit.SECONDS));
 //                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
 //                                @Override
 //                                public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
@@ -98,21 +161,49 @@ public class BaseNettyClient<T> implements NettyClient {
 //                            // 添加WebSocket协议处理器
 //                            ch.pipeline().addLast(new io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler(handshaker));
 //                            // 添加自定义消息处理器
-                            ch.pipeline().addLast(new NettyHandlerStringMessage(messageDispatcher,handshaker));
-                            ch.pipeline().addLast(new NettyHandlerObjectMessage(messageDispatcher,handshaker));
-                        }
-                    });
+                    ch.pipeline().addLast(new NettyHandlerStringMessage(messageDispatcher,handshaker));
+                    if (journal != null) {
+                        ch.pipeline().addLast(new JournalingHandler(journal, connectionId));
+                    }
+                    ch.pipeline().addLast(messageHandler);
+                }
+            });
 
-            ChannelFuture future = bootstrap.connect(socketUrl.getHost(), socketUrl.getPort()).sync();
-            channel = future.channel();
-
-            // 等待握手完成
-            handshaker.handshake(channel).sync();
-
-            // 启动心跳
-            startHeartbeat();
-
-            return future;
+            ChannelFuture connectFuture = bootstrap.connect(socketUrl.getHost(), socketUrl.getPort());
+            Channel ch = connectFuture.channel();
+            channel = ch;
+            ChannelPromise ready = ch.newPromise();
+            connectFuture.addListener(f -> {
+                if (!f.isSuccess()) {
+                    ready.tryFailure(f.cause());
+                    return;
+                }
+                ScheduledFuture<?> timeout = ch.eventLoop().schedule(() -> {
+                    ready.tryFailure(new WebSocketHandshakeException("Handshake timed out after "
+                        + HANDSHAKE_TIMEOUT_MILLIS + "ms"));
+                }, HANDSHAKE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                handshaker.handshake(ch).addListener(w -> {
+                    if (!w.isSuccess()) {
+                        ready.tryFailure(w.cause());
+                    }
+                });
+                messageHandler.handshakeFuture().addListener(h -> {
+                    timeout.cancel(false);
+                    if (h.isSuccess()) {
+                        // 启动心跳
+                        startHeartbeat();
+                        ready.trySuccess();
+                    } else {
+                        ready.tryFailure(h.cause());
+                    }
+                });
+            });
+            ready.addListener(f -> {
+                if (!f.isSuccess()) {
+                    ch.close();
+                }
+            });
+            return ready;
         } catch (Exception e) {
             log.error("Failed to connect", e);
             throw new RuntimeException("Failed to connect", e);
@@ -122,32 +213,53 @@ public class BaseNettyClient<T> implements NettyClient {
     @Override
     public void disconnect() {
         running = false;
+        ScheduledFuture<?> task = heartbeatTask;
+        if (task != null) {
+            task.cancel(false);
+        }
         if (channel != null) {
             channel.close();
         }
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
-        }
     }
 
     @Override
     public void send(String message) {
-        log.info("2222222222 {} , {} , {}",message,channel != null,channel.isActive());
-        if (channel != null && channel.isActive()) {
-            log.info("0000000000000000");
-
-//            channel.writeAndFlush(Unpooled.copiedBuffer(message.getBytes()));
-            channel.writeAndFlush(new TextWebSocketFrame(message));
+        Channel ch = channel;
+        if (ch != null && ch.isActive()) {
+            LatencyProbe probe = latencyProbe;
+            long[] stamps = probe != null ? probe.onSend() : null;
+            ChannelFuture future = ch.writeAndFlush(new TextWebSocketFrame(message));
+            if (stamps != null) {
+                future.addListener(f -> probe.onFlushed(stamps, f.isSuccess()));
+            }
+        } else {
+            log.warn("Dropping message, channel is not active: {}", message);
         }
     }
 
+    /**
+     * 连接可用且WebSocket握手已完成
+     */
     @Override
     public boolean isConnected() {
-        return channel != null && channel.isActive();
+        Channel ch = channel;
+        WebSocketClientHandshaker hs = handshaker;
+        return ch != null && ch.isActive() && hs != null && hs.isHandshakeComplete();
     }
 
+    public NettyTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * 心跳调度在连接自己的事件循环上，与读写同线程，随连接关闭而失效
+     */
     private void startHeartbeat() {
-        workerGroup.scheduleAtFixedRate(() -> {
+        ScheduledFuture<?> previous = heartbeatTask;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        heartbeatTask = channel.eventLoop().scheduleAtFixedRate(() -> {
             if (running && isConnected()) {
                 send(heartbeatMessage);
             }
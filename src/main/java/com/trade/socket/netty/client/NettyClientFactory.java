@@ -1,9 +1,13 @@
 package com.trade.socket.netty.client;
 
+import com.trade.socket.netty.codec.MarketDataListener;
 import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.manager.ConnectionPool;
 import com.trade.socket.netty.manager.DefaultConnectionManager;
 import com.trade.socket.netty.manager.DefaultSubscriptionManager;
+import com.trade.socket.netty.manager.RedundantFeed;
+import com.trade.socket.netty.manager.ShardedSubscriptionManager;
 import com.trade.socket.netty.util.WebSocketURLParser;
 import com.trade.socket.netty.util.WebSocketURLParser.WebSocketURL;
 import lombok.extern.slf4j.Slf4j;
@@ -13,9 +17,37 @@ import java.util.List;
 
 /**
  * Netty客户端工厂类
+ * 创建的所有客户端共用 {@link NettyTransport#shared()} 的事件循环组
  */
 @Slf4j
 public class NettyClientFactory {
+
+    /**
+     * 配置共享传输层，需在创建客户端之前调用
+     * @param ioThreads IO线程数
+     * @param receiveBufferSize socket接收缓冲区（字节），0 表示系统默认
+     * @param maxReadBufferSize 单次读取缓冲区上限（字节）
+     * @param preferNative Linux下是否使用epoll
+     * @return 共享传输层
+     */
+    public static NettyTransport configureTransport(int ioThreads, int receiveBufferSize,
+                                                    int maxReadBufferSize, boolean preferNative) {
+        return NettyTransport.configure(ioThreads, receiveBufferSize, maxReadBufferSize, preferNative);
+    }
+
+    /**
+     * 获取共享传输层
+     */
+    public static NettyTransport getTransport() {
+        return NettyTransport.shared();
+    }
+
+    /**
+     * 关闭共享传输层，应用退出时调用
+     */
+    public static void shutdownTransport() {
+        NettyTransport.shared().shutdown();
+    }
     
     /**
      * 创建默认配置的Netty客户端
@@ -158,4 +190,49 @@ public class NettyClientFactory {
             throw new RuntimeException("Failed to create client", e);
         }
     }
+
+    /**
+     * 创建二进制行情解码模式的Netty客户端
+     * tickers/trades/books推送直接从ByteBuf解码后回调监听器，其余消息仍交给分发器
+     * @param url WebSocket URL (ws://host:port 或 wss://host:port)
+     * @param dispatcher 非行情消息分发器
+     * @param listener 行情监听器
+     * @return NettyClient实例
+     */
+    public static NettyClient createMarketDataClient(String url, MessageDispatcher<String> dispatcher,
+                                                     MarketDataListener listener) {
+        WebSocketURL wsUrl = WebSocketURLParser.parse(url);
+        BaseNettyClient<String> client = new BaseNettyClient<>(wsUrl,
+            30, "ping", dispatcher);
+        client.setMarketDataListener(listener);
+        dispatcher.setClient(client);
+
+        DefaultConnectionManager connectionManager = new DefaultConnectionManager(wsUrl.getHost(),
+            wsUrl.getPort(), client);
+        connectionManager.initConnection();
+        return client;
+    }
+
+    /**
+     * 创建连接池，交易对分散到多条连接上
+     * @param url WebSocket URL (ws://host:port 或 wss://host:port)
+     * @param size 连接数
+     * @param maxTopicsPerConnection 单条连接的订阅数上限
+     * @return 分片订阅管理器，通过 getPool().start() 建立连接
+     */
+    public static ShardedSubscriptionManager createShardedClient(String url, int size, int maxTopicsPerConnection) {
+        ConnectionPool pool = new ConnectionPool(url, size);
+        return new ShardedSubscriptionManager(pool, maxTopicsPerConnection, 0.2);
+    }
+
+    /**
+     * 创建冗余行情：多条连接订阅相同频道，推送去重后交给分发器
+     * @param url WebSocket URL (ws://host:port 或 wss://host:port)
+     * @param copies 连接数
+     * @param dispatcher 下游分发器
+     * @return 冗余行情，通过 start() 建立连接
+     */
+    public static RedundantFeed createRedundantFeed(String url, int copies, MessageDispatcher<String> dispatcher) {
+        return new RedundantFeed(url, copies, dispatcher);
+    }
 }
@@ -1,6 +1,10 @@
 package com.trade.socket.netty.client;
 
+import com.trade.socket.netty.codec.MarketDataListener;
+import com.trade.socket.netty.codec.OkxFrameDecoder;
 import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.latency.LatencyProbe;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -16,10 +20,27 @@ public class NettyHandlerObjectMessage extends SimpleChannelInboundHandler<Objec
     private final MessageDispatcher<String> messageDispatcher;
     private ChannelPromise handshakeFuture;
     private WebSocketClientHandshaker handshaker;
+    // 二进制解码模式：行情帧直接从ByteBuf解码，不生成String
+    private final MarketDataListener marketDataListener;
+    private final OkxFrameDecoder frameDecoder;
+    private final LatencyProbe latencyProbe;
 
     public NettyHandlerObjectMessage(MessageDispatcher<String> messageDispatcher, WebSocketClientHandshaker handshaker) {
+        this(messageDispatcher, handshaker, null);
+    }
+
+    public NettyHandlerObjectMessage(MessageDispatcher<String> messageDispatcher, WebSocketClientHandshaker handshaker,
+                                     MarketDataListener marketDataListener) {
+        this(messageDispatcher, handshaker, marketDataListener, null);
+    }
+
+    public NettyHandlerObjectMessage(MessageDispatcher<String> messageDispatcher, WebSocketClientHandshaker handshaker,
+                                     MarketDataListener marketDataListener, LatencyProbe latencyProbe) {
         this.messageDispatcher = messageDispatcher;
         this.handshaker = handshaker;
+        this.marketDataListener = marketDataListener;
+        this.frameDecoder = marketDataListener != null ? new OkxFrameDecoder() : null;
+        this.latencyProbe = latencyProbe;
     }
 
     @Override
@@ -40,17 +61,44 @@ public class NettyHandlerObjectMessage extends SimpleChannelInboundHandler<Objec
 
         if (msg instanceof TextWebSocketFrame) {
             TextWebSocketFrame frame = (TextWebSocketFrame) msg;
-            messageDispatcher.dispatch(frame.text());
+            if (latencyProbe == null) {
+                dispatch(frame);
+                return;
+            }
+            latencyProbe.onFrame();
+            try {
+                dispatch(frame);
+            } finally {
+                latencyProbe.onFrameDone();
+            }
 //            System.out.println("收到服务端" + ctx.channel().remoteAddress() + "发来的消息：" + frame.text()); // 接收服务端发送过来的消息
         }
     }
 
 
+    private void dispatch(TextWebSocketFrame frame) {
+        if (frameDecoder != null) {
+            // 二进制解码不经过 MessageDispatcher，在这里打 DISPATCH；回退到文本分发时由分发器重新打点
+            LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+        }
+        if (frameDecoder != null && frameDecoder.decode(frame.content(), System.nanoTime(), marketDataListener)) {
+            return;
+        }
+        messageDispatcher.dispatch(frame.text());
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
         handshakeFuture = ctx.newPromise();
     }
 
+    /**
+     * 握手完成的通知，处理器加入pipeline之后可用
+     */
+    public ChannelFuture handshakeFuture() {
+        return handshakeFuture;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
 
@@ -59,6 +107,9 @@ public class NettyHandlerObjectMessage extends SimpleChannelInboundHandler<Objec
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         System.out.println("客户端下线");
+        if (handshakeFuture != null) {
+            handshakeFuture.tryFailure(new WebSocketHandshakeException("Channel closed before handshake completed"));
+        }
     }
 
     @Override
@@ -69,6 +120,9 @@ public class NettyHandlerObjectMessage extends SimpleChannelInboundHandler<Objec
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.error("error",cause);
+        if (handshakeFuture != null) {
+            handshakeFuture.tryFailure(cause);
+        }
         ctx.close();
     }
 }
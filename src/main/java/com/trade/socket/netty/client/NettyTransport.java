@@ -0,0 +1,135 @@
+package com.trade.socket.netty.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 客户端共享传输层
+ * <p>
+ * 所有WebSocket客户端共用一个线程数有上限的事件循环组，连接和重连都不再新建线程；
+ * Linux下使用epoll原生传输，其它平台回退到NIO。
+ * 统一设置 TCP_NODELAY、池化直接内存分配器和接收缓冲区大小。
+ * 客户端断开时只关闭自己的连接，事件循环组由本类统一关闭。
+ */
+@Slf4j
+@Getter
+public class NettyTransport {
+    /**
+     * 默认IO线程数上限，行情连接数通常远多于核数，少量线程即可承载
+     */
+    public static final int DEFAULT_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private static volatile NettyTransport shared;
+
+    private final EventLoopGroup group;
+    private final Class<? extends SocketChannel> channelClass;
+    private final boolean nativeTransport;
+    private final int ioThreads;
+    /**
+     * socket接收缓冲区（SO_RCVBUF），0 表示使用系统默认
+     */
+    private final int receiveBufferSize;
+    /**
+     * 单次读取的缓冲区上限，books全量推送较大，避免一次读取拆成多次
+     */
+    private final int maxReadBufferSize;
+
+    /**
+     * @param ioThreads IO线程数
+     * @param receiveBufferSize socket接收缓冲区，0 表示系统默认
+     * @param maxReadBufferSize 单次读取缓冲区上限
+     * @param preferNative 可用时是否使用epoll
+     */
+    public NettyTransport(int ioThreads, int receiveBufferSize, int maxReadBufferSize, boolean preferNative) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads must be positive: " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+        this.receiveBufferSize = receiveBufferSize;
+        this.maxReadBufferSize = maxReadBufferSize;
+        this.nativeTransport = preferNative && Epoll.isAvailable();
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("netty-io", true);
+        if (nativeTransport) {
+            this.group = new EpollEventLoopGroup(ioThreads, threadFactory);
+            this.channelClass = EpollSocketChannel.class;
+        } else {
+            this.group = new NioEventLoopGroup(ioThreads, threadFactory);
+            this.channelClass = NioSocketChannel.class;
+        }
+        log.info("Netty transport started: {} with {} io threads", nativeTransport ? "epoll" : "nio", ioThreads);
+    }
+
+    /**
+     * 全局共享的传输层，首次使用时按默认参数创建
+     */
+    public static NettyTransport shared() {
+        NettyTransport transport = shared;
+        if (transport == null) {
+            synchronized (NettyTransport.class) {
+                transport = shared;
+                if (transport == null) {
+                    transport = new NettyTransport(DEFAULT_IO_THREADS, 0, 256 * 1024, true);
+                    shared = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * 替换全局共享的传输层，需在创建客户端之前调用；原有传输层会被关闭
+     * @param ioThreads IO线程数
+     * @param receiveBufferSize socket接收缓冲区，0 表示系统默认
+     * @param maxReadBufferSize 单次读取缓冲区上限
+     * @param preferNative 可用时是否使用epoll
+     * @return 新的传输层
+     */
+    public static synchronized NettyTransport configure(int ioThreads, int receiveBufferSize,
+                                                        int maxReadBufferSize, boolean preferNative) {
+        NettyTransport previous = shared;
+        shared = new NettyTransport(ioThreads, receiveBufferSize, maxReadBufferSize, preferNative);
+        if (previous != null) {
+            previous.shutdown();
+        }
+        return shared;
+    }
+
+    /**
+     * 创建已设置好事件循环组、通道类型和socket参数的Bootstrap
+     */
+    public Bootstrap bootstrap() {
+        Bootstrap bootstrap = new Bootstrap()
+            .group(group)
+            .channel(channelClass)
+            .option(ChannelOption.TCP_NODELAY, true)
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, DEFAULT_CONNECT_TIMEOUT_MILLIS)
+            .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .option(ChannelOption.RCVBUF_ALLOCATOR,
+                new AdaptiveRecvByteBufAllocator(512, 16 * 1024, Math.max(16 * 1024, maxReadBufferSize)));
+        if (receiveBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        return bootstrap;
+    }
+
+    /**
+     * 关闭事件循环组，所有使用本传输层的连接都会被关闭
+     */
+    public void shutdown() {
+        group.shutdownGracefully();
+    }
+}
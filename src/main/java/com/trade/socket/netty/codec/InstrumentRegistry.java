@@ -0,0 +1,227 @@
+package com.trade.socket.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 交易对注册表
+ * <p>
+ * 将 instId 映射为从 0 开始的整数句柄，解码热路径直接用 {@link ByteBuf} 中的字节查表，不创建 String。
+ * 查询无锁；首次出现的 instId 注册时加锁并以写时复制方式发布新表，注册只在启动初期发生。
+ */
+public class InstrumentRegistry {
+    /**
+     * 进程内共享的默认注册表
+     */
+    public static final InstrumentRegistry DEFAULT = new InstrumentRegistry();
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY, 0);
+
+    /**
+     * 根据缓冲区中的 instId 字节获取句柄，不存在则注册
+     * @param buf 缓冲区
+     * @param index 起始下标（绝对位置）
+     * @param length 字节长度
+     * @return 句柄
+     */
+    public int handle(ByteBuf buf, int index, int length) {
+        int hash = hash(buf, index, length);
+        int handle = table.find(buf, index, length, hash);
+        if (handle >= 0) {
+            return handle;
+        }
+        byte[] key = new byte[length];
+        buf.getBytes(index, key);
+        return register(key, hash);
+    }
+
+    /**
+     * 根据 instId 获取句柄，不存在则注册
+     * @param instId 交易对
+     * @return 句柄
+     */
+    public int handle(CharSequence instId) {
+        int length = instId.length();
+        int hash = hash(instId, 0, length);
+        int handle = table.find(instId, 0, length, hash);
+        if (handle >= 0) {
+            return handle;
+        }
+        return register(instId.toString().getBytes(StandardCharsets.US_ASCII), hash);
+    }
+
+    /**
+     * 查询 instId 的句柄，不注册
+     * @param instId 交易对
+     * @param start 起始下标
+     * @param end 结束下标（不含）
+     * @return 句柄，不存在返回 -1
+     */
+    public int find(CharSequence instId, int start, int end) {
+        return table.find(instId, start, end - start, hash(instId, start, end - start));
+    }
+
+    /**
+     * 获取句柄对应的 instId
+     * @param handle 句柄
+     * @return instId
+     */
+    public String name(int handle) {
+        return table.names[handle];
+    }
+
+    /**
+     * 已注册的交易对数量
+     */
+    public int size() {
+        return table.size;
+    }
+
+    private synchronized int register(byte[] key, int hash) {
+        Table current = table;
+        int existing = current.find(key, hash);
+        if (existing >= 0) {
+            return existing;
+        }
+        Table next = current.size + 1 > current.slots.length >> 1
+            ? current.resize(current.slots.length << 1)
+            : current.copy();
+        int handle = next.size++;
+        next.keys[handle] = key;
+        next.names[handle] = new String(key, StandardCharsets.US_ASCII);
+        next.insert(hash, handle);
+        table = next;
+        return handle;
+    }
+
+    static int hash(ByteBuf buf, int index, int length) {
+        int h = 0x811c9dc5;
+        for (int i = index, end = index + length; i < end; i++) {
+            h = (h ^ buf.getByte(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h = (h ^ b) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    static int hash(CharSequence s, int start, int length) {
+        int h = 0x811c9dc5;
+        for (int i = start, end = start + length; i < end; i++) {
+            h = (h ^ (byte) s.charAt(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 不可变发布的开放寻址表，slots 中保存 handle + 1，0 表示空位
+     */
+    private static final class Table {
+        private final int[] slots;
+        private final byte[][] keys;
+        private final String[] names;
+        private int size;
+
+        Table(int capacity, int size) {
+            this.slots = new int[capacity];
+            this.keys = new byte[capacity >> 1][];
+            this.names = new String[capacity >> 1];
+            this.size = size;
+        }
+
+        int find(ByteBuf buf, int index, int length, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return -1;
+                }
+                byte[] key = keys[slot - 1];
+                if (key.length == length && equals(key, buf, index)) {
+                    return slot - 1;
+                }
+            }
+        }
+
+        int find(CharSequence s, int start, int length, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return -1;
+                }
+                byte[] key = keys[slot - 1];
+                if (key.length == length && equals(key, s, start)) {
+                    return slot - 1;
+                }
+            }
+        }
+
+        int find(byte[] k, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return -1;
+                }
+                if (Arrays.equals(keys[slot - 1], k)) {
+                    return slot - 1;
+                }
+            }
+        }
+
+        void insert(int hash, int handle) {
+            int mask = slots.length - 1;
+            int i = hash & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = handle + 1;
+        }
+
+        Table copy() {
+            Table t = new Table(slots.length, size);
+            System.arraycopy(slots, 0, t.slots, 0, slots.length);
+            System.arraycopy(keys, 0, t.keys, 0, size);
+            System.arraycopy(names, 0, t.names, 0, size);
+            return t;
+        }
+
+        Table resize(int capacity) {
+            Table t = new Table(capacity, size);
+            System.arraycopy(keys, 0, t.keys, 0, size);
+            System.arraycopy(names, 0, t.names, 0, size);
+            for (int h = 0; h < size; h++) {
+                t.insert(hash(keys[h]), h);
+            }
+            return t;
+        }
+
+        private static boolean equals(byte[] key, ByteBuf buf, int index) {
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buf.getByte(index + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean equals(byte[] key, CharSequence s, int start) {
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != (byte) s.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.trade.socket.netty.codec;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的行情事件
+ * <p>
+ * 价格、数量均按 {@link #SCALE} 位小数放大为 long 保存，交易对用 {@link InstrumentRegistry} 句柄表示。
+ * 解码器在每次回调前重置并复用同一个实例，监听器如需跨线程保留数据必须自行拷贝。
+ */
+@Getter
+public class MarketDataEvent {
+    /**
+     * 价格/数量的小数位数
+     */
+    public static final int SCALE = 8;
+    /**
+     * 10^SCALE
+     */
+    public static final long SCALE_FACTOR = 100_000_000L;
+
+    private static final int INITIAL_LEVELS = 32;
+
+    public enum Type {
+        TICKER,
+        TRADE,
+        BOOK
+    }
+
+    Type type;
+    int instrument;
+    // tickers: last / lastSz; trades: px / sz
+    long price;
+    long size;
+    // tickers 最优买卖
+    long bidPrice;
+    long bidSize;
+    long askPrice;
+    long askSize;
+    // trades: 1 买 / -1 卖
+    int side;
+    long tradeId;
+    long exchangeTs;
+    long receiveNanos;
+
+    // books
+    boolean snapshot;
+    long seqId;
+    long prevSeqId;
+    int checksum;
+    int bidCount;
+    int askCount;
+    long[] bidPrices = new long[INITIAL_LEVELS];
+    long[] bidSizes = new long[INITIAL_LEVELS];
+    long[] askPrices = new long[INITIAL_LEVELS];
+    long[] askSizes = new long[INITIAL_LEVELS];
+    // 原始文本中的小数位数，-1 表示没有小数点，用于还原字符串计算校验和
+    byte[] bidPriceDigits = new byte[INITIAL_LEVELS];
+    byte[] bidSizeDigits = new byte[INITIAL_LEVELS];
+    byte[] askPriceDigits = new byte[INITIAL_LEVELS];
+    byte[] askSizeDigits = new byte[INITIAL_LEVELS];
+
+    void reset(Type type, int instrument, long receiveNanos) {
+        this.type = type;
+        this.instrument = instrument;
+        this.receiveNanos = receiveNanos;
+        price = 0;
+        size = 0;
+        bidPrice = 0;
+        bidSize = 0;
+        askPrice = 0;
+        askSize = 0;
+        side = 0;
+        tradeId = 0;
+        exchangeTs = 0;
+        snapshot = false;
+        seqId = 0;
+        prevSeqId = 0;
+        checksum = 0;
+        bidCount = 0;
+        askCount = 0;
+    }
+
+    void addBid(long price, long size) {
+        addBid(price, size, -1, -1);
+    }
+
+    void addBid(long price, long size, int priceDigits, int sizeDigits) {
+        if (bidCount == bidPrices.length) {
+            bidPrices = Arrays.copyOf(bidPrices, bidCount << 1);
+            bidSizes = Arrays.copyOf(bidSizes, bidCount << 1);
+            bidPriceDigits = Arrays.copyOf(bidPriceDigits, bidCount << 1);
+            bidSizeDigits = Arrays.copyOf(bidSizeDigits, bidCount << 1);
+        }
+        bidPrices[bidCount] = price;
+        bidPriceDigits[bidCount] = (byte) priceDigits;
+        bidSizeDigits[bidCount] = (byte) sizeDigits;
+        bidSizes[bidCount++] = size;
+    }
+
+    void addAsk(long price, long size) {
+        addAsk(price, size, -1, -1);
+    }
+
+    void addAsk(long price, long size, int priceDigits, int sizeDigits) {
+        if (askCount == askPrices.length) {
+            askPrices = Arrays.copyOf(askPrices, askCount << 1);
+            askSizes = Arrays.copyOf(askSizes, askCount << 1);
+            askPriceDigits = Arrays.copyOf(askPriceDigits, askCount << 1);
+            askSizeDigits = Arrays.copyOf(askSizeDigits, askCount << 1);
+        }
+        askPrices[askCount] = price;
+        askPriceDigits[askCount] = (byte) priceDigits;
+        askSizeDigits[askCount] = (byte) sizeDigits;
+        askSizes[askCount++] = size;
+    }
+
+    public long bidPrice(int level) {
+        return bidPrices[level];
+    }
+
+    public long bidSize(int level) {
+        return bidSizes[level];
+    }
+
+    public long askPrice(int level) {
+        return askPrices[level];
+    }
+
+    public long askSize(int level) {
+        return askSizes[level];
+    }
+
+    public int bidPriceDigits(int level) {
+        return bidPriceDigits[level];
+    }
+
+    public int bidSizeDigits(int level) {
+        return bidSizeDigits[level];
+    }
+
+    public int askPriceDigits(int level) {
+        return askPriceDigits[level];
+    }
+
+    public int askSizeDigits(int level) {
+        return askSizeDigits[level];
+    }
+
+    @Override
+    public String toString() {
+        return "MarketDataEvent{type=" + type + ", instrument=" + instrument + ", price=" + price
+            + ", size=" + size + ", bid=" + bidPrice + ", ask=" + askPrice + ", seqId=" + seqId
+            + ", bids=" + bidCount + ", asks=" + askCount + ", ts=" + exchangeTs + "}";
+    }
+}
@@ -0,0 +1,12 @@
+package com.trade.socket.netty.codec;
+
+/**
+ * 行情事件监听器
+ */
+public interface MarketDataListener {
+    /**
+     * 处理解码后的行情事件
+     * @param event 复用的事件对象，仅在回调期间有效
+     */
+    void onMarketData(MarketDataEvent event);
+}
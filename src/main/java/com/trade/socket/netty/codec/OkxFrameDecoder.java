@@ -0,0 +1,510 @@
+package com.trade.socket.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * OKX推送帧零拷贝解码器
+ * <p>
+ * 直接扫描 {@link ByteBuf} 中的 tickers / trades / books 推送，把字段写入复用的 {@link MarketDataEvent}，
+ * 不生成中间 String 和 JSONObject。非行情帧（event、pong、未支持的频道）返回 false，由调用方走文本分发。
+ * 要求 arg 出现在 data 之前（OKX推送固定如此），增量深度频道还要求 action 出现在 data 之前。
+ * data 中的元素先解码到复用的事件数组，整帧解析成功后才逐条回调；格式错误、数值溢出或小数位数超过
+ * {@link MarketDataEvent#SCALE} 且不全为0的帧不回调任何事件，返回 false 交给文本分发按原始精度处理。
+ * <p>
+ * 非线程安全，每个连接持有一个实例，只在该连接的事件循环线程上使用。
+ */
+@Slf4j
+public class OkxFrameDecoder {
+    private static final byte[] ARG = ascii("arg");
+    private static final byte[] DATA = ascii("data");
+    private static final byte[] ACTION = ascii("action");
+    private static final byte[] EVENT = ascii("event");
+    private static final byte[] CHANNEL = ascii("channel");
+    private static final byte[] INST_ID = ascii("instId");
+    private static final byte[] SNAPSHOT = ascii("snapshot");
+
+    private static final byte[] TICKERS = ascii("tickers");
+    private static final byte[] TRADES = ascii("trades");
+    private static final byte[] TRADES_ALL = ascii("trades-all");
+    private static final byte[] BOOKS = ascii("books");
+    private static final byte[] BOOKS_L2_TBT = ascii("books-l2-tbt");
+    private static final byte[] BOOKS50_L2_TBT = ascii("books50-l2-tbt");
+    private static final byte[] BOOKS5 = ascii("books5");
+    private static final byte[] BBO_TBT = ascii("bbo-tbt");
+
+    private static final byte[] LAST = ascii("last");
+    private static final byte[] LAST_SZ = ascii("lastSz");
+    private static final byte[] BID_PX = ascii("bidPx");
+    private static final byte[] BID_SZ = ascii("bidSz");
+    private static final byte[] ASK_PX = ascii("askPx");
+    private static final byte[] ASK_SZ = ascii("askSz");
+    private static final byte[] TS = ascii("ts");
+    private static final byte[] PX = ascii("px");
+    private static final byte[] SZ = ascii("sz");
+    private static final byte[] SIDE = ascii("side");
+    private static final byte[] TRADE_ID = ascii("tradeId");
+    private static final byte[] BIDS = ascii("bids");
+    private static final byte[] ASKS = ascii("asks");
+    private static final byte[] CHECKSUM = ascii("checksum");
+    private static final byte[] SEQ_ID = ascii("seqId");
+    private static final byte[] PREV_SEQ_ID = ascii("prevSeqId");
+
+    private static final MalformedFrameException MALFORMED = new MalformedFrameException();
+
+    private final InstrumentRegistry registry;
+    // 本帧解码出的事件，整帧成功后回调，数组按最大元素数增长后复用
+    private MarketDataEvent[] events = {new MarketDataEvent()};
+    private int eventCount;
+    private MarketDataEvent event;
+
+    private ByteBuf buf;
+    private int pos;
+    private int end;
+    private int tokenStart;
+    private int tokenEnd;
+    // 最近一次 readDecimal 的原始小数位数，-1 表示没有小数点
+    private int fractionDigits;
+
+    // 当前帧 arg / action 解析结果
+    private MarketDataEvent.Type type;
+    private int instrument;
+    private boolean implicitSnapshot;
+    private int action;
+
+    public OkxFrameDecoder() {
+        this(InstrumentRegistry.DEFAULT);
+    }
+
+    public OkxFrameDecoder(InstrumentRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 解码一帧并逐条回调 data 中的元素
+     * @param content 帧内容，读写下标不会被修改
+     * @param receiveNanos 接收时间 {@link System#nanoTime()}
+     * @param listener 行情监听器
+     * @return 是否按行情帧处理；false 表示调用方应回退到文本分发
+     */
+    public boolean decode(ByteBuf content, long receiveNanos, MarketDataListener listener) {
+        buf = content;
+        pos = content.readerIndex();
+        end = content.writerIndex();
+        type = null;
+        instrument = -1;
+        implicitSnapshot = false;
+        action = -1;
+        eventCount = 0;
+        boolean handled = false;
+        try {
+            expect('{');
+            if (peek() == '}') {
+                return false;
+            }
+            do {
+                readString();
+                int keyStart = tokenStart;
+                int keyLength = tokenEnd - tokenStart;
+                expect(':');
+                if (matches(keyStart, keyLength, ARG)) {
+                    parseArg();
+                } else if (matches(keyStart, keyLength, DATA)) {
+                    if (type == null || instrument < 0
+                        || (type == MarketDataEvent.Type.BOOK && !implicitSnapshot && action < 0)) {
+                        return false;
+                    }
+                    handled = true;
+                    parseData(receiveNanos);
+                } else if (matches(keyStart, keyLength, ACTION)) {
+                    readString();
+                    action = matches(tokenStart, tokenEnd - tokenStart, SNAPSHOT) ? 1 : 0;
+                } else if (matches(keyStart, keyLength, EVENT)) {
+                    return false;
+                } else {
+                    skipValue();
+                }
+            } while (nextMember('}'));
+        } catch (MalformedFrameException | IndexOutOfBoundsException e) {
+            if (handled) {
+                log.warn("Malformed market data frame at offset {}, falling back to text dispatch",
+                    pos - content.readerIndex());
+            }
+            return false;
+        } finally {
+            buf = null;
+        }
+        for (int i = 0; i < eventCount; i++) {
+            listener.onMarketData(events[i]);
+        }
+        return handled;
+    }
+
+    private void parseArg() {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        do {
+            readString();
+            int keyStart = tokenStart;
+            int keyLength = tokenEnd - tokenStart;
+            expect(':');
+            if (matches(keyStart, keyLength, CHANNEL)) {
+                readString();
+                resolveChannel(tokenStart, tokenEnd - tokenStart);
+            } else if (matches(keyStart, keyLength, INST_ID)) {
+                readString();
+                instrument = registry.handle(buf, tokenStart, tokenEnd - tokenStart);
+            } else {
+                skipValue();
+            }
+        } while (nextMember('}'));
+    }
+
+    private void resolveChannel(int start, int length) {
+        if (matches(start, length, TICKERS)) {
+            type = MarketDataEvent.Type.TICKER;
+        } else if (matches(start, length, TRADES) || matches(start, length, TRADES_ALL)) {
+            type = MarketDataEvent.Type.TRADE;
+        } else if (matches(start, length, BOOKS) || matches(start, length, BOOKS_L2_TBT)
+            || matches(start, length, BOOKS50_L2_TBT)) {
+            type = MarketDataEvent.Type.BOOK;
+        } else if (matches(start, length, BOOKS5) || matches(start, length, BBO_TBT)) {
+            // 固定档位频道每次推送都是全量
+            type = MarketDataEvent.Type.BOOK;
+            implicitSnapshot = true;
+        }
+    }
+
+    private void parseData(long receiveNanos) {
+        expect('[');
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        do {
+            if (eventCount == events.length) {
+                events = Arrays.copyOf(events, eventCount << 1);
+                for (int i = eventCount; i < events.length; i++) {
+                    events[i] = new MarketDataEvent();
+                }
+            }
+            event = events[eventCount++];
+            event.reset(type, instrument, receiveNanos);
+            event.snapshot = implicitSnapshot || action == 1;
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    readString();
+                    int keyStart = tokenStart;
+                    int keyLength = tokenEnd - tokenStart;
+                    expect(':');
+                    switch (type) {
+                        case TICKER:
+                            tickerField(keyStart, keyLength);
+                            break;
+                        case TRADE:
+                            tradeField(keyStart, keyLength);
+                            break;
+                        default:
+                            bookField(keyStart, keyLength);
+                            break;
+                    }
+                } while (nextMember('}'));
+            }
+        } while (nextMember(']'));
+    }
+
+    private void tickerField(int keyStart, int keyLength) {
+        if (matches(keyStart, keyLength, LAST)) {
+            event.price = readDecimal();
+        } else if (matches(keyStart, keyLength, LAST_SZ)) {
+            event.size = readDecimal();
+        } else if (matches(keyStart, keyLength, BID_PX)) {
+            event.bidPrice = readDecimal();
+        } else if (matches(keyStart, keyLength, BID_SZ)) {
+            event.bidSize = readDecimal();
+        } else if (matches(keyStart, keyLength, ASK_PX)) {
+            event.askPrice = readDecimal();
+        } else if (matches(keyStart, keyLength, ASK_SZ)) {
+            event.askSize = readDecimal();
+        } else if (matches(keyStart, keyLength, TS)) {
+            event.exchangeTs = readLong();
+        } else {
+            skipValue();
+        }
+    }
+
+    private void tradeField(int keyStart, int keyLength) {
+        if (matches(keyStart, keyLength, PX)) {
+            event.price = readDecimal();
+        } else if (matches(keyStart, keyLength, SZ)) {
+            event.size = readDecimal();
+        } else if (matches(keyStart, keyLength, SIDE)) {
+            readString();
+            event.side = tokenEnd > tokenStart && buf.getByte(tokenStart) == 'b' ? 1 : -1;
+        } else if (matches(keyStart, keyLength, TRADE_ID)) {
+            event.tradeId = readLong();
+        } else if (matches(keyStart, keyLength, TS)) {
+            event.exchangeTs = readLong();
+        } else {
+            skipValue();
+        }
+    }
+
+    private void bookField(int keyStart, int keyLength) {
+        if (matches(keyStart, keyLength, BIDS)) {
+            readLevels(true);
+        } else if (matches(keyStart, keyLength, ASKS)) {
+            readLevels(false);
+        } else if (matches(keyStart, keyLength, TS)) {
+            event.exchangeTs = readLong();
+        } else if (matches(keyStart, keyLength, CHECKSUM)) {
+            event.checksum = (int) readLong();
+        } else if (matches(keyStart, keyLength, SEQ_ID)) {
+            event.seqId = readLong();
+        } else if (matches(keyStart, keyLength, PREV_SEQ_ID)) {
+            event.prevSeqId = readLong();
+        } else {
+            skipValue();
+        }
+    }
+
+    /**
+     * 深度档位: [["8476.98","415","0","13"], ...]，只取价格和数量
+     */
+    private void readLevels(boolean bids) {
+        expect('[');
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        do {
+            expect('[');
+            long price = readDecimal();
+            int priceDigits = fractionDigits;
+            expect(',');
+            long size = readDecimal();
+            int sizeDigits = fractionDigits;
+            while (nextMember(']')) {
+                skipValue();
+            }
+            if (bids) {
+                event.addBid(price, size, priceDigits, sizeDigits);
+            } else {
+                event.addAsk(price, size, priceDigits, sizeDigits);
+            }
+        } while (nextMember(']'));
+    }
+
+    /**
+     * 读取十进制数（带引号或不带引号），按 {@link MarketDataEvent#SCALE} 放大为 long
+     * 原始小数位数记录在 {@link #fractionDigits}；超出精度的位数只能为0，超出精度或放大后溢出时按格式错误处理
+     */
+    private long readDecimal() {
+        skipWhitespace();
+        boolean quoted = current() == '"';
+        if (quoted) {
+            pos++;
+        }
+        boolean negative = false;
+        if (current() == '-') {
+            negative = true;
+            pos++;
+        }
+        long value = 0;
+        int fraction = -1;
+        for (; pos < end; pos++) {
+            byte b = buf.getByte(pos);
+            if (b >= '0' && b <= '9') {
+                if (fraction >= MarketDataEvent.SCALE) {
+                    if (b != '0') {
+                        throw MALFORMED;
+                    }
+                } else {
+                    value = append(value, b - '0');
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        fractionDigits = fraction;
+        for (int i = Math.max(fraction, 0); i < MarketDataEvent.SCALE; i++) {
+            value = append(value, 0);
+        }
+        if (quoted) {
+            expectByte('"');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 读取整数（带引号或不带引号），空字符串返回 0
+     */
+    private long readLong() {
+        skipWhitespace();
+        boolean quoted = current() == '"';
+        if (quoted) {
+            pos++;
+        }
+        boolean negative = false;
+        if (current() == '-') {
+            negative = true;
+            pos++;
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            byte b = buf.getByte(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = append(value, b - '0');
+        }
+        if (quoted) {
+            expectByte('"');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * value * 10 + digit，溢出时按格式错误处理
+     */
+    private static long append(long value, int digit) {
+        if (value > (Long.MAX_VALUE - digit) / 10) {
+            throw MALFORMED;
+        }
+        return value * 10 + digit;
+    }
+
+    /**
+     * 读取字符串，内容范围记录在 tokenStart / tokenEnd
+     */
+    private void readString() {
+        expect('"');
+        tokenStart = pos;
+        for (; pos < end; pos++) {
+            byte b = buf.getByte(pos);
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                tokenEnd = pos++;
+                return;
+            }
+        }
+        throw MALFORMED;
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        byte b = current();
+        if (b == '"') {
+            readString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            for (; pos < end; pos++) {
+                b = buf.getByte(pos);
+                if (b == '"') {
+                    readString();
+                    pos--;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    pos++;
+                    return;
+                }
+            }
+            throw MALFORMED;
+        } else {
+            while (pos < end) {
+                b = buf.getByte(pos);
+                if (b == ',' || b == '}' || b == ']' || b <= ' ') {
+                    return;
+                }
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * 成员/元素之间的分隔：遇到 ',' 返回 true，遇到结束符返回 false
+     */
+    private boolean nextMember(char close) {
+        skipWhitespace();
+        byte b = current();
+        pos++;
+        if (b == ',') {
+            return true;
+        }
+        if (b == close) {
+            return false;
+        }
+        throw MALFORMED;
+    }
+
+    private byte peek() {
+        skipWhitespace();
+        return current();
+    }
+
+    private byte current() {
+        if (pos >= end) {
+            throw MALFORMED;
+        }
+        return buf.getByte(pos);
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        expectByte(c);
+    }
+
+    private void expectByte(char c) {
+        if (pos >= end || buf.getByte(pos) != c) {
+            throw MALFORMED;
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && buf.getByte(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private boolean matches(int start, int length, byte[] key) {
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf.getByte(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 无堆栈的格式错误信号，只在解码器内部流转
+     */
+    private static final class MalformedFrameException extends RuntimeException {
+        MalformedFrameException() {
+            super("malformed frame", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.trade.socket.netty.handler;
+
+import com.trade.socket.netty.handler.ring.RingBufferStage;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import com.trade.socket.netty.util.OkxMessages;
+import com.trade.socket.netty.util.TopicIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多路行情仲裁
+ * <p>
+ * 同一行情源建立多条相同订阅的连接，每条推送取最先到达的一份交给下游 {@link MessageDispatcher}，其余副本丢弃。
+ * 按 (channel, instId) 维护顺序号高水位（books 用 seqId，trades 用 tradeId，其它频道用 ts），
+ * 顺序号小于高水位的推送视为过期，等于高水位的视为重复。ts 只到毫秒，同一毫秒内可能有多条不同的推送，
+ * 这类频道在顺序号相等时再按消息内容的散列区分，内容不同的照常放行。
+ * <p>
+ * 多个IO线程可并发提交。过期推送只读 volatile 高水位，不加锁；其余推送按 (channel, instId) 加锁，
+ * 高水位的推进和交给下游在同一临界区内完成，同一 (channel, instId) 的推送按顺序号依次到达下游，
+ * 不会因两个线程先后推进高水位、后推进的先分发而乱序。
+ * <p>
+ * 统计每路的领先次数、重复次数，以及落后副本相对首份到达的延迟。
+ * 下游会被多个IO线程并发调用，处理器非线程安全时应通过 {@link #enableRingBuffer(int, WaitStrategy)}
+ * 开启多生产者环形缓冲区，由单个消费线程执行处理器链；此时临界区内只是写入一个槽位，
+ * 不开启时处理器链在锁内执行，同一 (channel, instId) 的另一路推送要等它返回。
+ */
+@Slf4j
+public class FeedArbitrator {
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private final MessageDispatcher<String> downstream;
+    private final int feeds;
+    private final int capacity;
+    private final TopicIndex topics = new TopicIndex();
+    private final Topic[] states;
+    private final AtomicLongArray wins;
+    private final AtomicLongArray duplicates;
+    private final AtomicLongArray stale;
+    private final AtomicLongArray lagNanos;
+    private final AtomicLongArray maxLagNanos;
+    private final AtomicLong passThrough = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+
+    public FeedArbitrator(MessageDispatcher<String> downstream, int feeds) {
+        this(downstream, feeds, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param downstream 下游分发器
+     * @param feeds 行情路数
+     * @param capacity 最多跟踪的 (channel, instId) 数量，超出部分不去重直接放行
+     */
+    public FeedArbitrator(MessageDispatcher<String> downstream, int feeds, int capacity) {
+        this.downstream = downstream;
+        this.feeds = feeds;
+        this.capacity = capacity;
+        this.states = new Topic[capacity];
+        for (int i = 0; i < capacity; i++) {
+            states[i] = new Topic();
+        }
+        this.wins = new AtomicLongArray(feeds);
+        this.duplicates = new AtomicLongArray(feeds);
+        this.stale = new AtomicLongArray(feeds);
+        this.lagNanos = new AtomicLongArray(feeds);
+        this.maxLagNanos = new AtomicLongArray(feeds);
+    }
+
+    /**
+     * 下游改为多生产者环形缓冲区，处理器链在单个消费线程上执行
+     * @param bufferSize 容量，必须为2的幂
+     * @param waitStrategy 等待策略
+     * @return 分发阶段
+     */
+    public RingBufferStage<String> enableRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        return downstream.enableRingBuffer(new RingBufferStage<>("arbitrator", bufferSize, waitStrategy, true));
+    }
+
+    /**
+     * 第 feed 路连接使用的处理器，可注册为该连接的全局处理器或频道订阅处理器
+     * @param feed 路序号
+     * @return 处理器
+     */
+    public MessageHandler<String> feedHandler(int feed) {
+        if (feed < 0 || feed >= feeds) {
+            throw new IllegalArgumentException("Feed index out of range: " + feed);
+        }
+        return (message, ctx) -> {
+            offer(feed, message, System.nanoTime());
+            return true;
+        };
+    }
+
+    /**
+     * 提交一条推送
+     * @param feed 路序号
+     * @param message 原始消息
+     * @param receiveNanos 接收时间
+     * @return 是否为首份并已交给下游
+     */
+    public boolean offer(int feed, String message, long receiveNanos) {
+        long arg = OkxMessages.isEvent(message) ? -1 : OkxMessages.locateArg(message);
+        long sequence = arg < 0 ? -1 : OkxMessages.sequence(message, OkxMessages.channelEnd(arg));
+        if (sequence < 0) {
+            // 事件、心跳等无顺序号的消息不去重
+            passThrough.incrementAndGet();
+            downstream.dispatch(message);
+            return true;
+        }
+        int topic = topics.register(message, arg);
+        if (topic >= capacity) {
+            if (overflow.getAndIncrement() == 0) {
+                log.warn("Feed arbitrator capacity {} exceeded, topic {} is not de-duplicated", capacity, topic);
+            }
+            downstream.dispatch(message);
+            return true;
+        }
+        Topic state = states[topic];
+        if (sequence < state.highWaterMark) {
+            stale.incrementAndGet(feed);
+            return false;
+        }
+        synchronized (state) {
+            long current = state.highWaterMark;
+            if (sequence < current) {
+                stale.incrementAndGet(feed);
+                return false;
+            }
+            if (state.byTs == null) {
+                state.byTs = OkxMessages.isTimestampSequence(message, OkxMessages.channelEnd(arg));
+            }
+            int hash = state.byTs ? message.hashCode() : 0;
+            if (sequence == current) {
+                long first = state.arrival(hash);
+                if (first >= 0) {
+                    recordLag(feed, first == 0 ? 0 : receiveNanos - first);
+                    return false;
+                }
+                // 同一毫秒内的另一条推送
+                state.add(hash, receiveNanos);
+            } else {
+                state.reset(hash, receiveNanos);
+                state.highWaterMark = sequence;
+            }
+            wins.incrementAndGet(feed);
+            downstream.dispatch(message);
+            return true;
+        }
+    }
+
+    private void recordLag(int feed, long lag) {
+        duplicates.incrementAndGet(feed);
+        if (lag <= 0) {
+            return;
+        }
+        lagNanos.addAndGet(feed, lag);
+        long max = maxLagNanos.get(feed);
+        while (lag > max && !maxLagNanos.compareAndSet(feed, max, lag)) {
+            max = maxLagNanos.get(feed);
+        }
+    }
+
+    /**
+     * 该路最先送达的推送数
+     */
+    public long getWins(int feed) {
+        return wins.get(feed);
+    }
+
+    /**
+     * 该路晚到的重复推送数
+     */
+    public long getDuplicates(int feed) {
+        return duplicates.get(feed);
+    }
+
+    /**
+     * 该路到达时已有更新顺序号的过期推送数
+     */
+    public long getStale(int feed) {
+        return stale.get(feed);
+    }
+
+    /**
+     * 该路在去重推送中领先的比例
+     */
+    public double getWinRate(int feed) {
+        long total = 0;
+        for (int i = 0; i < feeds; i++) {
+            total += wins.get(i);
+        }
+        return total == 0 ? 0 : (double) wins.get(feed) / total;
+    }
+
+    /**
+     * 该路晚到副本相对首份的平均延迟（纳秒）
+     */
+    public long getAverageLagNanos(int feed) {
+        long count = duplicates.get(feed);
+        return count == 0 ? 0 : lagNanos.get(feed) / count;
+    }
+
+    public long getMaxLagNanos(int feed) {
+        return maxLagNanos.get(feed);
+    }
+
+    public long getPassThrough() {
+        return passThrough.get();
+    }
+
+    public int getFeeds() {
+        return feeds;
+    }
+
+    /**
+     * 一个 (channel, instId) 的去重状态，除高水位外只在持有该对象的锁时访问
+     */
+    private static final class Topic {
+        private volatile long highWaterMark;
+        // 顺序号是否取自 ts，第一条推送时确定
+        private Boolean byTs;
+        // 高水位对应的各条不同推送的内容散列和首份到达时间，非 ts 频道只有一条、散列为0
+        private int[] hashes = new int[1];
+        private long[] arrivals = new long[1];
+        private int count;
+
+        /**
+         * @return 高水位上已有该推送时返回首份到达时间，否则返回 -1
+         */
+        private long arrival(int hash) {
+            for (int i = 0; i < count; i++) {
+                if (hashes[i] == hash) {
+                    return arrivals[i];
+                }
+            }
+            return -1;
+        }
+
+        private void add(int hash, long receiveNanos) {
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                arrivals = Arrays.copyOf(arrivals, count * 2);
+            }
+            hashes[count] = hash;
+            arrivals[count++] = receiveNanos;
+        }
+
+        private void reset(int hash, long receiveNanos) {
+            count = 0;
+            add(hash, receiveNanos);
+        }
+    }
+
+    /**
+     * 各路统计，用于日志输出
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < feeds; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("feed").append(i)
+                .append("[win=").append(String.format("%.1f%%", getWinRate(i) * 100))
+                .append(" dup=").append(getDuplicates(i))
+                .append(" stale=").append(getStale(i))
+                .append(" avgLag=").append(getAverageLagNanos(i) / 1000).append("us")
+                .append(" maxLag=").append(getMaxLagNanos(i) / 1000).append("us]");
+        }
+        return sb.toString();
+    }
+}
@@ -1,32 +1,125 @@
 package com.trade.socket.netty.handler;
 
+import com.trade.cache.ConflatingCache;
 import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.impl.ConflatingHandler;
+import com.trade.socket.netty.handler.ring.RingBufferStage;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import com.trade.socket.netty.latency.LatencyProbe;
+import com.trade.socket.netty.util.TopicIndex;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 消息分发器
+ * 全局处理器链处理每一条消息；按主题订阅的处理器只处理对应 (channel, instId) 的消息，
+ * 通过 {@link RouteTable} 按路由编号直接定位，与处理器总数无关。
+ * 默认在调用线程（Netty I/O线程）上同步执行；开启环形缓冲区后，
+ * I/O线程只负责发布，处理器链在消费线程上执行，慢处理器不再阻塞读socket。
+ * 开启合并后，快照类频道的按主题订阅处理器改在合并线程上只处理每个主题的最新一条，全局处理器链不受影响
  * @param <T> 消息类型
  */
 @Slf4j
 public class MessageDispatcher<T> {
-    private final List<MessageHandler<T>> handlers;
-    private NettyClient client;
+    private volatile MessageHandler<T>[] handlers;
+    private final RouteTable<T> routeTable = new RouteTable<>();
+    private volatile NettyClient client;
+    // 上下文只持有client，不可变，所有消息共用
+    private volatile MessageHandler.HandlerContext context;
+    private volatile RingBufferStage<T> stage;
+    private volatile ConflatingHandler conflation;
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public MessageDispatcher(List<MessageHandler<T>> handlers, NettyClient client) {
-        this.handlers = handlers;
-        this.client = client;
+        this.handlers = handlers.toArray(new MessageHandler[0]);
+        setClient(client);
     }
 
     public MessageDispatcher(NettyClient client) {
-        this.handlers = new ArrayList<>();
-        this.client = client;
+        this(List.of(), client);
     }
 
     public void setClient(NettyClient client) {
         this.client = client;
+        this.context = client == null ? null : new MessageHandler.HandlerContext(client);
+    }
+
+    public NettyClient getClient() {
+        return client;
+    }
+
+    /**
+     * 开启环形缓冲区异步分发
+     * @param bufferSize 容量，必须为2的幂
+     * @param waitStrategy 等待策略
+     * @return 分发阶段，可用于查看队列深度
+     */
+    public RingBufferStage<T> enableRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        return enableRingBuffer(new RingBufferStage<>("dispatcher", bufferSize, waitStrategy));
+    }
+
+    /**
+     * 使用自定义的分发阶段（可预先添加其它消费者），追加处理器链消费者后启动
+     * @param stage 尚未启动的分发阶段
+     * @return 分发阶段
+     */
+    public RingBufferStage<T> enableRingBuffer(RingBufferStage<T> stage) {
+        stage.addConsumer("handlers", this::dispatchNow);
+        stage.start();
+        this.stage = stage;
+        return stage;
+    }
+
+    /**
+     * 关闭环形缓冲区，恢复同步分发
+     */
+    public void disableRingBuffer() {
+        RingBufferStage<T> current = stage;
+        stage = null;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * 开启快照类频道的合并，只对 String 消息生效
+     * @param channels 可合并的频道，如 {@link ConflatingHandler#SNAPSHOT_CHANNELS}
+     * @param capacity 最多合并的主题数，超出的主题不合并
+     * @return 合并处理器，可用于查看合并计数
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized ConflatingHandler enableConflation(Set<String> channels, int capacity) {
+        disableConflation();
+        ConflatingHandler handler = new ConflatingHandler(new ConflatingCache<>(new TopicIndex(), capacity), channels,
+            (message, ctx) -> {
+                route((T) message, ctx);
+                return true;
+            });
+        handler.start("dispatcher");
+        conflation = handler;
+        return handler;
+    }
+
+    /**
+     * 关闭合并，恢复同步分发
+     */
+    public synchronized void disableConflation() {
+        ConflatingHandler current = conflation;
+        conflation = null;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * 队列深度，未开启环形缓冲区时为0
+     */
+    public long getQueueDepth() {
+        RingBufferStage<T> current = stage;
+        return current == null ? 0 : current.getQueueDepth();
     }
 
     /**
@@ -34,16 +127,55 @@ public class MessageDispatcher<T> {
      * @param message 要处理的消息
      */
     public void dispatch(T message) {
-        if (client == null) {
+        RingBufferStage<T> current = stage;
+        if (current != null) {
+            current.publish(message);
+            return;
+        }
+        dispatchNow(message);
+    }
+
+    /**
+     * 在当前线程上同步执行处理器链
+     * @param message 要处理的消息
+     */
+    public void dispatchNow(T message) {
+        MessageHandler.HandlerContext ctx = context;
+        if (ctx == null) {
             log.error("Client is not set in MessageDispatcher");
             return;
         }
-        
-        MessageHandler.HandlerContext ctx = new MessageHandler.HandlerContext(client);
+        LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+
         for (MessageHandler<T> handler : handlers) {
             try {
                 if (!handler.handle(message, ctx)) {
-                    break; // 如果处理器返回false，停止后续处理
+                    return; // 如果处理器返回false，停止后续处理
+                }
+            } catch (Exception e) {
+                log.error("Error handling message", e);
+            }
+        }
+
+        if (routeTable.isEmpty() || !(message instanceof String)) {
+            return;
+        }
+        ConflatingHandler conflating = conflation;
+        if (conflating != null && !conflating.handle((String) message, ctx)) {
+            return;
+        }
+        route(message, ctx);
+    }
+
+    private void route(T message, MessageHandler.HandlerContext ctx) {
+        MessageHandler<T>[] routed = routeTable.handlers(routeTable.route((String) message));
+        if (routed == null) {
+            return;
+        }
+        for (MessageHandler<T> handler : routed) {
+            try {
+                if (!handler.handle(message, ctx)) {
+                    return;
                 }
             } catch (Exception e) {
                 log.error("Error handling message", e);
@@ -55,15 +187,47 @@ public class MessageDispatcher<T> {
      * 添加消息处理器
      * @param handler 要添加的处理器
      */
-    public void addHandler(MessageHandler<T> handler) {
-        handlers.add(handler);
+    public synchronized void addHandler(MessageHandler<T> handler) {
+        MessageHandler<T>[] current = handlers;
+        MessageHandler<T>[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = handler;
+        handlers = next;
     }
 
     /**
      * 移除消息处理器
      * @param handler 要移除的处理器
      */
-    public void removeHandler(MessageHandler<T> handler) {
-        handlers.remove(handler);
+    public synchronized void removeHandler(MessageHandler<T> handler) {
+        MessageHandler<T>[] current = handlers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == handler) {
+                MessageHandler<T>[] next = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                handlers = next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按主题订阅处理器，只接收该 (channel, instId) 的推送
+     * @param channel 频道
+     * @param instId 交易对，可为空
+     * @param handler 处理器
+     */
+    public void subscribe(String channel, String instId, MessageHandler<T> handler) {
+        routeTable.subscribe(channel, instId, handler);
+    }
+
+    /**
+     * 取消主题订阅
+     */
+    public void unsubscribe(String channel, String instId, MessageHandler<T> handler) {
+        routeTable.unsubscribe(channel, instId, handler);
+    }
+
+    public RouteTable<T> getRouteTable() {
+        return routeTable;
     }
 }
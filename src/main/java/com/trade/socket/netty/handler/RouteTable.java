@@ -0,0 +1,131 @@
+package com.trade.socket.netty.handler;
+
+import com.trade.socket.netty.util.OkxMessages;
+import com.trade.socket.netty.util.TopicIndex;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 主题路由表
+ * <p>
+ * 订阅时把 (channel, instId) 预先映射为整数路由编号，处理器按编号存放在数组中。
+ * 分发时从原始消息中定位一次 arg，查到编号后只调用订阅了该主题的处理器，查询和分发都不创建对象。
+ * 读无锁；订阅变更加锁并以写时复制方式发布。
+ *
+ * @param <T> 消息类型
+ */
+public class RouteTable<T> {
+    private static final MessageHandler<?>[] NO_HANDLERS = new MessageHandler<?>[0];
+
+    private final TopicIndex topics = new TopicIndex();
+    private volatile MessageHandler<T>[][] routes = newRoutes(0);
+    private volatile int subscriptionCount;
+
+    /**
+     * 订阅主题
+     * @param channel 频道
+     * @param instId 交易对，可为空
+     * @param handler 处理器
+     * @return 路由编号
+     */
+    public synchronized int subscribe(String channel, String instId, MessageHandler<T> handler) {
+        int route = topics.register(channel, instId);
+        MessageHandler<T>[][] current = routes;
+        MessageHandler<T>[][] next = current.length > route ? current.clone() : Arrays.copyOf(current, route + 1);
+        MessageHandler<T>[] handlers = next[route] == null ? emptyHandlers() : next[route];
+        MessageHandler<T>[] grown = Arrays.copyOf(handlers, handlers.length + 1);
+        grown[handlers.length] = handler;
+        next[route] = grown;
+        routes = next;
+        subscriptionCount++;
+        return route;
+    }
+
+    /**
+     * 取消订阅
+     * @return 是否找到并移除
+     */
+    public synchronized boolean unsubscribe(String channel, String instId, MessageHandler<T> handler) {
+        int route = topics.find(channel, instId);
+        MessageHandler<T>[][] current = routes;
+        if (route < 0 || route >= current.length || current[route] == null) {
+            return false;
+        }
+        MessageHandler<T>[] handlers = current[route];
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] == handler) {
+                MessageHandler<T>[] shrunk = Arrays.copyOf(handlers, handlers.length - 1);
+                System.arraycopy(handlers, i + 1, shrunk, i, handlers.length - i - 1);
+                MessageHandler<T>[][] next = current.clone();
+                next[route] = shrunk.length == 0 ? null : shrunk;
+                routes = next;
+                subscriptionCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从OKX原始消息中解析路由编号
+     * @return 路由编号，事件消息或未订阅的主题返回 -1
+     */
+    public int route(String message) {
+        if (subscriptionCount == 0 || OkxMessages.isEvent(message)) {
+            return -1;
+        }
+        long arg = OkxMessages.locateArg(message);
+        return arg < 0 ? -1 : topics.find(message, arg);
+    }
+
+    /**
+     * 查询主题的路由编号
+     * @return 路由编号，不存在返回 -1
+     */
+    public int route(String channel, String instId) {
+        return topics.find(channel, instId);
+    }
+
+    /**
+     * 路由编号对应的处理器
+     * @return 处理器数组，无订阅时返回 null；调用方不得修改
+     */
+    public MessageHandler<T>[] handlers(int route) {
+        MessageHandler<T>[][] current = routes;
+        return route >= 0 && route < current.length ? current[route] : null;
+    }
+
+    public boolean isEmpty() {
+        return subscriptionCount == 0;
+    }
+
+    /**
+     * 当前有处理器的主题，格式 channel:instId
+     */
+    public Set<String> getTopics() {
+        MessageHandler<T>[][] current = routes;
+        Set<String> result = new LinkedHashSet<>();
+        for (int route = 0; route < current.length; route++) {
+            if (current[route] != null) {
+                result.add(topics.channel(route) + ":" + topics.instId(route));
+            }
+        }
+        return result;
+    }
+
+    public TopicIndex getTopicIndex() {
+        return topics;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MessageHandler<T>[] emptyHandlers() {
+        return (MessageHandler<T>[]) NO_HANDLERS;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MessageHandler<T>[][] newRoutes(int size) {
+        return (MessageHandler<T>[][]) new MessageHandler<?>[size][];
+    }
+}
@@ -0,0 +1,141 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.trade.cache.ConflatingCache;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.util.OkxMessages;
+import com.trade.socket.netty.util.TopicIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 行情合并处理器
+ * <p>
+ * 只合并快照类频道（默认 {@link #SNAPSHOT_CHANNELS}）：每条推送都是完整的最新状态，跳过中间值不丢信息。
+ * 这些频道的消息只定位 arg 中的 channel / instId 写入 {@link ConflatingCache} 后返回 false，
+ * 由合并线程取出每个主题的最新一条交给下游；其它频道（trades、增量深度、订单等）和事件消息原样放行，
+ * 由调用方继续同步处理。
+ * <p>
+ * 合并线程空闲时挂起，主题新进入待消费队列时才唤醒，没有行情时不占CPU。
+ */
+@Slf4j
+public class ConflatingHandler implements MessageHandler<String> {
+    /**
+     * 推送为完整快照、可以合并的频道
+     */
+    public static final Set<String> SNAPSHOT_CHANNELS = Set.of("tickers", MarkPriceHandler.CHANNEL, "books5");
+
+    private final ConflatingCache<String> cache;
+    private final Set<String> channels;
+    private final MessageHandler<String> downstream;
+    private volatile HandlerContext context;
+    private volatile Thread drainer;
+    private volatile boolean running;
+
+    /**
+     * @param cache 合并缓存
+     * @param channels 可合并的频道
+     * @param downstream 在合并线程上接收各主题最新消息的处理器
+     */
+    public ConflatingHandler(ConflatingCache<String> cache, Set<String> channels, MessageHandler<String> downstream) {
+        this.cache = cache;
+        this.channels = channels;
+        this.downstream = downstream;
+    }
+
+    public ConflatingHandler(ConflatingCache<String> cache, MessageHandler<String> downstream) {
+        this(cache, SNAPSHOT_CHANNELS, downstream);
+    }
+
+    /**
+     * 启动合并线程
+     * @param name 线程名后缀
+     */
+    public synchronized void start(String name) {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::run, "conflate-" + name);
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+    }
+
+    /**
+     * 停止合并线程，未取出的消息被丢弃
+     */
+    public synchronized void stop() {
+        running = false;
+        Thread thread = drainer;
+        drainer = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public boolean handle(String message, HandlerContext ctx) {
+        if (!running || OkxMessages.isEvent(message)) {
+            return true;
+        }
+        long arg = OkxMessages.locateArg(message);
+        if (arg < 0 || !isConflated(message, arg)) {
+            return true;
+        }
+        TopicIndex topics = cache.getTopics();
+        int topic = topics.register(message, arg);
+        if (topic >= cache.getCapacity()) {
+            // 超出容量的主题不合并，保证不丢
+            return true;
+        }
+        context = ctx;
+        if (cache.put(topic, message)) {
+            Thread thread = drainer;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在当前线程上取出所有待消费主题的最新消息交给下游
+     * @return 处理的主题数
+     */
+    public int drain() {
+        HandlerContext ctx = context;
+        return cache.drain((topic, message) -> {
+            try {
+                downstream.handle(message, ctx);
+            } catch (Exception e) {
+                log.error("Error handling conflated message", e);
+            }
+        });
+    }
+
+    public ConflatingCache<String> getCache() {
+        return cache;
+    }
+
+    private boolean isConflated(String message, long arg) {
+        int start = OkxMessages.channelStart(arg);
+        int length = OkxMessages.channelEnd(arg) - start;
+        for (String channel : channels) {
+            if (channel.length() == length && message.startsWith(channel, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        while (running) {
+            if (drain() == 0) {
+                // 写入方在主题新入队后 unpark，先于 park 的许可不会丢失
+                LockSupport.park(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.trade.cache.CacheManager;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.util.OkxMessages;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+
+/**
+ * 标记价格处理器
+ * 把 mark-price 频道的推送交给 {@link CacheManager#mark(String, BigDecimal)}，更新所有持有该交易对的策略的未实现盈亏。
+ * 每个交易所连接、每个交易对只需订阅一次，推送频率低，按完整JSON解析。
+ */
+@Slf4j
+public class MarkPriceHandler implements MessageHandler<String> {
+    public static final String CHANNEL = "mark-price";
+
+    private final CacheManager cacheManager;
+
+    public MarkPriceHandler(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public boolean handle(String message, HandlerContext ctx) {
+        if (OkxMessages.isEvent(message)) {
+            return true;
+        }
+        long arg = OkxMessages.locateArg(message);
+        if (arg < 0 || !message.startsWith(CHANNEL, OkxMessages.channelStart(arg))
+            || OkxMessages.channelEnd(arg) - OkxMessages.channelStart(arg) != CHANNEL.length()) {
+            return true;
+        }
+        try {
+            JSONArray data = JSONObject.parseObject(message).getJSONArray("data");
+            if (data == null) {
+                return true;
+            }
+            for (int i = 0; i < data.size(); i++) {
+                JSONObject item = data.getJSONObject(i);
+                String instId = item.getString("instId");
+                BigDecimal markPx = item.getBigDecimal("markPx");
+                if (instId != null && markPx != null) {
+                    cacheManager.mark(instId, markPx);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to parse mark price {}: {}", message, e.getMessage());
+        }
+        return true;
+    }
+}
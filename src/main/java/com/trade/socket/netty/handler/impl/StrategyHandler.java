@@ -0,0 +1,53 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.trade.common.DataMessage;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.util.OkxMessages;
+import com.trade.strategy.AbstractStrategy;
+import com.trade.strategy.StrategyRunner;
+
+import java.util.function.Consumer;
+
+/**
+ * 策略处理器
+ * 把OKX推送包装为 {@link DataMessage} 交给策略的 {@link AbstractStrategy#change(DataMessage)}，
+ * data 为原始消息，由策略自行解析。实盘和回放使用同一个处理器。
+ * 绑定 {@link StrategyRunner} 时消息投递到策略的收件箱，在策略线程上处理，分发线程不等待策略。
+ */
+public class StrategyHandler implements MessageHandler<String> {
+    private final Consumer<DataMessage<String>> target;
+    private final String exchange;
+
+    /**
+     * 在分发线程上同步调用策略，用于回放
+     */
+    public StrategyHandler(AbstractStrategy strategy, String exchange) {
+        this(strategy::change, exchange);
+    }
+
+    public StrategyHandler(StrategyRunner runner, String exchange) {
+        this(runner::offer, exchange);
+    }
+
+    private StrategyHandler(Consumer<DataMessage<String>> target, String exchange) {
+        this.target = target;
+        this.exchange = exchange;
+    }
+
+    @Override
+    public boolean handle(String message, HandlerContext ctx) {
+        if (OkxMessages.isEvent(message)) {
+            return true;
+        }
+        long arg = OkxMessages.locateArg(message);
+        if (arg < 0) {
+            return true;
+        }
+        DataMessage<String> dataMessage = new DataMessage<>();
+        dataMessage.setExchange(exchange);
+        dataMessage.setChannel(message.substring(OkxMessages.channelStart(arg), OkxMessages.channelEnd(arg)));
+        dataMessage.setData(message);
+        target.accept(dataMessage);
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.trade.socket.netty.handler.ring;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 阻塞等待：消费者自旋、让出后在条件变量上挂起，直到生产者发布后 {@link #signal()}，空闲时没有定时唤醒
+ * <p>
+ * 消费者先登记等待再重新检查是否有新事件，生产者先发布再检查有无等待者，两边之间各有一次全屏障，
+ * 总有一方能看到对方的写入，不会错过唤醒。没有等待者时 {@link #signal()} 只读一次计数，不加锁。
+ * 生产者等待缓冲区空位时没有可检查的条件，按短暂挂起处理，只在缓冲区写满时发生。
+ */
+final class BlockingWaitStrategy implements WaitStrategy {
+    private static final WaitStrategy PRODUCER = WaitStrategy.parking(100_000);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    @Override
+    public int idle(int counter) {
+        return PRODUCER.idle(counter);
+    }
+
+    @Override
+    public int idle(int counter, BooleanSupplier ready) {
+        if (counter < 100) {
+            Thread.onSpinWait();
+        } else if (counter < 200) {
+            Thread.yield();
+        } else {
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                while (!ready.getAsBoolean()) {
+                    published.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+        return counter + 1;
+    }
+
+    @Override
+    public void signal() {
+        // 发布可能是 release 写，与读取等待者之间需要 StoreLoad 屏障
+        VarHandle.fullFence();
+        if (waiters.get() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.trade.socket.netty.handler.ring;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 预分配的环形缓冲区
+ * <p>
+ * 槽位在构造时一次性创建并反复复用。生产者 {@link #next()} 申请序号、写入槽位后 {@link #publish(long)}；
+ * 每个消费者维护自己的 {@link Sequence}，通过 {@link #addGatingSequence(Sequence)} 登记后，
+ * 生产者不会覆盖最慢消费者尚未处理的槽位。
+ * <p>
+ * 单生产者模式下 next/publish 只能由同一个线程调用；多生产者模式用 CAS 申请序号，并按槽位记录发布轮次。
+ *
+ * @param <E> 槽位类型
+ */
+public class RingBuffer<E> {
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Object[] entries;
+    private final int bufferSize;
+    private final int mask;
+    private final int indexShift;
+    private final boolean multiProducer;
+    private final WaitStrategy waitStrategy;
+    // 单生产者：已发布的最大序号；多生产者：已申请的最大序号
+    private final Sequence cursor = new Sequence(-1);
+    // 多生产者：每个槽位最近一次发布的轮次
+    private final int[] availableBuffer;
+    private final Sequence gatingCache = new Sequence(-1);
+    private volatile Sequence[] gatingSequences = new Sequence[0];
+
+    // 单生产者私有状态
+    private long nextValue = -1;
+    private long cachedGating = -1;
+
+    /**
+     * @param factory 槽位工厂
+     * @param bufferSize 容量，必须为2的幂
+     * @param multiProducer 是否允许多个线程发布
+     * @param waitStrategy 缓冲区已满时生产者的等待策略
+     */
+    public RingBuffer(Supplier<E> factory, int bufferSize, boolean multiProducer, WaitStrategy waitStrategy) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        this.bufferSize = bufferSize;
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.multiProducer = multiProducer;
+        this.waitStrategy = waitStrategy;
+        this.entries = new Object[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            entries[i] = factory.get();
+        }
+        if (multiProducer) {
+            availableBuffer = new int[bufferSize];
+            Arrays.fill(availableBuffer, -1);
+        } else {
+            availableBuffer = null;
+        }
+    }
+
+    /**
+     * 登记消费者序号，需在发布第一个事件之前完成
+     */
+    public synchronized void addGatingSequence(Sequence sequence) {
+        Sequence[] current = gatingSequences;
+        Sequence[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = sequence;
+        sequence.set(cursor.get());
+        gatingSequences = next;
+    }
+
+    /**
+     * 申请下一个序号，缓冲区已满时按等待策略等待最慢的消费者
+     */
+    public long next() {
+        if (!multiProducer) {
+            long next = nextValue + 1;
+            long wrapPoint = next - bufferSize;
+            if (wrapPoint > cachedGating) {
+                int counter = 0;
+                long min;
+                while (wrapPoint > (min = minimumSequence(nextValue))) {
+                    counter = waitStrategy.idle(counter);
+                }
+                cachedGating = min;
+            }
+            nextValue = next;
+            return next;
+        }
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - bufferSize;
+            long cached = gatingCache.get();
+            if (wrapPoint > cached || cached > current) {
+                long min = minimumSequence(current);
+                if (wrapPoint > min) {
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                gatingCache.set(min);
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 申请下一个序号，缓冲区已满时不等待
+     * @return 缓冲区已满时返回 -1
+     */
+    public long tryNext() {
+        if (!multiProducer) {
+            long next = nextValue + 1;
+            long wrapPoint = next - bufferSize;
+            if (wrapPoint > cachedGating) {
+                long min = minimumSequence(nextValue);
+                if (wrapPoint > min) {
+                    return -1;
+                }
+                cachedGating = min;
+            }
+            nextValue = next;
+            return next;
+        }
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - bufferSize;
+            long cached = gatingCache.get();
+            if (wrapPoint > cached || cached > current) {
+                long min = minimumSequence(current);
+                if (wrapPoint > min) {
+                    return -1;
+                }
+                gatingCache.set(min);
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 获取序号对应的槽位
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * 发布序号，消费者可见
+     */
+    public void publish(long sequence) {
+        if (multiProducer) {
+            AVAILABLE.setRelease(availableBuffer, (int) sequence & mask, (int) (sequence >>> indexShift));
+        } else {
+            cursor.set(sequence);
+        }
+    }
+
+    /**
+     * 消费者可安全读取的最大序号
+     * @param nextSequence 消费者下一个要读取的序号
+     */
+    public long highestPublished(long nextSequence) {
+        long available = cursor.get();
+        if (!multiProducer) {
+            return available;
+        }
+        for (long sequence = nextSequence; sequence <= available; sequence++) {
+            int round = (int) AVAILABLE.getAcquire(availableBuffer, (int) sequence & mask);
+            if (round != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * 积压深度：已发布（多生产者为已申请）但最慢消费者尚未处理的事件数
+     */
+    public long getBacklog() {
+        long produced = cursor.get();
+        return produced - minimumSequence(produced);
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private long minimumSequence(long defaultValue) {
+        long min = defaultValue;
+        for (Sequence sequence : gatingSequences) {
+            min = Math.min(min, sequence.get());
+        }
+        return min;
+    }
+}
@@ -0,0 +1,223 @@
+package com.trade.socket.netty.handler.ring;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 环形缓冲区分发阶段
+ * <p>
+ * I/O线程调用 {@link #publish(Object)} 把消息写入预分配的槽位后立即返回；每个消费者在独立线程上
+ * 按序处理全部消息，并维护各自的进度序号。慢消费者只会让自身积压增加，缓冲区写满后才反压生产者。
+ * 消费者必须在 {@link #start()} 之前添加。
+ *
+ * @param <T> 消息类型
+ */
+@Slf4j
+public class RingBufferStage<T> {
+    private final String name;
+    private final RingBuffer<Slot<T>> ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final Map<String, ConsumerWorker> consumers = new LinkedHashMap<>();
+    private volatile boolean running;
+
+    /**
+     * 单生产者阶段
+     * @param name 名称，用于线程名和日志
+     * @param bufferSize 容量，必须为2的幂
+     * @param waitStrategy 等待策略
+     */
+    public RingBufferStage(String name, int bufferSize, WaitStrategy waitStrategy) {
+        this(name, bufferSize, waitStrategy, false);
+    }
+
+    /**
+     * @param name 名称，用于线程名和日志
+     * @param bufferSize 容量，必须为2的幂
+     * @param waitStrategy 等待策略
+     * @param multiProducer 是否有多个线程发布（如多个连接共用一个阶段）
+     */
+    public RingBufferStage(String name, int bufferSize, WaitStrategy waitStrategy, boolean multiProducer) {
+        this.name = name;
+        this.waitStrategy = waitStrategy;
+        this.ringBuffer = new RingBuffer<>(Slot::new, bufferSize, multiProducer, waitStrategy);
+    }
+
+    /**
+     * 添加消费者，每个消费者都会收到全部消息
+     * @param consumerName 消费者名称
+     * @param consumer 消息处理逻辑
+     */
+    public synchronized void addConsumer(String consumerName, Consumer<T> consumer) {
+        addConsumer(consumerName, (BatchConsumer<T>) (message, endOfBatch) -> consumer.accept(message));
+    }
+
+    /**
+     * 添加按批处理的消费者，每批最后一条消息的 endOfBatch 为 true，可在此时统一提交批内的修改
+     * @param consumerName 消费者名称
+     * @param consumer 消息处理逻辑
+     */
+    public synchronized void addConsumer(String consumerName, BatchConsumer<T> consumer) {
+        if (running) {
+            throw new IllegalStateException("Cannot add consumer after stage " + name + " started");
+        }
+        if (consumers.containsKey(consumerName)) {
+            throw new IllegalArgumentException("Duplicate consumer " + consumerName);
+        }
+        ConsumerWorker worker = new ConsumerWorker(consumerName, consumer);
+        ringBuffer.addGatingSequence(worker.sequence);
+        consumers.put(consumerName, worker);
+    }
+
+    /**
+     * 启动所有消费者线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (ConsumerWorker worker : consumers.values()) {
+            Thread thread = new Thread(worker, "ring-" + name + "-" + worker.name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        log.info("Ring buffer stage {} started with {} consumers, bufferSize {}",
+            name, consumers.size(), ringBuffer.getBufferSize());
+    }
+
+    /**
+     * 停止消费者线程，未处理的消息被丢弃
+     */
+    public void stop() {
+        running = false;
+        // 释放可能因缓冲区已满而等待的生产者，以及阻塞等待的消费者
+        consumers.values().forEach(worker -> worker.sequence.set(Long.MAX_VALUE));
+        waitStrategy.signal();
+    }
+
+    /**
+     * 发布消息，缓冲区已满时按等待策略等待最慢的消费者
+     * @param message 消息
+     */
+    public void publish(T message) {
+        long sequence = ringBuffer.next();
+        Slot<T> slot = ringBuffer.get(sequence);
+        slot.message = message;
+        ringBuffer.publish(sequence);
+        waitStrategy.signal();
+    }
+
+    /**
+     * 发布消息，缓冲区已满时直接返回，不反压生产者
+     * @param message 消息
+     * @return 缓冲区已满时返回 false，消息未发布
+     */
+    public boolean tryPublish(T message) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            return false;
+        }
+        Slot<T> slot = ringBuffer.get(sequence);
+        slot.message = message;
+        ringBuffer.publish(sequence);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * 队列深度：最慢消费者尚未处理的消息数
+     */
+    public long getQueueDepth() {
+        return ringBuffer.getBacklog();
+    }
+
+    /**
+     * 各消费者的积压数量
+     * @return {消费者名称: 积压数量}
+     */
+    public Map<String, Long> getConsumerLag() {
+        long cursor = ringBuffer.getCursor();
+        Map<String, Long> lag = new LinkedHashMap<>();
+        for (ConsumerWorker worker : consumers.values()) {
+            lag.put(worker.name, cursor - worker.sequence.get());
+        }
+        return lag;
+    }
+
+    public List<String> getConsumerNames() {
+        return new ArrayList<>(consumers.keySet());
+    }
+
+    public int getBufferSize() {
+        return ringBuffer.getBufferSize();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 批量消费者
+     */
+    @FunctionalInterface
+    public interface BatchConsumer<T> {
+        /**
+         * @param message 消息
+         * @param endOfBatch 是否为本批已发布消息中的最后一条
+         */
+        void accept(T message, boolean endOfBatch);
+    }
+
+    /**
+     * 预分配的槽位
+     */
+    private static final class Slot<T> {
+        private T message;
+    }
+
+    private final class ConsumerWorker implements Runnable {
+        private final String name;
+        private final BatchConsumer<T> consumer;
+        private final Sequence sequence = new Sequence(-1);
+        // 只在消费线程上读写
+        private long next;
+        // 阻塞等待策略挂起前的检查
+        private final BooleanSupplier ready = () -> !running || ringBuffer.highestPublished(next) >= next;
+
+        ConsumerWorker(String name, BatchConsumer<T> consumer) {
+            this.name = name;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            next = sequence.get() + 1;
+            int idle = 0;
+            while (running) {
+                long available = ringBuffer.highestPublished(next);
+                if (available < next) {
+                    idle = waitStrategy.idle(idle, ready);
+                    continue;
+                }
+                idle = 0;
+                for (; next <= available; next++) {
+                    T message = ringBuffer.get(next).message;
+                    try {
+                        consumer.accept(message, next == available);
+                    } catch (Exception e) {
+                        log.error("Consumer {} of stage {} failed at sequence {}", name, RingBufferStage.this.name, next, e);
+                    }
+                }
+                // 批量处理完再推进序号，减少对生产者缓存行的写入
+                sequence.set(available);
+            }
+            sequence.set(Long.MAX_VALUE);
+        }
+    }
+}
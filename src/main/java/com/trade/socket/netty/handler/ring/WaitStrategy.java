@@ -0,0 +1,80 @@
+package com.trade.socket.netty.handler.ring;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 等待策略
+ * 消费者无新事件、生产者遇到缓冲区已满时调用 {@link #idle(int)}，在延迟与CPU占用之间取舍
+ */
+public interface WaitStrategy {
+    /**
+     * 空转一次
+     * @param counter 本轮已空转次数，取得进展后由调用方清零
+     * @return 新的空转次数
+     */
+    int idle(int counter);
+
+    /**
+     * 消费者空转一次，可以挂起到 {@link #signal()} 的策略在挂起前用 ready 重新检查，避免错过唤醒
+     * @param ready 有新事件或需要退出时返回 true
+     */
+    default int idle(int counter, BooleanSupplier ready) {
+        return idle(counter);
+    }
+
+    /**
+     * 生产者发布后调用，唤醒挂起的消费者；不挂起的策略不需要处理
+     */
+    default void signal() {
+    }
+
+    /**
+     * 忙等：延迟最低，独占一个CPU核
+     */
+    static WaitStrategy busySpin() {
+        return counter -> {
+            Thread.onSpinWait();
+            return counter + 1;
+        };
+    }
+
+    /**
+     * 先自旋后让出CPU：延迟低，空闲时仍有较高CPU占用
+     */
+    static WaitStrategy yielding() {
+        return counter -> {
+            if (counter < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            return counter + 1;
+        };
+    }
+
+    /**
+     * 自旋、让出后阻塞到有新事件：空闲时不占CPU也没有定时唤醒，唤醒需要一次加锁通知。
+     * 每个实例只能用于一个 {@link RingBufferStage}
+     */
+    static WaitStrategy blocking() {
+        return new BlockingWaitStrategy();
+    }
+
+    /**
+     * 自旋、让出后挂起：空闲时几乎不占CPU，唤醒延迟取决于挂起时长
+     * @param parkNanos 每次挂起的纳秒数
+     */
+    static WaitStrategy parking(long parkNanos) {
+        return counter -> {
+            if (counter < 100) {
+                Thread.onSpinWait();
+            } else if (counter < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+            }
+            return counter + 1;
+        };
+    }
+}
@@ -0,0 +1,349 @@
+package com.trade.socket.netty.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 原始行情日志
+ * <p>
+ * 把收到的每一帧原始字节连同连接号、接收时的 System.nanoTime 和墙上时间追加到内存映射的段文件中，
+ * 段写满后滚动到新文件。多个IO线程并发写入：每条记录用 CAS 申请独占区间后直接拷贝到映射内存，
+ * 最后以release语义写入长度作为提交标记，不加锁也不经过系统调用。
+ * 下一段由后台线程提前创建并映射，滚动时只替换引用；刷盘交给操作系统。写满的段等最后一个写入线程写完后，
+ * 在另一个后台线程上 force 并解除映射，映射的地址空间不随段数增长；关闭时当前段同样处理。
+ * 滚动时下一段还没有准备好的话，IO线程不等待后台线程：由后台线程创建后再切换，期间到达的帧丢弃，
+ * 计入 {@link #getDropped()} 和 {@link #getStallDropped()}，恢复写入时按次记录丢弃数。
+ * <p>
+ * 长度为0的帧同样丢弃并计数：记录头中的长度兼作提交标记，0 表示未提交，写入后读取方会在此处停止，丢失本段之后的全部记录。
+ * <p>
+ * 墙上时间由 nanoTime 按最近一次校准的基准换算，保证纳秒精度且不在热路径上调用系统时钟，每次滚动重新校准。
+ * 读取见 {@link JournalReader}。
+ */
+@Slf4j
+public class Journal implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+    public static final String DEFAULT_PREFIX = "market";
+
+    private final Path directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong stallDropped = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicInteger mappedSegments = new AtomicInteger();
+
+    private final ExecutorService roller;
+    // 写满的段在单独的线程上 force，不推迟下一段的创建
+    private final ExecutorService flusher;
+    private volatile JournalSegment current;
+    private volatile JournalSegment next;
+    // 已写满、正在等待后台线程创建下一段的段
+    private volatile JournalSegment stalled;
+    private volatile Calibration calibration = Calibration.now();
+    private volatile boolean closed;
+
+    public Journal(Path directory) {
+        this(directory, DEFAULT_PREFIX, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory 日志目录，不存在时创建
+     * @param prefix 段文件名前缀，同一目录下多个日志用不同前缀区分
+     * @param segmentSize 单个段文件大小（字节），8的倍数
+     */
+    public Journal(Path directory, String prefix, int segmentSize) {
+        if (segmentSize < JournalSegment.FILE_HEADER * 2 || (segmentSize & 7) != 0) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            long sequence = JournalReader.lastSequence(directory, prefix) + 1;
+            this.current = JournalSegment.create(directory, prefix, sequence, segmentSize, epochNanos(System.nanoTime()));
+            // 下一段在这里同步创建，第一次滚动不依赖后台线程
+            this.next = JournalSegment.create(directory, prefix, sequence + 1, segmentSize,
+                epochNanos(System.nanoTime()));
+            mappedSegments.set(2);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + directory, e);
+        }
+        ThreadPoolExecutor roller = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new DefaultThreadFactory("journal-" + prefix, true));
+        // 提前启动后台线程，之后每次滚动只剩创建文件的耗时
+        roller.prestartCoreThread();
+        this.roller = roller;
+        this.flusher = Executors.newSingleThreadExecutor(new DefaultThreadFactory("journal-" + prefix + "-force", true));
+    }
+
+    /**
+     * 追加一帧
+     * @param connectionId 连接号
+     * @param payload 帧内容，读取 readerIndex 起的可读字节，不改变索引
+     * @param receiveNanos 接收时的 System.nanoTime
+     * @return 记录的墙上时间，未写入（空帧、超过段大小、已关闭或正在等待新段）返回 -1
+     */
+    public long append(int connectionId, ByteBuf payload, long receiveNanos) {
+        int length = payload.readableBytes();
+        int size = JournalSegment.recordSize(length);
+        if (closed || length == 0 || size > segmentSize - JournalSegment.FILE_HEADER) {
+            dropped.incrementAndGet();
+            return -1;
+        }
+        long epochNanos = epochNanos(receiveNanos);
+        while (true) {
+            JournalSegment segment = current;
+            long position = segment.claim(size);
+            if (position + size <= segment.capacity()) {
+                segment.write(position, connectionId, receiveNanos, epochNanos, payload, length);
+                records.incrementAndGet();
+                bytes.addAndGet(size);
+                if (segment.commit(size)) {
+                    // 封段之后最后一个写完的线程
+                    release(segment);
+                }
+                return epochNanos;
+            }
+            if (position <= segment.capacity()) {
+                // 第一个越界的线程负责封段和滚动，其余线程等待新段
+                if (segment.seal(position)) {
+                    release(segment);
+                }
+                if (!closed) {
+                    roll(segment);
+                }
+            } else {
+                // 新段已就绪时切换只是替换引用，短暂自旋即可；需要等待后台线程时不自旋
+                while (current == segment && stalled != segment && !closed) {
+                    Thread.onSpinWait();
+                }
+            }
+            if (closed || current == segment) {
+                dropped.incrementAndGet();
+                if (stalled == segment) {
+                    stallDropped.incrementAndGet();
+                }
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 把 System.nanoTime 换算为墙上时间（纳秒）
+     */
+    public long epochNanos(long nanoTime) {
+        Calibration c = calibration;
+        return c.epochNanos + (nanoTime - c.nanoTime);
+    }
+
+    private void roll(JournalSegment full) {
+        JournalSegment segment = next;
+        if (segment != null) {
+            switchTo(full, segment);
+            return;
+        }
+        // 预分配尚未完成，段的创建始终在后台线程上进行，创建后由它切换
+        stalled = full;
+        stalls.incrementAndGet();
+        long droppedBefore = stallDropped.get();
+        log.warn("Journal {} segment {} is full before the next one is ready, dropping frames until it is",
+            prefix, full.sequence());
+        try {
+            roller.execute(() -> {
+                prepareNext();
+                JournalSegment prepared = next;
+                if (closed) {
+                    return;
+                }
+                if (prepared == null) {
+                    log.error("Failed to roll journal segment {}, journal closed", full.sequence());
+                    closed = true;
+                    return;
+                }
+                switchTo(full, prepared);
+                log.warn("Journal {} resumed on segment {}, {} frames dropped while waiting for it",
+                    prefix, prepared.sequence(), stallDropped.get() - droppedBefore);
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    private void switchTo(JournalSegment full, JournalSegment segment) {
+        next = null;
+        calibration = Calibration.now();
+        current = segment;
+        try {
+            roller.execute(this::prepareNext);
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 段已封且写完，在后台线程上刷盘并解除映射；关闭后在当前线程上执行
+     */
+    private void release(JournalSegment segment) {
+        try {
+            flusher.execute(() -> unmap(segment));
+        } catch (RejectedExecutionException e) {
+            unmap(segment);
+        }
+    }
+
+    private void unmap(JournalSegment segment) {
+        if (segment.release()) {
+            mappedSegments.decrementAndGet();
+        }
+    }
+
+    private void prepareNext() {
+        if (next != null || closed) {
+            return;
+        }
+        long sequence = current.sequence() + 1;
+        try {
+            next = JournalSegment.create(directory, prefix, sequence, segmentSize, epochNanos(System.nanoTime()));
+            mappedSegments.incrementAndGet();
+        } catch (IOException e) {
+            log.error("Failed to create journal segment {} in {}", sequence, directory, e);
+        }
+    }
+
+    /**
+     * 停止写入，刷盘并解除所有段的映射
+     * <p>
+     * 当前段以一次越界申请封段，此后的写入都会越界而丢弃；仍在拷贝的线程写完后由它解除映射。
+     * 关闭前已越界的线程可能刚把当前段切换到下一段，所以封段后重新检查当前段
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        roller.shutdown();
+        try {
+            roller.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        JournalSegment segment;
+        do {
+            segment = current;
+            long position = segment.claim(segment.capacity() + 1);
+            if (position <= segment.capacity() && segment.seal(position)) {
+                release(segment);
+            }
+        } while (current != segment);
+        JournalSegment unused = next;
+        next = null;
+        if (unused != null) {
+            unmap(unused);
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Journal {} closed: {} records, {} bytes, {} dropped ({} while waiting for {} segment rolls)",
+            prefix, records.get(), bytes.get(), dropped.get(), stallDropped.get(), stalls.get());
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 已写入的记录数
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * 已写入的字节数，含记录头和对齐
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 因空帧、超过段大小、已关闭或等待新段而未写入的帧数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 其中因段写满时下一段尚未创建好而丢弃的帧数
+     */
+    public long getStallDropped() {
+        return stallDropped.get();
+    }
+
+    /**
+     * 当前仍映射在内存中的段数，正常运行时为当前段、预创建的下一段和尚未刷盘的写满段
+     */
+    public int getMappedSegments() {
+        return mappedSegments.get();
+    }
+
+    /**
+     * 段写满时下一段尚未创建好的次数
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * nanoTime 与墙上时间的对应关系
+     */
+    private static final class Calibration {
+        private final long nanoTime;
+        private final long epochNanos;
+
+        private Calibration(long nanoTime, long epochNanos) {
+            this.nanoTime = nanoTime;
+            this.epochNanos = epochNanos;
+        }
+
+        static Calibration now() {
+            long before = System.nanoTime();
+            long millis = System.currentTimeMillis();
+            long after = System.nanoTime();
+            return new Calibration(before + ((after - before) >> 1), millis * 1_000_000L);
+        }
+    }
+}
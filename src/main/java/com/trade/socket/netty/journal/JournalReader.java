@@ -0,0 +1,200 @@
+package com.trade.socket.netty.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.trade.socket.netty.journal.JournalSegment.*;
+
+/**
+ * 日志读取
+ * <p>
+ * 按时间范围读取 {@link Journal} 写入的段文件，可以读取正在写入的日志，只返回已提交的记录。
+ * 先按每段第一条记录的时间跳过无关的段，段内用索引二分定位起点，不需要从头扫描。
+ * 多个IO线程写入时记录在文件中的顺序与时间戳大致一致，边界附近按 {@link #ORDER_TOLERANCE_NANOS} 放宽。
+ */
+public class JournalReader {
+    /**
+     * 并发写入时文件顺序与时间戳顺序的最大偏差
+     */
+    public static final long ORDER_TOLERANCE_NANOS = 1_000_000L;
+
+    private final Path directory;
+    private final String prefix;
+
+    public JournalReader(Path directory) {
+        this(directory, Journal.DEFAULT_PREFIX);
+    }
+
+    public JournalReader(Path directory, String prefix) {
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 记录回调
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * @return 是否继续读取
+         */
+        boolean onRecord(JournalRecord record);
+    }
+
+    /**
+     * 读取全部记录
+     * @return 回调的记录数
+     */
+    public long readAll(RecordHandler handler) throws IOException {
+        return read(Long.MIN_VALUE, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * 读取墙上时间在 [from, to] 内的记录
+     * @param fromEpochNanos 起始时间（纳秒）
+     * @param toEpochNanos 结束时间（纳秒），包含
+     * @param handler 回调
+     * @return 回调的记录数
+     */
+    public long read(long fromEpochNanos, long toEpochNanos, RecordHandler handler) throws IOException {
+        List<Path> segments = segments();
+        JournalRecord record = new JournalRecord();
+        long count = 0;
+        long lowerBound = fromEpochNanos == Long.MIN_VALUE ? Long.MIN_VALUE : fromEpochNanos - ORDER_TOLERANCE_NANOS;
+        long upperBound = toEpochNanos == Long.MAX_VALUE ? Long.MAX_VALUE : toEpochNanos + ORDER_TOLERANCE_NANOS;
+        ByteBuffer nextData = null;
+        for (int i = 0; i < segments.size(); i++) {
+            ByteBuffer data = nextData != null ? nextData : map(segments.get(i));
+            nextData = null;
+            if (i + 1 < segments.size()) {
+                // 下一段的第一条记录早于起点，本段全部在范围之前
+                nextData = map(segments.get(i + 1));
+                long nextStart = firstEpochNanos(nextData);
+                if (nextStart != Long.MIN_VALUE && nextStart < lowerBound) {
+                    continue;
+                }
+            }
+            long first = firstEpochNanos(data);
+            if (first != Long.MIN_VALUE && first > upperBound) {
+                break;
+            }
+            int position = startPosition(indexPath(segments.get(i)), lowerBound);
+            long sequence = (long) LONG.get(data, 8);
+            int limit = data.capacity() - RECORD_HEADER;
+            while (position <= limit) {
+                int length = (int) INT.getAcquire(data, position);
+                if (length <= 0) {
+                    // 未提交或段尾填充
+                    break;
+                }
+                long epochNanos = (long) LONG.get(data, position + 16);
+                if (epochNanos > upperBound) {
+                    return count;
+                }
+                if (epochNanos >= fromEpochNanos && epochNanos <= toEpochNanos) {
+                    record.set(sequence, data, position, length, (int) INT.get(data, position + 4),
+                        (long) LONG.get(data, position + 8), epochNanos);
+                    count++;
+                    if (!handler.onRecord(record)) {
+                        return count;
+                    }
+                }
+                position += recordSize(length);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 所有段的数据文件，按序号排序
+     */
+    public List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> isSegment(p, prefix)).forEach(result::add);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * 目录下最后一个段的序号，没有返回 -1
+     */
+    static long lastSequence(Path directory, String prefix) throws IOException {
+        List<Path> segments = new JournalReader(directory, prefix).segments();
+        if (segments.isEmpty()) {
+            return -1;
+        }
+        String name = segments.get(segments.size() - 1).getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - DATA_SUFFIX.length()));
+    }
+
+    private static boolean isSegment(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        return name.startsWith(prefix + "-") && name.endsWith(DATA_SUFFIX)
+            && name.length() == prefix.length() + 11 + DATA_SUFFIX.length();
+    }
+
+    private static Path indexPath(Path data) {
+        String name = data.getFileName().toString();
+        return data.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static long firstEpochNanos(ByteBuffer data) {
+        if ((int) INT.getAcquire(data, FILE_HEADER) <= 0) {
+            return Long.MIN_VALUE;
+        }
+        return (long) LONG.get(data, FILE_HEADER + 16);
+    }
+
+    /**
+     * 索引中最后一个时间早于起点的条目，二分查找；条目缺失（记录未提交）时退回段首
+     */
+    private static int startPosition(Path indexPath, long lowerBound) throws IOException {
+        if (lowerBound == Long.MIN_VALUE || !Files.exists(indexPath)) {
+            return FILE_HEADER;
+        }
+        ByteBuffer index = map(indexPath);
+        int low = 1;
+        int high = index.capacity() / INDEX_ENTRY - 1;
+        int result = FILE_HEADER;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = mid * INDEX_ENTRY;
+            long offset = (long) LONG.getAcquire(index, entry + 8);
+            if (offset == 0) {
+                high = mid - 1;
+                continue;
+            }
+            if ((long) LONG.get(index, entry) < lowerBound) {
+                result = (int) offset;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
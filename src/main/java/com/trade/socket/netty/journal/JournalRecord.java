@@ -0,0 +1,63 @@
+package com.trade.socket.netty.journal;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 日志记录
+ * 读取时复用同一个实例，回调返回后内容失效，需要保留时调用 {@link #text()} 或 {@link #copyPayload()}
+ */
+@Getter
+public class JournalRecord {
+    private long segment;
+    private int offset;
+    private int connectionId;
+    private long receiveNanos;
+    private long epochNanos;
+    private int length;
+    @Getter(AccessLevel.NONE)
+    private ByteBuffer buffer;
+
+    void set(long segment, ByteBuffer buffer, int offset, int length, int connectionId,
+             long receiveNanos, long epochNanos) {
+        this.segment = segment;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.connectionId = connectionId;
+        this.receiveNanos = receiveNanos;
+        this.epochNanos = epochNanos;
+    }
+
+    /**
+     * 帧内容的只读视图
+     */
+    public ByteBuffer payload() {
+        int start = offset + JournalSegment.RECORD_HEADER;
+        return buffer.asReadOnlyBuffer().position(start).limit(start + length).slice();
+    }
+
+    public byte[] copyPayload() {
+        byte[] bytes = new byte[length];
+        getPayload(bytes);
+        return bytes;
+    }
+
+    /**
+     * 拷贝帧内容到调用方的数组，便于复用缓冲区
+     * @param dst 目标数组，长度不小于 {@link #getLength()}
+     */
+    public void getPayload(byte[] dst) {
+        buffer.get(offset + JournalSegment.RECORD_HEADER, dst, 0, length);
+    }
+
+    /**
+     * 按UTF-8解码的帧内容，WebSocket文本帧即原始JSON
+     */
+    public String text() {
+        return new String(copyPayload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,186 @@
+package com.trade.socket.netty.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日志段文件
+ * <p>
+ * 数据文件布局（小端）：64字节文件头（magic、版本、段序号、创建时间），之后是按8字节对齐的记录：
+ * <pre>
+ * int  length        负载长度，最后以release语义写入；0 表示未写完，-1 表示段尾填充
+ * int  connectionId
+ * long receiveNanos  System.nanoTime
+ * long epochNanos    墙上时间（纳秒）
+ * byte[length]       原始帧内容
+ * </pre>
+ * 索引文件每 {@link #INDEX_INTERVAL} 字节一个条目 (epochNanos, offset)，
+ * 指向覆盖该字节位置的记录，由写入该记录的线程填写，按时间查找时二分定位起点。
+ * <p>
+ * 写完的记录通过 {@link #commit(int)} 累计字节数，封段时记下最后一条记录的结束位置；
+ * 两者相等说明所有申请到区间的线程都已写完，此后才能刷盘并解除映射，否则仍在拷贝的线程会访问已释放的内存。
+ */
+final class JournalSegment {
+    static final int MAGIC = 0x4F4B584A;
+    static final int VERSION = 1;
+    static final int FILE_HEADER = 64;
+    static final int RECORD_HEADER = 24;
+    static final int PADDING = -1;
+    static final int INDEX_INTERVAL = 64 * 1024;
+    static final int INDEX_ENTRY = 16;
+    static final String DATA_SUFFIX = ".dat";
+    static final String INDEX_SUFFIX = ".idx";
+
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long sequence;
+    private final int capacity;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+    private final long address;
+    private final AtomicLong tail = new AtomicLong(FILE_HEADER);
+    // 已写完的字节数（含文件头），全部写完时等于封段位置
+    private final AtomicLong committed = new AtomicLong(FILE_HEADER);
+    private volatile long sealedAt = -1;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private JournalSegment(long sequence, int capacity, MappedByteBuffer data, MappedByteBuffer index) {
+        this.sequence = sequence;
+        this.capacity = capacity;
+        this.data = data;
+        this.index = index;
+        this.address = PlatformDependent.hasUnsafe() ? PlatformDependent.directBufferAddress(data) : 0;
+    }
+
+    /**
+     * 创建并映射新段，文件预先分配到完整大小
+     */
+    static JournalSegment create(Path directory, String prefix, long sequence, int capacity, long epochNanos)
+        throws IOException {
+        MappedByteBuffer data = map(directory.resolve(fileName(prefix, sequence, DATA_SUFFIX)), capacity);
+        MappedByteBuffer index = map(directory.resolve(fileName(prefix, sequence, INDEX_SUFFIX)),
+            indexSize(capacity));
+        INT.set(data, 0, MAGIC);
+        INT.set(data, 4, VERSION);
+        LONG.set(data, 8, sequence);
+        LONG.set(data, 16, epochNanos);
+        INT.set(data, 24, capacity);
+        return new JournalSegment(sequence, capacity, data, index);
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    static String fileName(String prefix, long sequence, String suffix) {
+        return String.format("%s-%010d%s", prefix, sequence, suffix);
+    }
+
+    static int indexSize(int capacity) {
+        return (capacity / INDEX_INTERVAL + 1) * INDEX_ENTRY;
+    }
+
+    static int recordSize(int length) {
+        return (RECORD_HEADER + length + 7) & ~7;
+    }
+
+    /**
+     * 申请写入位置
+     * @return 起始偏移，加上记录大小超过容量时表示本段已满
+     */
+    long claim(int size) {
+        return tail.getAndAdd(size);
+    }
+
+    /**
+     * 写入一条记录，调用前已通过 {@link #claim(int)} 取得独占的区间
+     */
+    void write(long position, int connectionId, long receiveNanos, long epochNanos, ByteBuf payload, int length) {
+        int pos = (int) position;
+        INT.set(data, pos + 4, connectionId);
+        LONG.set(data, pos + 8, receiveNanos);
+        LONG.set(data, pos + 16, epochNanos);
+        int src = payload.readerIndex();
+        if (address != 0 && payload.hasMemoryAddress()) {
+            PlatformDependent.copyMemory(payload.memoryAddress() + src, address + pos + RECORD_HEADER, length);
+        } else {
+            ByteBuffer target = data.duplicate();
+            target.position(pos + RECORD_HEADER).limit(pos + RECORD_HEADER + length);
+            payload.getBytes(src, target);
+        }
+        int end = pos + recordSize(length);
+        for (int slot = (pos + INDEX_INTERVAL - 1) / INDEX_INTERVAL; slot * INDEX_INTERVAL < end; slot++) {
+            int entry = slot * INDEX_ENTRY;
+            LONG.set(index, entry, epochNanos);
+            LONG.setRelease(index, entry + 8, (long) pos);
+        }
+        INT.setRelease(data, pos, length);
+    }
+
+    /**
+     * 记录写完后调用
+     * @return 本段已封且所有记录都已写完，调用方负责 {@link #release()}
+     */
+    boolean commit(int size) {
+        return committed.addAndGet(size) == sealedAt;
+    }
+
+    /**
+     * 封段：position 之后不再有记录，不足容量时在段尾写入填充标记，读取时跳到下一段。
+     * 只能由第一个申请越界的线程调用一次
+     * @return 所有记录都已写完，调用方负责 {@link #release()}
+     */
+    boolean seal(long position) {
+        if (position < capacity) {
+            INT.setRelease(data, (int) position, PADDING);
+        }
+        sealedAt = position;
+        return committed.get() == position;
+    }
+
+    /**
+     * 刷盘并解除映射，只执行一次；之后不能再访问本段的内存
+     * @return 是否由本次调用执行
+     */
+    boolean release() {
+        if (!released.compareAndSet(false, true)) {
+            return false;
+        }
+        data.force();
+        index.force();
+        PlatformDependent.freeDirectBuffer(data);
+        PlatformDependent.freeDirectBuffer(index);
+        return true;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 已申请的字节数，不超过容量
+     */
+    long size() {
+        return Math.min(tail.get(), capacity);
+    }
+}
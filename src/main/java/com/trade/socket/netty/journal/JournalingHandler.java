@@ -0,0 +1,38 @@
+package com.trade.socket.netty.journal;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * 日志处理器
+ * 放在 pipeline 中消息处理器之前，把每个入站数据帧原样写入 {@link Journal} 后继续向后传递，不改变帧内容和引用计数。
+ * 握手响应和控制帧不记录。
+ */
+public class JournalingHandler extends ChannelInboundHandlerAdapter {
+    private final Journal journal;
+    private final int connectionId;
+
+    /**
+     * @param journal 日志，多个连接可共用
+     * @param connectionId 连接号，写入每条记录用于区分来源
+     */
+    public JournalingHandler(Journal journal, int connectionId) {
+        this.journal = journal;
+        this.connectionId = connectionId;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            journal.append(connectionId, ((WebSocketFrame) msg).content(), System.nanoTime());
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    public int getConnectionId() {
+        return connectionId;
+    }
+}
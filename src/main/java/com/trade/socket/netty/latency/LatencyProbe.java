@@ -0,0 +1,203 @@
+package com.trade.socket.netty.latency;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 行情到下单的全链路延迟探针
+ * <p>
+ * 一条入站帧在IO线程上依次打点：socket读到字节({@link Stage#READ})、WebSocket帧解出({@link Stage#DECODE})、
+ * 分发器开始处理({@link Stage#DISPATCH})、策略做出决定({@link Stage#DECISION}，由策略代码调用 {@link #mark})、
+ * 调用 {@code send}({@link Stage#SEND})、订单帧写入socket({@link Stage#FLUSH})。
+ * 处理某帧期间发出的每个订单各产生一条完整记录交给 {@link Listener}，没有触发订单的帧不产生记录。
+ * <p>
+ * 打点数据放在IO线程的 {@link FastThreadLocal} 中，只覆盖在IO线程上同步处理的路径：文本分发和二进制行情解码
+ * （{@link com.trade.socket.netty.codec.MarketDataListener} 回调）都会记录，二进制帧在交给解码器前打 DISPATCH。
+ * 由 {@link com.trade.strategy.StrategyRunner} 托管的策略在策略线程上运行，投递行情时用 {@link #handoff()} 取出IO线程上
+ * 进行中的记录随任务带过去，策略线程执行前 {@link #resume} 、执行后 {@link #suspend()}，DISPATCH 到 DECISION 包含在收件箱中的排队时间。
+ * 开启环形缓冲区后处理器在消费线程上运行，这条路径不转交记录，打点和发送不会被统计。未安装探针时 {@link #mark} 只读一个volatile。
+ */
+public class LatencyProbe {
+    public enum Stage {
+        READ,
+        DECODE,
+        DISPATCH,
+        DECISION,
+        SEND,
+        FLUSH
+    }
+
+    static final int STAGES = Stage.values().length;
+    /**
+     * 最近一次socket读取的时间，同一次读取解出的多帧共用
+     */
+    private static final int PENDING_READ = STAGES;
+
+    private static final FastThreadLocal<long[]> TRACE = new FastThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[STAGES + 1];
+        }
+    };
+    // 已安装且未关闭的探针数，mark 每次读取，不另存开关，避免安装和关闭交错时开关与计数不一致
+    private static final AtomicInteger INSTALLED = new AtomicInteger();
+
+    private final Listener listener;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final LongAdder traces = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ChannelHandler readStamp = new ReadStampHandler();
+
+    /**
+     * 记录回调
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * 在写出订单帧的IO线程上调用
+         * @param stamps 按 {@link Stage#ordinal()} 索引的 {@link System#nanoTime()}，0 表示该阶段未打点；每条记录独立，可以保留
+         */
+        void onTrace(long[] stamps);
+    }
+
+    public LatencyProbe(Listener listener) {
+        this.listener = listener;
+        INSTALLED.incrementAndGet();
+    }
+
+    /**
+     * 停用，重复调用无效；所有探针都关闭后 {@link #mark} 不再访问线程本地变量
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            INSTALLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * 对当前线程上进行中的记录打点，没有进行中的记录时忽略
+     * @param stage 阶段
+     */
+    public static void mark(Stage stage) {
+        if (INSTALLED.get() == 0) {
+            return;
+        }
+        long[] trace = TRACE.get();
+        if (trace[0] != 0) {
+            trace[stage.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * 把当前线程上进行中的记录交给另一个线程继续，在投递任务的线程上调用
+     * @return 记录的副本，没有安装探针或没有进行中的记录时返回 null
+     */
+    public static long[] handoff() {
+        if (INSTALLED.get() == 0) {
+            return null;
+        }
+        long[] trace = TRACE.get();
+        if (trace[0] == 0) {
+            return null;
+        }
+        long[] copy = new long[STAGES];
+        System.arraycopy(trace, 0, copy, 0, STAGES);
+        return copy;
+    }
+
+    /**
+     * 在接手的线程上继续 {@link #handoff()} 取出的记录，之后的打点和发送计入该记录，处理完后必须调用 {@link #suspend()}
+     * @param stamps {@link #handoff()} 的返回值
+     */
+    public static void resume(long[] stamps) {
+        System.arraycopy(stamps, 0, TRACE.get(), 0, STAGES);
+    }
+
+    /**
+     * 结束 {@link #resume} 继续的记录，之后在该线程上的发送不再计入
+     */
+    public static void suspend() {
+        TRACE.get()[0] = 0;
+    }
+
+    /**
+     * 放在pipeline最前面的处理器，记录socket读到数据的时间
+     */
+    public ChannelHandler readStampHandler() {
+        return readStamp;
+    }
+
+    /**
+     * 开始处理一个WebSocket帧：以最近一次读取为起点，清除上一帧的打点
+     */
+    public void onFrame() {
+        long[] trace = TRACE.get();
+        long now = System.nanoTime();
+        long read = trace[PENDING_READ];
+        trace[Stage.READ.ordinal()] = read != 0 ? read : now;
+        trace[Stage.DECODE.ordinal()] = now;
+        for (int i = Stage.DISPATCH.ordinal(); i < STAGES; i++) {
+            trace[i] = 0;
+        }
+    }
+
+    /**
+     * 帧处理结束，之后在该线程上的发送（如心跳）不再计入
+     */
+    public void onFrameDone() {
+        TRACE.get()[0] = 0;
+    }
+
+    /**
+     * 发送订单帧前调用
+     * @return 当前记录的副本，已打上 {@link Stage#SEND}；当前线程没有进行中的记录时返回 null
+     */
+    public long[] onSend() {
+        long[] trace = TRACE.get();
+        if (trace[0] == 0) {
+            return null;
+        }
+        long[] copy = new long[STAGES];
+        System.arraycopy(trace, 0, copy, 0, STAGES);
+        copy[Stage.SEND.ordinal()] = System.nanoTime();
+        return copy;
+    }
+
+    /**
+     * 订单帧写出完成
+     * @param stamps {@link #onSend()} 返回的记录
+     * @param success 是否写出成功
+     */
+    public void onFlushed(long[] stamps, boolean success) {
+        if (!success) {
+            failed.increment();
+            return;
+        }
+        stamps[Stage.FLUSH.ordinal()] = System.nanoTime();
+        traces.increment();
+        listener.onTrace(stamps);
+    }
+
+    public long getTraces() {
+        return traces.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @ChannelHandler.Sharable
+    private static final class ReadStampHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            TRACE.get()[PENDING_READ] = System.nanoTime();
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
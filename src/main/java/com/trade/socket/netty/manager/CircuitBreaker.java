@@ -0,0 +1,87 @@
+package com.trade.socket.netty.manager;
+
+/**
+ * 连接熔断器
+ * <p>
+ * 连续失败达到阈值后打开，打开期间不再尝试连接；冷却时间结束后进入半开状态放行一次尝试，
+ * 成功则关闭，失败则重新打开且冷却时间翻倍（不超过上限）。
+ * 只由连接管理器的调度线程访问，方法加锁以便监控线程读取状态。
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long maxOpenMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long currentOpenMillis;
+    private long openedAt;
+
+    /**
+     * @param failureThreshold 连续失败多少次后打开
+     * @param openMillis 首次打开的冷却时间（毫秒）
+     * @param maxOpenMillis 冷却时间上限（毫秒）
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis, long maxOpenMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.maxOpenMillis = Math.max(openMillis, maxOpenMillis);
+        this.currentOpenMillis = openMillis;
+    }
+
+    /**
+     * 距离允许下一次尝试还需等待的时间
+     * @return 等待毫秒数，0 表示可以尝试
+     */
+    public long remainingMillis() {
+        return remainingMillis(System.currentTimeMillis());
+    }
+
+    synchronized long remainingMillis(long now) {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long remaining = openedAt + currentOpenMillis - now;
+        if (remaining <= 0) {
+            state = State.HALF_OPEN;
+            return 0;
+        }
+        return remaining;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        currentOpenMillis = openMillis;
+    }
+
+    public void onFailure() {
+        onFailure(System.currentTimeMillis());
+    }
+
+    synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            currentOpenMillis = Math.min(maxOpenMillis, currentOpenMillis << 1);
+            open(now);
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open(now);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+    }
+}
@@ -0,0 +1,20 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.NettyClient;
+
+/**
+ * 连接状态监听器
+ * 回调在连接管理器的调度线程或Netty IO线程上执行，不能阻塞
+ */
+public interface ConnectionListener {
+    /**
+     * 连接及WebSocket握手完成，包括每次重连成功
+     */
+    void onConnected(NettyClient client);
+
+    /**
+     * 已建立的连接断开
+     */
+    default void onDisconnected(NettyClient client) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.BaseNettyClient;
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import com.trade.socket.netty.util.WebSocketURLParser.WebSocketURL;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * WebSocket连接池
+ * 同一地址建立多条连接，每条连接有独立的分发器、连接管理器和订阅管理器，
+ * 由 {@link ShardedSubscriptionManager} 把交易对分配到各连接上
+ */
+public class ConnectionPool {
+    private final List<Shard> shards;
+
+    /**
+     * @param url WebSocket URL
+     * @param size 连接数
+     */
+    public ConnectionPool(String url, int size) {
+        this(url, size, 30, "ping");
+    }
+
+    /**
+     * @param url WebSocket URL
+     * @param size 连接数
+     * @param heartbeatInterval 心跳间隔(秒)
+     * @param heartbeatMessage 心跳消息内容
+     */
+    public ConnectionPool(String url, int size, int heartbeatInterval, String heartbeatMessage) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        WebSocketURL wsUrl = WebSocketURLParser.parse(url);
+        List<Shard> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+            BaseNettyClient<String> client = new BaseNettyClient<>(wsUrl, heartbeatInterval, heartbeatMessage, dispatcher);
+            dispatcher.setClient(client);
+            // 分片连接不限次数重连，不可用时由熔断限制频率
+            DefaultConnectionManager connectionManager = new DefaultConnectionManager(wsUrl.getHost(), wsUrl.getPort(),
+                client, DefaultConnectionManager.UNLIMITED_RETRIES, 500);
+            DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client, dispatcher);
+            subscriptionManager.bind(connectionManager);
+            list.add(new Shard(i, client, dispatcher, connectionManager, subscriptionManager));
+        }
+        this.shards = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 使用已创建好的分片
+     */
+    public ConnectionPool(List<Shard> shards) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    }
+
+    /**
+     * 并发建立所有连接
+     * @return 全部连接成功时结束
+     */
+    public CompletableFuture<Void> start() {
+        List<DefaultConnectionManager> managers = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            if (shard.getConnectionManager() != null) {
+                managers.add(shard.getConnectionManager());
+            }
+        }
+        return DefaultConnectionManager.connectAll(managers);
+    }
+
+    /**
+     * 关闭所有连接
+     */
+    public void shutdown() {
+        for (Shard shard : shards) {
+            if (shard.getConnectionManager() != null) {
+                shard.getConnectionManager().shutdown();
+            } else {
+                shard.getClient().disconnect();
+            }
+        }
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public Shard getShard(int index) {
+        return shards.get(index);
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * 连接池中的一条连接
+     */
+    @Getter
+    public static class Shard {
+        private final int index;
+        private final NettyClient client;
+        private final MessageDispatcher<String> dispatcher;
+        private final DefaultConnectionManager connectionManager;
+        private final DefaultSubscriptionManager<String> subscriptionManager;
+
+        public Shard(int index, NettyClient client, MessageDispatcher<String> dispatcher,
+                     DefaultConnectionManager connectionManager, DefaultSubscriptionManager<String> subscriptionManager) {
+            this.index = index;
+            this.client = client;
+            this.dispatcher = dispatcher;
+            this.connectionManager = connectionManager;
+            this.subscriptionManager = subscriptionManager;
+        }
+    }
+}
@@ -2,75 +2,224 @@ package com.trade.socket.netty.manager;
 
 import com.trade.socket.netty.client.NettyClient;
 import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 默认连接管理器
+ * <p>
+ * 连接和握手全程异步，失败后按带抖动的指数退避在共享调度线程上重试，不占用线程等待；
+ * 连续失败过多时熔断，冷却后再试。连接建立后监听关闭事件，断线自动重连。
+ * <p>
+ * 默认每次（重）连接最多尝试 {@link #DEFAULT_MAX_RETRIES} 次，用尽后放弃。长期运行的行情连接可传入
+ * {@link #UNLIMITED_RETRIES} 一直重试，此时不可用的地址由熔断限制重试频率：连续失败10次后每60s只试一次，
+ * 半开失败后冷却时间翻倍，最长10分钟。
  */
 public class DefaultConnectionManager {
     private static final Logger logger = LoggerFactory.getLogger(DefaultConnectionManager.class);
 
+    /**
+     * 所有连接管理器共用的调度线程，只负责发起连接，不做阻塞操作
+     */
+    private static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("connection-manager", true));
+
+    /**
+     * 默认最多尝试次数
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /**
+     * 不限重试次数，由熔断限制重试频率
+     */
+    public static final int UNLIMITED_RETRIES = 0;
+
+    private static final long DEFAULT_BASE_DELAY = 500;
+    private static final long DEFAULT_MAX_DELAY = 30_000;
+    private static final int DEFAULT_BREAKER_THRESHOLD = 10;
+    private static final long DEFAULT_BREAKER_OPEN = 60_000;
+
     private final String host;
     private final int port;
     private final NettyClient client;
     private final AtomicBoolean connecting = new AtomicBoolean(false);
     private final int maxRetries;
-    private final long retryInterval;
+    private final ExponentialBackoff backoff;
+    private final CircuitBreaker circuitBreaker;
+    private final List<ConnectionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean shutdown;
+    private volatile CompletableFuture<Void> connected = new CompletableFuture<>();
 
+    /**
+     * 最多尝试 {@link #DEFAULT_MAX_RETRIES} 次，退避 0.5s 到 30s
+     */
     public DefaultConnectionManager(String host, int port, NettyClient client) {
-        this(host, port, client, 3, 5000);
+        this(host, port, client, DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
     }
 
+    /**
+     * @param maxRetries 最大重试次数，小于等于0表示无限重试
+     * @param retryInterval 首次重试的退避时间（毫秒）
+     */
     public DefaultConnectionManager(String host, int port, NettyClient client,
                                   int maxRetries, long retryInterval) {
+        this(host, port, client, maxRetries, retryInterval, Math.max(retryInterval, DEFAULT_MAX_DELAY));
+    }
+
+    /**
+     * @param maxRetries 最大重试次数，小于等于0表示无限重试
+     * @param baseDelay 首次重试的退避时间（毫秒）
+     * @param maxDelay 退避时间上限（毫秒）
+     */
+    public DefaultConnectionManager(String host, int port, NettyClient client,
+                                    int maxRetries, long baseDelay, long maxDelay) {
         this.host = host;
         this.port = port;
         this.client = client;
         this.maxRetries = maxRetries;
-        this.retryInterval = retryInterval;
+        this.backoff = new ExponentialBackoff(baseDelay, maxDelay);
+        this.circuitBreaker = new CircuitBreaker(DEFAULT_BREAKER_THRESHOLD, DEFAULT_BREAKER_OPEN, DEFAULT_BREAKER_OPEN * 10);
     }
 
     /**
-     * 初始化连接
+     * 初始化连接，立即返回
+     * @return 首次连接（含握手）完成时结束；重试次数用尽或连接前已 {@link #shutdown()} 时异常结束
      */
-    public void initConnection() {
+    public CompletableFuture<Void> initConnection() {
+        shutdown = false;
+        CompletableFuture<Void> future = connected;
         if (connecting.compareAndSet(false, true)) {
-            new Thread(this::doConnectWithRetry).start();
+            if (future.isDone()) {
+                future = new CompletableFuture<>();
+                connected = future;
+            }
+            SCHEDULER.execute(() -> attempt(0));
         }
+        return future;
+    }
+
+    /**
+     * 并发建立多个连接
+     * @param managers 连接管理器
+     * @return 全部连接成功时结束，任一连接重试用尽时异常结束
+     */
+    public static CompletableFuture<Void> connectAll(Collection<DefaultConnectionManager> managers) {
+        return CompletableFuture.allOf(managers.stream()
+            .map(DefaultConnectionManager::initConnection)
+            .toArray(CompletableFuture[]::new));
+    }
+
+    public void addListener(ConnectionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ConnectionListener listener) {
+        listeners.remove(listener);
     }
 
-    private void doConnectWithRetry() {
-        int retryCount = 0;
-        while (retryCount < maxRetries && !client.isConnected()) {
+    private void attempt(int retryCount) {
+        if (shutdown) {
+            connecting.set(false);
+            connected.completeExceptionally(new IllegalStateException("Connection to " + host + ":" + port
+                + " was shut down before it was established"));
+            return;
+        }
+        long wait = circuitBreaker.remainingMillis();
+        if (wait > 0) {
+            logger.warn("Circuit open for {}:{}, next attempt in {}ms", host, port, wait);
+            SCHEDULER.schedule(() -> attempt(retryCount), wait, TimeUnit.MILLISECONDS);
+            return;
+        }
+        ChannelFuture future;
+        try {
+            future = client.connect();
+        } catch (Exception e) {
+            onFailure(retryCount, e);
+            return;
+        }
+        future.addListener(f -> {
+            if (f.isSuccess()) {
+                onConnected(future);
+            } else {
+                onFailure(retryCount, f.cause());
+            }
+        });
+    }
+
+    private void onConnected(ChannelFuture future) {
+        circuitBreaker.onSuccess();
+        connecting.set(false);
+        logger.info("Connected to {}:{} successfully", host, port);
+        future.channel().closeFuture().addListener(f -> onClosed());
+        for (ConnectionListener listener : listeners) {
             try {
-                ChannelFuture future = client.connect();
-                future.sync();
-                logger.info("Connected to {}:{} successfully", host, port);
-                connecting.set(false);
-                return;
+                listener.onConnected(client);
             } catch (Exception e) {
-                retryCount++;
-                logger.warn("Connection to {}:{} failed (attempt {}/{}), retrying in {}ms...",
-                          host, port, retryCount, maxRetries, retryInterval, e);
-                try {
-                    TimeUnit.MILLISECONDS.sleep(retryInterval);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+                logger.error("Connection listener failed", e);
             }
         }
-        connecting.set(false);
+        connected.complete(null);
+    }
+
+    private void onFailure(int retryCount, Throwable cause) {
+        circuitBreaker.onFailure();
+        int failures = retryCount + 1;
+        if (shutdown || (maxRetries > 0 && failures >= maxRetries)) {
+            logger.error("Connection to {}:{} failed after {} attempts", host, port, failures, cause);
+            connecting.set(false);
+            connected.completeExceptionally(cause);
+            return;
+        }
+        long delay = backoff.delayMillis(retryCount);
+        logger.warn("Connection to {}:{} failed (attempt {}/{}), retrying in {}ms: {}",
+                  host, port, failures, maxRetries > 0 ? maxRetries : "unlimited", delay, cause.toString());
+        SCHEDULER.schedule(() -> attempt(failures), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void onClosed() {
+        for (ConnectionListener listener : listeners) {
+            try {
+                listener.onDisconnected(client);
+            } catch (Exception e) {
+                logger.error("Connection listener failed", e);
+            }
+        }
+        if (shutdown) {
+            return;
+        }
+        logger.warn("Connection to {}:{} closed, reconnecting", host, port);
+        if (connecting.compareAndSet(false, true)) {
+            long delay = backoff.delayMillis(0);
+            SCHEDULER.schedule(() -> attempt(0), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public NettyClient getClient() {
+        return client;
     }
 
     /**
-     * 关闭连接
+     * 关闭连接，不再重连
      */
     public void shutdown() {
+        shutdown = true;
         client.disconnect();
     }
 }
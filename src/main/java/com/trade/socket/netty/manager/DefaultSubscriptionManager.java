@@ -1,23 +1,158 @@
 package com.trade.socket.netty.manager;
 
 import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.handler.RouteTable;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 默认订阅管理器
+ * 按 (channel, instId) 订阅的处理器保存在 {@link RouteTable} 中，收到消息时只定位一次 arg，
+ * 按路由编号调用对应处理器；按原始主题字符串订阅的接口保留兼容
+ * <p>
+ * 订阅管理器维护期望的订阅集合：频道的第一个处理器加入或最后一个处理器移除时才需要通知服务端，
+ * 这些变更在短时间窗口内合并成带多个 args 的 subscribe / unsubscribe 帧。
+ * 作为 {@link ConnectionListener} 注册到连接管理器后，每次（重新）连接成功都会用尽量少的帧重放完整订阅集合。
  * @param <T> 消息类型
  */
-public class DefaultSubscriptionManager<T> {
+@Slf4j
+public class DefaultSubscriptionManager<T> implements ConnectionListener {
+    /**
+     * OKX单帧请求的长度上限为64KB，留出余量
+     */
+    static final int MAX_FRAME_LENGTH = 60 * 1024;
+    public static final long DEFAULT_BATCH_WINDOW_MILLIS = 10;
+
+    private static final ScheduledExecutorService FLUSHER =
+        Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("subscription-flush", true));
+
     private final NettyClient client;
+    private final MessageHandler.HandlerContext context;
     private final Map<String, List<MessageHandler<T>>> topicSubscriptions = new ConcurrentHashMap<>();
     private final List<MessageHandler<T>> globalHandlers = new CopyOnWriteArrayList<>();
+    private final RouteTable<T> routeTable = new RouteTable<>();
+    private final long batchWindowMillis;
+    // 待发送的变更：路由编号 -> true 订阅 / false 取消订阅，按加入顺序发送
+    private final Map<Integer, Boolean> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
 
     public DefaultSubscriptionManager(NettyClient client) {
+        this(client, DEFAULT_BATCH_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param client 客户端
+     * @param batchWindowMillis 订阅变更合并窗口（毫秒），0 表示立即发送
+     */
+    public DefaultSubscriptionManager(NettyClient client, long batchWindowMillis) {
         this.client = client;
+        this.context = new MessageHandler.HandlerContext(client);
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    /**
+     * 创建并挂到分发器上，分发器收到的每条消息都会按订阅路由
+     * @param client 客户端
+     * @param dispatcher 消息分发器
+     */
+    public DefaultSubscriptionManager(NettyClient client, MessageDispatcher<T> dispatcher) {
+        this(client);
+        dispatcher.addHandler((message, ctx) -> {
+            handleMessage(message);
+            return true;
+        });
+    }
+
+    /**
+     * 注册到连接管理器，连接或重连成功后自动重放订阅
+     * @param connectionManager 连接管理器
+     */
+    public void bind(DefaultConnectionManager connectionManager) {
+        connectionManager.addListener(this);
+    }
+
+    /**
+     * 订阅OKX频道，该频道的第一个处理器会在合并窗口后随批量帧发送到服务端
+     * @param channel 频道，如 tickers
+     * @param instId 交易对，可为空
+     * @param handler 消息处理器
+     */
+    public synchronized void subscribe(String channel, String instId, MessageHandler<T> handler) {
+        int route = routeTable.subscribe(channel, instId, handler);
+        if (routeTable.handlers(route).length == 1) {
+            enqueue(route, true);
+        }
+    }
+
+    /**
+     * 取消OKX频道订阅，该频道没有处理器时向服务端发送取消订阅
+     * @param channel 频道
+     * @param instId 交易对，可为空
+     * @param handler 要移除的处理器
+     */
+    public synchronized void unsubscribe(String channel, String instId, MessageHandler<T> handler) {
+        int route = routeTable.route(channel, instId);
+        if (routeTable.unsubscribe(channel, instId, handler) && routeTable.handlers(route) == null) {
+            enqueue(route, false);
+        }
+    }
+
+    /**
+     * 连接成功：丢弃未发送的变更，按期望集合整体重放
+     */
+    @Override
+    public void onConnected(NettyClient connected) {
+        List<String> frames;
+        synchronized (this) {
+            pending.clear();
+            List<Integer> routes = new ArrayList<>();
+            for (int route = 0; route < routeTable.getTopicIndex().size(); route++) {
+                if (routeTable.handlers(route) != null) {
+                    routes.add(route);
+                }
+            }
+            frames = buildFrames("subscribe", routes);
+        }
+        for (String topic : topicSubscriptions.keySet()) {
+            client.send(topic);
+        }
+        frames.forEach(client::send);
+        log.info("Replayed {} subscriptions in {} frames", routeTable.getTopics().size(), frames.size());
+    }
+
+    /**
+     * 立即发送合并窗口内的订阅变更
+     */
+    public void flush() {
+        List<String> frames;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (!client.isConnected()) {
+                // 未连接时不发送，连接成功后会整体重放
+                pending.clear();
+                return;
+            }
+            List<Integer> subscribes = new ArrayList<>();
+            List<Integer> unsubscribes = new ArrayList<>();
+            pending.forEach((route, subscribe) -> (subscribe ? subscribes : unsubscribes).add(route));
+            pending.clear();
+            frames = buildFrames("unsubscribe", unsubscribes);
+            frames.addAll(buildFrames("subscribe", subscribes));
+        }
+        frames.forEach(client::send);
     }
 
     /**
@@ -61,6 +196,26 @@ public class DefaultSubscriptionManager<T> {
         globalHandlers.remove(handler);
     }
 
+    /**
+     * 处理接收到的消息，主题从消息的 arg 中解析
+     * @param message 消息内容
+     */
+    public void handleMessage(T message) {
+        for (MessageHandler<T> handler : globalHandlers) {
+            handler.handle(message, context);
+        }
+
+        if (routeTable.isEmpty() || !(message instanceof String)) {
+            return;
+        }
+        MessageHandler<T>[] handlers = routeTable.handlers(routeTable.route((String) message));
+        if (handlers != null) {
+            for (MessageHandler<T> handler : handlers) {
+                handler.handle(message, context);
+            }
+        }
+    }
+
     /**
      * 处理接收到的消息
      * @param topic 消息主题
@@ -69,23 +224,77 @@ public class DefaultSubscriptionManager<T> {
     public void handleMessage(String topic, T message) {
         // 处理全局处理器
         for (MessageHandler<T> handler : globalHandlers) {
-            handler.handle(message, new MessageHandler.HandlerContext(client));
+            handler.handle(message, context);
         }
 
         // 处理主题订阅处理器
         List<MessageHandler<T>> handlers = topicSubscriptions.get(topic);
         if (handlers != null) {
             for (MessageHandler<T> handler : handlers) {
-                handler.handle(message, new MessageHandler.HandlerContext(client));
+                handler.handle(message, context);
             }
         }
     }
 
     /**
-     * 获取所有订阅的主题
+     * 获取所有订阅的主题，频道订阅格式为 channel:instId
      * @return 主题集合
      */
     public Set<String> getSubscribedTopics() {
-        return Collections.unmodifiableSet(topicSubscriptions.keySet());
+        Set<String> topics = new LinkedHashSet<>(topicSubscriptions.keySet());
+        topics.addAll(routeTable.getTopics());
+        return Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * 记录一次服务端订阅变更；窗口内相反的变更互相抵消
+     */
+    private void enqueue(int route, boolean subscribe) {
+        Boolean previous = pending.remove(route);
+        if (previous == null || previous == subscribe) {
+            pending.put(route, subscribe);
+        }
+        if (batchWindowMillis <= 0) {
+            FLUSHER.execute(this::flush);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            FLUSHER.schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 按帧长度上限把多个主题拼成尽量少的请求帧
+     */
+    List<String> buildFrames(String op, List<Integer> routes) {
+        List<String> frames = new ArrayList<>();
+        if (routes.isEmpty()) {
+            return frames;
+        }
+        String head = "{\"op\":\"" + op + "\",\"args\":[";
+        StringBuilder frame = new StringBuilder(head);
+        StringBuilder arg = new StringBuilder(64);
+        for (int route : routes) {
+            arg.setLength(0);
+            appendArg(arg, routeTable.getTopicIndex().channel(route), routeTable.getTopicIndex().instId(route));
+            if (frame.length() > head.length() && frame.length() + 1 + arg.length() + 2 > MAX_FRAME_LENGTH) {
+                frames.add(frame.append("]}").toString());
+                frame.setLength(0);
+                frame.append(head);
+            }
+            if (frame.length() > head.length()) {
+                frame.append(',');
+            }
+            frame.append(arg);
+        }
+        frames.add(frame.append("]}").toString());
+        return frames;
+    }
+
+    private static void appendArg(StringBuilder sb, String channel, String instId) {
+        sb.append("{\"channel\":\"").append(channel).append('"');
+        if (instId != null && !instId.isEmpty()) {
+            sb.append(",\"instId\":\"").append(instId).append('"');
+        }
+        sb.append('}');
     }
 }
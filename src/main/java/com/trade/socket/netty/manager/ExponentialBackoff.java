@@ -0,0 +1,53 @@
+package com.trade.socket.netty.manager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带随机抖动的指数退避
+ * <p>
+ * 第 n 次重试的上限为 base * 2^n（不超过 max），实际等待时间在 [上限/2, 上限] 之间随机，
+ * 交易所闪断后大量连接不会在同一时刻一起重连。
+ */
+public class ExponentialBackoff {
+    private final long baseMillis;
+    private final long maxMillis;
+
+    /**
+     * @param baseMillis 首次重试的等待上限（毫秒）
+     * @param maxMillis 等待上限（毫秒）
+     */
+    public ExponentialBackoff(long baseMillis, long maxMillis) {
+        if (baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff range: " + baseMillis + " - " + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * 计算等待时间
+     * @param attempt 已失败次数，从 0 开始
+     * @return 等待毫秒数
+     */
+    public long delayMillis(int attempt) {
+        long ceiling = ceilingMillis(attempt);
+        long half = ceiling >> 1;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * 不含抖动的等待上限
+     */
+    public long ceilingMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt, 0), 62 - (63 - Long.numberOfLeadingZeros(baseMillis)));
+        return Math.min(maxMillis, baseMillis << shift);
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
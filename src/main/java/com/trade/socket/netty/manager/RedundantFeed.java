@@ -0,0 +1,76 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.handler.FeedArbitrator;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.handler.MessageHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 冗余行情
+ * 连接池中每条连接订阅相同的频道，推送经 {@link FeedArbitrator} 去重后交给下游分发器。
+ * 一条连接卡顿或断线时由其它连接补上，断线的连接重连后自动重放订阅。
+ */
+public class RedundantFeed {
+    private final ConnectionPool pool;
+    private final FeedArbitrator arbitrator;
+    private final List<MessageHandler<String>> feedHandlers = new ArrayList<>();
+
+    /**
+     * @param url WebSocket URL
+     * @param copies 连接数
+     * @param downstream 下游分发器
+     */
+    public RedundantFeed(String url, int copies, MessageDispatcher<String> downstream) {
+        this(new ConnectionPool(url, copies), downstream);
+    }
+
+    public RedundantFeed(ConnectionPool pool, MessageDispatcher<String> downstream) {
+        this.pool = pool;
+        this.arbitrator = new FeedArbitrator(downstream, pool.size());
+        for (int i = 0; i < pool.size(); i++) {
+            feedHandlers.add(arbitrator.feedHandler(i));
+        }
+    }
+
+    /**
+     * 在每条连接上订阅频道
+     * @param channel 频道
+     * @param instId 交易对，可为空
+     */
+    public synchronized void subscribe(String channel, String instId) {
+        for (int i = 0; i < pool.size(); i++) {
+            pool.getShard(i).getSubscriptionManager().subscribe(channel, instId, feedHandlers.get(i));
+        }
+    }
+
+    /**
+     * 在每条连接上取消订阅
+     */
+    public synchronized void unsubscribe(String channel, String instId) {
+        for (int i = 0; i < pool.size(); i++) {
+            pool.getShard(i).getSubscriptionManager().unsubscribe(channel, instId, feedHandlers.get(i));
+        }
+    }
+
+    /**
+     * 并发建立所有连接
+     */
+    public CompletableFuture<Void> start() {
+        return pool.start();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public FeedArbitrator getArbitrator() {
+        return arbitrator;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,419 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.util.OkxMessages;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分片订阅管理器
+ * <p>
+ * 对外提供与 {@link DefaultSubscriptionManager} 相同的订阅接口，内部把交易对分配到 {@link ConnectionPool} 的各条连接上。
+ * 同一交易对的所有频道放在同一连接上；新交易对放到当前消息速率最低、订阅数最少的连接，
+ * 可设置每条连接的订阅数上限以适应交易所的单连接限制。
+ * <p>
+ * 每个 (channel, instId) 只向分片注册一个内部处理器，由它统计消息数并转发给用户处理器。
+ * {@link #rebalance()} 按统计出的速率把热点交易对从最忙的连接迁到最闲的连接。
+ * 迁移时先在新连接订阅再取消旧连接，期间两条连接都可能送来同一推送：内部处理器只转发当前连接的推送，
+ * 新连接送来的推送顺序号超过旧连接已转发的才切换过去，之后旧连接的推送全部丢弃，用户处理器不会收到重复消息。
+ */
+@Slf4j
+public class ShardedSubscriptionManager {
+    /**
+     * 最忙连接的速率超过平均值的比例，超过才迁移
+     */
+    private static final double DEFAULT_TOLERANCE = 0.2;
+    private static final int MAX_MOVES_PER_ROUND = 4;
+
+    private final ConnectionPool pool;
+    private final int maxTopicsPerShard;
+    private final double tolerance;
+    private final Map<String, Instrument> instruments = new HashMap<>();
+    private final Map<String, Topic> topics = new LinkedHashMap<>();
+    private final int[] shardTopics;
+    private long lastRebalanceNanos = System.nanoTime();
+    private ScheduledExecutorService rebalancer;
+    private ScheduledFuture<?> rebalanceTask;
+
+    public ShardedSubscriptionManager(ConnectionPool pool) {
+        this(pool, Integer.MAX_VALUE, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param pool 连接池
+     * @param maxTopicsPerShard 单条连接的订阅数上限
+     * @param tolerance 最忙连接超过平均速率多少比例时迁移，如 0.2
+     */
+    public ShardedSubscriptionManager(ConnectionPool pool, int maxTopicsPerShard, double tolerance) {
+        this.pool = pool;
+        this.maxTopicsPerShard = maxTopicsPerShard;
+        this.tolerance = tolerance;
+        this.shardTopics = new int[pool.size()];
+    }
+
+    /**
+     * 订阅OKX频道
+     * @param channel 频道
+     * @param instId 交易对，可为空
+     * @param handler 消息处理器
+     */
+    public synchronized void subscribe(String channel, String instId, MessageHandler<String> handler) {
+        String inst = instId == null ? "" : instId;
+        String key = channel + ":" + inst;
+        Topic topic = topics.get(key);
+        if (topic == null) {
+            Instrument instrument = instruments.get(inst);
+            if (instrument == null) {
+                instrument = new Instrument(inst, place(inst));
+                instruments.put(inst, instrument);
+            }
+            if (shardTopics[instrument.shard] >= maxTopicsPerShard) {
+                throw new IllegalStateException("Shard " + instrument.shard + " is full, cannot subscribe " + key);
+            }
+            topic = new Topic(channel, instrument, pool.getShard(instrument.shard).getClient());
+            topics.put(key, topic);
+            instrument.topics.add(topic);
+            shardTopics[instrument.shard]++;
+            pool.getShard(instrument.shard).getSubscriptionManager().subscribe(channel, instId, topic);
+        }
+        topic.add(handler);
+    }
+
+    /**
+     * 取消OKX频道订阅
+     */
+    public synchronized void unsubscribe(String channel, String instId, MessageHandler<String> handler) {
+        String inst = instId == null ? "" : instId;
+        String key = channel + ":" + inst;
+        Topic topic = topics.get(key);
+        if (topic == null || !topic.remove(handler) || topic.handlers.length > 0) {
+            return;
+        }
+        Instrument instrument = topic.instrument;
+        topics.remove(key);
+        instrument.topics.remove(topic);
+        shardTopics[instrument.shard]--;
+        pool.getShard(instrument.shard).getSubscriptionManager().unsubscribe(channel, instId, topic);
+        if (instrument.topics.isEmpty()) {
+            instruments.remove(inst);
+        }
+    }
+
+    /**
+     * 添加全局处理器，接收所有连接的所有消息
+     */
+    public synchronized void addGlobalHandler(MessageHandler<String> handler) {
+        for (ConnectionPool.Shard shard : pool.getShards()) {
+            shard.getSubscriptionManager().addGlobalHandler(handler);
+        }
+    }
+
+    public synchronized void removeGlobalHandler(MessageHandler<String> handler) {
+        for (ConnectionPool.Shard shard : pool.getShards()) {
+            shard.getSubscriptionManager().removeGlobalHandler(handler);
+        }
+    }
+
+    /**
+     * 按最近一个统计周期的消息速率迁移热点交易对
+     * @return 迁移的交易对数量
+     */
+    public synchronized int rebalance() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastRebalanceNanos) / 1e9);
+        lastRebalanceNanos = now;
+        return rebalance(seconds);
+    }
+
+    synchronized int rebalance(double seconds) {
+        int shardCount = pool.size();
+        double[] loads = new double[shardCount];
+        double total = 0;
+        for (Instrument instrument : instruments.values()) {
+            long count = instrument.messages.sum();
+            instrument.rate = (count - instrument.lastCount) / seconds;
+            instrument.lastCount = count;
+            loads[instrument.shard] += instrument.rate;
+            total += instrument.rate;
+        }
+        if (shardCount < 2 || total <= 0) {
+            return 0;
+        }
+        double average = total / shardCount;
+        int moves = 0;
+        while (moves < MAX_MOVES_PER_ROUND) {
+            int hot = 0;
+            int cold = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (loads[i] > loads[hot]) {
+                    hot = i;
+                }
+                if (loads[i] < loads[cold]) {
+                    cold = i;
+                }
+            }
+            if (loads[hot] <= average * (1 + tolerance)) {
+                break;
+            }
+            // 选速率最接近两者差值一半的交易对，迁移后最大负载下降最多
+            double gap = loads[hot] - loads[cold];
+            Instrument candidate = null;
+            for (Instrument instrument : instruments.values()) {
+                if (instrument.shard != hot || instrument.rate <= 0 || instrument.rate >= gap
+                    || shardTopics[cold] + instrument.topics.size() > maxTopicsPerShard) {
+                    continue;
+                }
+                if (candidate == null || Math.abs(instrument.rate - gap / 2) < Math.abs(candidate.rate - gap / 2)) {
+                    candidate = instrument;
+                }
+            }
+            if (candidate == null) {
+                break;
+            }
+            move(candidate, cold);
+            loads[hot] -= candidate.rate;
+            loads[cold] += candidate.rate;
+            moves++;
+        }
+        return moves;
+    }
+
+    /**
+     * 定时执行 {@link #rebalance()}
+     * @param periodMillis 统计周期（毫秒）
+     */
+    public synchronized void startRebalancing(long periodMillis) {
+        if (rebalancer == null) {
+            rebalancer = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("shard-rebalance", true));
+        }
+        if (rebalanceTask != null) {
+            rebalanceTask.cancel(false);
+        }
+        lastRebalanceNanos = System.nanoTime();
+        rebalanceTask = rebalancer.scheduleAtFixedRate(() -> {
+            try {
+                int moved = rebalance();
+                if (moved > 0) {
+                    log.info("Rebalanced {} instruments, shard loads {}", moved, Arrays.toString(getShardLoads()));
+                }
+            } catch (Exception e) {
+                log.error("Shard rebalance failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopRebalancing() {
+        if (rebalancer != null) {
+            rebalancer.shutdownNow();
+            rebalancer = null;
+            rebalanceTask = null;
+        }
+    }
+
+    /**
+     * 交易对所在的连接
+     * @return 连接序号，未订阅返回 -1
+     */
+    public synchronized int getShardIndex(String instId) {
+        Instrument instrument = instruments.get(instId == null ? "" : instId);
+        return instrument == null ? -1 : instrument.shard;
+    }
+
+    /**
+     * 最近一个统计周期各连接的消息速率（条/秒）
+     */
+    public synchronized double[] getShardLoads() {
+        double[] loads = new double[pool.size()];
+        for (Instrument instrument : instruments.values()) {
+            loads[instrument.shard] += instrument.rate;
+        }
+        return loads;
+    }
+
+    /**
+     * 各连接的订阅数
+     */
+    public synchronized int[] getShardTopicCounts() {
+        return shardTopics.clone();
+    }
+
+    /**
+     * 获取所有订阅的主题，格式 channel:instId
+     */
+    public synchronized Set<String> getSubscribedTopics() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(topics.keySet()));
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * 新交易对选速率最低、订阅数最少且未满的连接
+     */
+    private int place(String instId) {
+        double[] loads = getShardLoads();
+        int start = Math.floorMod(instId.hashCode(), pool.size());
+        int best = -1;
+        for (int n = 0; n < pool.size(); n++) {
+            int i = (start + n) % pool.size();
+            if (shardTopics[i] >= maxTopicsPerShard) {
+                continue;
+            }
+            if (best < 0 || loads[i] < loads[best]
+                || (loads[i] == loads[best] && shardTopics[i] < shardTopics[best])) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            throw new IllegalStateException("All " + pool.size() + " shards are full");
+        }
+        return best;
+    }
+
+    private void move(Instrument instrument, int target) {
+        int source = instrument.shard;
+        DefaultSubscriptionManager<String> from = pool.getShard(source).getSubscriptionManager();
+        DefaultSubscriptionManager<String> to = pool.getShard(target).getSubscriptionManager();
+        String instId = instrument.instId.isEmpty() ? null : instrument.instId;
+        NettyClient client = pool.getShard(target).getClient();
+        for (Topic topic : instrument.topics) {
+            topic.handOver(client);
+            to.subscribe(topic.channel, instId, topic);
+        }
+        for (Topic topic : instrument.topics) {
+            from.unsubscribe(topic.channel, instId, topic);
+        }
+        shardTopics[source] -= instrument.topics.size();
+        shardTopics[target] += instrument.topics.size();
+        instrument.shard = target;
+        log.info("Moved {} ({} msg/s) from shard {} to shard {}", instrument.instId,
+            String.format("%.1f", instrument.rate), source, target);
+    }
+
+    /**
+     * 交易对的分配和速率统计
+     */
+    private static final class Instrument {
+        private final String instId;
+        private final LongAdder messages = new LongAdder();
+        private final List<Topic> topics = new ArrayList<>(2);
+        private int shard;
+        private long lastCount;
+        private double rate;
+
+        Instrument(String instId, int shard) {
+            this.instId = instId;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * 注册到分片上的内部处理器：计数后转发给用户处理器
+     * <p>
+     * 只转发 source 连接的推送。迁移期间 pending 为新连接，此时在锁内记录旧连接已转发的最大顺序号，
+     * 新连接的推送顺序号不超过它时视为重复丢弃，超过时切换到新连接；没有顺序号的推送直接切换
+     */
+    private static final class Topic implements MessageHandler<String> {
+        private final String channel;
+        private final Instrument instrument;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private volatile MessageHandler<String>[] handlers = new MessageHandler[0];
+        private volatile NettyClient source;
+        private volatile NettyClient pending;
+        // source 最近转发的推送，迁移开始时由它取得顺序号高水位
+        private volatile String last;
+        private long highWaterMark;
+
+        Topic(String channel, Instrument instrument, NettyClient source) {
+            this.channel = channel;
+            this.instrument = instrument;
+            this.source = source;
+        }
+
+        @Override
+        public boolean handle(String message, HandlerContext ctx) {
+            if (pending != null) {
+                synchronized (this) {
+                    if (pending != null) {
+                        return admit(message, ctx.getClient()) ? forward(message, ctx) : true;
+                    }
+                }
+            }
+            if (ctx.getClient() != source) {
+                return true;
+            }
+            return forward(message, ctx);
+        }
+
+        /**
+         * 开始迁移到新连接，之后由新连接的推送决定何时切换
+         */
+        synchronized void handOver(NettyClient target) {
+            String recent = last;
+            highWaterMark = recent == null ? -1 : sequence(recent);
+            pending = target;
+        }
+
+        private boolean admit(String message, NettyClient client) {
+            if (client == source) {
+                highWaterMark = Math.max(highWaterMark, sequence(message));
+                return true;
+            }
+            if (client != pending) {
+                return false;
+            }
+            long sequence = sequence(message);
+            if (sequence >= 0 && sequence <= highWaterMark) {
+                return false;
+            }
+            source = pending;
+            pending = null;
+            return true;
+        }
+
+        private boolean forward(String message, HandlerContext ctx) {
+            instrument.messages.increment();
+            last = message;
+            for (MessageHandler<String> handler : handlers) {
+                if (!handler.handle(message, ctx)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long sequence(String message) {
+            long arg = OkxMessages.locateArg(message);
+            return arg < 0 ? -1 : OkxMessages.sequence(message, OkxMessages.channelEnd(arg));
+        }
+
+        void add(MessageHandler<String> handler) {
+            MessageHandler<String>[] current = handlers;
+            MessageHandler<String>[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = handler;
+            handlers = next;
+        }
+
+        boolean remove(MessageHandler<String> handler) {
+            MessageHandler<String>[] current = handlers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == handler) {
+                    MessageHandler<String>[] next = Arrays.copyOf(current, current.length - 1);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    handlers = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.trade.socket.netty.replay;
+
+import com.trade.socket.netty.client.NettyClient;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 回放用的客户端
+ * 没有网络连接，处理器通过上下文发送的消息（订阅、下单等）交给可选的回调，便于在回放中检查策略行为。
+ * 始终视为已连接，{@link #connect()} 返回已成功的 future，连接管理器等调用方无需区分回放
+ */
+public class ReplayClient implements NettyClient {
+    private final Consumer<String> sink;
+    private final AtomicLong sent = new AtomicLong();
+    // 只用于生成已完成的 future，不收发数据
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+
+    public ReplayClient() {
+        this(null);
+    }
+
+    /**
+     * @param sink 接收处理器发送的消息，可为空
+     */
+    public ReplayClient(Consumer<String> sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public ChannelFuture connect() {
+        return channel.newSucceededFuture();
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    @Override
+    public void send(String message) {
+        sent.incrementAndGet();
+        if (sink != null) {
+            sink.accept(message);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    /**
+     * 处理器发送的消息数
+     */
+    public long getSent() {
+        return sent.get();
+    }
+}
@@ -0,0 +1,239 @@
+package com.trade.socket.netty.replay;
+
+import com.trade.socket.netty.codec.MarketDataListener;
+import com.trade.socket.netty.codec.OkxFrameDecoder;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.journal.JournalReader;
+import com.trade.socket.netty.journal.JournalRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 行情回放
+ * <p>
+ * 读取 {@link com.trade.socket.netty.journal.Journal} 录制的原始帧，按与 {@link com.trade.socket.netty.client.NettyHandlerObjectMessage}
+ * 相同的方式交给 {@link MessageDispatcher}：设置了行情监听器时先尝试二进制解码，其余帧转为字符串分发。
+ * 处理器代码与实盘完全一致，回放在调用线程上执行，不需要网络。
+ * <p>
+ * 节奏按录制的墙上时间计算，等待超过 {@link #SPIN_THRESHOLD_NANOS} 时先 park 再自旋到目标时间。
+ * 分发器开启环形缓冲区时回放只负责发布，统计的耗时不含消费线程的处理时间。
+ * 多天的数据用 {@link #replayAll} 在多个线程上并行回放，每天使用独立的引擎和分发器，处理器无需线程安全。
+ */
+@Slf4j
+public class ReplayEngine {
+    static final long SPIN_THRESHOLD_NANOS = 100_000;
+
+    private final MessageDispatcher<String> dispatcher;
+    private final ReplayMode mode;
+    private final double speed;
+    private MarketDataListener marketDataListener;
+    private OkxFrameDecoder frameDecoder;
+    private int connectionId;
+    private volatile boolean stopped;
+    private byte[] scratch = new byte[64 * 1024];
+    private ByteBuf frame = Unpooled.wrappedBuffer(scratch);
+
+    public ReplayEngine(MessageDispatcher<String> dispatcher) {
+        this(dispatcher, ReplayMode.AS_FAST_AS_POSSIBLE, 1);
+    }
+
+    /**
+     * @param dispatcher 分发器，未设置客户端时使用 {@link ReplayClient}
+     * @param mode 回放节奏
+     * @param speed 倍速，仅 {@link ReplayMode#SCALED} 使用，如 10 表示10倍速
+     */
+    public ReplayEngine(MessageDispatcher<String> dispatcher, ReplayMode mode, double speed) {
+        if (mode == ReplayMode.SCALED && !(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        this.dispatcher = dispatcher;
+        this.mode = mode;
+        this.speed = mode == ReplayMode.SCALED ? speed : 1;
+        if (dispatcher.getClient() == null) {
+            dispatcher.setClient(new ReplayClient());
+        }
+    }
+
+    /**
+     * 与 {@link com.trade.socket.netty.client.BaseNettyClient#setMarketDataListener} 一致的二进制解码
+     * @param marketDataListener 行情监听器，null 表示关闭
+     */
+    public void setMarketDataListener(MarketDataListener marketDataListener) {
+        this.marketDataListener = marketDataListener;
+        this.frameDecoder = marketDataListener != null ? new OkxFrameDecoder() : null;
+    }
+
+    /**
+     * 只回放某条连接录制的帧，多路冗余行情录制到同一日志时避免重复
+     * @param connectionId 连接号，0 表示全部
+     */
+    public void setConnectionId(int connectionId) {
+        this.connectionId = connectionId;
+    }
+
+    /**
+     * 回放全部记录
+     */
+    public ReplayResult replay(JournalReader journal) throws IOException {
+        return replay(journal, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 回放墙上时间在 [from, to] 内的记录，阻塞到回放结束或 {@link #stop()}
+     * @param journal 日志
+     * @param fromEpochNanos 起始时间（纳秒）
+     * @param toEpochNanos 结束时间（纳秒），包含
+     * @return 统计
+     */
+    public ReplayResult replay(JournalReader journal, long fromEpochNanos, long toEpochNanos) throws IOException {
+        stopped = false;
+        Pacer pacer = new Pacer();
+        long start = System.nanoTime();
+        journal.read(fromEpochNanos, toEpochNanos, record -> {
+            if (connectionId != 0 && record.getConnectionId() != connectionId) {
+                return !stopped;
+            }
+            if (mode != ReplayMode.AS_FAST_AS_POSSIBLE) {
+                pacer.await(record.getEpochNanos());
+            }
+            deliver(record);
+            pacer.count(record);
+            return !stopped;
+        });
+        ReplayResult result = new ReplayResult(journal.getDirectory(), pacer.messages, pacer.bytes,
+            System.nanoTime() - start, pacer.maxLateNanos, pacer.firstEpochNanos, pacer.lastEpochNanos);
+        log.info("Replay finished: {}", result);
+        return result;
+    }
+
+    private void deliver(JournalRecord record) {
+        int length = record.getLength();
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+            frame = Unpooled.wrappedBuffer(scratch);
+        }
+        record.getPayload(scratch);
+        if (frameDecoder != null) {
+            frame.setIndex(0, length);
+            if (frameDecoder.decode(frame, System.nanoTime(), marketDataListener)) {
+                return;
+            }
+        }
+        dispatcher.dispatch(new String(scratch, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 停止正在进行的回放，当前记录处理完后返回
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public ReplayMode getMode() {
+        return mode;
+    }
+
+    public MessageDispatcher<String> getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * 并行回放多份日志（如每天一个目录）
+     * @param journals 日志
+     * @param engines 为每份日志创建独立的引擎（及其分发器和处理器）
+     * @param parallelism 并行线程数
+     * @return 与 journals 顺序一致的统计
+     */
+    public static List<ReplayResult> replayAll(List<JournalReader> journals,
+                                               Function<JournalReader, ReplayEngine> engines,
+                                               int parallelism) throws IOException {
+        int threads = Math.max(1, Math.min(parallelism, journals.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("replay", true));
+        try {
+            List<Future<ReplayResult>> futures = new ArrayList<>(journals.size());
+            for (JournalReader journal : journals) {
+                futures.add(executor.submit(() -> engines.apply(journal).replay(journal)));
+            }
+            List<ReplayResult> results = new ArrayList<>(journals.size());
+            for (Future<ReplayResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Replay interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IllegalStateException("Replay failed", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static List<ReplayResult> replayAll(List<JournalReader> journals,
+                                               Function<JournalReader, ReplayEngine> engines) throws IOException {
+        return replayAll(journals, engines, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 按录制时间间隔等待，并累计统计
+     */
+    private final class Pacer {
+        private long firstEpochNanos;
+        private long lastEpochNanos;
+        private long startNanos;
+        private long messages;
+        private long bytes;
+        private long maxLateNanos;
+
+        void await(long epochNanos) {
+            if (messages == 0) {
+                startNanos = System.nanoTime();
+                firstEpochNanos = epochNanos;
+                return;
+            }
+            long target = startNanos + (long) ((epochNanos - firstEpochNanos) / speed);
+            while (!stopped) {
+                long remaining = target - System.nanoTime();
+                if (remaining <= 0) {
+                    maxLateNanos = Math.max(maxLateNanos, -remaining);
+                    return;
+                }
+                if (remaining > SPIN_THRESHOLD_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        void count(JournalRecord record) {
+            if (messages == 0) {
+                firstEpochNanos = record.getEpochNanos();
+            }
+            lastEpochNanos = record.getEpochNanos();
+            messages++;
+            bytes += record.getLength();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.trade.socket.netty.replay;
+
+/**
+ * 回放节奏
+ */
+public enum ReplayMode {
+    /**
+     * 按录制时的接收间隔回放
+     */
+    ORIGINAL,
+    /**
+     * 按录制间隔除以倍速回放
+     */
+    SCALED,
+    /**
+     * 不等待，尽可能快地回放
+     */
+    AS_FAST_AS_POSSIBLE
+}
@@ -0,0 +1,46 @@
+package com.trade.socket.netty.replay;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * 一次回放的统计
+ */
+@Getter
+public class ReplayResult {
+    private final Path directory;
+    private final long messages;
+    private final long bytes;
+    private final long elapsedNanos;
+    /**
+     * 按节奏回放时实际投递晚于计划时间的最大值，AS_FAST_AS_POSSIBLE 下为 0
+     */
+    private final long maxLateNanos;
+    /**
+     * 录制的起止墙上时间（纳秒），没有记录时为 0
+     */
+    private final long firstEpochNanos;
+    private final long lastEpochNanos;
+
+    public ReplayResult(Path directory, long messages, long bytes, long elapsedNanos, long maxLateNanos,
+                        long firstEpochNanos, long lastEpochNanos) {
+        this.directory = directory;
+        this.messages = messages;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.maxLateNanos = maxLateNanos;
+        this.firstEpochNanos = firstEpochNanos;
+        this.lastEpochNanos = lastEpochNanos;
+    }
+
+    public double getMessagesPerSecond() {
+        return elapsedNanos == 0 ? 0 : messages * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d messages, %d bytes in %.3fs (%.0f msg/s), max late %dus",
+            directory, messages, bytes, elapsedNanos / 1e9, getMessagesPerSecond(), maxLateNanos / 1000);
+    }
+}
@@ -0,0 +1,180 @@
+package com.trade.socket.netty.util;
+
+/**
+ * OKX文本消息的轻量扫描工具
+ * <p>
+ * 只定位 arg.channel / arg.instId 在原始消息中的位置，不解析整条JSON、不创建对象。
+ * 位置打包成一个 long：channel起止、instId起止各占16位，消息中 arg 超过 65535 字符偏移时视为未找到。
+ */
+public class OkxMessages {
+    private static final String ARG = "\"arg\"";
+    private static final String CHANNEL = "\"channel\"";
+    private static final String INST_ID = "\"instId\"";
+    private static final String EVENT = "\"event\"";
+    private static final String SEQ_ID = "\"seqId\":";
+    private static final String TRADE_ID = "\"tradeId\":\"";
+    private static final String TS = "\"ts\":\"";
+    private static final int MAX_OFFSET = 0xFFFF;
+
+    private OkxMessages() {
+    }
+
+    /**
+     * 定位 arg 中的 channel 和 instId
+     * @param message 原始消息
+     * @return 打包后的位置，未找到 channel 返回 -1；无 instId 时 instId 起止均为 0
+     */
+    public static long locateArg(String message) {
+        int arg = message.indexOf(ARG);
+        if (arg < 0) {
+            return -1;
+        }
+        int close = message.indexOf('}', arg);
+        if (close < 0 || close > MAX_OFFSET) {
+            return -1;
+        }
+        long channel = valueRange(message, CHANNEL, arg, close);
+        if (channel < 0) {
+            return -1;
+        }
+        long instId = valueRange(message, INST_ID, arg, close);
+        long packed = channel << 32;
+        if (instId >= 0) {
+            packed |= instId;
+        }
+        return packed;
+    }
+
+    public static int channelStart(long arg) {
+        return (int) (arg >>> 48) & 0xFFFF;
+    }
+
+    public static int channelEnd(long arg) {
+        return (int) (arg >>> 32) & 0xFFFF;
+    }
+
+    public static int instIdStart(long arg) {
+        return (int) (arg >>> 16) & 0xFFFF;
+    }
+
+    public static int instIdEnd(long arg) {
+        return (int) arg & 0xFFFF;
+    }
+
+    /**
+     * 是否为事件消息（subscribe / unsubscribe / login / error 等响应），即顶层对象含 event 键
+     * <p>
+     * OKX 的事件响应中 event 通常是第一个键，先直接比较；否则只在消息中出现 "event" 时才逐字符确认它是顶层的键，
+     * 行情推送不含该字符串，只多一次 indexOf。
+     */
+    public static boolean isEvent(String message) {
+        if (message.regionMatches(1, EVENT, 0, EVENT.length())) {
+            return true;
+        }
+        for (int k = message.indexOf(EVENT); k >= 0; k = message.indexOf(EVENT, k + 1)) {
+            if (isTopLevelKey(message, k, EVENT.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 提取推送的顺序号，用于多路行情去重
+     * 依次取 data 中第一个 seqId（深度）、tradeId（成交）、ts（其它频道）
+     * @param message 原始消息
+     * @param from 开始查找的位置，通常为 arg 结束位置
+     * @return 顺序号，未找到返回 -1
+     */
+    public static long sequence(String message, int from) {
+        int k = message.indexOf(SEQ_ID, from);
+        if (k >= 0) {
+            return parseDigits(message, k + SEQ_ID.length());
+        }
+        k = message.indexOf(TRADE_ID, from);
+        if (k >= 0) {
+            return parseDigits(message, k + TRADE_ID.length());
+        }
+        k = message.indexOf(TS, from);
+        if (k >= 0) {
+            return parseDigits(message, k + TS.length());
+        }
+        return -1;
+    }
+
+    /**
+     * {@link #sequence(String, int)} 是否取自 ts；毫秒时间戳不唯一，同一毫秒内可能有多条不同的推送
+     */
+    public static boolean isTimestampSequence(String message, int from) {
+        return message.indexOf(SEQ_ID, from) < 0 && message.indexOf(TRADE_ID, from) < 0;
+    }
+
+    /**
+     * 位于 at 的带引号字符串是否为顶层对象的键：不在其它字符串内、嵌套深度为1且后面跟冒号
+     */
+    private static boolean isTopLevelKey(String message, int at, int length) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < at; i++) {
+            char c = message.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        if (inString || depth != 1) {
+            return false;
+        }
+        int i = at + length;
+        while (i < message.length() && message.charAt(i) == ' ') {
+            i++;
+        }
+        return i < message.length() && message.charAt(i) == ':';
+    }
+
+    private static long parseDigits(String message, int start) {
+        long value = 0;
+        int i = start;
+        for (; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return i == start ? -1 : value;
+    }
+
+    /**
+     * 查找 key 对应的字符串值位置
+     * @return 高16位起始、低16位结束（不含），未找到返回 -1
+     */
+    private static long valueRange(String message, String key, int from, int to) {
+        int k = message.indexOf(key, from);
+        if (k < 0 || k > to) {
+            return -1;
+        }
+        int i = k + key.length();
+        while (i < to && (message.charAt(i) == ':' || message.charAt(i) == ' ')) {
+            i++;
+        }
+        if (i >= to || message.charAt(i) != '"') {
+            return -1;
+        }
+        int start = i + 1;
+        int end = message.indexOf('"', start);
+        if (end < 0 || end > to) {
+            return -1;
+        }
+        return ((long) start << 16) | end;
+    }
+}
@@ -0,0 +1,167 @@
+package com.trade.socket.netty.util;
+
+/**
+ * 主题索引
+ * <p>
+ * 为 (channel, instId) 组合分配从 0 开始的整数编号，可直接用原始消息中的字符区间查询，命中时不创建对象。
+ * 查询无锁；新主题注册时加锁并以写时复制方式发布新表。
+ */
+public class TopicIndex {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY, 0);
+
+    /**
+     * 获取主题编号，不存在则注册
+     * @param channel 频道
+     * @param instId 交易对，可为空字符串
+     * @return 主题编号
+     */
+    public int register(String channel, String instId) {
+        String inst = instId == null ? "" : instId;
+        int id = find(channel, 0, channel.length(), inst, 0, inst.length());
+        if (id >= 0) {
+            return id;
+        }
+        return doRegister(channel, inst);
+    }
+
+    /**
+     * 根据 {@link OkxMessages#locateArg(String)} 的结果查询主题编号，不存在则注册
+     * @param message 原始消息
+     * @param arg 打包后的位置
+     * @return 主题编号
+     */
+    public int register(String message, long arg) {
+        int id = find(message, arg);
+        if (id >= 0) {
+            return id;
+        }
+        return doRegister(message.substring(OkxMessages.channelStart(arg), OkxMessages.channelEnd(arg)),
+            message.substring(OkxMessages.instIdStart(arg), OkxMessages.instIdEnd(arg)));
+    }
+
+    /**
+     * 根据 {@link OkxMessages#locateArg(String)} 的结果查询主题编号，不注册
+     * @return 主题编号，不存在返回 -1
+     */
+    public int find(String message, long arg) {
+        return find(message, OkxMessages.channelStart(arg), OkxMessages.channelEnd(arg),
+            message, OkxMessages.instIdStart(arg), OkxMessages.instIdEnd(arg));
+    }
+
+    /**
+     * 查询主题编号，不注册
+     * @return 主题编号，不存在返回 -1
+     */
+    public int find(String channel, String instId) {
+        String inst = instId == null ? "" : instId;
+        return find(channel, 0, channel.length(), inst, 0, inst.length());
+    }
+
+    public String channel(int id) {
+        return table.channels[id];
+    }
+
+    public String instId(int id) {
+        return table.instIds[id];
+    }
+
+    /**
+     * 已注册的主题数量
+     */
+    public int size() {
+        return table.size;
+    }
+
+    private int find(CharSequence channel, int channelStart, int channelEnd,
+                     CharSequence instId, int instStart, int instEnd) {
+        Table t = table;
+        int hash = hash(channel, channelStart, channelEnd, instId, instStart, instEnd);
+        int mask = t.slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int slot = t.slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            int id = slot - 1;
+            if (regionEquals(t.channels[id], channel, channelStart, channelEnd)
+                && regionEquals(t.instIds[id], instId, instStart, instEnd)) {
+                return id;
+            }
+        }
+    }
+
+    private synchronized int doRegister(String channel, String instId) {
+        int existing = find(channel, 0, channel.length(), instId, 0, instId.length());
+        if (existing >= 0) {
+            return existing;
+        }
+        Table current = table;
+        Table next = new Table(current.size + 1 > current.slots.length >> 1
+            ? current.slots.length << 1 : current.slots.length, current.size);
+        System.arraycopy(current.channels, 0, next.channels, 0, current.size);
+        System.arraycopy(current.instIds, 0, next.instIds, 0, current.size);
+        int id = next.size++;
+        next.channels[id] = channel;
+        next.instIds[id] = instId;
+        for (int i = 0; i < next.size; i++) {
+            next.insert(hash(next.channels[i], 0, next.channels[i].length(),
+                next.instIds[i], 0, next.instIds[i].length()), i);
+        }
+        table = next;
+        return id;
+    }
+
+    private static int hash(CharSequence channel, int channelStart, int channelEnd,
+                            CharSequence instId, int instStart, int instEnd) {
+        int h = 0x811c9dc5;
+        for (int i = channelStart; i < channelEnd; i++) {
+            h = (h ^ channel.charAt(i)) * 0x01000193;
+        }
+        h = (h ^ '/') * 0x01000193;
+        for (int i = instStart; i < instEnd; i++) {
+            h = (h ^ instId.charAt(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(String key, CharSequence s, int start, int end) {
+        int length = end - start;
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 不可变发布的开放寻址表，slots 中保存 id + 1，0 表示空位
+     */
+    private static final class Table {
+        private final int[] slots;
+        private final String[] channels;
+        private final String[] instIds;
+        private int size;
+
+        Table(int capacity, int size) {
+            this.slots = new int[capacity];
+            this.channels = new String[capacity >> 1];
+            this.instIds = new String[capacity >> 1];
+            this.size = size;
+        }
+
+        void insert(int hash, int id) {
+            int mask = slots.length - 1;
+            int i = hash & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+}
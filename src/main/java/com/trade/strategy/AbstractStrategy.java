@@ -1,23 +1,47 @@
 package com.trade.strategy;
 
+import com.trade.cache.OrderListener;
+import com.trade.cache.OrderStatus;
+import com.trade.cache.PositionSnapshot;
 import com.trade.common.DataMessage;
 import com.trade.domain.Strategy;
+import com.trade.utils.ClientOrderIdAllocator;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * 策略抽象基类
  */
 @Slf4j
-public abstract class AbstractStrategy implements IStrategy {
+public abstract class AbstractStrategy implements IStrategy, OrderListener {
     protected Strategy strategy;
     protected boolean running = false;
+    /**
+     * 本策略的订单号，前缀为 s + 策略编号，只能在策略线程上使用
+     */
+    protected ClientOrderIdAllocator.Sequence orderIds;
+    /**
+     * 下单出口，为 null 时订单只登记到挂单簿，不发往交易所
+     */
+    protected OrderGateway orderGateway;
 
     @Override
     public void init(Strategy strategy) {
         this.strategy = strategy;
+        this.orderIds = ClientOrderIdAllocator.global()
+            .sequence(strategy.getId() == null ? "s" : "s" + strategy.getId());
         log.info("Strategy {} initialized", strategy.getName());
     }
 
+    /**
+     * 需在 {@link #start()} 之前设置
+     */
+    public void setOrderGateway(OrderGateway orderGateway) {
+        this.orderGateway = orderGateway;
+    }
+
     @Override
     public void start() {
         if (running) {
@@ -67,5 +91,37 @@ public abstract class AbstractStrategy implements IStrategy {
      */
     protected abstract void onParamsUpdate();
 
+    /**
+     * 定时回调的间隔（毫秒），由 {@link StrategyRunner} 按此间隔在策略线程上调用 {@link #onTimer()}，0 表示不需要
+     */
+    public long getTimerInterval() {
+        return 0;
+    }
+
+    /**
+     * 需要的行情，启动后由运行方订阅到交易所连接，推送经 {@link #change(DataMessage)} 送达
+     * <p>
+     * 在策略线程上、{@link #start()} 之后读取，可依赖已解析的参数
+     * @return {频道: 交易对列表}，为空时接收连接上的全部推送
+     */
+    public Map<String, List<String>> getSubscriptions() {
+        return Map.of();
+    }
+
+    /**
+     * 定时回调，与行情、订单事件在同一线程上串行执行，默认忽略
+     */
+    protected void onTimer() {
+    }
+
+    /**
+     * 订单状态变化，默认忽略，子类按需覆盖
+     * <p>
+     * 由 {@link StrategyRunner} 运行时转到策略线程上调用，否则在挂单簿写线程上调用
+     */
+    @Override
+    public void onTransition(PositionSnapshot.OrderState order, OrderStatus from) {
+    }
+
     public abstract void change(DataMessage dataMessage);
 }
@@ -0,0 +1,31 @@
+package com.trade.strategy;
+
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+
+/**
+ * 策略的延迟等级，决定 {@link StrategyRunner} 事件循环线程空闲时的等待方式
+ * <p>
+ * 两种等级都使用独占的平台线程，策略之间不共享线程和锁；区别只在空闲时是否让出CPU。
+ * NORMAL 的线程空闲时阻塞，有任务投递才被唤醒，大量空闲实例不会周期性地抢占CPU。
+ */
+public enum LatencyClass {
+    /**
+     * 忙等，事件到达即处理，每个实例独占一个CPU核，需配合 taskset/isolcpus 绑核使用
+     */
+    LOW,
+    /**
+     * 自旋、让出后阻塞到有新任务，空闲时不占CPU也没有定时唤醒，同一进程可运行数百个实例
+     */
+    NORMAL;
+
+    public WaitStrategy waitStrategy() {
+        return this == LOW ? WaitStrategy.busySpin() : WaitStrategy.blocking();
+    }
+
+    /**
+     * @return 为空时返回 {@link #NORMAL}
+     */
+    public static LatencyClass of(String name) {
+        return name == null || name.isEmpty() ? NORMAL : valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,15 @@
+package com.trade.strategy;
+
+import com.trade.cache.Order;
+
+/**
+ * 策略的下单出口，把订单发往交易所连接
+ */
+@FunctionalInterface
+public interface OrderGateway {
+    /**
+     * 在策略线程上调用，不等待交易所回报
+     * @param order 已分配订单号的订单
+     */
+    void place(Order order);
+}
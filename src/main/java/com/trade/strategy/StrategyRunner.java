@@ -0,0 +1,265 @@
+package com.trade.strategy;
+
+import com.trade.cache.OrderListener;
+import com.trade.cache.OrderStatus;
+import com.trade.cache.PositionSnapshot;
+import com.trade.common.DataMessage;
+import com.trade.domain.Strategy;
+import com.trade.socket.netty.handler.ring.RingBufferStage;
+import com.trade.socket.netty.latency.LatencyProbe;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 单个策略实例的事件循环
+ * <p>
+ * 每个实例独占一个线程，行情、订单事件、定时回调和启停、改参命令都作为任务进入有界收件箱（多生产者 {@link RingBufferStage}），
+ * 在该线程上依次执行，策略代码不需要任何同步，不同实例之间也不共享锁。
+ * <p>
+ * 行情用 {@link #offer(DataMessage)} 投递，收件箱已满时丢弃并计数，慢策略不会拖住行情线程；
+ * 命令不能丢，收件箱已满时发布方等待。订单事件来自挂单簿的写线程，既不能丢也不能让写线程等待策略：
+ * 收件箱有空位时照常按顺序进入收件箱，已满时转入单独的无界队列，策略线程在执行收件箱中的下一个任务之前
+ * 先处理完队列中的订单事件，此时订单事件先于已排队的行情处理。
+ * 定时回调只由共享的定时线程投递，不在定时线程上执行策略代码。
+ */
+@Slf4j
+public class StrategyRunner implements Executor, OrderListener {
+    public static final int DEFAULT_INBOX_SIZE = 4096;
+
+    @Getter
+    private final Strategy strategy;
+    @Getter
+    private final AbstractStrategy instance;
+    @Getter
+    private final LatencyClass latencyClass;
+    private final RingBufferStage<Runnable> inbox;
+    private final ScheduledExecutorService timer;
+    private final AtomicLong dropped = new AtomicLong();
+    // 收件箱已满时挂单簿写线程转入的订单事件，无界、不阻塞
+    private final Queue<Runnable> orderEvents = new ConcurrentLinkedQueue<>();
+    // 收件箱中已有处理订单事件的任务，或策略线程即将处理，不需要再投递
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private final Runnable drain = this::drainOrderEvents;
+    private ScheduledFuture<?> tick;
+    private volatile boolean stopped;
+
+    /**
+     * @param timer 共享的定时线程，为 null 时不投递定时回调
+     * @param inboxSize 收件箱容量，必须为2的幂
+     */
+    public StrategyRunner(Strategy strategy, AbstractStrategy instance, LatencyClass latencyClass,
+                          ScheduledExecutorService timer, int inboxSize) {
+        this.strategy = strategy;
+        this.instance = instance;
+        this.latencyClass = latencyClass;
+        this.timer = timer;
+        this.inbox = new RingBufferStage<>("strategy-" + strategy.getId(), inboxSize, latencyClass.waitStrategy(),
+            true);
+        // 任务抛出的异常由 RingBufferStage 记录，不影响后续任务
+        inbox.addConsumer("loop", task -> {
+            drainOrderEvents();
+            task.run();
+        });
+        inbox.start();
+    }
+
+    /**
+     * 在策略线程上初始化并启动策略，之后开始投递定时回调
+     */
+    public synchronized void start() {
+        execute(() -> {
+            instance.init(strategy);
+            instance.start();
+        });
+        long interval = instance.getTimerInterval();
+        if (timer != null && interval > 0) {
+            tick = timer.scheduleAtFixedRate(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void updateParams(String params) {
+        execute(() -> instance.updateParams(params));
+    }
+
+    /**
+     * 在策略线程上停止策略并等待其返回，之后线程退出，收件箱中剩余的任务被丢弃
+     */
+    public synchronized void stop(long timeoutMillis) {
+        if (stopped) {
+            return;
+        }
+        if (tick != null) {
+            tick.cancel(false);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                instance.stop();
+            } finally {
+                done.complete(null);
+            }
+        });
+        stopped = true;
+        try {
+            done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Strategy {} did not stop within {} ms", strategy.getId(), timeoutMillis);
+        }
+        inbox.stop();
+        log.info("Strategy {} runner stopped, dropped {} market data messages", strategy.getId(), dropped.get());
+    }
+
+    /**
+     * 在策略线程上执行任务，收件箱已满时等待；不能在策略线程上大量调用，否则会等待自己
+     * @throws RejectedExecutionException 已停止
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (stopped) {
+            throw new RejectedExecutionException("Strategy " + strategy.getId() + " is stopped");
+        }
+        inbox.publish(task);
+    }
+
+    /**
+     * 在策略线程上执行并取得结果，排在已投递的任务之后，用于读取只能在策略线程上访问的状态
+     * @throws RejectedExecutionException 已停止
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> task) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 投递行情，收件箱已满或已停止时丢弃；调用线程上有进行中的延迟记录时随任务转到策略线程，见 {@link LatencyProbe#handoff()}
+     * @return 是否已投递
+     */
+    public boolean offer(DataMessage<?> message) {
+        long[] trace = LatencyProbe.handoff();
+        Runnable task = trace == null ? () -> instance.change(message) : () -> change(message, trace);
+        if (stopped || !inbox.tryPublish(task)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onTransition(PositionSnapshot.OrderState order, OrderStatus from) {
+        enqueue(() -> instance.onTransition(order, from));
+    }
+
+    @Override
+    public void onAdd(PositionSnapshot.OrderState order) {
+        enqueue(() -> instance.onAdd(order));
+    }
+
+    @Override
+    public void onFill(PositionSnapshot.OrderState order, long price, long quantity) {
+        enqueue(() -> instance.onFill(order, price, quantity));
+    }
+
+    /**
+     * 收件箱中尚未执行的任务数
+     */
+    public long getBacklog() {
+        return inbox.getQueueDepth();
+    }
+
+    /**
+     * 尚未处理的订单事件数，遍历队列计数，只用于监控
+     */
+    public int getPendingOrderEvents() {
+        return orderEvents.size();
+    }
+
+    /**
+     * 因收件箱已满被丢弃的行情数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * 挂单簿写线程上调用，不等待；队列中已有事件时同样转入队列，保持订单事件之间的顺序。
+     * 收件箱已满时处理任务也投递不进去，但此时收件箱中有待执行的任务，策略线程执行它之前会先处理队列
+     */
+    private void enqueue(Runnable event) {
+        if (stopped) {
+            return;
+        }
+        if (orderEvents.isEmpty() && inbox.tryPublish(event)) {
+            return;
+        }
+        orderEvents.offer(event);
+        if (!drainPending.getAndSet(true)) {
+            inbox.tryPublish(drain);
+        }
+    }
+
+    /**
+     * 策略线程上调用，先清除标记再取队列，之后到达的事件会重新投递处理任务
+     */
+    private void drainOrderEvents() {
+        if (!drainPending.get() && orderEvents.isEmpty()) {
+            return;
+        }
+        drainPending.set(false);
+        Runnable event;
+        while ((event = orderEvents.poll()) != null) {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                log.error("Strategy {} failed to handle order event", strategy.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 策略线程上调用，处理期间的打点和下单计入投递线程上的延迟记录
+     */
+    private void change(DataMessage<?> message, long[] trace) {
+        LatencyProbe.resume(trace);
+        try {
+            instance.change(message);
+        } finally {
+            LatencyProbe.suspend();
+        }
+    }
+
+    /**
+     * 定时线程上调用，收件箱已满时跳过本次，不排队补发
+     */
+    private void tick() {
+        if (!stopped) {
+            inbox.tryPublish(instance::onTimer);
+        }
+    }
+}
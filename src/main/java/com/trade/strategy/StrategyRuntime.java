@@ -0,0 +1,124 @@
+package com.trade.strategy;
+
+import com.trade.domain.Strategy;
+import com.trade.exception.StrategyException;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.handler.impl.StrategyHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 进程内所有运行中的策略实例
+ * <p>
+ * 通过 {@link StrategyFactory} 创建实例，每个实例交给一个 {@link StrategyRunner} 在独占线程上运行。
+ * 注册表只在启停时访问，事件投递直接发往各自的收件箱，实例之间没有共享锁。
+ * 所有实例共用一个定时线程，它只负责把定时回调投递到各收件箱。
+ */
+@Slf4j
+public class StrategyRuntime implements AutoCloseable {
+    public static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final Map<Long, StrategyRunner> runners = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "strategy-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int inboxSize;
+
+    public StrategyRuntime() {
+        this(StrategyRunner.DEFAULT_INBOX_SIZE);
+    }
+
+    /**
+     * @param inboxSize 每个实例的收件箱容量，必须为2的幂
+     */
+    public StrategyRuntime(int inboxSize) {
+        this.inboxSize = inboxSize;
+    }
+
+    /**
+     * 创建策略实例并在其线程上初始化、启动
+     * @throws StrategyException 策略类型不支持或已在运行
+     */
+    public StrategyRunner start(Strategy strategy, LatencyClass latencyClass) {
+        if (runners.containsKey(strategy.getId())) {
+            throw new StrategyException("Strategy " + strategy.getId() + " is already running");
+        }
+        IStrategy created = StrategyFactory.createStrategy(strategy);
+        if (!(created instanceof AbstractStrategy)) {
+            throw new StrategyException("Strategy " + strategy.getName() + " does not extend AbstractStrategy");
+        }
+        StrategyRunner runner = new StrategyRunner(strategy, (AbstractStrategy) created, latencyClass, timer,
+            inboxSize);
+        if (runners.putIfAbsent(strategy.getId(), runner) != null) {
+            runner.stop(STOP_TIMEOUT_MILLIS);
+            throw new StrategyException("Strategy " + strategy.getId() + " is already running");
+        }
+        runner.start();
+        log.info("Strategy {} ({}) started with latency class {}", strategy.getId(), strategy.getName(), latencyClass);
+        return runner;
+    }
+
+    /**
+     * @return 未在运行时返回 false
+     */
+    public boolean stop(Long strategyId) {
+        StrategyRunner runner = runners.remove(strategyId);
+        if (runner == null) {
+            return false;
+        }
+        runner.stop(STOP_TIMEOUT_MILLIS);
+        return true;
+    }
+
+    /**
+     * 在策略线程上更新参数
+     * @return 未在运行时返回 false
+     */
+    public boolean updateParams(Long strategyId, String params) {
+        StrategyRunner runner = runners.get(strategyId);
+        if (runner == null) {
+            return false;
+        }
+        runner.updateParams(params);
+        return true;
+    }
+
+    /**
+     * @return 未在运行时返回 null
+     */
+    public StrategyRunner get(Long strategyId) {
+        return runners.get(strategyId);
+    }
+
+    public Collection<StrategyRunner> getRunners() {
+        return Collections.unmodifiableCollection(runners.values());
+    }
+
+    /**
+     * 行情处理器，订阅到 {@link com.trade.socket.netty.handler.MessageDispatcher} 后推送投递到该策略的收件箱
+     * @return 未在运行时返回 null
+     */
+    public MessageHandler<String> marketDataHandler(Long strategyId, String exchange) {
+        StrategyRunner runner = runners.get(strategyId);
+        return runner == null ? null : new StrategyHandler(runner, exchange);
+    }
+
+    /**
+     * 停止所有实例
+     */
+    @Override
+    public void close() {
+        for (Long strategyId : runners.keySet()) {
+            stop(strategyId);
+        }
+        timer.shutdownNow();
+    }
+}
@@ -1,18 +1,28 @@
 package com.trade.strategy.impl;
 
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import com.trade.cache.CacheManager;
+import com.trade.cache.ExposureLedger;
 import com.trade.cache.Order;
+import com.trade.cache.OrderStatus;
 import com.trade.common.DataMessage;
+import com.trade.common.ExchangeEnums.Direction;
 import com.trade.common.ExchangeEnums.OrderSide;
+import com.trade.common.ExchangeEnums.OrderType;
+import com.trade.common.FixedDecimal;
+import com.trade.exception.BusinessException;
+import com.trade.exception.ErrorCode;
+import com.trade.socket.netty.latency.LatencyProbe;
 import com.trade.strategy.AbstractStrategy;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 多空对冲网格策略
@@ -24,91 +34,106 @@ public class GridStrategy extends AbstractStrategy {
 
     @Override
     protected void onStart() {
+        // 敞口由策略的挂单簿随成交回报和标记价格维护，策略只读取
+        bookKey = String.valueOf(strategy.getId());
+        cacheManager.init(bookKey);
+        exposure = cacheManager.exposure(bookKey);
         parseConfig();
         log.info("Grid strategy {} started with config: {}", strategy.getName(), config);
         // 初始化网格订单
         initGridOrders();
-        
-        // 启动对冲监控线程
-        new Thread(() -> {
-            while (running) {
-                try {
-                    executeHedgeOrders();
-                    monitorHedgePosition();
-                    Thread.sleep(1000); // 每秒检查一次
-                } catch (InterruptedException e) {
-                    log.error("Hedge monitor interrupted", e);
-                }
-            }
-        }).start();
+    }
+
+    /**
+     * 按配置的交易对订阅行情，每条推送按最新价差重建网格
+     */
+    @Override
+    public Map<String, List<String>> getSubscriptions() {
+        return Map.of("tickers", List.of(config.getSymbol()));
+    }
+
+    /**
+     * 每秒检查一次对冲仓位
+     */
+    @Override
+    public long getTimerInterval() {
+        return 1000;
+    }
+
+    /**
+     * 在策略线程上执行，与行情处理串行，不再需要单独的监控线程
+     */
+    @Override
+    protected void onTimer() {
+        if (!running) {
+            return;
+        }
+        executeHedgeOrders();
+        monitorHedgePosition();
     }
 
     /**
      * 监控对冲仓位
      */
     private void monitorHedgePosition() {
-        // 计算当前多空盈亏
-//        BigDecimal longPnl = calculatePositionPnl(longPosition, true);
-//        BigDecimal shortPnl = calculatePositionPnl(shortPosition, false);
-//        BigDecimal totalPnl = longPnl.add(shortPnl);
-//
-//        // 如果总亏损超过阈值，触发风控
-//        if (shouldCloseHedgePosition(totalPnl)) {
-//            log.warn("Total PnL reached stop loss: {}", totalPnl);
-//            closeAllHedgePositions();
-//            return;
-//        }
-        
+        // 多空盈亏由 exposure 随成交和标记价格增量维护，这里直接读取
+        long totalPnl = exposure.getTotalPnl();
+
+        // 如果总亏损超过阈值，触发风控
+        if (shouldCloseHedgePosition(totalPnl)) {
+            log.warn("Total PnL reached stop loss: {}", FX.toString(totalPnl));
+            closeAllHedgePositions();
+            return;
+        }
+
         // 检查多空比例失衡
         if (isPositionImbalanced()) {
             log.warn("Position imbalance detected: Long={}, Short={}", 
-                    longPosition, shortPosition);
+                    FX.toString(longPosition()), FX.toString(shortPosition()));
             rebalancePositions();
         }
-        
-//        log.debug("Current positions - Long: {} ({}), Short: {} ({}), Total PnL: {}",
-//                longPosition, longPnl, shortPosition, shortPnl, totalPnl);
     }
 
     /**
      * 检查多空仓位是否失衡
      */
     private boolean isPositionImbalanced() {
-        if (longPosition.compareTo(BigDecimal.ZERO) == 0 || 
-            shortPosition.compareTo(BigDecimal.ZERO) == 0) {
+        long longPosition = longPosition();
+        long shortPosition = shortPosition();
+        if (longPosition == 0 || shortPosition == 0) {
             return false;
         }
         
-        BigDecimal ratio = longPosition.divide(shortPosition, MC);
-        BigDecimal targetRatio = config.getLongShortRatio();
+        long ratio = FX.divide(longPosition, shortPosition);
         
         // 允许10%的偏差
-        BigDecimal lowerBound = targetRatio.multiply(new BigDecimal("0.9"), MC);
-        BigDecimal upperBound = targetRatio.multiply(new BigDecimal("1.1"), MC);
+        long lowerBound = FX.multiply(longShortRatio, NINETY_PERCENT);
+        long upperBound = FX.multiply(longShortRatio, ONE_HUNDRED_TEN_PERCENT);
         
-        return ratio.compareTo(lowerBound) < 0 || ratio.compareTo(upperBound) > 0;
+        return ratio < lowerBound || ratio > upperBound;
     }
 
     /**
      * 重新平衡多空仓位
      */
     private void rebalancePositions() {
-        BigDecimal netPosition = longPosition.subtract(shortPosition);
-        if (netPosition.compareTo(BigDecimal.ZERO) > 0) {
+        long netPosition = FixedDecimal.subtract(longPosition(), shortPosition());
+        if (netPosition > 0) {
             // 净多头 - 增加空单或减少多单
-            executeRebalanceOrder(OrderSide.SELL, netPosition.abs());
+            executeRebalanceOrder(OrderSide.SELL, netPosition);
         } else {
             // 净空头 - 增加多单或减少空单
-            executeRebalanceOrder(OrderSide.BUY, netPosition.abs());
+            executeRebalanceOrder(OrderSide.BUY, Math.negateExact(netPosition));
         }
     }
 
     /**
      * 执行再平衡订单
      */
-    private void executeRebalanceOrder(OrderSide side, BigDecimal amount) {
+    private void executeRebalanceOrder(OrderSide side, long amount) {
+        LatencyProbe.mark(LatencyProbe.Stage.DECISION);
         // 实际项目中应调用交易API
-        log.info("Executing rebalance order: Side={}, Amount={}", side, amount);
+        log.info("Executing rebalance order: Side={}, Amount={}", side, FX.toString(amount));
     }
 
     /**
@@ -116,11 +141,8 @@ public class GridStrategy extends AbstractStrategy {
      */
     private void closeAllHedgePositions() {
         log.info("Closing all hedge positions");
-        // 实际项目中应调用交易API平仓
-        longPosition = BigDecimal.ZERO;
-        shortPosition = BigDecimal.ZERO;
-        avgLongPrice = BigDecimal.ZERO;
-        avgShortPrice = BigDecimal.ZERO;
+        // 实际项目中应调用交易API平仓；清零由挂单簿写线程执行并记入日志
+        cacheManager.resetExposure(bookKey);
     }
 
     @Override
@@ -143,22 +165,57 @@ public class GridStrategy extends AbstractStrategy {
         // 示例参数结构:
         // {
         //   "symbol": "BTCUSDT",
-        //   "gridSize": 10,
-        //   "upperPrice": 50000,
-        //   "lowerPrice": 40000,
+        //   "longGridSize": 10,
+        //   "shortGridSize": 10,
+        //   "basePrice": 45000,
         //   "orderAmount": 0.01,
-        //   "spread": 0.001,
-        //   "takeProfit": 0.05,
+        //   "baseSpread": 0.01,
         //   "stopLoss": 0.1,
-        //   "hedgeRatio": 1.0, // 对冲比例(1.0表示完全对冲)
-        //   "maxHedgePosition": 10 // 最大对冲持仓量
+        //   "longShortRatio": 1.0, // 多空仓位比例
+        //   "maxPosition": 10 // 最大净持仓量
         // }
-        this.config = new GridConfig(strategy.getParams());
+        // 全部转换成功后再替换，改参失败时保留原配置
+        GridConfig parsed;
+        try {
+            parsed = new GridConfig(strategy.getParams());
+        } catch (JSONException e) {
+            throw new BusinessException(ErrorCode.PARAM_VALIDATION_ERROR, "Grid parameters are not valid JSON: "
+                + e.getMessage());
+        }
+        long basePrice = toFixed("basePrice", parsed.getBasePrice());
+        long orderAmount = toFixed("orderAmount", parsed.getOrderAmount());
+        long longShortRatio = toFixed("longShortRatio", parsed.getLongShortRatio());
+        long maxPosition = toFixed("maxPosition", parsed.getMaxPosition());
+        long stopLoss = toFixed("stopLoss", parsed.getStopLoss());
+        long baseSpread = toFixed("baseSpread", parsed.getBaseSpread());
+        this.config = parsed;
+        this.basePrice = basePrice;
+        this.orderAmount = orderAmount;
+        this.longShortRatio = longShortRatio;
+        this.maxPosition = maxPosition;
+        this.stopLoss = stopLoss;
+        this.baseSpread = baseSpread;
+    }
+
+    /**
+     * 参数按 {@link Order#FIXED} 精度转换，小数位数超出精度或溢出时拒绝，不做舍入
+     * @throws BusinessException PARAM_VALIDATION_ERROR
+     */
+    private static long toFixed(String name, BigDecimal value) {
+        if (value == null) {
+            throw new BusinessException(ErrorCode.PARAM_VALIDATION_ERROR, "Grid parameter " + name + " is missing");
+        }
+        try {
+            return FX.valueOf(value);
+        } catch (ArithmeticException e) {
+            throw new BusinessException(ErrorCode.PARAM_VALIDATION_ERROR, "Grid parameter " + name + " "
+                + value.toPlainString() + " exceeds " + FX.getScale() + " decimal places or the value range");
+        }
     }
 
     private List<Order> longOrders = new ArrayList<>();
     private List<Order> shortOrders = new ArrayList<>();
-    private BigDecimal hedgePosition = BigDecimal.ZERO;
+    private long hedgePosition;
 
     // 测试用getter方法
     List<Order> getLongOrders() {
@@ -170,37 +227,42 @@ public class GridStrategy extends AbstractStrategy {
     }
 
     BigDecimal getHedgePosition() {
-        return hedgePosition;
-    }
-
-    // 使用BigDecimal进行精确计算
-    private static final MathContext MC = new MathContext(8, RoundingMode.HALF_UP);
-    private static final BigDecimal ONE_PERCENT = new BigDecimal("0.01");
-
-    private BigDecimal calculateHedgePnl() {
-        // 假设每个仓位盈利1%，使用固定精度计算
-        return hedgePosition.multiply(ONE_PERCENT, MC);
-    }
-
-    private boolean shouldCloseHedgePosition(BigDecimal pnl) {
-        BigDecimal stopLossAmount = config.getOrderAmount()
-            .multiply(config.getStopLoss(), MC)
-            .negate();
-        return pnl.compareTo(stopLossAmount) < 0;
+        return FX.toBigDecimal(hedgePosition);
     }
 
     /**
-     * 安全转换double到BigDecimal
+     * 挂单簿中按交易对和方向维护的持仓、均价与盈亏，可供风控和接口随时读取，启动前为 null
      */
-    private static BigDecimal toDecimal(double value) {
-        return BigDecimal.valueOf(value).setScale(8, RoundingMode.HALF_UP);
+    public ExposureLedger getExposure() {
+        return exposure;
     }
 
+    // 仓位、均价、比例均为8位小数的定点数，与 Order 的定点字段一致，每条行情的计算不创建对象
+    private static final FixedDecimal FX = Order.FIXED;
     /**
-     * 安全转换String到BigDecimal 
+     * {@link GridConfig#getTriggerType()} 取值：接收到价格即触发
      */
-    private static BigDecimal toDecimal(String value) {
-        return new BigDecimal(value).setScale(8, RoundingMode.HALF_UP);
+    static final int TRIGGER_ON_PRICE = 0;
+    private static final long ONE_PERCENT = FX.parse("0.01");
+    private static final long NINETY_PERCENT = FX.parse("0.9");
+    private static final long ONE_HUNDRED_TEN_PERCENT = FX.parse("1.1");
+
+    // GridConfig 中对应参数的定点形式，解析参数时换算一次
+    private long basePrice;
+    private long orderAmount;
+    private long longShortRatio;
+    private long maxPosition;
+    private long stopLoss;
+    private long baseSpread;
+
+    private long calculateHedgePnl() {
+        // 假设每个仓位盈利1%，使用固定精度计算
+        return FX.multiply(hedgePosition, ONE_PERCENT);
+    }
+
+    private boolean shouldCloseHedgePosition(long pnl) {
+        long stopLossAmount = -FX.multiply(orderAmount, stopLoss);
+        return pnl < stopLossAmount;
     }
 
     private void initGridOrders() {
@@ -209,13 +271,11 @@ public class GridStrategy extends AbstractStrategy {
         shortOrders.clear();
         
         // 计算网格步长(基于波动率或其他指标)
-        BigDecimal priceStep = config.getBasePrice()
-            .multiply(config.getBaseSpread(), MC);
+        long priceStep = FX.multiply(basePrice, baseSpread);
         
         // 生成做多网格(向上)
         for (int i = 1; i <= config.getLongGridSize(); i++) {
-            BigDecimal price = config.getBasePrice()
-                .add(priceStep.multiply(toDecimal(i), MC));
+            long price = FixedDecimal.add(basePrice, Math.multiplyExact(priceStep, i));
             
             // 创建多头订单
 //            Order longOrder = new Order(
@@ -230,8 +290,7 @@ public class GridStrategy extends AbstractStrategy {
         
         // 生成做空网格(向下)
         for (int i = 1; i <= config.getShortGridSize(); i++) {
-            BigDecimal price = config.getBasePrice()
-                .subtract(priceStep.multiply(toDecimal(i), MC));
+            long price = FixedDecimal.subtract(basePrice, Math.multiplyExact(priceStep, i));
             
             // 创建空头订单
 //            Order shortOrder = new Order(
@@ -246,7 +305,7 @@ public class GridStrategy extends AbstractStrategy {
 //            shortOrders.add(shortOrder);
         }
         
-        log.info("Initialized {} long and {} short grid orders with ratio {}", 
+        log.debug("Initialized {} long and {} short grid orders with ratio {}", 
             longOrders.size(), shortOrders.size(), config.getLongShortRatio());
     }
 
@@ -263,13 +322,27 @@ public class GridStrategy extends AbstractStrategy {
         
         // 根据最新价差重新初始化网格
         initGridOrders();
+        if (running && Integer.valueOf(TRIGGER_ON_PRICE).equals(config.getTriggerType())) {
+            placeTriggerOrder();
+        }
+    }
+
+    /**
+     * 收到价格即按基准价挂一笔多单，净持仓达到上限时跳过
+     */
+    private void placeTriggerOrder() {
+        if (Math.abs(FixedDecimal.subtract(longPosition(), shortPosition())) >= maxPosition) {
+            return;
+        }
+        executeOrder(new Order(orderIds.nextString(), config.getSymbol(), OrderSide.BUY, Direction.LONG,
+            OrderType.LIMIT, config.getOrderAmount(), config.getBasePrice()));
     }
 
     private void clearGridOrders() {
         // 清理所有网格订单和对冲订单
         longOrders.clear();
         shortOrders.clear();
-        hedgePosition = BigDecimal.ZERO;
+        hedgePosition = 0;
         log.info("Cleared all grid and hedge orders");
     }
 
@@ -279,61 +352,63 @@ public class GridStrategy extends AbstractStrategy {
         initGridOrders();
     }
 
+    private final CacheManager cacheManager = new CacheManager();
+    private String bookKey;
+    private ExposureLedger exposure;
+
+    private long longPosition() {
+        return exposure.getQuantity(config.getSymbol(), Direction.LONG);
+    }
+
+    private long shortPosition() {
+        return exposure.getQuantity(config.getSymbol(), Direction.SHORT);
+    }
+
     /**
      * 执行对冲订单
      */
-    private BigDecimal longPosition = BigDecimal.ZERO;
-    private BigDecimal shortPosition = BigDecimal.ZERO;
-    private BigDecimal avgLongPrice = BigDecimal.ZERO;
-    private BigDecimal avgShortPrice = BigDecimal.ZERO;
-
     private void executeHedgeOrders() {
         // 计算净仓位
-        BigDecimal netPosition = longPosition.subtract(shortPosition);
+        long longPosition = longPosition();
+        long shortPosition = shortPosition();
+        long netPosition = FixedDecimal.subtract(longPosition, shortPosition);
         
         // 检查仓位限制
-        if (netPosition.abs().compareTo(config.getMaxPosition()) >= 0) {
-            log.warn("Position reached limit: {}", netPosition.toPlainString());
+        if (Math.abs(netPosition) >= maxPosition) {
+            log.warn("Position reached limit: {}", FX.toString(netPosition));
             return;
         }
 
         // 根据净仓位方向执行对冲
-        if (netPosition.compareTo(BigDecimal.ZERO) > 0) {
+        if (netPosition > 0) {
             // 净多头 - 执行空单对冲
             for (Order shortOrder : shortOrders) {
                 if (shouldExecuteHedge(shortOrder) && 
-                    shortPosition.compareTo(
-                        longPosition.multiply(config.getLongShortRatio(), MC)) < 0) {
+                    shortPosition < FX.multiply(longPosition, longShortRatio)) {
                     executeOrder(shortOrder);
-                    shortPosition = shortPosition.add(shortOrder.getAmount());
-                    avgShortPrice = calculateAvgPrice(avgShortPrice, shortPosition, shortOrder);
+                    onFilled(shortOrder);
+                    // 成交在挂单簿写线程上异步记入敞口，本轮按已提交的数量累计
+                    shortPosition = FixedDecimal.add(shortPosition, shortOrder.getFixedAmount());
                 }
             }
         } else {
             // 净空头 - 执行多单对冲
             for (Order longOrder : longOrders) {
                 if (shouldExecuteHedge(longOrder) && 
-                    longPosition.compareTo(
-                        shortPosition.multiply(config.getLongShortRatio(), MC)) < 0) {
+                    longPosition < FX.multiply(shortPosition, longShortRatio)) {
                     executeOrder(longOrder);
-                    longPosition = longPosition.add(longOrder.getAmount());
-                    avgLongPrice = calculateAvgPrice(avgLongPrice, longPosition, longOrder);
+                    onFilled(longOrder);
+                    longPosition = FixedDecimal.add(longPosition, longOrder.getFixedAmount());
                 }
             }
         }
     }
 
     /**
-     * 计算平均开仓价格
+     * 订单按委托价全部成交，回报交给挂单簿，均价和盈亏在其写线程上增量更新
      */
-    private BigDecimal calculateAvgPrice(BigDecimal currentAvg, BigDecimal position, Order order) {
-        if (position.compareTo(BigDecimal.ZERO) == 0) {
-            return order.getPrice();
-        }
-        BigDecimal newPosition = position.add(order.getAmount());
-        return currentAvg.multiply(position, MC)
-            .add(order.getPrice().multiply(order.getAmount(), MC))
-            .divide(newPosition, MC);
+    private void onFilled(Order order) {
+        cacheManager.update(bookKey, order.getCliId(), order.getAmount(), OrderStatus.FILLED, 0);
     }
 
     /**
@@ -349,8 +424,13 @@ public class GridStrategy extends AbstractStrategy {
      * 执行订单
      */
     private void executeOrder(Order order) {
-        // 实际项目中应调用交易API
+        // 由行情触发时计入该行情的延迟记录（StrategyRunner 把记录转到策略线程），定时回调没有进行中的记录
+        LatencyProbe.mark(LatencyProbe.Stage.DECISION);
         log.debug("Executing order: {}", order);
+        if (orderGateway != null) {
+            orderGateway.place(order);
+        }
+        cacheManager.add(bookKey, order);
     }
 
     /**
@@ -385,20 +465,30 @@ public class GridStrategy extends AbstractStrategy {
         // 当前价差倍数
         private int currentSpreadMultiplier = 1;
 
+        /**
+         * 从策略参数读取，未配置的参数使用默认值
+         * @throws com.alibaba.fastjson2.JSONException 参数不是合法的JSON
+         */
         public GridConfig(String jsonParams) {
-            // 实际项目中应使用JSON解析库
-            // 这里简化为硬编码示例
-            this.symbol = "BTCUSDT";
-            this.longGridSize = 10;
-            this.shortGridSize = 10;
-            this.basePrice = new BigDecimal("45000");
-            this.orderAmount = new BigDecimal("0.01");
-            this.stopLoss = new BigDecimal("0.1");
-            this.longShortRatio = new BigDecimal("1.0");
-            this.maxPosition = new BigDecimal("10.0");
-            this.baseSpread = new BigDecimal("0.01");
-            this.spreadMultiplier = new BigDecimal("2.0");
-            this.spreadTriggerCount = 5;
+            JSONObject params = jsonParams == null || jsonParams.isBlank()
+                ? new JSONObject() : JSONObject.parseObject(jsonParams);
+            this.triggerType = params.getInteger("triggerType");
+            this.symbol = params.getString("symbol") == null ? "BTCUSDT" : params.getString("symbol");
+            this.longGridSize = params.getIntValue("longGridSize", 10);
+            this.shortGridSize = params.getIntValue("shortGridSize", 10);
+            this.basePrice = decimal(params, "basePrice", "45000");
+            this.orderAmount = decimal(params, "orderAmount", "0.01");
+            this.stopLoss = decimal(params, "stopLoss", "0.1");
+            this.longShortRatio = decimal(params, "longShortRatio", "1.0");
+            this.maxPosition = decimal(params, "maxPosition", "10.0");
+            this.baseSpread = decimal(params, "baseSpread", "0.01");
+            this.spreadMultiplier = decimal(params, "spreadMultiplier", "2.0");
+            this.spreadTriggerCount = params.getIntValue("spreadTriggerCount", 5);
+        }
+
+        private BigDecimal decimal(JSONObject params, String name, String defaultValue) {
+            BigDecimal value = params.getBigDecimal(name);
+            return value == null && !params.containsKey(name) ? new BigDecimal(defaultValue) : value;
         }
 
         /**
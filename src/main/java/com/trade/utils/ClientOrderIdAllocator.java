@@ -0,0 +1,187 @@
+package com.trade.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * okx 客户自定义订单号（clOrdId）分配器
+ * <p>
+ * 订单号为 策略前缀 + 定长11位 base62 序号，只含字母数字，总长不超过32。序号从启动时刻
+ * （2020-01-01 起的毫秒数左移12位）开始递增，重启后的序号总大于重启前已分配的序号，除非此前平均每毫秒分配超过4096个。
+ * base62 字母表按 ASCII 升序排列，同一前缀下订单号的字典序即分配顺序。
+ * <p>
+ * 全局只有一个 {@link AtomicLong}，每个策略线程通过 {@link Sequence} 一次领取一段序号，段内分配不涉及任何同步；
+ * 订单号直接编码到调用方的 byte/char 缓冲区，不产生中间字符串。
+ * 与 {@link SnowflakeIdGenerator} 相比没有锁，也不会在同一毫秒号段用完时自旋等待。
+ */
+public class ClientOrderIdAllocator {
+    /**
+     * okx clOrdId 最大长度
+     */
+    public static final int MAX_LENGTH = 32;
+    public static final int ID_LENGTH = 11;
+    public static final int MAX_PREFIX_LENGTH = MAX_LENGTH - ID_LENGTH;
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    // 与 SnowflakeIdGenerator 相同的起始时间 2020-01-01 00:00:00 UTC
+    private static final long EPOCH = 1577836800000L;
+    private static final int MILLIS_SHIFT = 12;
+    private static final byte[] DIGITS =
+        "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+    private static final int BASE = DIGITS.length;
+    private static final ClientOrderIdAllocator GLOBAL = new ClientOrderIdAllocator();
+
+    private final AtomicLong next;
+    private final int blockSize;
+
+    public ClientOrderIdAllocator() {
+        this(System.currentTimeMillis(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param startMillis 起始时刻，决定第一个序号
+     * @param blockSize 每次领取的序号数，越大全局计数器上的竞争越少，重启时未用完的部分被跳过
+     */
+    public ClientOrderIdAllocator(long startMillis, int blockSize) {
+        if (startMillis < EPOCH) {
+            throw new IllegalArgumentException("startMillis before epoch: " + startMillis);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.next = new AtomicLong((startMillis - EPOCH) << MILLIS_SHIFT);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * 进程内共享的分配器，同一进程的所有策略从这里领取序号
+     */
+    public static ClientOrderIdAllocator global() {
+        return GLOBAL;
+    }
+
+    /**
+     * 为一个策略线程创建序号段，返回的对象非线程安全，每个线程各持有一个
+     * @param prefix 策略前缀，只能是字母数字，最长 {@link #MAX_PREFIX_LENGTH}
+     */
+    public Sequence sequence(String prefix) {
+        if (prefix.length() > MAX_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("prefix longer than " + MAX_PREFIX_LENGTH + ": " + prefix);
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z')) {
+                throw new IllegalArgumentException("prefix must be alphanumeric: " + prefix);
+            }
+        }
+        return new Sequence(prefix);
+    }
+
+    /**
+     * 按定长 {@link #ID_LENGTH} 位 base62 写入，高位补 '0'
+     * @return 写入的字节数
+     */
+    public static int encode(long id, byte[] dst, int offset) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id: " + id);
+        }
+        for (int i = offset + ID_LENGTH - 1; i >= offset; i--) {
+            dst[i] = DIGITS[(int) (id % BASE)];
+            id /= BASE;
+        }
+        return ID_LENGTH;
+    }
+
+    public static int encode(long id, char[] dst, int offset) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id: " + id);
+        }
+        for (int i = offset + ID_LENGTH - 1; i >= offset; i--) {
+            dst[i] = (char) DIGITS[(int) (id % BASE)];
+            id /= BASE;
+        }
+        return ID_LENGTH;
+    }
+
+    /**
+     * 从订单号末尾 {@link #ID_LENGTH} 位解出序号，用于日志和对账
+     */
+    public static long decode(CharSequence clOrdId) {
+        if (clOrdId.length() < ID_LENGTH) {
+            throw new IllegalArgumentException("clOrdId too short: " + clOrdId);
+        }
+        long id = 0;
+        for (int i = clOrdId.length() - ID_LENGTH; i < clOrdId.length(); i++) {
+            char c = clOrdId.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 10;
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 36;
+            } else {
+                throw new IllegalArgumentException("not base62: " + clOrdId);
+            }
+            id = Math.addExact(Math.multiplyExact(id, BASE), digit);
+        }
+        return id;
+    }
+
+    private long claim() {
+        return next.getAndAdd(blockSize);
+    }
+
+    /**
+     * 单个策略线程持有的序号段，用完后再向全局计数器领取下一段
+     */
+    public final class Sequence {
+        private final byte[] prefix;
+        private long next;
+        private long end;
+
+        private Sequence(String prefix) {
+            this.prefix = prefix.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        public long nextId() {
+            if (next == end) {
+                next = claim();
+                end = next + blockSize;
+            }
+            return next++;
+        }
+
+        /**
+         * 订单号（前缀 + 序号）的长度
+         */
+        public int length() {
+            return prefix.length + ID_LENGTH;
+        }
+
+        /**
+         * 把下一个订单号写入 {@code dst[offset, offset + length())}，可直接用于请求报文
+         * @return 写入的字节数
+         */
+        public int next(byte[] dst, int offset) {
+            System.arraycopy(prefix, 0, dst, offset, prefix.length);
+            return prefix.length + encode(nextId(), dst, offset + prefix.length);
+        }
+
+        public int next(char[] dst, int offset) {
+            for (int i = 0; i < prefix.length; i++) {
+                dst[offset + i] = (char) prefix[i];
+            }
+            return prefix.length + encode(nextId(), dst, offset + prefix.length);
+        }
+
+        /**
+         * 需要 {@link String} 的场合（如 {@link com.trade.cache.Order#getCliId()}）使用，只创建结果字符串本身
+         */
+        public String nextString() {
+            byte[] bytes = new byte[length()];
+            next(bytes, 0);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
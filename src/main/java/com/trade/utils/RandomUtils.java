@@ -2,23 +2,26 @@ package com.trade.utils;
 
 import org.apache.commons.lang3.RandomStringUtils;
 
-import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomUtils {
+    private static final char[] CHARACTERS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
     /**
-     * 最基础的实现，使用 Random 类从预定义的字符集中随机选取字符，生成指定长度的字符串。
+     * 最基础的实现，从预定义的字符集中随机选取字符，生成指定长度的字符串。
+     * 使用 {@link ThreadLocalRandom}，多线程调用不争用同一个种子；订单号请用 {@link ClientOrderIdAllocator}。
      * @param maxLength
      * @return
      */
     public static String generateRandomString(int maxLength) {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[maxLength];
         for (int i = 0; i < maxLength; i++) {
-            sb.append(characters.charAt(random.nextInt(characters.length())));
+            chars[i] = CHARACTERS[random.nextInt(CHARACTERS.length)];
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
@@ -0,0 +1,33 @@
+-- 订单与成交的写后持久化表，见 com.trade.persist.WriteBehindWriter
+
+CREATE TABLE IF NOT EXISTS trade_order (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    strategy_id VARCHAR(64)    NOT NULL,
+    cli_id      VARCHAR(64)    NOT NULL,
+    symbol      VARCHAR(32)    NOT NULL,
+    side        VARCHAR(8)     NOT NULL,
+    direction   VARCHAR(8)     NOT NULL,
+    type        VARCHAR(16)    NOT NULL,
+    price       DECIMAL(36, 8) NULL,
+    amount      DECIMAL(36, 8) NOT NULL,
+    exec_amount DECIMAL(36, 8) NULL,
+    status      VARCHAR(16)    NOT NULL,
+    ts          BIGINT         NOT NULL,
+    UNIQUE KEY uk_strategy_cli (strategy_id, cli_id),
+    KEY idx_symbol_ts (symbol, ts)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS trade_fill (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    strategy_id VARCHAR(64)    NOT NULL,
+    cli_id      VARCHAR(64)    NOT NULL,
+    symbol      VARCHAR(32)    NOT NULL,
+    side        VARCHAR(8)     NOT NULL,
+    direction   VARCHAR(8)     NOT NULL,
+    price       DECIMAL(36, 8) NOT NULL,
+    quantity    DECIMAL(36, 8) NOT NULL,
+    exec_amount DECIMAL(36, 8) NOT NULL,
+    ts          BIGINT         NOT NULL,
+    UNIQUE KEY uk_strategy_cli_exec (strategy_id, cli_id, exec_amount),
+    KEY idx_symbol_ts (symbol, ts)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,132 @@
+package com.trade.cache;
+
+import com.trade.socket.netty.util.TopicIndex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConflatingCacheTest {
+    @Test
+    public void drainDeliversEachUpdatedTopicOnceWithTheLatestValue() {
+        ConflatingCache<Long> cache = new ConflatingCache<>(new TopicIndex(), 16);
+        cache.put("tickers", "BTC-USDT", 1L);
+        cache.put("tickers", "ETH-USDT", 10L);
+        cache.put("tickers", "BTC-USDT", 2L);
+        cache.put("tickers", "BTC-USDT", 3L);
+        List<Long> drained = new ArrayList<>();
+        assertEquals(2, cache.drain((topic, value) -> drained.add(value)));
+        assertEquals(List.of(3L, 10L), drained);
+        assertEquals(2, cache.getConflatedCount(cache.getTopics().find("tickers", "BTC-USDT")));
+        assertEquals(0, cache.drain((topic, value) -> fail("nothing was updated")));
+        assertEquals(Long.valueOf(3L), cache.get("tickers", "BTC-USDT"));
+    }
+
+    @Test
+    public void lastValueWinsUnderConcurrentPutAndDrain() throws Exception {
+        int writers = 4;
+        int topicsPerWriter = 64;
+        int updates = 50_000;
+        ConflatingCache<Long> cache = new ConflatingCache<>(new TopicIndex(), writers * topicsPerWriter);
+        // 每个主题只有一个写线程，值按写入顺序递增
+        long[] last = new long[writers * topicsPerWriter];
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            while (writing.get() || cache.getPendingCount() > 0) {
+                cache.drain((topic, value) -> {
+                    if (value < last[topic]) {
+                        failure.compareAndSet(null, "topic " + topic + " went back from " + last[topic] + " to " + value);
+                    }
+                    last[topic] = value;
+                });
+            }
+        });
+        consumer.start();
+        runWriters(writers, w -> {
+            for (long n = 1; n <= updates; n++) {
+                int topic = w * topicsPerWriter + (int) (n % topicsPerWriter);
+                cache.put("tickers", "INST" + topic, n);
+            }
+        });
+        writing.set(false);
+        consumer.join(30_000);
+        assertFalse(consumer.isAlive());
+        assertNull(failure.get(), failure.get());
+        for (int topic = 0; topic < last.length; topic++) {
+            long expected = updates - (updates - topic % topicsPerWriter) % topicsPerWriter;
+            assertEquals("topic " + topic, expected, last[cache.getTopics().find("tickers", "INST" + topic)]);
+        }
+    }
+
+    @Test
+    public void noDirtyTopicIsLostUnderConcurrentPutAndDrain() throws Exception {
+        int writers = 4;
+        int topics = 32;
+        int updates = 100_000;
+        ConflatingCache<Long> cache = new ConflatingCache<>(new TopicIndex(), topics);
+        for (int topic = 0; topic < topics; topic++) {
+            cache.getTopics().register("books5", "INST" + topic);
+        }
+        // 多个写线程写同一批主题，消费者同时 drain；写完后每个主题最后一次交付的值必须是缓存中的当前值
+        Long[] delivered = new Long[topics];
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            while (writing.get()) {
+                cache.drain((topic, value) -> delivered[topic] = value);
+            }
+        });
+        consumer.start();
+        runWriters(writers, w -> {
+            for (int n = 0; n < updates; n++) {
+                cache.put(n % topics, (long) w * updates + n);
+            }
+        });
+        writing.set(false);
+        consumer.join(30_000);
+        assertFalse(consumer.isAlive());
+        cache.drain((topic, value) -> delivered[topic] = value);
+
+        assertEquals(0, cache.getPendingCount());
+        for (int topic = 0; topic < topics; topic++) {
+            assertFalse("topic " + topic + " still dirty after drain", cache.isDirty(topic));
+            assertEquals("topic " + topic, cache.get("books5", "INST" + topic), delivered[topic]);
+        }
+    }
+
+    private static void runWriters(int writers, Writer writer) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    writer.write(id);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30_000);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(int id) throws Exception;
+    }
+}
@@ -0,0 +1,69 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.common.FixedDecimal;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class ExposureTest {
+    private static final FixedDecimal FX = Order.FIXED;
+
+    @Test
+    public void longTracksVwapAndPnl() {
+        Exposure exposure = new Exposure("BTC-USDT", ExchangeEnums.Direction.LONG, FX.valueOf(1));
+        exposure.onFill(ExchangeEnums.OrderSide.BUY, FX.parse("100"), FX.parse("1"));
+        exposure.onFill(ExchangeEnums.OrderSide.BUY, FX.parse("110"), FX.parse("1"));
+        exposure.onMark(FX.parse("120"));
+        Exposure.Snapshot opened = exposure.snapshot();
+        assertEquals(0, new BigDecimal("105").compareTo(opened.getAvgPrice()));
+        assertEquals(0, new BigDecimal("30").compareTo(opened.getUnrealizedPnl()));
+
+        assertEquals(FX.parse("10"), exposure.onFill(ExchangeEnums.OrderSide.SELL, FX.parse("115"), FX.parse("1")));
+        assertEquals(FX.parse("1"), exposure.getQuantity());
+        assertEquals(FX.parse("25"), exposure.getTotalPnl());
+        Exposure.Snapshot closed = exposure.snapshot();
+        assertEquals(0, new BigDecimal("105").compareTo(closed.getAvgPrice()));
+        assertEquals(0, new BigDecimal("15").compareTo(closed.getUnrealizedPnl()));
+    }
+
+    @Test
+    public void shortGainsWhenPriceFallsAndIgnoresOverClose() {
+        Exposure exposure = new Exposure("BTC-USDT", ExchangeEnums.Direction.SHORT, FX.valueOf(1));
+        exposure.onFill(ExchangeEnums.OrderSide.SELL, FX.parse("100"), FX.parse("2"));
+        exposure.onMark(FX.parse("90"));
+        assertEquals(FX.parse("20"), exposure.getTotalPnl());
+
+        assertEquals(FX.parse("10"), exposure.onFill(ExchangeEnums.OrderSide.BUY, FX.parse("95"), FX.parse("3")));
+        assertEquals(0, exposure.getQuantity());
+        assertEquals(FX.parse("10"), exposure.getTotalPnl());
+        assertEquals(0, BigDecimal.ZERO.compareTo(exposure.snapshot().getAvgPrice()));
+    }
+
+    @Test
+    public void ledgerAppliesContractValueAndMarks() {
+        ExposureLedger ledger = new ExposureLedger();
+        ledger.setContractValue("BTC-USDT-SWAP", new BigDecimal("0.01"));
+        ledger.onMark("ETH-USDT-SWAP", FX.parse("3000"));
+        assertNull(ledger.get("ETH-USDT-SWAP", ExchangeEnums.Direction.LONG));
+
+        ledger.onFill("BTC-USDT-SWAP", ExchangeEnums.Direction.LONG, ExchangeEnums.OrderSide.BUY, FX.parse("50000"),
+            FX.parse("10"));
+        ledger.onFill("ETH-USDT-SWAP", ExchangeEnums.Direction.SHORT, ExchangeEnums.OrderSide.SELL, FX.parse("3000"),
+            FX.parse("1"));
+        ledger.onMark("BTC-USDT-SWAP", FX.parse("51000"));
+        ledger.onMark("ETH-USDT-SWAP", FX.parse("3050"));
+
+        assertEquals(FX.parse("10"), ledger.getQuantity("BTC-USDT-SWAP", ExchangeEnums.Direction.LONG));
+        assertEquals(0, ledger.getQuantity("BTC-USDT-SWAP", ExchangeEnums.Direction.SHORT));
+        // 10 张 * 0.01 * 1000 - 1 * 50
+        assertEquals(FX.parse("50"), ledger.getTotalPnl());
+        assertEquals(4, ledger.snapshot().size());
+
+        ledger.reset();
+        assertEquals(0, ledger.getQuantity("BTC-USDT-SWAP", ExchangeEnums.Direction.LONG));
+        assertEquals(0, ledger.getTotalPnl());
+    }
+}
@@ -0,0 +1,79 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.common.FixedDecimal;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class OrderStatusTest {
+
+    @Test
+    public void onlyForwardTransitionsAreAccepted() {
+        assertTrue(OrderStatus.INIT.accepts(OrderStatus.NEW, 0, -1));
+        assertTrue(OrderStatus.INIT.accepts(OrderStatus.REJECTED, 0, -1));
+        assertTrue(OrderStatus.INIT.accepts(OrderStatus.FILLED, 0, 100));
+        assertFalse(OrderStatus.INIT.accepts(OrderStatus.INIT, 0, -1));
+        assertFalse(OrderStatus.NEW.accepts(OrderStatus.REJECTED, 0, -1));
+        assertFalse(OrderStatus.NEW.accepts(OrderStatus.NEW, 0, -1));
+        assertTrue(OrderStatus.PART_FILLED.accepts(OrderStatus.PART_FILLED, 10, 20));
+        assertFalse(OrderStatus.PART_FILLED.accepts(OrderStatus.PART_FILLED, 20, 20));
+        assertFalse(OrderStatus.PART_FILLED.accepts(OrderStatus.PART_FILLED, 20, -1));
+        assertFalse(OrderStatus.PART_FILLED.accepts(OrderStatus.FILLED, 20, 10));
+        assertTrue(OrderStatus.PART_FILLED.accepts(OrderStatus.CANCELED, 20, -1));
+        for (OrderStatus terminal : new OrderStatus[]{OrderStatus.FILLED, OrderStatus.CANCELED, OrderStatus.REJECTED}) {
+            assertTrue(terminal.isTerminal());
+            for (OrderStatus next : OrderStatus.values()) {
+                assertFalse(terminal + "->" + next, terminal.accepts(next, 0, 100));
+            }
+        }
+    }
+
+    @Test
+    public void parsesNamesAndExchangeStates() {
+        assertEquals(OrderStatus.NEW, OrderStatus.of("NEW"));
+        assertEquals(OrderStatus.NEW, OrderStatus.of("live"));
+        assertEquals(OrderStatus.PART_FILLED, OrderStatus.of("partially_filled"));
+        assertNull(OrderStatus.of("SSSSSS"));
+        assertNull(OrderStatus.of(null));
+        assertEquals(OrderStatus.CANCELED, OrderStatus.ofOrdinal(OrderStatus.CANCELED.ordinal()));
+    }
+
+    @Test
+    public void orderIgnoresStaleSequence() {
+        Order order = new Order("a", "BTC-USDT", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("1"), new BigDecimal("100"));
+        assertTrue(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.5"), 10));
+        assertFalse(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.7"), 9));
+        assertTrue(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.7"), 11));
+        assertFalse(order.transition(OrderStatus.NEW));
+        assertTrue(order.transition(OrderStatus.CANCELED));
+        assertEquals(OrderStatus.CANCELED, order.getStatus());
+        assertEquals(new BigDecimal("0.7"), order.getExecAmount());
+        assertEquals(11, order.getSeq());
+    }
+
+    @Test
+    public void orderRejectsValuesFinerThanInstrumentScale() {
+        FixedDecimal tick = FixedDecimal.ofTick(new BigDecimal("0.1"));
+        FixedDecimal lot = FixedDecimal.ofTick(new BigDecimal("0.001"));
+        Order order = new Order("a", "BTC-USDT", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.015"), new BigDecimal("45000.5"), tick, lot);
+        assertEquals(Order.FIXED.parse("45000.5"), order.getFixedPrice());
+        assertEquals(Order.FIXED.parse("0.015"), order.getFixedAmount());
+        assertThrows(IllegalArgumentException.class, () -> new Order("b", "BTC-USDT", ExchangeEnums.OrderSide.BUY,
+            ExchangeEnums.Direction.LONG, ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.01"), new BigDecimal("45000.55"),
+            tick, lot));
+        assertThrows(IllegalArgumentException.class, () -> new Order("c", "BTC-USDT", ExchangeEnums.OrderSide.BUY,
+            ExchangeEnums.Direction.LONG, ExchangeEnums.OrderType.LIMIT, new BigDecimal("1"),
+            new BigDecimal("0.000000005")));
+
+        // 成交数量超出数量精度时不四舍五入，订单不变
+        assertFalse(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.0105"), 0));
+        assertEquals(OrderStatus.INIT, order.getStatus());
+        assertTrue(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.010"), 0));
+        assertEquals(Order.FIXED.parse("0.01"), order.getFixedExecAmount());
+    }
+}
@@ -0,0 +1,149 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrderStoreTest {
+
+    @Test
+    public void viewReadsSameFieldsAsOrder() {
+        OrderStore store = new OrderStore();
+        Order order = order("a", "BTC-USDT-SWAP", "45000.1", "0.015");
+        order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.005"));
+        Order market = new Order("m", "ETH-USDT-SWAP", ExchangeEnums.OrderSide.SELL, ExchangeEnums.Direction.SHORT,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("1"), null);
+
+        int slot = store.add(order);
+        assertEquals(-1, store.add(order("a", "BTC-USDT-SWAP", "1", "1")));
+        store.add(market);
+
+        assertRecord(order, order, store.view(slot));
+        assertRecord(market, market, store.view(store.find("m")));
+        assertRecord(order, store.toOrder(slot), store.view(slot));
+        assertEquals(2, store.symbolCount());
+        assertEquals(-1, store.find("x"));
+    }
+
+    @Test
+    public void updatesAndRemovesBySlot() {
+        OrderStore store = new OrderStore();
+        int slot = store.add(order("a", "BTC-USDT-SWAP", "100", "1"));
+        OrderStore.View view = store.view(slot);
+
+        assertTrue(store.update("a", OrderStatus.NEW));
+        assertEquals(OrderStatus.NEW, view.getStatus());
+        assertNull(view.getExecAmount());
+        assertTrue(store.update("a", Order.FIXED.valueOf(new BigDecimal("0.4")), OrderStatus.PART_FILLED));
+        assertFalse(store.update("a", OrderStatus.NEW));
+        assertEquals(0, new BigDecimal("0.4").compareTo(view.getExecAmount()));
+        assertEquals(40_000_000L, view.getFixedExecAmount());
+        assertFalse(store.update("b", OrderStatus.NEW));
+
+        assertTrue(store.remove("a"));
+        assertFalse(store.remove("a"));
+        assertFalse(view.isValid());
+        assertEquals(0, store.size());
+
+        // 撤出的槽位被复用，旧视图仍然无效
+        assertEquals(slot, store.add(order("b", "BTC-USDT-SWAP", "101", "1")));
+        assertFalse(view.isValid());
+        assertTrue(store.view(slot).isValid());
+        assertThrows(IllegalArgumentException.class, () -> store.view(slot + 1));
+    }
+
+    @Test
+    public void toOrderRoundTripsSeqAndTimestamp() throws Exception {
+        OrderStore store = new OrderStore();
+        Order order = order("a", "BTC-USDT-SWAP", "45000.1", "0.015");
+        assertTrue(order.transition(OrderStatus.PART_FILLED, new BigDecimal("0.005"), 1700000000123L));
+        int slot = store.add(order);
+        Thread.sleep(5);
+
+        Order restored = store.toOrder(slot);
+        assertRecord(order, order, restored);
+        assertEquals(0, order.getExecAmount().compareTo(restored.getExecAmount()));
+        assertEquals(order.getSeq(), restored.getSeq());
+        assertEquals(order.getTs(), restored.getTs());
+        assertEquals(order.getSeq(), store.view(slot).getSeq());
+
+        // 过期推送被拒绝，与 Order 的规则一致
+        long fill = Order.FIXED.valueOf(new BigDecimal("0.01"));
+        assertFalse(store.update("a", fill, OrderStatus.PART_FILLED, 1700000000100L));
+        assertTrue(store.update("a", fill, OrderStatus.PART_FILLED, 1700000000200L));
+        Order updated = store.toOrder(slot);
+        assertEquals(1700000000200L, updated.getSeq());
+        assertEquals(store.view(slot).getTs(), updated.getTs());
+        assertFalse(updated.transition(OrderStatus.FILLED, new BigDecimal("0.015"), 1700000000150L));
+    }
+
+    @Test
+    public void randomChurnMatchesMap() {
+        OrderStore store = new OrderStore(16);
+        Map<String, Order> expected = new HashMap<>();
+        List<String> live = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 5 || live.isEmpty()) {
+                String cliId = "c" + random.nextInt(50_000);
+                Order order = order(cliId, "S" + random.nextInt(20), random.nextInt(100_000) + ".5", "0.01");
+                boolean added = store.add(order) >= 0;
+                assertEquals(cliId, !expected.containsKey(cliId), added);
+                if (added) {
+                    expected.put(cliId, order);
+                    live.add(cliId);
+                }
+            } else if (op < 8) {
+                String cliId = live.remove(random.nextInt(live.size()));
+                assertTrue(cliId, store.remove(cliId));
+                expected.remove(cliId);
+            } else {
+                String cliId = live.get(random.nextInt(live.size()));
+                assertEquals(cliId, expected.get(cliId).transition(OrderStatus.NEW), store.update(cliId, OrderStatus.NEW));
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        int[] visited = new int[1];
+        store.forEach(view -> {
+            assertRecord(expected.get(view.getCliId()), expected.get(view.getCliId()), view);
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+        for (String cliId : expected.keySet()) {
+            assertEquals(cliId, store.view(store.find(cliId)).getCliId());
+        }
+        assertEquals(-1, store.find("missing"));
+    }
+
+    private static void assertRecord(OrderRecord expected, Order source, OrderRecord actual) {
+        assertEquals(expected.getCliId(), actual.getCliId());
+        assertEquals(expected.getSymbol(), actual.getSymbol());
+        assertEquals(expected.getSide(), actual.getSide());
+        assertEquals(expected.getDirection(), actual.getDirection());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getFixedPrice(), actual.getFixedPrice());
+        assertEquals(expected.getFixedAmount(), actual.getFixedAmount());
+        assertEquals(expected.getFixedExecAmount(), actual.getFixedExecAmount());
+        assertEquals(source.getPrice() == null, actual.getPrice() == null);
+        assertEquals(source.getExecAmount() == null, actual.getExecAmount() == null);
+        if (source.getPrice() != null) {
+            assertEquals(0, source.getPrice().compareTo(actual.getPrice()));
+        }
+        assertEquals(0, source.getAmount().compareTo(actual.getAmount()));
+    }
+
+    private static Order order(String cliId, String symbol, String price, String amount) {
+        return new Order(cliId, symbol, ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal(amount), new BigDecimal(price));
+    }
+}
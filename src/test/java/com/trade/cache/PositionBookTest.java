@@ -0,0 +1,194 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PositionBookTest {
+    private final PositionBook book = new PositionBook("test", new BigDecimal("0.1"), 64, WaitStrategy.yielding());
+
+    @After
+    public void tearDown() {
+        book.close();
+    }
+
+    @Test
+    public void resultCompletesAfterSnapshotContainsWrite() throws Exception {
+        assertEquals(0, book.snapshot().size());
+        assertTrue(book.add(order("a", "100", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertFalse(book.add(order("a", "101", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.add(order("b", "105", ExchangeEnums.OrderSide.SELL, ExchangeEnums.Direction.SHORT)).get(5, TimeUnit.SECONDS));
+
+        PositionSnapshot before = book.snapshot();
+        assertEquals(2, before.getVersion());
+        assertEquals(OrderStatus.INIT, before.getLongOrders().get(0).getStatus());
+
+        assertTrue(book.update("a", new BigDecimal("0.01"), OrderStatus.FILLED).get(5, TimeUnit.SECONDS));
+        assertFalse(book.update("missing", OrderStatus.NEW).get(5, TimeUnit.SECONDS));
+        PositionSnapshot after = book.snapshot();
+        assertEquals(3, after.getVersion());
+        assertEquals(OrderStatus.FILLED, after.getLongOrders().get(0).getStatus());
+        assertEquals(new BigDecimal("0.01"), after.getLongOrders().get(0).getExecAmount());
+        // 旧快照不受后续修改影响
+        assertEquals(OrderStatus.INIT, before.getLongOrders().get(0).getStatus());
+        assertNull(before.getLongOrders().get(0).getExecAmount());
+
+        assertTrue(book.remove("b").get(5, TimeUnit.SECONDS));
+        assertTrue(book.snapshot().getShortOrders().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> book.snapshot().getLongOrders().clear());
+    }
+
+    @Test
+    public void concurrentWritersNeverExposeHalfAppliedFills() throws Exception {
+        int writers = 4;
+        int ordersPerWriter = 500;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> violation = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = -1;
+            while (!done.get() && violation.get() == null) {
+                PositionSnapshot snapshot = book.snapshot();
+                if (snapshot.getVersion() < lastVersion) {
+                    violation.set("version went backwards");
+                }
+                lastVersion = snapshot.getVersion();
+                for (PositionSnapshot.OrderState state : snapshot.getLongOrders()) {
+                    // 成交回报同时设置状态和成交数量，两者必须一致
+                    boolean filled = state.getStatus() == OrderStatus.FILLED;
+                    if (filled != (state.getExecAmount() != null)) {
+                        violation.set("half-applied fill on " + state.getCliId());
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                List<CompletableFuture<Boolean>> own = new ArrayList<>();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < ordersPerWriter; i++) {
+                    String cliId = writer + "-" + i;
+                    own.add(book.add(order(cliId, String.valueOf(40_000 + i % 50), ExchangeEnums.OrderSide.BUY,
+                        ExchangeEnums.Direction.LONG)));
+                    own.add(book.update(cliId, new BigDecimal("0.01"), OrderStatus.FILLED));
+                }
+                synchronized (results) {
+                    results.addAll(own);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        done.set(true);
+        reader.join();
+
+        assertNull(violation.get(), violation.get());
+        assertTrue(results.stream().allMatch(CompletableFuture::join));
+        PositionSnapshot last = book.snapshot();
+        assertEquals(writers * ordersPerWriter, last.getLongOrders().size());
+        assertEquals(2L * writers * ordersPerWriter, last.getVersion());
+    }
+
+    @Test
+    public void stalePushesAreDroppedAndTransitionsNotified() throws Exception {
+        List<String> transitions = new CopyOnWriteArrayList<>();
+        book.addListener((order, from) -> transitions.add(from + "->" + order.getStatus() + ":" + order.getExecAmount()));
+        book.add(order("a", "100", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS);
+
+        assertTrue(book.update("a", OrderStatus.NEW).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("a", new BigDecimal("0.004"), new BigDecimal("99.5"), OrderStatus.PART_FILLED, 3)
+            .get(5, TimeUnit.SECONDS));
+        // 序号更小的推送、成交数量没有增加的推送、状态回退都被丢弃
+        assertFalse(book.update("a", new BigDecimal("0.006"), OrderStatus.PART_FILLED, 2).get(5, TimeUnit.SECONDS));
+        assertFalse(book.update("a", new BigDecimal("0.004"), OrderStatus.PART_FILLED, 4).get(5, TimeUnit.SECONDS));
+        assertFalse(book.update("a", OrderStatus.NEW).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("a", new BigDecimal("0.01"), OrderStatus.FILLED, 5).get(5, TimeUnit.SECONDS));
+        assertFalse(book.update("a", OrderStatus.CANCELED).get(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("INIT->NEW:null", "NEW->PART_FILLED:0.004", "PART_FILLED->FILLED:0.01"), transitions);
+        assertEquals(4, book.snapshot().getVersion());
+        // 被丢弃的推送不计入敞口，最后一次回报没有成交价时按委托价计
+        Exposure exposure = book.getExposure().get("BTC-USDT", ExchangeEnums.Direction.LONG);
+        assertEquals(Order.FIXED.parse("0.01"), exposure.getQuantity());
+        assertEquals(0, new BigDecimal("99.8").compareTo(exposure.snapshot().getAvgPrice()));
+    }
+
+    @Test
+    public void writeCostDoesNotGrowWithBookSize() throws Exception {
+        // 预热后分别测量小簿和大簿上逐条等待结果的状态写入，每次写入都发布一次快照
+        perWriteNanos(1_000, 500);
+        long small = perWriteNanos(1_000, 500);
+        long large = perWriteNanos(100_000, 500);
+        assertTrue("per write " + small + " ns with 1k orders, " + large + " ns with 100k orders",
+            large < Math.max(small, 20_000) * 5);
+    }
+
+    private static long perWriteNanos(int orders, int writes) throws Exception {
+        PositionBook sized = new PositionBook("sized", new BigDecimal("0.1"), 1024, WaitStrategy.yielding());
+        try {
+            CompletableFuture<Boolean> last = null;
+            for (int i = 0; i < orders; i++) {
+                ExchangeEnums.OrderSide side = i % 2 == 0 ? ExchangeEnums.OrderSide.BUY : ExchangeEnums.OrderSide.SELL;
+                ExchangeEnums.Direction direction = i % 2 == 0 ? ExchangeEnums.Direction.LONG : ExchangeEnums.Direction.SHORT;
+                last = sized.add(order("o" + i, String.valueOf(40_000 + i % 500), side, direction));
+            }
+            assertTrue(last.get(30, TimeUnit.SECONDS));
+            long started = System.nanoTime();
+            for (int i = 0; i < writes; i++) {
+                // 每条订单只更新一次，INIT -> NEW 都生效
+                assertTrue(sized.update("o" + (i * 2), OrderStatus.NEW).get(5, TimeUnit.SECONDS));
+            }
+            long elapsed = System.nanoTime() - started;
+            PositionSnapshot snapshot = sized.snapshot();
+            assertEquals(orders, snapshot.size());
+            // 买单从高价到低价，同价按加入顺序
+            PositionSnapshot.OrderState previous = null;
+            for (PositionSnapshot.OrderState state : snapshot.getLongOrders()) {
+                if (previous != null) {
+                    int cmp = previous.getPrice().compareTo(state.getPrice());
+                    assertTrue(cmp > 0 || cmp == 0 && index(previous) < index(state));
+                }
+                previous = state;
+            }
+            return elapsed / writes;
+        } finally {
+            sized.close();
+        }
+    }
+
+    private static int index(PositionSnapshot.OrderState state) {
+        return Integer.parseInt(state.getCliId().substring(1));
+    }
+
+    private static Order order(String cliId, String price, ExchangeEnums.OrderSide side, ExchangeEnums.Direction direction) {
+        return new Order(cliId, "BTC-USDT", side, direction, ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.01"),
+            new BigDecimal(price));
+    }
+}
@@ -0,0 +1,208 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PositionJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void crashRecoveryReplaysTailAfterSnapshotAndDropsTornRecord() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        // 每3条记录一次快照，使恢复同时用到快照和之后的日志
+        PositionBook book = open(dir, 3);
+        assertTrue(book.add(order("a", "100", "2", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.add(order("b", "105", "1", ExchangeEnums.OrderSide.SELL, ExchangeEnums.Direction.SHORT)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.add(order("c", "99", "1", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("a", OrderStatus.NEW).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("a", new BigDecimal("1"), new BigDecimal("99.5"), OrderStatus.PART_FILLED, 7).get(5, TimeUnit.SECONDS));
+        assertTrue(book.remove("c").get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("b", OrderStatus.CANCELED).get(5, TimeUnit.SECONDS));
+        PositionSnapshot expected = book.snapshot();
+
+        // 模拟进程崩溃：不调用 close，并在日志末尾留下半条记录；快照在后台写，先等旧日志删除
+        Path events = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events == null && System.currentTimeMillis() < deadline) {
+            List<Path> logs;
+            try (Stream<Path> files = Files.list(dir)) {
+                logs = files.filter(p -> p.getFileName().toString().startsWith("events-")).collect(Collectors.toList());
+            }
+            if (logs.size() == 1) {
+                events = logs.get(0);
+            } else {
+                Thread.sleep(10);
+            }
+        }
+        assertNotNull("rotated logs were not deleted", events);
+        Files.write(events, new byte[]{0, 0, 0, 40, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        PositionBook restored = open(dir, 3);
+        try {
+            PositionSnapshot actual = restored.snapshot();
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(describe(expected.getLongOrders()), describe(actual.getLongOrders()));
+            assertEquals(describe(expected.getShortOrders()), describe(actual.getShortOrders()));
+            assertEquals(Order.FIXED.parse("1"), restored.getExposure().getQuantity("BTC-USDT", ExchangeEnums.Direction.LONG));
+            assertEquals(0, new BigDecimal("99.5").compareTo(
+                restored.getExposure().get("BTC-USDT", ExchangeEnums.Direction.LONG).snapshot().getAvgPrice()));
+
+            // 恢复后序号和过期判断照常延续
+            assertFalse(restored.update("a", new BigDecimal("2"), OrderStatus.FILLED, 6).get(5, TimeUnit.SECONDS));
+            assertTrue(restored.update("a", new BigDecimal("2"), OrderStatus.FILLED, 8).get(5, TimeUnit.SECONDS));
+            assertEquals(expected.getVersion() + 1, restored.snapshot().getVersion());
+        } finally {
+            restored.close();
+        }
+
+        PositionBook reopened = open(dir, 3);
+        try {
+            assertEquals(expected.getVersion() + 1, reopened.snapshot().getVersion());
+            assertEquals(OrderStatus.FILLED, reopened.snapshot().getLongOrders().get(0).getStatus());
+            assertEquals(Order.FIXED.parse("2"), reopened.getExposure().getQuantity("BTC-USDT", ExchangeEnums.Direction.LONG));
+        } finally {
+            reopened.close();
+            book.close();
+        }
+    }
+
+    @Test
+    public void restartWithManyLiveOrdersLoadsSnapshot() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        int orders = 100_000;
+        PositionJournal journal = new PositionJournal(dir, PositionJournal.DEFAULT_SNAPSHOT_EVERY, false);
+        PositionBook book = open(journal);
+        CompletableFuture<Boolean> last = null;
+        for (int i = 0; i < orders; i++) {
+            String price = new BigDecimal(10_000 + i % 500).movePointLeft(2).toPlainString();
+            ExchangeEnums.OrderSide side = i % 2 == 0 ? ExchangeEnums.OrderSide.BUY : ExchangeEnums.OrderSide.SELL;
+            ExchangeEnums.Direction direction = i % 2 == 0 ? ExchangeEnums.Direction.LONG : ExchangeEnums.Direction.SHORT;
+            last = book.add(order("o" + i, price, "0.01", side, direction));
+        }
+        assertTrue(last.get(30, TimeUnit.SECONDS));
+        PositionSnapshot expected = book.snapshot();
+        book.close();
+        // 第10万条记录触发快照，写线程只切换日志文件，序列化和落盘都在后台
+        long pause = TimeUnit.NANOSECONDS.toMillis(journal.getMaxSnapshotPauseNanos());
+        assertTrue("no snapshot was taken", journal.getMaxSnapshotPauseNanos() > 0);
+        assertTrue("writer paused " + pause + " ms for the snapshot", pause < 50);
+
+        long started = System.nanoTime();
+        PositionBook restored = open(dir, PositionJournal.DEFAULT_SNAPSHOT_EVERY);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        try {
+            assertEquals(orders, restored.snapshot().size());
+            assertEquals(orders, restored.snapshot().getVersion());
+            // 同价订单的排队顺序不变
+            assertEquals(describe(expected.getLongOrders()), describe(restored.snapshot().getLongOrders()));
+            assertEquals(describe(expected.getShortOrders()), describe(restored.snapshot().getShortOrders()));
+            assertTrue("recovery took " + elapsed + " ms", elapsed < 1000);
+        } finally {
+            restored.close();
+        }
+    }
+
+    @Test
+    public void crashRecoveryReplaysLargeTail() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        int orders = 50_000;
+        // 快照间隔大于记录数，恢复全部来自日志
+        PositionBook book = open(dir, 1_000_000);
+        CompletableFuture<Boolean> last = null;
+        for (int i = 0; i < orders; i++) {
+            String price = new BigDecimal(10_000 + i % 500).movePointLeft(2).toPlainString();
+            last = book.add(order("o" + i, price, "0.02", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG));
+        }
+        for (int i = 0; i < orders; i++) {
+            last = book.update("o" + i, OrderStatus.NEW);
+        }
+        for (int i = 0; i < orders; i += 2) {
+            last = book.update("o" + i, new BigDecimal("0.01"), new BigDecimal("100"), OrderStatus.PART_FILLED, 1);
+        }
+        for (int i = 0; i < orders; i += 4) {
+            last = book.remove("o" + i);
+        }
+        assertTrue(last.get(30, TimeUnit.SECONDS));
+        PositionSnapshot expected = book.snapshot();
+        assertEquals(orders * 2 + orders / 2 + orders / 4, expected.getVersion());
+
+        // 不调用 close，模拟进程崩溃
+        long started = System.nanoTime();
+        PositionBook restored = open(dir, 1_000_000);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        try {
+            assertEquals(expected.getVersion(), restored.snapshot().getVersion());
+            assertEquals(orders - orders / 4, restored.snapshot().size());
+            assertEquals(describe(expected.getLongOrders()), describe(restored.snapshot().getLongOrders()));
+            assertEquals(book.getExposure().getQuantity("BTC-USDT", ExchangeEnums.Direction.LONG),
+                restored.getExposure().getQuantity("BTC-USDT", ExchangeEnums.Direction.LONG));
+            assertTrue("replaying " + expected.getVersion() + " records took " + elapsed + " ms", elapsed < 3000);
+        } finally {
+            restored.close();
+            book.close();
+        }
+    }
+
+    @Test
+    public void exposureResetIsJournaledAndReplayed() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        PositionBook book = open(dir, 100);
+        assertTrue(book.add(order("a", "100", "2", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.add(order("b", "110", "1", ExchangeEnums.OrderSide.SELL, ExchangeEnums.Direction.LONG)).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("a", new BigDecimal("2"), OrderStatus.FILLED).get(5, TimeUnit.SECONDS));
+        assertTrue(book.update("b", new BigDecimal("1"), OrderStatus.FILLED).get(5, TimeUnit.SECONDS));
+        assertTrue(book.resetExposure().get(5, TimeUnit.SECONDS));
+        Exposure.Snapshot before = book.getExposure().get("BTC-USDT", ExchangeEnums.Direction.LONG).snapshot();
+        assertEquals(0, before.getQuantity().signum());
+        assertEquals(0, new BigDecimal("10").compareTo(before.getRealizedPnl()));
+        long version = book.snapshot().getVersion();
+
+        // 不调用 close，只靠日志恢复
+        PositionBook restored = open(dir, 100);
+        try {
+            assertEquals(version, restored.snapshot().getVersion());
+            Exposure.Snapshot after = restored.getExposure().get("BTC-USDT", ExchangeEnums.Direction.LONG).snapshot();
+            assertEquals(0, after.getQuantity().signum());
+            assertEquals(0, before.getRealizedPnl().compareTo(after.getRealizedPnl()));
+        } finally {
+            restored.close();
+            book.close();
+        }
+    }
+
+    private static PositionBook open(Path dir, int snapshotEvery) {
+        return open(new PositionJournal(dir, snapshotEvery, false));
+    }
+
+    private static PositionBook open(PositionJournal journal) {
+        return new PositionBook("test", new BigDecimal("0.01"), 1024, WaitStrategy.parking(100_000), journal);
+    }
+
+    private static List<String> describe(List<PositionSnapshot.OrderState> states) {
+        return states.stream()
+            .map(s -> s.getCliId() + "/" + s.getStatus() + "/" + s.getPrice() + "/" + s.getExecAmount())
+            .collect(Collectors.toList());
+    }
+
+    private static Order order(String cliId, String price, String amount, ExchangeEnums.OrderSide side,
+                               ExchangeEnums.Direction direction) {
+        return new Order(cliId, "BTC-USDT", side, direction, ExchangeEnums.OrderType.LIMIT,
+            new BigDecimal(amount), new BigDecimal(price));
+    }
+}
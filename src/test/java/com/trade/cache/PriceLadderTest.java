@@ -0,0 +1,124 @@
+package com.trade.cache;
+
+import com.trade.common.ExchangeEnums;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class PriceLadderTest {
+    private static final BigDecimal TICK = new BigDecimal("0.1");
+
+    @Test
+    public void samePriceQueuesInArrivalOrder() {
+        PriceLadder bids = new PriceLadder(TICK, true);
+        assertTrue(bids.add(order("a", "100.0")));
+        assertTrue(bids.add(order("b", "100.0")));
+        assertTrue(bids.add(order("c", "99.9")));
+        assertFalse(bids.add(order("a", "98.0")));
+
+        assertEquals(3, bids.size());
+        assertEquals(2, bids.levelCount());
+        assertEquals(2, bids.levelSize(new BigDecimal("100")));
+        assertEquals("a", bids.best().getCliId());
+        assertEquals(List.of("a", "b", "c"), cliIds(bids));
+
+        assertEquals("a", bids.remove("a").getCliId());
+        assertEquals("b", bids.best().getCliId());
+        assertNull(bids.remove("a"));
+        bids.remove("b");
+        assertEquals("c", bids.best().getCliId());
+        assertEquals(0, new BigDecimal("99.9").compareTo(bids.bestPrice()));
+        bids.remove("c");
+        assertTrue(bids.isEmpty());
+        assertNull(bids.best());
+        assertNull(bids.bestPrice());
+    }
+
+    @Test
+    public void asksPreferLowestPrice() {
+        PriceLadder asks = new PriceLadder(TICK, false);
+        asks.add(order("high", "101.0"));
+        asks.add(order("low", "100.5"));
+        asks.add(order("mid", "100.7"));
+        assertEquals(List.of("low", "mid", "high"), cliIds(asks));
+        asks.remove("low");
+        assertEquals("mid", asks.best().getCliId());
+    }
+
+    @Test
+    public void growsToCoverDistantPrices() {
+        PriceLadder asks = new PriceLadder(TICK, false);
+        asks.add(order("mid", "50000.0"));
+        asks.add(order("far-up", "60000.0"));
+        asks.add(order("far-down", "40000.0"));
+        assertEquals(List.of("far-down", "mid", "far-up"), cliIds(asks));
+        asks.remove("far-down");
+        assertEquals("mid", asks.best().getCliId());
+        assertEquals(1, asks.levelSize(new BigDecimal("60000")));
+    }
+
+    @Test
+    public void matchesSortedReference() {
+        Random random = new Random(11);
+        for (boolean descending : new boolean[]{true, false}) {
+            PriceLadder ladder = new PriceLadder(TICK, descending);
+            TreeMap<Long, List<String>> reference = new TreeMap<>();
+            List<String> live = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (live.isEmpty() || random.nextInt(3) > 0) {
+                    long ticks = 300_000 + random.nextInt(2_000) + (random.nextInt(50) == 0 ? random.nextInt(200_000) : 0);
+                    String cliId = "o" + i;
+                    assertTrue(ladder.add(order(cliId, BigDecimal.valueOf(ticks, 1).toPlainString())));
+                    reference.computeIfAbsent(ticks, k -> new ArrayList<>()).add(cliId);
+                    live.add(cliId);
+                } else {
+                    String cliId = live.remove(random.nextInt(live.size()));
+                    long ticks = ladder.toTicks(ladder.remove(cliId).getPrice());
+                    List<String> level = reference.get(ticks);
+                    level.remove(cliId);
+                    if (level.isEmpty()) {
+                        reference.remove(ticks);
+                    }
+                }
+                if (reference.isEmpty()) {
+                    assertNull(ladder.best());
+                } else {
+                    long best = descending ? reference.lastKey() : reference.firstKey();
+                    assertEquals(reference.get(best).get(0), ladder.best().getCliId());
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            (descending ? reference.descendingMap() : reference).values().forEach(expected::addAll);
+            assertEquals(expected, cliIds(ladder));
+            assertEquals(reference.size(), ladder.levelCount());
+        }
+    }
+
+    @Test
+    public void positionKeepsGridOrdersAtSamePrice() {
+        Position position = new Position(TICK);
+        assertTrue(position.add(order("g1", "95000")));
+        assertTrue(position.add(order("g2", "95000")));
+        assertEquals(2, position.getLongOrders().size());
+        assertTrue(position.remove("g1"));
+        assertFalse(position.remove("g1"));
+        assertEquals("g2", position.getLongOrders().best().getCliId());
+    }
+
+    private static Order order(String cliId, String price) {
+        return new Order(cliId, "BTC-USDT", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.01"), new BigDecimal(price));
+    }
+
+    private static List<String> cliIds(PriceLadder ladder) {
+        List<String> ids = new ArrayList<>();
+        ladder.forEach(order -> ids.add(order.getCliId()));
+        return ids;
+    }
+}
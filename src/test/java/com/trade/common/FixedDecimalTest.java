@@ -0,0 +1,128 @@
+package com.trade.common;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FixedDecimalTest {
+    private static final FixedDecimal EIGHT = FixedDecimal.of(8);
+    private static final BigInteger MIN = BigInteger.valueOf(-Long.MAX_VALUE);
+    private static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    @Test
+    public void parsesAndFormatsExchangeStrings() {
+        assertEquals(4_500_000_000_000L, EIGHT.parse("45000"));
+        assertEquals(1_500_000L, EIGHT.parse("0.015"));
+        assertEquals(-1_500_000L, EIGHT.parse("-0.015"));
+        assertEquals(1L, EIGHT.parse("0.0000000100"));
+        assertEquals(Long.MIN_VALUE, FixedDecimal.of(0).parse("-9223372036854775808"));
+        assertEquals("0.01500000", EIGHT.toString(1_500_000L));
+        assertEquals("-0.01500000", EIGHT.toString(-1_500_000L));
+        assertEquals("45000.5", FixedDecimal.of(1).toString(450_005L));
+        assertEquals("7", FixedDecimal.of(0).toString(7L));
+        assertEquals(new BigDecimal("-12.34000000"), EIGHT.toBigDecimal(EIGHT.valueOf(new BigDecimal("-12.34"))));
+        assertEquals(4, FixedDecimal.ofTick(new BigDecimal("0.00010")).getScale());
+        assertEquals(0, FixedDecimal.ofTick(new BigDecimal("10")).getScale());
+    }
+
+    @Test
+    public void rejectsInexactInput() {
+        assertThrows(ArithmeticException.class, () -> EIGHT.parse("0.000000001"));
+        assertThrows(ArithmeticException.class, () -> EIGHT.parse("92233720368.54775808"));
+        assertThrows(ArithmeticException.class, () -> EIGHT.valueOf(new BigDecimal("1.000000001")));
+        assertThrows(NumberFormatException.class, () -> EIGHT.parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> EIGHT.parse("-"));
+        assertThrows(NumberFormatException.class, () -> EIGHT.parse("1e-5"));
+    }
+
+    @Test
+    public void arithmeticRoundsHalfUpAndDetectsOverflow() {
+        long price = EIGHT.parse("95000.12345678");
+        long amount = EIGHT.parse("3.5");
+        assertEquals(EIGHT.parse("332500.43209873"), EIGHT.multiply(price, amount));
+        assertEquals(EIGHT.parse("0.33333333"), EIGHT.divide(EIGHT.valueOf(1), EIGHT.valueOf(3)));
+        assertEquals(EIGHT.parse("0.66666667"), EIGHT.divide(EIGHT.valueOf(2), EIGHT.valueOf(3)));
+        assertEquals(EIGHT.parse("-0.66666667"), EIGHT.divide(EIGHT.valueOf(-2), EIGHT.valueOf(3)));
+        assertEquals(FixedDecimal.of(2).parse("1.24"), FixedDecimal.of(2).convert(EIGHT.parse("1.235"), EIGHT));
+        assertEquals(EIGHT.parse("1.23"), EIGHT.convert(FixedDecimal.of(2).parse("1.23"), FixedDecimal.of(2)));
+        assertThrows(ArithmeticException.class, () -> EIGHT.multiply(Long.MAX_VALUE / 2, EIGHT.valueOf(3)));
+        assertThrows(ArithmeticException.class, () -> EIGHT.divide(1, 0));
+        assertThrows(ArithmeticException.class, () -> FixedDecimal.add(Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    public void mulDivMatchesBigDecimal() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000; i++) {
+            long a = random.nextLong() >> random.nextInt(64);
+            long b = random.nextLong() >> random.nextInt(64);
+            long c = random.nextLong() >> random.nextInt(63);
+            if (c == 0 || a == Long.MIN_VALUE || b == Long.MIN_VALUE || c == Long.MIN_VALUE) {
+                continue;
+            }
+            BigInteger expected = BigDecimal.valueOf(a).multiply(BigDecimal.valueOf(b))
+                .divide(BigDecimal.valueOf(c), 0, RoundingMode.HALF_UP).toBigIntegerExact();
+            boolean fits = expected.compareTo(MIN) >= 0 && expected.compareTo(MAX) <= 0;
+            String expression = a + " * " + b + " / " + c;
+            try {
+                long actual = FixedDecimal.mulDiv(a, b, c);
+                assertTrue(expression + " should overflow", fits);
+                assertEquals(expression, expected.longValueExact(), actual);
+            } catch (ArithmeticException e) {
+                assertFalse(expression + " overflowed", fits);
+            }
+        }
+    }
+
+    @Test
+    public void multiplyAndDivideMatchMulDiv() {
+        Random random = new Random(5);
+        for (int scale : new int[]{0, 2, 8, 12}) {
+            FixedDecimal fixed = FixedDecimal.of(scale);
+            for (int i = 0; i < 100_000; i++) {
+                long a = random.nextLong() >> random.nextInt(64);
+                long b = random.nextLong() >> random.nextInt(64);
+                assertEquals(outcome(() -> FixedDecimal.mulDiv(a, b, fixed.getFactor())), outcome(() -> fixed.multiply(a, b)));
+                if (b != 0) {
+                    assertEquals(outcome(() -> FixedDecimal.mulDiv(a, fixed.getFactor(), b)), outcome(() -> fixed.divide(a, b)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void averageRoundsOnlyOnce() {
+        // 45012.5 持仓 1.25，再以 45123.4 成交 0.01
+        assertEquals(EIGHT.parse("45013.38015873"),
+            FixedDecimal.average(EIGHT.parse("45012.5"), EIGHT.parse("1.25"), EIGHT.parse("45123.4"), EIGHT.parse("0.01")));
+        assertEquals(EIGHT.parse("100"), FixedDecimal.average(0, 0, EIGHT.parse("100"), EIGHT.parse("2")));
+        assertThrows(ArithmeticException.class, () -> FixedDecimal.average(1, 0, 2, 0));
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long average = random.nextLong() >>> (14 + random.nextInt(40));
+            long weight = random.nextLong() >>> (14 + random.nextInt(40));
+            long price = random.nextLong() >>> (14 + random.nextInt(40));
+            long added = 1 + (random.nextLong() >>> (14 + random.nextInt(40)));
+            BigDecimal delta = BigDecimal.valueOf(price - average).multiply(BigDecimal.valueOf(added))
+                .divide(BigDecimal.valueOf(weight + added), 0, RoundingMode.HALF_UP);
+            assertEquals(average + delta.longValueExact(), FixedDecimal.average(average, weight, price, added));
+        }
+    }
+
+    private static String outcome(LongSupplierWithOverflow operation) {
+        try {
+            return String.valueOf(operation.get());
+        } catch (ArithmeticException e) {
+            return "overflow";
+        }
+    }
+
+    private interface LongSupplierWithOverflow {
+        long get();
+    }
+}
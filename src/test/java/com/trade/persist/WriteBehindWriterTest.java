@@ -0,0 +1,157 @@
+package com.trade.persist;
+
+import com.trade.cache.Order;
+import com.trade.cache.OrderStatus;
+import com.trade.cache.PositionBook;
+import com.trade.common.ExchangeEnums;
+import com.trade.domain.TradeFill;
+import com.trade.domain.TradeOrder;
+import com.trade.socket.netty.handler.ring.WaitStrategy;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindWriterTest {
+
+    @Test
+    public void batchesBySizeAndMergesOrderUpdates() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        WriteBehindWriter writer = new WriteBehindWriter(sink, Files.createTempDirectory("spill"), 1024, 10, 300, 0, 50);
+        writer.offer(order("a", "NEW", 1));
+        writer.offer(order("a", "PART_FILLED", 2));
+        writer.offer(order("a", "FILLED", 3));
+        for (int i = 1; i <= 25; i++) {
+            writer.offer(fill("a", i));
+        }
+        writer.close();
+
+        assertEquals(1, sink.orders.size());
+        assertEquals("FILLED", sink.orders.get(0).getStatus());
+        assertEquals(25, sink.fills.size());
+        // 28 行分 3 批写出，每批订单、成交各一条语句
+        assertEquals(List.of(7, 10, 8), sink.fillBatches);
+        assertEquals(26, writer.getWritten());
+    }
+
+    @Test
+    public void spillsWhileDatabaseIsDownAndReplaysAfterRecovery() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        sink.failing = true;
+        Path dir = Files.createTempDirectory("spill");
+        WriteBehindWriter writer = new WriteBehindWriter(sink, dir, 1024, 5, 20, 1, 50);
+        for (int i = 1; i <= 12; i++) {
+            assertTrue(writer.offer(fill("a", i)));
+        }
+        await(() -> writer.getSpilled() == 12);
+        assertTrue(sink.fills.isEmpty());
+
+        sink.failing = false;
+        await(() -> sink.fills.size() == 12);
+        await(() -> !Files.exists(dir.resolve(WriteBehindWriter.SPILL_FILE))
+            && !Files.exists(dir.resolve(WriteBehindWriter.REPLAY_FILE)));
+        writer.close();
+        assertEquals(12, writer.getWritten());
+        assertEquals(0, writer.getDropped());
+    }
+
+    @Test
+    public void recordsBookEventsAndRejectsOffersAfterClose() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        WriteBehindWriter writer = new WriteBehindWriter(sink, Files.createTempDirectory("spill"), 1024, 100, 20, 0, 50);
+        PositionBook book = new PositionBook("s1", new BigDecimal("0.1"), 64, WaitStrategy.yielding());
+        book.addListener(writer.listener("s1"));
+        book.add(new Order("a", "BTC-USDT", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("0.01"), new BigDecimal("100"))).get(5, TimeUnit.SECONDS);
+        book.update("a", new BigDecimal("0.01"), new BigDecimal("99.9"), OrderStatus.FILLED, 1).get(5, TimeUnit.SECONDS);
+        book.close();
+        writer.close();
+
+        assertEquals("FILLED", sink.orders.get(sink.orders.size() - 1).getStatus());
+        assertEquals("s1", sink.orders.get(0).getStrategyId());
+        assertEquals(1, sink.fills.size());
+        assertEquals(0, new BigDecimal("99.9").compareTo(sink.fills.get(0).getPrice()));
+        assertEquals(0, new BigDecimal("0.01").compareTo(sink.fills.get(0).getQuantity()));
+
+        assertFalse(writer.offer(fill("b", 1)));
+        assertEquals(1, writer.getDropped());
+    }
+
+    @Test
+    public void interruptedFlusherWritesQueuedRowsAndStops() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        WriteBehindWriter writer = new WriteBehindWriter(sink, Files.createTempDirectory("spill"), 1024, 100, 60_000, 0, 50);
+        for (int i = 1; i <= 3; i++) {
+            writer.offer(fill("a", i));
+        }
+        Thread flusher = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> "write-behind".equals(thread.getName()) && thread.isAlive())
+            .findFirst().orElseThrow();
+        flusher.interrupt();
+        flusher.join(5000);
+
+        assertFalse("flusher did not stop after interrupt", flusher.isAlive());
+        assertEquals(3, sink.fills.size());
+        assertFalse(writer.offer(fill("b", 1)));
+        writer.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static TradeOrder order(String cliId, String status, long ts) {
+        TradeOrder order = new TradeOrder();
+        order.setStrategyId("s1");
+        order.setCliId(cliId);
+        order.setStatus(status);
+        order.setTs(ts);
+        return order;
+    }
+
+    private static TradeFill fill(String cliId, int execAmount) {
+        TradeFill fill = new TradeFill();
+        fill.setStrategyId("s1");
+        fill.setCliId(cliId);
+        fill.setQuantity(BigDecimal.ONE);
+        fill.setExecAmount(BigDecimal.valueOf(execAmount));
+        fill.setTs((long) execAmount);
+        return fill;
+    }
+
+    private static final class RecordingSink implements PersistSink {
+        private final List<TradeOrder> orders = Collections.synchronizedList(new ArrayList<>());
+        private final List<TradeFill> fills = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> fillBatches = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
+
+        @Override
+        public void writeOrders(List<TradeOrder> batch) {
+            if (failing) {
+                throw new IllegalStateException("database down");
+            }
+            orders.addAll(batch);
+        }
+
+        @Override
+        public void writeFills(List<TradeFill> batch) {
+            if (failing) {
+                throw new IllegalStateException("database down");
+            }
+            fills.addAll(batch);
+            fillBatches.add(batch.size());
+        }
+    }
+}
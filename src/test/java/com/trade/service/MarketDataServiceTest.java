@@ -0,0 +1,107 @@
+package com.trade.service;
+
+import com.trade.common.DataMessage;
+import com.trade.domain.Exchange;
+import com.trade.domain.Strategy;
+import com.trade.socket.netty.handler.MessageHandler;
+import com.trade.socket.netty.handler.impl.StrategyHandler;
+import com.trade.socket.netty.mock.MockOkxServer;
+import com.trade.strategy.AbstractStrategy;
+import com.trade.strategy.LatencyClass;
+import com.trade.strategy.StrategyRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class MarketDataServiceTest {
+    private MockOkxServer server;
+    private MarketDataService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.setMessagesPerSecond(200);
+        server.start();
+        service = new MarketDataService("ws://127.0.0.1:1", 30_000);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+        server.close();
+    }
+
+    @Test
+    public void subscribedStrategyReceivesPushesUntilUnsubscribed() throws Exception {
+        Exchange exchange = new Exchange();
+        exchange.setId(1L);
+        exchange.setName("okx");
+        exchange.setParams("{\"wsUrl\":\"" + server.getUrl() + "\"}");
+        TickerStrategy instance = new TickerStrategy();
+        StrategyRunner runner = new StrategyRunner(strategy(7L), instance, LatencyClass.NORMAL, null, 1024);
+        runner.start();
+        Map<String, List<String>> subscriptions = runner.submit(instance::getSubscriptions).get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of("tickers", List.of("BTC-USDT")), subscriptions);
+
+        MessageHandler<String> handler = new StrategyHandler(runner, "okx");
+        service.subscribe(exchange, "tickers", "BTC-USDT", handler);
+        assertTrue("no ticker reached the strategy", instance.received.await(10, TimeUnit.SECONDS));
+        assertTrue(service.isConnected(1L));
+        assertEquals("okx", instance.exchange);
+
+        service.unsubscribe(exchange, "tickers", "BTC-USDT", handler);
+        Thread.sleep(300);
+        long after = instance.count.get();
+        Thread.sleep(300);
+        assertEquals("pushes kept arriving after unsubscribe", after, instance.count.get());
+        runner.stop(5000);
+    }
+
+    private static Strategy strategy(Long id) {
+        Strategy strategy = new Strategy();
+        strategy.setId(id);
+        strategy.setName("ticker-" + id);
+        strategy.setParams("{}");
+        return strategy;
+    }
+
+    private static class TickerStrategy extends AbstractStrategy {
+        final CountDownLatch received = new CountDownLatch(1);
+        final AtomicLong count = new AtomicLong();
+        volatile String exchange;
+
+        @Override
+        public Map<String, List<String>> getSubscriptions() {
+            return Map.of("tickers", List.of("BTC-USDT"));
+        }
+
+        @Override
+        public void change(DataMessage dataMessage) {
+            if ("tickers".equals(dataMessage.getChannel())) {
+                exchange = dataMessage.getExchange();
+                count.incrementAndGet();
+                received.countDown();
+            }
+        }
+
+        @Override
+        protected void onStart() {
+        }
+
+        @Override
+        protected void onStop() {
+        }
+
+        @Override
+        protected void onParamsUpdate() {
+        }
+    }
+}
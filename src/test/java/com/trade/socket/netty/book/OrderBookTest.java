@@ -0,0 +1,114 @@
+package com.trade.socket.netty.book;
+
+import com.trade.socket.netty.codec.InstrumentRegistry;
+import com.trade.socket.netty.codec.MarketDataEvent;
+import com.trade.socket.netty.codec.OkxFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OrderBookTest {
+    private static final long SCALE = MarketDataEvent.SCALE_FACTOR;
+
+    private final InstrumentRegistry registry = new InstrumentRegistry();
+    private final OkxFrameDecoder decoder = new OkxFrameDecoder(registry);
+    private final List<String> resyncs = new ArrayList<>();
+    private final OrderBookManager manager =
+        new OrderBookManager(registry, book -> resyncs.add(book.getInstId()), null, 1024);
+
+    @Test
+    public void snapshotAndUpdatesWithChecksum() {
+        push(snapshot());
+        OrderBook book = manager.getBook("BTC-USDT");
+        assertTrue(book.isLive());
+        assertEquals(SCALE / 10, book.getTickSize());
+        assertEquals(336610 * SCALE / 100, book.getBestBid());
+        assertEquals(7 * SCALE, book.getBestBidSize());
+        assertEquals(336680 * SCALE / 100, book.getBestAsk());
+        assertEquals(-1881014294, book.checksum());
+
+        push("{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"update\",\"data\":[{"
+            + "\"asks\":[[\"3366.5\",\"2\",\"0\",\"1\"]],\"bids\":[[\"3366.1\",\"0\",\"0\",\"0\"]],"
+            + "\"ts\":\"1597026383085\",\"checksum\":169143593,\"prevSeqId\":100,\"seqId\":101}]}");
+        assertTrue(book.isLive());
+        assertEquals(101, book.getSeqId());
+        assertEquals(3366 * SCALE, book.getBestBid());
+        assertEquals(336650 * SCALE / 100, book.getBestAsk());
+        assertEquals(1, book.getBidLevels());
+        assertEquals(3, book.getAskLevels());
+        assertEquals(9 * SCALE, book.askSizeAt(336680 * SCALE / 100));
+
+        long[] prices = new long[5];
+        long[] sizes = new long[5];
+        assertEquals(3, book.asks(prices, sizes, 5));
+        assertEquals(3368 * SCALE, prices[2]);
+        assertEquals(8 * SCALE, sizes[2]);
+        assertEquals(19 * SCALE, book.cumulativeSize(false, 3));
+        assertTrue(resyncs.isEmpty());
+    }
+
+    @Test
+    public void sequenceGapTriggersResync() {
+        push(snapshot());
+        push("{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"update\",\"data\":[{"
+            + "\"asks\":[],\"bids\":[],\"ts\":\"1597026383085\",\"prevSeqId\":105,\"seqId\":106}]}");
+        OrderBook book = manager.getBook("BTC-USDT");
+        assertEquals(OrderBook.State.RESYNC, book.getState());
+        assertEquals(1, book.getGapCount());
+        assertEquals(List.of("BTC-USDT"), resyncs);
+
+        // 等待全量期间的增量被忽略，且不重复回调
+        push("{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"update\",\"data\":[{"
+            + "\"asks\":[],\"bids\":[],\"ts\":\"1597026383085\",\"prevSeqId\":106,\"seqId\":107}]}");
+        assertEquals(1, resyncs.size());
+
+        push(snapshot());
+        assertTrue(book.isLive());
+    }
+
+    @Test
+    public void checksumMismatchTriggersResync() {
+        push(snapshot().replace("-1881014294", "12345"));
+        assertEquals(OrderBook.State.RESYNC, manager.getBook("BTC-USDT").getState());
+        assertEquals(1, manager.getBook("BTC-USDT").getChecksumFailures());
+    }
+
+    @Test
+    public void windowFollowsThePrice() {
+        OrderBookManager small = new OrderBookManager(registry, null, null, 64);
+        decoder.decode(buf(snapshot().replace(",\"checksum\":-1881014294", "")), 1L, small);
+        OrderBook book = small.getBook("BTC-USDT");
+        // 价格上涨 100 个 tick，超出 64 档窗口
+        for (int i = 1; i <= 100; i++) {
+            String px = BigDecimal.valueOf(33668 + i, 1).toPlainString();
+            decoder.decode(buf("{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"update\",\"data\":[{"
+                + "\"asks\":[],\"bids\":[[\"" + px + "\",\"1\",\"0\",\"1\"]],"
+                + "\"ts\":\"1597026383085\",\"prevSeqId\":" + (99 + i) + ",\"seqId\":" + (100 + i) + "}]}"), 1L, small);
+        }
+        assertTrue(book.isLive());
+        assertEquals(337680 * SCALE / 100, book.getBestBid());
+        assertTrue(book.getDroppedLevels() > 0);
+    }
+
+    private void push(String json) {
+        decoder.decode(buf(json), 1L, manager);
+    }
+
+    private static String snapshot() {
+        return "{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"snapshot\",\"data\":[{"
+            + "\"asks\":[[\"3366.8\",\"9\",\"10\",\"3\"],[\"3368\",\"8\",\"3\",\"4\"]],"
+            + "\"bids\":[[\"3366.1\",\"7\",\"0\",\"3\"],[\"3366\",\"6\",\"3\",\"4\"]],"
+            + "\"ts\":\"1597026383085\",\"checksum\":-1881014294,\"prevSeqId\":-1,\"seqId\":100}]}";
+    }
+
+    private static ByteBuf buf(String s) {
+        return Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
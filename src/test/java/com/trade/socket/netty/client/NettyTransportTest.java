@@ -0,0 +1,131 @@
+package com.trade.socket.netty.client;
+
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.mock.MockOkxServer;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class NettyTransportTest {
+    private MockOkxServer server;
+    private NettyTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (transport != null) {
+            transport.shutdown();
+        }
+        server.close();
+    }
+
+    @Test
+    public void clientsShareOneEventLoopGroup() throws Exception {
+        transport = new NettyTransport(1, 0, 64 * 1024, true);
+        BaseNettyClient<String> first = client(transport, 30);
+        BaseNettyClient<String> second = client(transport, 30);
+        try {
+            Channel a = connect(first);
+            Channel b = connect(second);
+            assertNotSame(a, b);
+            assertSame(transport.getGroup(), a.eventLoop().parent());
+            assertSame(transport.getGroup(), b.eventLoop().parent());
+            // 只有一个IO线程，两个连接在同一个事件循环上
+            assertSame(a.eventLoop(), b.eventLoop());
+            assertSame(transport, first.getTransport());
+        } finally {
+            first.disconnect();
+            second.disconnect();
+        }
+    }
+
+    @Test
+    public void heartbeatRunsOnTheChannelEventLoop() throws Exception {
+        transport = new NettyTransport(2, 0, 64 * 1024, true);
+        CountDownLatch beat = new CountDownLatch(1);
+        AtomicBoolean onEventLoop = new AtomicBoolean();
+        Channel[] channel = new Channel[1];
+        BaseNettyClient<String> client = new BaseNettyClient<>(WebSocketURLParser.parse(server.getUrl()), 1, "ping",
+            new MessageDispatcher<>(null), transport) {
+            @Override
+            public void send(String message) {
+                if ("ping".equals(message) && channel[0] != null) {
+                    onEventLoop.set(channel[0].eventLoop().inEventLoop());
+                    beat.countDown();
+                }
+                super.send(message);
+            }
+        };
+        try {
+            channel[0] = connect(client);
+            assertTrue("no heartbeat was sent", beat.await(5, TimeUnit.SECONDS));
+            assertTrue("heartbeat ran off the channel's event loop", onEventLoop.get());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void fallsBackToNioWhenNativeTransportIsNotUsed() throws Exception {
+        // 不使用原生传输时走的分支与 epoll 不可用时相同
+        transport = new NettyTransport(1, 0, 64 * 1024, false);
+        assertFalse(transport.isNativeTransport());
+        assertSame(NioSocketChannel.class, transport.getChannelClass());
+        assertTrue(transport.getGroup() instanceof NioEventLoopGroup);
+        BaseNettyClient<String> client = client(transport, 30);
+        try {
+            Channel channel = connect(client);
+            assertTrue(channel instanceof NioSocketChannel);
+            assertTrue(client.isConnected());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void usesEpollWhenAvailable() {
+        Assume.assumeTrue("epoll is not available here", Epoll.isAvailable());
+        NettyTransport epoll = new NettyTransport(1, 0, 64 * 1024, true);
+        try {
+            assertTrue(epoll.isNativeTransport());
+            assertSame(EpollSocketChannel.class, epoll.getChannelClass());
+            EventLoopGroup group = epoll.getGroup();
+            assertTrue(group instanceof EpollEventLoopGroup);
+        } finally {
+            epoll.shutdown();
+        }
+    }
+
+    private BaseNettyClient<String> client(NettyTransport transport, int heartbeatInterval) {
+        return new BaseNettyClient<>(WebSocketURLParser.parse(server.getUrl()), heartbeatInterval, "ping",
+            new MessageDispatcher<>(null), transport);
+    }
+
+    private static Channel connect(BaseNettyClient<String> client) throws InterruptedException {
+        ChannelFuture ready = client.connect();
+        assertTrue("connect timed out", ready.await(10, TimeUnit.SECONDS));
+        assertTrue("connect failed: " + ready.cause(), ready.isSuccess());
+        return ready.channel();
+    }
+}
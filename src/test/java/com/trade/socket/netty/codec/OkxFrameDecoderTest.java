@@ -0,0 +1,97 @@
+package com.trade.socket.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OkxFrameDecoderTest {
+    private final InstrumentRegistry registry = new InstrumentRegistry();
+    private final OkxFrameDecoder decoder = new OkxFrameDecoder(registry);
+
+    @Test
+    public void decodeTicker() {
+        List<long[]> events = new ArrayList<>();
+        boolean handled = decoder.decode(buf("{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT-SWAP\"},\"data\":[{"
+                + "\"instType\":\"SWAP\",\"instId\":\"BTC-USDT-SWAP\",\"last\":\"9999.99\",\"lastSz\":\"0.1\","
+                + "\"askPx\":\"9999.99\",\"askSz\":\"11\",\"bidPx\":\"8888.88\",\"bidSz\":\"5\",\"ts\":\"1597026383085\"}]}"),
+            1L, e -> events.add(new long[]{e.getInstrument(), e.getPrice(), e.getSize(), e.getBidPrice(), e.getExchangeTs()}));
+
+        assertTrue(handled);
+        assertEquals(1, events.size());
+        assertEquals("BTC-USDT-SWAP", registry.name((int) events.get(0)[0]));
+        assertEquals(999_999_000_000L, events.get(0)[1]);
+        assertEquals(10_000_000L, events.get(0)[2]);
+        assertEquals(888_888_000_000L, events.get(0)[3]);
+        assertEquals(1597026383085L, events.get(0)[4]);
+    }
+
+    @Test
+    public void decodeTrades() {
+        List<Integer> sides = new ArrayList<>();
+        boolean handled = decoder.decode(buf("{\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"},\"data\":["
+                + "{\"instId\":\"BTC-USDT\",\"tradeId\":\"130639474\",\"px\":\"42219.9\",\"sz\":\"0.12060306\",\"side\":\"buy\",\"ts\":\"1630048897897\"},"
+                + "{\"instId\":\"BTC-USDT\",\"tradeId\":\"130639475\",\"px\":\"42219.8\",\"sz\":\"1\",\"side\":\"sell\",\"ts\":\"1630048897898\"}]}"),
+            1L, e -> sides.add(e.getSide()));
+
+        assertTrue(handled);
+        assertEquals(List.of(1, -1), sides);
+    }
+
+    @Test
+    public void decodeBookSnapshot() {
+        List<String> levels = new ArrayList<>();
+        boolean handled = decoder.decode(buf("{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"snapshot\",\"data\":[{"
+                + "\"asks\":[[\"8476.98\",\"415\",\"0\",\"13\"],[\"8477\",\"7\",\"0\",\"2\"]],"
+                + "\"bids\":[[\"8476.97\",\"256\",\"0\",\"12\"]],"
+                + "\"ts\":\"1597026383085\",\"checksum\":-855196043,\"prevSeqId\":-1,\"seqId\":123456}]}"),
+            1L, e -> levels.add(e.isSnapshot() + ":" + e.getAskCount() + ":" + e.getBidCount() + ":"
+                + e.askPrice(1) + ":" + e.getChecksum() + ":" + e.getPrevSeqId() + ":" + e.getSeqId()));
+
+        assertTrue(handled);
+        assertEquals(List.of("true:2:1:847700000000:-855196043:-1:123456"), levels);
+    }
+
+    @Test
+    public void fallbackForNonMarketData() {
+        MarketDataListener fail = e -> fail("should not be called");
+        assertFalse(decoder.decode(buf("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}}"), 1L, fail));
+        assertFalse(decoder.decode(buf("{\"arg\":{\"channel\":\"account\"},\"data\":[{}]}"), 1L, fail));
+        assertFalse(decoder.decode(buf("pong"), 1L, fail));
+    }
+
+    @Test
+    public void rejectsValuesThatDoNotFitTheScale() {
+        MarketDataListener fail = e -> fail("should not be called");
+        // 小数位数超过 SCALE 且不为0
+        assertFalse(decoder.decode(buf(trade("42219.123456789", "1")), 1L, fail));
+        // 放大后超出 long
+        assertFalse(decoder.decode(buf(trade("42219.9", "100000000000000")), 1L, fail));
+
+        List<Long> prices = new ArrayList<>();
+        assertTrue(decoder.decode(buf(trade("42219.1234567800", "1")), 1L, e -> prices.add(e.getPrice())));
+        assertEquals(List.of(4_221_912_345_678L), prices);
+    }
+
+    @Test
+    public void malformedFrameEmitsNothing() {
+        MarketDataListener fail = e -> fail("should not be called");
+        assertFalse(decoder.decode(buf("{\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"},\"data\":["
+            + "{\"tradeId\":\"1\",\"px\":\"42219.9\",\"sz\":\"1\",\"side\":\"buy\"},"
+            + "{\"tradeId\":\"2\",\"px\":\"42219.8\",\"sz\":\"1\",\"side\":\"sell\""), 1L, fail));
+    }
+
+    private static String trade(String px, String sz) {
+        return "{\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"},\"data\":["
+            + "{\"tradeId\":\"1\",\"px\":\"" + px + "\",\"sz\":\"" + sz + "\",\"side\":\"buy\"}]}";
+    }
+
+    private static ByteBuf buf(String s) {
+        return Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,175 @@
+package com.trade.socket.netty.handler;
+
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.util.OkxMessages;
+import io.netty.channel.ChannelFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.*;
+
+public class FeedArbitratorTest {
+
+    @Test
+    public void firstCopyWinsAndDuplicatesAreDropped() {
+        List<String> received = new ArrayList<>();
+        FeedArbitrator arbitrator = new FeedArbitrator(dispatcher(received), 2);
+
+        assertTrue(arbitrator.offer(0, book("BTC-USDT", 10), 1_000));
+        assertFalse(arbitrator.offer(1, book("BTC-USDT", 10), 1_500));
+        assertTrue(arbitrator.offer(1, book("BTC-USDT", 11), 2_000));
+        assertFalse(arbitrator.offer(0, book("BTC-USDT", 11), 2_100));
+        // 另一交易对有独立的高水位
+        assertTrue(arbitrator.offer(0, book("ETH-USDT", 5), 3_000));
+        // 过期推送
+        assertFalse(arbitrator.offer(1, book("BTC-USDT", 9), 3_100));
+
+        assertEquals(3, received.size());
+        assertEquals(2, arbitrator.getWins(0));
+        assertEquals(1, arbitrator.getWins(1));
+        assertEquals(1, arbitrator.getDuplicates(0));
+        assertEquals(1, arbitrator.getDuplicates(1));
+        assertEquals(1, arbitrator.getStale(1));
+        assertEquals(100, arbitrator.getAverageLagNanos(0));
+        assertEquals(500, arbitrator.getMaxLagNanos(1));
+        assertEquals(2.0 / 3, arbitrator.getWinRate(0), 1e-9);
+    }
+
+    @Test
+    public void usesTradeIdAndPassesEventsThrough() {
+        List<String> received = new ArrayList<>();
+        FeedArbitrator arbitrator = new FeedArbitrator(dispatcher(received), 2);
+        String trade = "{\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"},\"data\":[{\"instId\":\"BTC-USDT\","
+            + "\"tradeId\":\"130639474\",\"px\":\"42219.9\",\"sz\":\"0.12\",\"side\":\"buy\",\"ts\":\"1630048897897\"}]}";
+        String event = "{\"event\":\"subscribe\",\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"}}";
+
+        assertTrue(arbitrator.offer(0, trade, 1));
+        assertFalse(arbitrator.offer(1, trade, 2));
+        assertTrue(arbitrator.offer(0, event, 3));
+        assertTrue(arbitrator.offer(1, event, 4));
+        assertEquals(3, received.size());
+        assertEquals(2, arbitrator.getPassThrough());
+    }
+
+    @Test
+    public void concurrentFeedsDeliverEachSequenceOnce() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        FeedArbitrator arbitrator = new FeedArbitrator(dispatcher(received), 4);
+        int count = 20_000;
+        CountDownLatch done = new CountDownLatch(4);
+        for (int f = 0; f < 4; f++) {
+            int feed = f;
+            new Thread(() -> {
+                for (int seq = 1; seq <= count; seq++) {
+                    arbitrator.offer(feed, book("BTC-USDT", seq), System.nanoTime());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(count, received.size());
+    }
+
+    @Test
+    public void racingFeedsDispatchInSequenceOrder() throws Exception {
+        List<Long> received = new ArrayList<>();
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(new NoopClient());
+        // 处理器不加锁，乱序或并发进入都会在下面的断言中暴露
+        dispatcher.addHandler((message, ctx) -> received.add(OkxMessages.sequence(message, 0)));
+        FeedArbitrator arbitrator = new FeedArbitrator(dispatcher, 2);
+        int count = 50_000;
+        List<String> messages = new ArrayList<>();
+        for (int seq = 1; seq <= count; seq++) {
+            messages.add(book("BTC-USDT", seq));
+        }
+        CyclicBarrier start = new CyclicBarrier(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int f = 0; f < 2; f++) {
+            int feed = f;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    return;
+                }
+                for (String message : messages) {
+                    arbitrator.offer(feed, message, System.nanoTime());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue("seq " + received.get(i) + " dispatched after " + received.get(i - 1),
+                received.get(i) > received.get(i - 1));
+        }
+        assertEquals((long) count, (long) received.get(received.size() - 1));
+        assertEquals(count, arbitrator.getWins(0) + arbitrator.getWins(1));
+    }
+
+    @Test
+    public void distinctTickersInTheSameMillisecondAreKept() {
+        List<String> received = new ArrayList<>();
+        FeedArbitrator arbitrator = new FeedArbitrator(dispatcher(received), 2);
+        String first = ticker("42219.9", 1630048897897L);
+        String second = ticker("42220.1", 1630048897897L);
+
+        assertTrue(arbitrator.offer(0, first, 1));
+        assertTrue(arbitrator.offer(0, second, 2));
+        assertFalse(arbitrator.offer(1, first, 3));
+        assertFalse(arbitrator.offer(1, second, 5));
+        assertTrue(arbitrator.offer(1, ticker("42220.2", 1630048897898L), 6));
+        assertFalse(arbitrator.offer(0, second, 7));
+
+        assertEquals(List.of(first, second, ticker("42220.2", 1630048897898L)), received);
+        assertEquals(2, arbitrator.getDuplicates(1));
+        // 每条副本的延迟相对同一条推送的首份
+        assertEquals(3, arbitrator.getMaxLagNanos(1));
+        assertEquals(1, arbitrator.getStale(0));
+    }
+
+    private static String ticker(String last, long ts) {
+        return "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{\"instType\":\"SPOT\","
+            + "\"instId\":\"BTC-USDT\",\"last\":\"" + last + "\",\"ts\":\"" + ts + "\"}]}";
+    }
+
+    private static String book(String instId, long seqId) {
+        return "{\"arg\":{\"channel\":\"books\",\"instId\":\"" + instId + "\"},\"action\":\"update\",\"data\":[{"
+            + "\"asks\":[[\"8476.98\",\"415\",\"0\",\"13\"]],\"bids\":[],\"ts\":\"1597026383085\","
+            + "\"checksum\":-855196043,\"prevSeqId\":" + (seqId - 1) + ",\"seqId\":" + seqId + "}]}";
+    }
+
+    private static MessageDispatcher<String> dispatcher(List<String> received) {
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(new NoopClient());
+        dispatcher.addHandler((message, ctx) -> received.add(message));
+        return dispatcher;
+    }
+
+    private static class NoopClient implements NettyClient {
+        @Override
+        public ChannelFuture connect() {
+            return null;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void send(String message) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.trade.socket.netty.handler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RouteTableTest {
+    private static final String BTC_TICKER =
+        "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{\"last\":\"1\"}]}";
+    private static final String ETH_TICKER =
+        "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"ETH-USDT\"},\"data\":[{\"last\":\"1\"}]}";
+    private static final String SUBSCRIBED =
+        "{\"event\":\"subscribe\",\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}}";
+
+    @Test
+    public void routesOnlyToSubscribedTopic() {
+        RouteTable<String> table = new RouteTable<>();
+        List<String> btc = new ArrayList<>();
+        List<String> eth = new ArrayList<>();
+        int btcRoute = table.subscribe("tickers", "BTC-USDT", (message, ctx) -> btc.add(message));
+        int ethRoute = table.subscribe("tickers", "ETH-USDT", (message, ctx) -> eth.add(message));
+
+        assertNotEquals(btcRoute, ethRoute);
+        assertEquals(btcRoute, table.route(BTC_TICKER));
+        assertEquals(ethRoute, table.route(ETH_TICKER));
+        assertEquals(1, table.handlers(btcRoute).length);
+        assertEquals(-1, table.route(SUBSCRIBED));
+        assertEquals(-1, table.route("{\"arg\":{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"},\"data\":[]}"));
+
+        for (MessageHandler<String> handler : table.handlers(table.route(BTC_TICKER))) {
+            handler.handle(BTC_TICKER, null);
+        }
+        assertEquals(1, btc.size());
+        assertTrue(eth.isEmpty());
+    }
+
+    @Test
+    public void unsubscribeRemovesHandler() {
+        RouteTable<String> table = new RouteTable<>();
+        MessageHandler<String> first = (message, ctx) -> true;
+        MessageHandler<String> second = (message, ctx) -> true;
+        int route = table.subscribe("tickers", "BTC-USDT", first);
+        table.subscribe("tickers", "BTC-USDT", second);
+        assertEquals(2, table.handlers(route).length);
+
+        assertTrue(table.unsubscribe("tickers", "BTC-USDT", first));
+        assertSame(second, table.handlers(route)[0]);
+        assertFalse(table.unsubscribe("tickers", "BTC-USDT", first));
+        assertTrue(table.unsubscribe("tickers", "BTC-USDT", second));
+        assertNull(table.handlers(route));
+        assertTrue(table.isEmpty());
+        assertEquals(-1, table.route(BTC_TICKER));
+    }
+}
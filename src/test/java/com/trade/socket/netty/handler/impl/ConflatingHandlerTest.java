@@ -0,0 +1,118 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.trade.cache.ConflatingCache;
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.util.TopicIndex;
+import io.netty.channel.ChannelFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConflatingHandlerTest {
+
+    @Test
+    public void onlySnapshotChannelsAreConflated() {
+        List<String> received = new ArrayList<>();
+        ConflatingHandler handler = new ConflatingHandler(new ConflatingCache<>(new TopicIndex(), 16),
+            (message, ctx) -> received.add(message));
+        handler.start("test");
+        try {
+            assertTrue(handler.handle(push("trades", "BTC-USDT", 1), null));
+            assertTrue(handler.handle(push("books", "BTC-USDT", 1), null));
+            assertTrue(handler.handle(push("tickers-extra", "BTC-USDT", 1), null));
+            assertTrue(handler.handle("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}}", null));
+            assertEquals(0, handler.getCache().getTopics().size());
+
+            assertFalse(handler.handle(push("tickers", "BTC-USDT", 1), null));
+            assertFalse(handler.handle(push("mark-price", "BTC-USDT", 1), null));
+            assertFalse(handler.handle(push("books5", "BTC-USDT", 1), null));
+            assertEquals(3, handler.getCache().getTopics().size());
+        } finally {
+            handler.stop();
+        }
+    }
+
+    @Test
+    public void stoppedHandlerPassesEverythingThrough() {
+        ConflatingHandler handler = new ConflatingHandler(new ConflatingCache<>(new TopicIndex(), 16),
+            (message, ctx) -> {
+                fail("nothing should be conflated");
+                return true;
+            });
+        assertTrue(handler.handle(push("tickers", "BTC-USDT", 1), null));
+    }
+
+    @Test
+    public void slowSubscriberSeesLatestSnapshotAndEveryTrade() throws Exception {
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(new NoopClient());
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latest = new CountDownLatch(1);
+        List<String> tickers = new CopyOnWriteArrayList<>();
+        List<String> trades = new ArrayList<>();
+        dispatcher.subscribe("tickers", "BTC-USDT", (message, ctx) -> {
+            tickers.add(message);
+            first.countDown();
+            if (message.equals(push("tickers", "BTC-USDT", 100))) {
+                latest.countDown();
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        dispatcher.subscribe("trades", "BTC-USDT", (message, ctx) -> trades.add(message));
+        ConflatingHandler conflation = dispatcher.enableConflation(ConflatingHandler.SNAPSHOT_CHANNELS, 16);
+        try {
+            dispatcher.dispatch(push("tickers", "BTC-USDT", 0));
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+            // 订阅者阻塞期间的行情只保留最新一条，trades 逐条同步处理
+            for (int i = 1; i <= 100; i++) {
+                dispatcher.dispatch(push("tickers", "BTC-USDT", i));
+                dispatcher.dispatch(push("trades", "BTC-USDT", i));
+            }
+            assertEquals(100, trades.size());
+            release.countDown();
+            assertTrue(latest.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(push("tickers", "BTC-USDT", 0), push("tickers", "BTC-USDT", 100)), tickers);
+            int topic = conflation.getCache().getTopics().find("tickers", "BTC-USDT");
+            assertEquals(99, conflation.getCache().getConflatedCount(topic));
+        } finally {
+            dispatcher.disableConflation();
+        }
+    }
+
+    private static String push(String channel, String instId, int seq) {
+        return "{\"arg\":{\"channel\":\"" + channel + "\",\"instId\":\"" + instId + "\"},\"data\":[{\"instId\":\""
+            + instId + "\",\"seq\":" + seq + "}]}";
+    }
+
+    private static class NoopClient implements NettyClient {
+        @Override
+        public ChannelFuture connect() {
+            return null;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void send(String message) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+}
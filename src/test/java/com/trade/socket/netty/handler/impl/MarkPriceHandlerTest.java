@@ -0,0 +1,44 @@
+package com.trade.socket.netty.handler.impl;
+
+import com.trade.cache.CacheManager;
+import com.trade.cache.Exposure;
+import com.trade.cache.Order;
+import com.trade.cache.OrderStatus;
+import com.trade.common.ExchangeEnums;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MarkPriceHandlerTest {
+
+    @Test
+    public void markPricePushUpdatesUnrealizedPnl() throws Exception {
+        CacheManager cacheManager = new CacheManager();
+        String key = "mark-price-test";
+        cacheManager.init(key);
+        cacheManager.add(key, new Order("m1", "BTC-USDT-SWAP", ExchangeEnums.OrderSide.BUY, ExchangeEnums.Direction.LONG,
+            ExchangeEnums.OrderType.LIMIT, new BigDecimal("2"), new BigDecimal("100")));
+        assertTrue(cacheManager.update(key, "m1", new BigDecimal("2"), OrderStatus.FILLED, 0).get(5, TimeUnit.SECONDS));
+
+        MarkPriceHandler handler = new MarkPriceHandler(cacheManager);
+        assertTrue(handler.handle("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"mark-price\",\"instId\":\"BTC-USDT-SWAP\"}}",
+            null));
+        // 其它频道的 markPx 字段不处理
+        handler.handle(push("mark-price-candle1m", "90"), null);
+        Exposure.Snapshot snapshot = cacheManager.exposure(key).get("BTC-USDT-SWAP", ExchangeEnums.Direction.LONG).snapshot();
+        assertEquals(0, new BigDecimal("100").compareTo(snapshot.getMarkPrice()));
+
+        assertTrue(handler.handle(push("mark-price", "105.5"), null));
+        snapshot = cacheManager.exposure(key).get("BTC-USDT-SWAP", ExchangeEnums.Direction.LONG).snapshot();
+        assertEquals(0, new BigDecimal("105.5").compareTo(snapshot.getMarkPrice()));
+        assertEquals(0, new BigDecimal("11").compareTo(snapshot.getUnrealizedPnl()));
+    }
+
+    private static String push(String channel, String markPx) {
+        return "{\"arg\":{\"channel\":\"" + channel + "\",\"instId\":\"BTC-USDT-SWAP\"},\"data\":[{\"instType\":\"SWAP\","
+            + "\"instId\":\"BTC-USDT-SWAP\",\"markPx\":\"" + markPx + "\",\"ts\":\"1597026383085\"}]}";
+    }
+}
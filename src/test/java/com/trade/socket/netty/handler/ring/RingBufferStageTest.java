@@ -0,0 +1,192 @@
+package com.trade.socket.netty.handler.ring;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class RingBufferStageTest {
+
+    @Test
+    public void everyConsumerSeesEveryMessageInOrder() throws Exception {
+        int count = 100_000;
+        RingBufferStage<Long> stage = new RingBufferStage<>("test", 1024, WaitStrategy.yielding());
+        AtomicLong outOfOrder = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(2);
+        for (String name : new String[]{"fast", "slow"}) {
+            AtomicLong last = new AtomicLong();
+            stage.addConsumer(name, value -> {
+                if (value != last.get() + 1) {
+                    outOfOrder.incrementAndGet();
+                }
+                last.set(value);
+                if (value == count) {
+                    done.countDown();
+                }
+            });
+        }
+        stage.start();
+        for (long i = 1; i <= count; i++) {
+            stage.publish(i);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+        stage.stop();
+    }
+
+    @Test
+    public void queueDepthTracksSlowestConsumer() throws Exception {
+        RingBufferStage<Integer> stage = new RingBufferStage<>("depth", 64, WaitStrategy.parking(1000));
+        CountDownLatch release = new CountDownLatch(1);
+        stage.addConsumer("blocked", value -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stage.start();
+        for (int i = 0; i < 10; i++) {
+            stage.publish(i);
+        }
+
+        assertEquals(10, stage.getQueueDepth());
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, stage.getQueueDepth());
+        stage.stop();
+    }
+
+    @Test
+    public void multiProducerPublishesAll() throws Exception {
+        RingBufferStage<Long> stage = new RingBufferStage<>("multi", 256, WaitStrategy.busySpin(), true);
+        AtomicLong sum = new AtomicLong();
+        stage.addConsumer("sum", sum::addAndGet);
+        stage.start();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (long i = 1; i <= 10_000; i++) {
+                    stage.publish(i);
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long expected = 4L * 10_000 * 10_001 / 2;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sum.get() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, sum.get());
+        stage.stop();
+    }
+
+    @Test
+    public void tryPublishRejectsWhenFullInsteadOfWaiting() throws Exception {
+        RingBufferStage<Integer> stage = new RingBufferStage<>("try", 8, WaitStrategy.parking(1000), true);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong sum = new AtomicLong();
+        stage.addConsumer("blocked", value -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sum.addAndGet(value);
+        });
+        stage.start();
+        int accepted = 0;
+        for (int i = 1; i <= 20; i++) {
+            if (stage.tryPublish(i)) {
+                accepted++;
+            }
+        }
+        // 消费者处理完整批才推进序号，阻塞期间一个槽位也不会释放
+        assertEquals(8, accepted);
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals((long) accepted * (accepted + 1) / 2, sum.get());
+        assertTrue(stage.tryPublish(100));
+        stage.stop();
+    }
+
+    @Test
+    public void blockingConsumersSleepUntilPublished() throws Exception {
+        RingBufferStage<Long> stage = new RingBufferStage<>("blocking", 64, WaitStrategy.blocking(), true);
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        stage.addConsumer("a", value -> sum.addAndGet(value));
+        stage.addConsumer("b", value -> count.incrementAndGet());
+        stage.start();
+        Thread consumer = thread("ring-blocking-a");
+        awaitState(consumer, Thread.State.WAITING);
+
+        int producers = 2;
+        int perProducer = 20_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    stage.publish(i);
+                    // 不时停顿，让消费者进入阻塞
+                    if (i % 1000 == 0) {
+                        LockSupport.parkNanos(200_000);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long expected = (long) producers * perProducer * (perProducer + 1) / 2;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((sum.get() != expected || count.get() != (long) producers * perProducer)
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, sum.get());
+        assertEquals((long) producers * perProducer, count.get());
+
+        // 空闲时无限期等待，不是定时挂起
+        awaitState(consumer, Thread.State.WAITING);
+        stage.stop();
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+    }
+
+    private static Thread thread(String name) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals(name)) {
+                    return thread;
+                }
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("thread " + name + " not found");
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(state, thread.getState());
+    }
+}
@@ -0,0 +1,230 @@
+package com.trade.socket.netty.journal;
+
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+    private static final int SEGMENT_SIZE = 256 * 1024;
+
+    @Test
+    public void concurrentAppendsAcrossSegments() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            int threads = 4;
+            int perThread = 5000;
+            Journal journal = new Journal(dir, "test", SEGMENT_SIZE);
+            List<Thread> writers = new ArrayList<>();
+            // 各连接写入成功的帧序号；写入速度超过新段的创建速度时，等待新段期间的帧被丢弃
+            List<List<Integer>> written = new ArrayList<>();
+            for (int t = 0; t <= threads; t++) {
+                written.add(new ArrayList<>());
+            }
+            for (int t = 0; t < threads; t++) {
+                int connection = t + 1;
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        byte[] frame = frame(connection, i).getBytes(StandardCharsets.UTF_8);
+                        if (journal.append(connection, Unpooled.wrappedBuffer(frame), System.nanoTime()) > 0) {
+                            written.get(connection).add(i);
+                        }
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            journal.close();
+            assertEquals(threads * perThread, journal.getRecords() + journal.getDropped());
+            assertEquals(0, journal.getMappedSegments());
+
+            JournalReader reader = new JournalReader(dir, "test");
+            assertTrue(reader.segments().size() > 1);
+            int[] expected = new int[threads + 1];
+            long count = reader.readAll(record -> {
+                int connection = record.getConnectionId();
+                // 写入成功的帧全部可读，且保持各连接的写入顺序
+                assertEquals(frame(connection, written.get(connection).get(expected[connection]++)), record.text());
+                return true;
+            });
+            assertEquals(journal.getRecords(), count);
+            for (int t = 1; t <= threads; t++) {
+                assertEquals(written.get(t).size(), expected[t]);
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void emptyFramesAreDroppedWithoutHidingLaterRecords() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Journal journal = new Journal(dir, "test", SEGMENT_SIZE);
+            assertTrue(journal.append(1, Unpooled.wrappedBuffer(frame(1, 0).getBytes(StandardCharsets.UTF_8)),
+                System.nanoTime()) > 0);
+            assertEquals(-1, journal.append(1, Unpooled.EMPTY_BUFFER, System.nanoTime()));
+            assertTrue(journal.append(1, Unpooled.wrappedBuffer(frame(1, 1).getBytes(StandardCharsets.UTF_8)),
+                System.nanoTime()) > 0);
+            journal.close();
+            assertEquals(2, journal.getRecords());
+            assertEquals(1, journal.getDropped());
+
+            List<String> frames = new ArrayList<>();
+            new JournalReader(dir, "test").readAll(record -> frames.add(record.text()));
+            assertEquals(List.of(frame(1, 0), frame(1, 1)), frames);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void rollingNeverBlocksTheWriter() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            // 段很小，写入速度远超后台线程创建新段的速度，等待新段期间的帧被丢弃而不是等待
+            Journal journal = new Journal(dir, "test", 4096);
+            int frames = 20_000;
+            long slowest = 0;
+            for (int i = 0; i < frames; i++) {
+                byte[] frame = frame(1, i).getBytes(StandardCharsets.UTF_8);
+                long started = System.nanoTime();
+                journal.append(1, Unpooled.wrappedBuffer(frame), started);
+                slowest = Math.max(slowest, System.nanoTime() - started);
+            }
+            journal.close();
+            assertEquals(frames, journal.getRecords() + journal.getDropped());
+            // 这里的丢弃全部来自等待新段
+            assertEquals(journal.getDropped(), journal.getStallDropped());
+            assertTrue(journal.getDropped() == 0 || journal.getStalls() > 0);
+            assertEquals(0, journal.getMappedSegments());
+            assertTrue("slowest append took " + slowest / 1000 + " us", slowest < 50_000_000L);
+
+            int[] next = {0};
+            long count = new JournalReader(dir, "test").readAll(record -> {
+                // 读到的记录保持写入顺序
+                String text = record.text();
+                int index = Integer.parseInt(text.substring(text.indexOf("\"seq\":") + 6, text.indexOf('}', text.indexOf("\"seq\":"))));
+                assertTrue(index >= next[0]);
+                next[0] = index + 1;
+                return true;
+            });
+            assertEquals(journal.getRecords(), count);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void fullSegmentsAreUnmapped() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Journal journal = new Journal(dir, "test", 8192);
+            int frames = 0;
+            // 每写满一段留出时间创建下一段，不丢帧
+            for (int segment = 0; segment < 50; segment++) {
+                for (int i = 0; i < 40; i++) {
+                    byte[] frame = frame(1, frames++).getBytes(StandardCharsets.UTF_8);
+                    journal.append(1, Unpooled.wrappedBuffer(frame), System.nanoTime());
+                }
+                Thread.sleep(5);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (journal.getMappedSegments() > 2) {
+                assertTrue("still mapped: " + journal.getMappedSegments(), System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+            assertTrue(new JournalReader(dir, "test").segments().size() > 20);
+            journal.close();
+            assertEquals(0, journal.getMappedSegments());
+            assertEquals(journal.getRecords(), new JournalReader(dir, "test").readAll(record -> true));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void readTimeRange() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Journal journal = new Journal(dir, "test", SEGMENT_SIZE);
+            long start = System.nanoTime();
+            long[] times = new long[10000];
+            for (int i = 0; i < times.length; i++) {
+                byte[] frame = frame(1, i).getBytes(StandardCharsets.UTF_8);
+                // 每条间隔 10 微秒
+                times[i] = journal.append(1, Unpooled.wrappedBuffer(frame), start + i * 10_000L);
+            }
+            journal.close();
+
+            JournalReader reader = new JournalReader(dir, "test");
+            long from = times[4000];
+            long to = times[6999];
+            List<String> frames = new ArrayList<>();
+            long count = reader.read(from, to, record -> frames.add(record.text()));
+            assertEquals(3000, count);
+            assertEquals(frame(1, 4000), frames.get(0));
+            assertEquals(frame(1, 6999), frames.get(frames.size() - 1));
+
+            // 回调返回 false 时停止
+            assertEquals(1, reader.read(from, to, record -> false));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void reopenContinuesAfterLastSegment() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Journal first = new Journal(dir, "test", SEGMENT_SIZE);
+            first.append(1, Unpooled.wrappedBuffer(frame(1, 0).getBytes(StandardCharsets.UTF_8)), System.nanoTime());
+            first.close();
+            Journal second = new Journal(dir, "test", SEGMENT_SIZE);
+            second.append(2, Unpooled.wrappedBuffer(frame(2, 0).getBytes(StandardCharsets.UTF_8)), System.nanoTime());
+            second.close();
+
+            List<Integer> connections = new ArrayList<>();
+            new JournalReader(dir, "test").readAll(record -> connections.add(record.getConnectionId()));
+            assertEquals(List.of(1, 2), connections);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void oversizedFrameIsDropped() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Journal journal = new Journal(dir, "test", SEGMENT_SIZE);
+            assertEquals(-1, journal.append(1, Unpooled.wrappedBuffer(new byte[SEGMENT_SIZE]), System.nanoTime()));
+            assertEquals(1, journal.getDropped());
+            journal.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static String frame(int connection, int i) {
+        return "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{\"conn\":" + connection
+            + ",\"seq\":" + i + "}]}";
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.trade.socket.netty.latency;
+
+import com.trade.domain.Strategy;
+import com.trade.socket.netty.client.BaseNettyClient;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.handler.impl.StrategyHandler;
+import com.trade.socket.netty.manager.DefaultConnectionManager;
+import com.trade.socket.netty.mock.MockOkxServer;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import com.trade.strategy.LatencyClass;
+import com.trade.strategy.StrategyRunner;
+import com.trade.strategy.StrategyRuntime;
+import com.trade.strategy.impl.GridStrategy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 行情到下单的端到端延迟测量
+ * <p>
+ * 本地 {@link MockOkxServer} 按固定速率推送 tickers，客户端在IO线程上同步分发，
+ * 每 {@code orderEvery} 条行情投递给由 {@link StrategyRunner} 运行的 {@link GridStrategy}（收到价格即触发），
+ * 策略在自己的线程上打 {@link LatencyProbe.Stage#DECISION} 并经连接发出下单帧，
+ * 从socket读到行情到订单帧写入socket的各阶段耗时记入HdrHistogram，DECISION 区间包含策略收件箱的排队和唤醒。
+ * 报告分两组：原始分布，以及按推送间隔做协调遗漏修正后的分布
+ * （客户端卡顿期间本应到达却被积压的行情按期望间隔补记，避免卡顿被少算）。
+ * <p>
+ * 运行：{@code java ... TickToOrderHarness [每秒推送数] [秒数] [每几条行情下一单]}
+ */
+@Slf4j
+public class TickToOrderHarness {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // 每次运行使用独立的挂单簿
+    private static final AtomicLong STRATEGY_IDS = new AtomicLong(9_000_000L);
+
+    /**
+     * 报告中的区间，按 from -> to 两个打点相减
+     */
+    public enum Segment {
+        DECODE(LatencyProbe.Stage.READ, LatencyProbe.Stage.DECODE),
+        DISPATCH(LatencyProbe.Stage.DECODE, LatencyProbe.Stage.DISPATCH),
+        DECISION(LatencyProbe.Stage.DISPATCH, LatencyProbe.Stage.DECISION),
+        ENCODE(LatencyProbe.Stage.DECISION, LatencyProbe.Stage.SEND),
+        FLUSH(LatencyProbe.Stage.SEND, LatencyProbe.Stage.FLUSH),
+        TOTAL(LatencyProbe.Stage.READ, LatencyProbe.Stage.FLUSH);
+
+        private final LatencyProbe.Stage from;
+        private final LatencyProbe.Stage to;
+
+        Segment(LatencyProbe.Stage from, LatencyProbe.Stage to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private final int messagesPerSecond;
+    private final int orderEvery;
+    private final Map<Segment, Recorder> recorders = new EnumMap<>(Segment.class);
+    @Getter
+    private final Map<Segment, Histogram> histograms = new EnumMap<>(Segment.class);
+    @Getter
+    private long traces;
+    @Getter
+    private long invalid;
+    private volatile boolean recording;
+
+    public TickToOrderHarness(int messagesPerSecond, int orderEvery) {
+        this.messagesPerSecond = messagesPerSecond;
+        this.orderEvery = orderEvery;
+        for (Segment segment : Segment.values()) {
+            recorders.put(segment, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int orderEvery = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        TickToOrderHarness harness = new TickToOrderHarness(rate, orderEvery);
+        harness.run(Math.min(5, seconds), seconds);
+        harness.report(System.out);
+    }
+
+    /**
+     * 预热后测量，结果通过 {@link #getHistograms()} 获取
+     * @param warmupSeconds 预热秒数，期间的记录丢弃
+     * @param seconds 测量秒数
+     */
+    public void run(int warmupSeconds, int seconds) throws Exception {
+        try (MockOkxServer server = new MockOkxServer()) {
+            server.setMessagesPerSecond(messagesPerSecond);
+            server.start();
+            LatencyProbe probe = new LatencyProbe(this::record);
+            DefaultConnectionManager manager = null;
+            StrategyRunner runner = null;
+            try {
+                MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+                BaseNettyClient<String> client = new BaseNettyClient<>(WebSocketURLParser.parse(server.getPrivateUrl()),
+                    3600, "ping", dispatcher);
+                dispatcher.setClient(client);
+                client.setLatencyProbe(probe);
+
+                runner = startStrategy(client);
+                StrategyHandler strategyHandler = new StrategyHandler(runner, "okx");
+                CountDownLatch loggedIn = new CountDownLatch(1);
+                long[] ticks = new long[1];
+                dispatcher.addHandler((message, ctx) -> {
+                    if (message.startsWith("{\"arg\":{\"channel\":\"tickers\"")) {
+                        // 每 orderEvery 条行情交给策略一条，策略收到即下单
+                        if (++ticks[0] % orderEvery == 0) {
+                            strategyHandler.handle(message, ctx);
+                        }
+                    } else if (message.startsWith("{\"event\":\"login\",\"code\":\"0\"")) {
+                        loggedIn.countDown();
+                    }
+                    return true;
+                });
+
+                manager = new DefaultConnectionManager("127.0.0.1", server.getPort(), client);
+                manager.initConnection().get(10, TimeUnit.SECONDS);
+                client.send("{\"op\":\"login\",\"args\":[{\"apiKey\":\"k\",\"passphrase\":\"p\","
+                    + "\"timestamp\":\"1538054050\",\"sign\":\"s\"}]}");
+                if (!loggedIn.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Login to mock server timed out");
+                }
+                client.send("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}]}");
+
+                recording = true;
+                TimeUnit.SECONDS.sleep(warmupSeconds);
+                recorders.values().forEach(Recorder::reset);
+                traces = 0;
+                invalid = 0;
+                TimeUnit.SECONDS.sleep(seconds);
+                recording = false;
+                for (Map.Entry<Segment, Recorder> entry : recorders.entrySet()) {
+                    histograms.put(entry.getKey(), entry.getValue().getIntervalHistogram());
+                }
+                log.info("Tick-to-order run finished: {} traces, {} invalid, {} pushes skipped by server",
+                    traces, invalid, server.getSkipped());
+            } finally {
+                probe.close();
+                if (runner != null) {
+                    runner.stop(StrategyRuntime.STOP_TIMEOUT_MILLIS);
+                }
+                if (manager != null) {
+                    manager.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * 网格策略按收到价格即触发配置，由 {@link StrategyRunner} 在策略线程上运行，订单经该连接发出
+     */
+    private StrategyRunner startStrategy(BaseNettyClient<String> client) {
+        Strategy strategy = new Strategy();
+        strategy.setId(STRATEGY_IDS.incrementAndGet());
+        strategy.setName("tick-to-order");
+        strategy.setParams("{\"symbol\":\"BTC-USDT\",\"triggerType\":0,\"basePrice\":\"30000\","
+            + "\"orderAmount\":\"1\",\"maxPosition\":\"1000000\"}");
+        GridStrategy grid = new GridStrategy();
+        StringBuilder frame = new StringBuilder(256);
+        grid.setOrderGateway(order -> {
+            frame.setLength(0);
+            frame.append("{\"id\":\"").append(order.getCliId())
+                .append("\",\"op\":\"order\",\"args\":[{\"side\":\"").append(order.getSide().getCode())
+                .append("\",\"instId\":\"").append(order.getSymbol())
+                .append("\",\"tdMode\":\"cash\",\"ordType\":\"limit\",\"sz\":\"")
+                .append(order.getAmount().toPlainString()).append("\",\"px\":\"")
+                .append(order.getPrice().toPlainString()).append("\",\"clOrdId\":\"").append(order.getCliId())
+                .append("\"}]}");
+            client.send(frame.toString());
+        });
+        StrategyRunner runner = new StrategyRunner(strategy, grid, LatencyClass.NORMAL, null,
+            StrategyRunner.DEFAULT_INBOX_SIZE);
+        runner.start();
+        return runner;
+    }
+
+    /**
+     * 在IO线程上调用，单写者
+     */
+    private void record(long[] stamps) {
+        if (!recording) {
+            return;
+        }
+        for (Segment segment : Segment.values()) {
+            long from = stamps[segment.from.ordinal()];
+            long to = stamps[segment.to.ordinal()];
+            if (from == 0 || to < from) {
+                invalid++;
+                return;
+            }
+        }
+        for (Segment segment : Segment.values()) {
+            long value = stamps[segment.to.ordinal()] - stamps[segment.from.ordinal()];
+            recorders.get(segment).recordValue(Math.min(value, HIGHEST_TRACKABLE_NANOS));
+        }
+        traces++;
+    }
+
+    /**
+     * 输出各区间 p50/p99/p99.9/max（微秒），TOTAL 额外输出协调遗漏修正后的分布
+     */
+    public void report(PrintStream out) {
+        long expectedInterval = TimeUnit.SECONDS.toNanos(1) * orderEvery / messagesPerSecond;
+        out.printf("tick-to-order, %d msg/s, order every %d ticks, %d traces%n", messagesPerSecond, orderEvery, traces);
+        out.printf("%-10s %10s %10s %10s %10s%n", "segment", "p50(us)", "p99(us)", "p99.9(us)", "max(us)");
+        for (Map.Entry<Segment, Histogram> entry : histograms.entrySet()) {
+            print(out, entry.getKey().name(), entry.getValue());
+        }
+        Histogram total = histograms.get(Segment.TOTAL);
+        if (total != null) {
+            print(out, "TOTAL(CO)", total.copyCorrectedForCoordinatedOmission(expectedInterval));
+        }
+    }
+
+    private static void print(PrintStream out, String name, Histogram histogram) {
+        out.printf("%-10s %10.1f %10.1f %10.1f %10.1f%n", name,
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+    }
+}
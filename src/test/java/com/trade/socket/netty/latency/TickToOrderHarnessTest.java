@@ -0,0 +1,109 @@
+package com.trade.socket.netty.latency;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TickToOrderHarnessTest {
+    private static final Logger logger = LoggerFactory.getLogger(TickToOrderHarnessTest.class);
+
+    @Test
+    public void everySegmentIsMeasured() throws Exception {
+        TickToOrderHarness harness = new TickToOrderHarness(2_000, 4);
+        harness.run(1, 2);
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        harness.report(new PrintStream(report, true, StandardCharsets.UTF_8));
+        logger.info("\n{}", report.toString(StandardCharsets.UTF_8));
+
+        assertTrue("No order was traced", harness.getTraces() > 0);
+        assertEquals(0, harness.getInvalid());
+        Histogram total = harness.getHistograms().get(TickToOrderHarness.Segment.TOTAL);
+        assertEquals(harness.getTraces(), total.getTotalCount());
+        for (TickToOrderHarness.Segment segment : TickToOrderHarness.Segment.values()) {
+            Histogram histogram = harness.getHistograms().get(segment);
+            assertTrue(segment + " exceeds total", histogram.getMaxValue() <= total.getMaxValue());
+        }
+    }
+
+    @Test
+    public void markIsIgnoredOutsideFrame() {
+        LatencyProbe probe = new LatencyProbe(stamps -> fail("Unexpected trace"));
+        try {
+            LatencyProbe.mark(LatencyProbe.Stage.DECISION);
+            assertNull(probe.onSend());
+
+            probe.onFrame();
+            LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+            long[] stamps = probe.onSend();
+            probe.onFrameDone();
+            assertNotNull(stamps);
+            assertTrue(stamps[LatencyProbe.Stage.DISPATCH.ordinal()] >= stamps[LatencyProbe.Stage.DECODE.ordinal()]);
+            assertEquals(0, stamps[LatencyProbe.Stage.DECISION.ordinal()]);
+            assertNull(probe.onSend());
+        } finally {
+            probe.close();
+        }
+    }
+
+    @Test
+    public void traceContinuesOnTheThreadItIsHandedTo() throws Exception {
+        LatencyProbe probe = new LatencyProbe(stamps -> { });
+        try {
+            assertNull(LatencyProbe.handoff());
+            probe.onFrame();
+            LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+            long[] handed = LatencyProbe.handoff();
+            probe.onFrameDone();
+            assertNotNull(handed);
+
+            long[][] sent = new long[2][];
+            Thread strategy = new Thread(() -> {
+                LatencyProbe.resume(handed);
+                LatencyProbe.mark(LatencyProbe.Stage.DECISION);
+                sent[0] = probe.onSend();
+                LatencyProbe.suspend();
+                sent[1] = probe.onSend();
+            });
+            strategy.start();
+            strategy.join();
+            assertNotNull(sent[0]);
+            assertEquals(handed[LatencyProbe.Stage.READ.ordinal()], sent[0][LatencyProbe.Stage.READ.ordinal()]);
+            assertTrue(sent[0][LatencyProbe.Stage.DECISION.ordinal()] >= handed[LatencyProbe.Stage.DISPATCH.ordinal()]);
+            assertNull("trace leaked past suspend", sent[1]);
+        } finally {
+            probe.close();
+        }
+    }
+
+    @Test
+    public void closingOneProbeTwiceKeepsOtherProbesEnabled() {
+        LatencyProbe first = new LatencyProbe(stamps -> { });
+        LatencyProbe second = new LatencyProbe(stamps -> { });
+        first.close();
+        first.close();
+        try {
+            second.onFrame();
+            LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+            long[] stamps = second.onSend();
+            second.onFrameDone();
+            assertNotEquals("mark was disabled while a probe is installed", 0,
+                stamps[LatencyProbe.Stage.DISPATCH.ordinal()]);
+        } finally {
+            second.close();
+        }
+
+        // 全部关闭后 mark 不再打点
+        second.onFrame();
+        LatencyProbe.mark(LatencyProbe.Stage.DISPATCH);
+        long[] stamps = second.onSend();
+        second.onFrameDone();
+        assertEquals(0, stamps[LatencyProbe.Stage.DISPATCH.ordinal()]);
+    }
+}
@@ -0,0 +1,44 @@
+package com.trade.socket.netty.manager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterThresholdAndHalfOpensAfterCooldown() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, 4000);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(600, breaker.remainingMillis(400));
+
+        assertEquals(0, breaker.remainingMillis(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // 半开失败，冷却时间翻倍
+        breaker.onFailure(1000);
+        assertEquals(2000, breaker.remainingMillis(1000));
+
+        breaker.remainingMillis(3000);
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void backoffGrowsWithinJitterRange() {
+        ExponentialBackoff backoff = new ExponentialBackoff(500, 30_000);
+        assertEquals(500, backoff.ceilingMillis(0));
+        assertEquals(4000, backoff.ceilingMillis(3));
+        assertEquals(30_000, backoff.ceilingMillis(10));
+        assertEquals(30_000, backoff.ceilingMillis(Integer.MAX_VALUE));
+        for (int i = 0; i < 1000; i++) {
+            long delay = backoff.delayMillis(3);
+            assertTrue(delay >= 2000 && delay <= 4000);
+        }
+    }
+}
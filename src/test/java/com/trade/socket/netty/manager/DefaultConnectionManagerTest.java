@@ -0,0 +1,107 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.NettyClient;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DefaultConnectionManagerTest {
+
+    @Test
+    public void givesUpAfterMaxRetries() throws Exception {
+        FlakyClient client = new FlakyClient(Integer.MAX_VALUE);
+        DefaultConnectionManager manager = new DefaultConnectionManager("127.0.0.1", 1, client, 3, 10, 20);
+        CompletableFuture<Void> connected = manager.initConnection();
+        try {
+            connected.get(5, TimeUnit.SECONDS);
+            fail("expected the connection to fail");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof ConnectException);
+        }
+        Thread.sleep(100);
+        assertEquals(3, client.attempts.get());
+    }
+
+    @Test
+    public void defaultRetriesAreFinite() throws Exception {
+        FlakyClient client = new FlakyClient(Integer.MAX_VALUE);
+        DefaultConnectionManager manager = new DefaultConnectionManager("127.0.0.1", 1, client);
+        try {
+            manager.initConnection().get(10, TimeUnit.SECONDS);
+            fail("expected the connection to fail");
+        } catch (ExecutionException expected) {
+            assertEquals(DefaultConnectionManager.DEFAULT_MAX_RETRIES, client.attempts.get());
+        }
+    }
+
+    @Test
+    public void retriesUntilConnected() throws Exception {
+        FlakyClient client = new FlakyClient(2);
+        DefaultConnectionManager manager = new DefaultConnectionManager("127.0.0.1", 1, client, 5, 10, 20);
+        manager.initConnection().get(5, TimeUnit.SECONDS);
+        assertEquals(3, client.attempts.get());
+        assertEquals(CircuitBreaker.State.CLOSED, manager.getCircuitState());
+        manager.shutdown();
+    }
+
+    @Test
+    public void shutdownStopsUnlimitedRetries() throws Exception {
+        FlakyClient client = new FlakyClient(Integer.MAX_VALUE);
+        DefaultConnectionManager manager = new DefaultConnectionManager("127.0.0.1", 1, client,
+            DefaultConnectionManager.UNLIMITED_RETRIES, 10, 20);
+        CompletableFuture<Void> connected = manager.initConnection();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.attempts.get() < 3) {
+            assertTrue("no retries within timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        manager.shutdown();
+        Thread.sleep(100);
+        int attempts = client.attempts.get();
+        Thread.sleep(300);
+        assertEquals("retries continued after shutdown", attempts, client.attempts.get());
+        assertTrue(connected.isCompletedExceptionally());
+    }
+
+    /**
+     * 前 failures 次连接失败，之后成功
+     */
+    private static class FlakyClient implements NettyClient {
+        final AtomicInteger attempts = new AtomicInteger();
+        final int failures;
+        final EmbeddedChannel channel = new EmbeddedChannel();
+
+        FlakyClient(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public ChannelFuture connect() {
+            if (attempts.incrementAndGet() <= failures) {
+                return channel.newFailedFuture(new ConnectException("refused"));
+            }
+            return channel.newSucceededFuture();
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void send(String message) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return attempts.get() > failures;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageHandler;
+import io.netty.channel.ChannelFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DefaultSubscriptionManagerTest {
+
+    @Test
+    public void coalescesChangesIntoOneFrame() {
+        RecordingClient client = new RecordingClient();
+        DefaultSubscriptionManager<String> manager = new DefaultSubscriptionManager<>(client, 60_000);
+        MessageHandler<String> handler = (message, ctx) -> true;
+
+        manager.subscribe("tickers", "BTC-USDT", handler);
+        manager.subscribe("tickers", "ETH-USDT", handler);
+        manager.subscribe("tickers", "ETH-USDT", (message, ctx) -> true);
+        manager.subscribe("trades", "SOL-USDT", handler);
+        manager.unsubscribe("trades", "SOL-USDT", handler);
+        assertTrue(client.sent.isEmpty());
+
+        manager.flush();
+        assertEquals(1, client.sent.size());
+        assertEquals("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},"
+            + "{\"channel\":\"tickers\",\"instId\":\"ETH-USDT\"}]}", client.sent.get(0));
+    }
+
+    @Test
+    public void replaysFullSetOnReconnect() {
+        RecordingClient client = new RecordingClient();
+        DefaultSubscriptionManager<String> manager = new DefaultSubscriptionManager<>(client, 60_000);
+        MessageHandler<String> handler = (message, ctx) -> true;
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            manager.subscribe("books", "INST-" + i, handler);
+        }
+        manager.unsubscribe("books", "INST-0", handler);
+
+        manager.onConnected(client);
+        assertTrue(client.sent.size() > 1);
+        int args = 0;
+        for (String frame : client.sent) {
+            assertTrue(frame.length() <= DefaultSubscriptionManager.MAX_FRAME_LENGTH);
+            assertTrue(frame.startsWith("{\"op\":\"subscribe\",\"args\":[{"));
+            assertTrue(frame.endsWith("}]}"));
+            args += frame.split("\"channel\"").length - 1;
+        }
+        assertEquals(count - 1, args);
+        assertFalse(client.sent.get(0).contains("\"INST-0\""));
+
+        // 重放后窗口内的变更已被丢弃
+        client.sent.clear();
+        manager.flush();
+        assertTrue(client.sent.isEmpty());
+    }
+
+    private static class RecordingClient implements NettyClient {
+        private final List<String> sent = new ArrayList<>();
+
+        @Override
+        public ChannelFuture connect() {
+            return null;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void send(String message) {
+            sent.add(message);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.trade.socket.netty.manager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExponentialBackoffTest {
+
+    @Test
+    public void delayStaysWithinJitterBoundsAndCap() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 5000);
+        for (int attempt = 0; attempt < 70; attempt++) {
+            long ceiling = backoff.ceilingMillis(attempt);
+            assertEquals(Math.min(5000, 100L << Math.min(attempt, 40)), ceiling);
+            for (int i = 0; i < 200; i++) {
+                long delay = backoff.delayMillis(attempt);
+                assertTrue("attempt " + attempt + " delay " + delay, delay >= ceiling / 2 && delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void largeBaseDoesNotOverflow() {
+        ExponentialBackoff backoff = new ExponentialBackoff(Long.MAX_VALUE / 4, Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE / 4, backoff.ceilingMillis(0));
+        assertTrue(backoff.ceilingMillis(1) > 0);
+        assertTrue(backoff.ceilingMillis(Integer.MAX_VALUE) > 0);
+        assertEquals(Long.MAX_VALUE / 4, backoff.ceilingMillis(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaxBelowBase() {
+        new ExponentialBackoff(1000, 500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBase() {
+        new ExponentialBackoff(0, 500);
+    }
+}
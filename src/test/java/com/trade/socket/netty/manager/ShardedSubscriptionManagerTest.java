@@ -0,0 +1,170 @@
+package com.trade.socket.netty.manager;
+
+import com.trade.socket.netty.client.NettyClient;
+import com.trade.socket.netty.handler.MessageHandler;
+import io.netty.channel.ChannelFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ShardedSubscriptionManagerTest {
+
+    @Test
+    public void spreadsInstrumentsAndKeepsChannelsTogether() {
+        ShardedSubscriptionManager manager = new ShardedSubscriptionManager(pool(4));
+        MessageHandler<String> handler = (message, ctx) -> true;
+        for (int i = 0; i < 40; i++) {
+            manager.subscribe("tickers", "INST-" + i, handler);
+            manager.subscribe("books", "INST-" + i, handler);
+        }
+        for (int count : manager.getShardTopicCounts()) {
+            assertEquals(20, count);
+        }
+        assertEquals(80, manager.getSubscribedTopics().size());
+    }
+
+    @Test
+    public void rejectsSubscriptionsBeyondShardLimit() {
+        ShardedSubscriptionManager manager = new ShardedSubscriptionManager(pool(2), 2, 0.2);
+        MessageHandler<String> handler = (message, ctx) -> true;
+        for (int i = 0; i < 4; i++) {
+            manager.subscribe("tickers", "INST-" + i, handler);
+        }
+        try {
+            manager.subscribe("tickers", "INST-4", handler);
+            fail("expected full shards");
+        } catch (IllegalStateException expected) {
+            // 所有连接都已满
+        }
+    }
+
+    @Test
+    public void movesHotInstrumentToQuietShard() {
+        ConnectionPool pool = pool(2);
+        ShardedSubscriptionManager manager = new ShardedSubscriptionManager(pool);
+        AtomicInteger received = new AtomicInteger();
+        MessageHandler<String> handler = (message, ctx) -> received.incrementAndGet() > 0;
+        String[] instruments = {"A", "B", "C", "D"};
+        for (String instId : instruments) {
+            manager.subscribe("tickers", instId, handler);
+        }
+        // 让同一连接上的两个交易对都变成热点
+        int busy = manager.getShardIndex("A");
+        List<String> hot = new ArrayList<>();
+        for (String instId : instruments) {
+            if (manager.getShardIndex(instId) == busy) {
+                hot.add(instId);
+            }
+        }
+        assertEquals(2, hot.size());
+        for (String instId : hot) {
+            for (int i = 0; i < 100; i++) {
+                pool.getShard(busy).getSubscriptionManager().handleMessage(ticker(instId));
+            }
+        }
+        assertEquals(200, received.get());
+
+        assertEquals(1, manager.rebalance(1.0));
+        assertNotEquals(manager.getShardIndex(hot.get(0)), manager.getShardIndex(hot.get(1)));
+
+        // 迁移后的交易对在新连接上继续收到消息
+        String moved = manager.getShardIndex(hot.get(0)) == busy ? hot.get(1) : hot.get(0);
+        pool.getShard(1 - busy).getSubscriptionManager().handleMessage(ticker(moved));
+        pool.getShard(busy).getSubscriptionManager().handleMessage(ticker(moved));
+        assertEquals(201, received.get());
+    }
+
+    @Test
+    public void moveDoesNotDeliverDuplicates() {
+        ConnectionPool pool = pool(2);
+        ShardedSubscriptionManager manager = new ShardedSubscriptionManager(pool);
+        List<Long> received = new ArrayList<>();
+        String[] instruments = {"A", "B", "C", "D"};
+        for (String instId : instruments) {
+            manager.subscribe("books", instId, "A".equals(instId)
+                ? (message, ctx) -> received.add(seqId(message))
+                : (message, ctx) -> true);
+        }
+        int source = manager.getShardIndex("A");
+        String neighbour = null;
+        String other = null;
+        for (String instId : instruments) {
+            if (manager.getShardIndex(instId) == source && !"A".equals(instId)) {
+                neighbour = instId;
+            } else if (manager.getShardIndex(instId) != source) {
+                other = instId;
+            }
+        }
+        DefaultSubscriptionManager<String> from = pool.getShard(source).getSubscriptionManager();
+        DefaultSubscriptionManager<String> to = pool.getShard(1 - source).getSubscriptionManager();
+        for (long seq = 1; seq <= 200; seq++) {
+            if (seq <= 100) {
+                from.handleMessage(book("A", seq));
+            }
+            from.handleMessage(book(neighbour, seq));
+            if (seq <= 50) {
+                to.handleMessage(book(other, seq));
+            }
+        }
+        assertEquals(1, manager.rebalance(1.0));
+        assertEquals(1 - source, manager.getShardIndex("A"));
+
+        // 新连接先送来旧连接已转发过的推送，之后才有新的
+        to.handleMessage(book("A", 99));
+        to.handleMessage(book("A", 100));
+        to.handleMessage(book("A", 101));
+        to.handleMessage(book("A", 102));
+        List<Long> expected = new ArrayList<>();
+        for (long seq = 1; seq <= 102; seq++) {
+            expected.add(seq);
+        }
+        assertEquals(expected, received);
+    }
+
+    private static String book(String instId, long seqId) {
+        return "{\"arg\":{\"channel\":\"books\",\"instId\":\"" + instId + "\"},\"action\":\"update\","
+            + "\"data\":[{\"asks\":[],\"bids\":[],\"seqId\":" + seqId + "}]}";
+    }
+
+    private static long seqId(String message) {
+        int start = message.indexOf("\"seqId\":") + 8;
+        return Long.parseLong(message.substring(start, message.indexOf('}', start)));
+    }
+
+    private static String ticker(String instId) {
+        return "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"" + instId + "\"},\"data\":[{\"last\":\"1\"}]}";
+    }
+
+    private static ConnectionPool pool(int size) {
+        List<ConnectionPool.Shard> shards = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            NettyClient client = new IdleClient();
+            shards.add(new ConnectionPool.Shard(i, client, null, null, new DefaultSubscriptionManager<>(client, 60_000)));
+        }
+        return new ConnectionPool(shards);
+    }
+
+    private static class IdleClient implements NettyClient {
+        @Override
+        public ChannelFuture connect() {
+            return null;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void send(String message) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+    }
+}
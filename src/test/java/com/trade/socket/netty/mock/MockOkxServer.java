@@ -0,0 +1,241 @@
+package com.trade.socket.netty.mock;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地模拟的OKX v5 WebSocket交易所，用于离线的功能、压力和延迟测试
+ * <p>
+ * 支持文本 ping/pong、login、subscribe/unsubscribe，tickers/trades/books 三个公共频道按设定速率生成合成推送，
+ * 登录后下单、撤单、改单请求立即回执，订阅了 orders 频道时同时推送订单状态。任意路径都可以握手，
+ * public/private 只是约定，登录要求由请求本身决定。
+ * <p>
+ * 每条连接的推送在其事件循环上生成，连接不可写时暂停，客户端跟不上时丢弃积压而不是无限缓冲，
+ * 丢弃数见 {@link #getSkipped()}。
+ */
+@Slf4j
+public class MockOkxServer implements AutoCloseable {
+    public static final int DEFAULT_MESSAGES_PER_SECOND = 10_000;
+    public static final int DEFAULT_BOOK_DEPTH = 50;
+
+    private final int requestedPort;
+    private final SslContext sslContext;
+    private final int ioThreads;
+    private final ChannelGroup sessions = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicLong seeds = new AtomicLong(42);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile int messagesPerSecond = DEFAULT_MESSAGES_PER_SECOND;
+    private volatile int bookDepth = DEFAULT_BOOK_DEPTH;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
+    private int port;
+
+    /**
+     * 监听随机端口的明文服务
+     */
+    public MockOkxServer() {
+        this(0, null, 2);
+    }
+
+    /**
+     * @param port 监听端口，0 表示随机
+     * @param sslContext 服务端SSL上下文，null 表示 ws://
+     * @param ioThreads IO线程数
+     */
+    public MockOkxServer(int port, SslContext sslContext, int ioThreads) {
+        this.requestedPort = port;
+        this.sslContext = sslContext;
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * 启动并阻塞到端口绑定完成
+     * @return 实际监听的端口
+     */
+    public synchronized int start() throws InterruptedException {
+        if (serverChannel != null) {
+            return port;
+        }
+        boolean epoll = Epoll.isAvailable();
+        Class<? extends ServerSocketChannel> channelClass;
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(1, new DefaultThreadFactory("mock-okx-boss", true));
+            workerGroup = new EpollEventLoopGroup(ioThreads, new DefaultThreadFactory("mock-okx-io", true));
+            channelClass = EpollServerSocketChannel.class;
+        } else {
+            bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("mock-okx-boss", true));
+            workerGroup = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("mock-okx-io", true));
+            channelClass = NioServerSocketChannel.class;
+        }
+        WebSocketServerProtocolConfig config = WebSocketServerProtocolConfig.newBuilder()
+            .websocketPath("/")
+            .checkStartsWith(true)
+            .maxFramePayloadLength(1 << 20)
+            .build();
+        ServerBootstrap bootstrap = new ServerBootstrap()
+            .group(bossGroup, workerGroup)
+            .channel(channelClass)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+            .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(256 * 1024, 1024 * 1024))
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    if (sslContext != null) {
+                        ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
+                    }
+                    ch.pipeline().addLast(new HttpServerCodec());
+                    ch.pipeline().addLast(new HttpObjectAggregator(65536));
+                    ch.pipeline().addLast(new WebSocketServerProtocolHandler(config));
+                    ch.pipeline().addLast(new MockOkxSession(MockOkxServer.this, seeds.getAndIncrement()));
+                }
+            });
+        serverChannel = bootstrap.bind("127.0.0.1", requestedPort).sync().channel();
+        port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        log.info("Mock OKX server listening on {} ({})", getUrl(), epoll ? "epoll" : "nio");
+        return port;
+    }
+
+    /**
+     * 公共频道地址
+     */
+    public String getUrl() {
+        return url("/ws/v5/public");
+    }
+
+    /**
+     * 私有频道地址
+     */
+    public String getPrivateUrl() {
+        return url("/ws/v5/private");
+    }
+
+    private String url(String path) {
+        return (sslContext != null ? "wss" : "ws") + "://127.0.0.1:" + port + path;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 服务端主动断开所有连接，用于测试客户端重连
+     */
+    public void disconnectAll() {
+        sessions.close().awaitUninterruptibly();
+    }
+
+    /**
+     * 每条连接每秒生成的推送数，在订阅的频道间轮流分配，运行中修改立即生效
+     */
+    public void setMessagesPerSecond(int messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    public int getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    /**
+     * books 频道每边的档位数，对之后新订阅的交易对生效
+     */
+    public void setBookDepth(int bookDepth) {
+        this.bookDepth = bookDepth;
+    }
+
+    public int getBookDepth() {
+        return bookDepth;
+    }
+
+    public int getConnections() {
+        return sessions.size();
+    }
+
+    /**
+     * 已发送的行情推送数，不含回执
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * 收到的文本帧数
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getOrders() {
+        return orders.sum();
+    }
+
+    /**
+     * 客户端读取跟不上而丢弃的推送数
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    void register(Channel channel) {
+        sessions.add(channel);
+    }
+
+    void onSent(long count) {
+        sent.add(count);
+    }
+
+    void onReceived() {
+        received.increment();
+    }
+
+    void onOrders(int count) {
+        orders.add(count);
+    }
+
+    void onSkipped(long count) {
+        skipped.add(count);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close().awaitUninterruptibly();
+        sessions.close().awaitUninterruptibly();
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        serverChannel = null;
+    }
+}
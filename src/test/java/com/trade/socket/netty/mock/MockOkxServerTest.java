@@ -0,0 +1,144 @@
+package com.trade.socket.netty.mock;
+
+import com.trade.socket.netty.book.OrderBook;
+import com.trade.socket.netty.book.OrderBookManager;
+import com.trade.socket.netty.client.BaseNettyClient;
+import com.trade.socket.netty.codec.InstrumentRegistry;
+import com.trade.socket.netty.codec.OkxFrameDecoder;
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.manager.DefaultConnectionManager;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MockOkxServerTest {
+    private MockOkxServer server;
+    private final List<DefaultConnectionManager> managers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        managers.forEach(DefaultConnectionManager::shutdown);
+        server.close();
+    }
+
+    @Test
+    public void syntheticBooksKeepChecksumValid() {
+        InstrumentRegistry registry = new InstrumentRegistry();
+        OkxFrameDecoder decoder = new OkxFrameDecoder(registry);
+        List<String> resyncs = new ArrayList<>();
+        OrderBookManager manager = new OrderBookManager(registry, book -> resyncs.add(book.getInstId()), null, 1024);
+        SyntheticMarket market = new SyntheticMarket("BTC-USDT", 30, new SplittableRandom(7));
+
+        StringBuilder out = new StringBuilder();
+        market.snapshot(out, 1L);
+        decode(decoder, manager, out);
+        for (int i = 0; i < 10_000; i++) {
+            out.setLength(0);
+            market.update(out, 1L);
+            decode(decoder, manager, out);
+        }
+
+        OrderBook book = manager.getBook("BTC-USDT");
+        assertTrue(book.isLive());
+        assertEquals(0, book.getChecksumFailures());
+        assertEquals(0, book.getGapCount());
+        assertTrue(resyncs.isEmpty());
+        assertEquals(market.checksum(), book.checksum());
+    }
+
+    @Test
+    public void subscribePingAndErrors() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        BaseNettyClient<String> client = connect(server.getUrl(), received);
+
+        client.send("ping");
+        assertEquals("pong", poll(received));
+
+        client.send("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"books\",\"instId\":\"ETH-USDT\"}]}");
+        assertTrue(poll(received).startsWith("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"books\""));
+        assertTrue(poll(received).contains("\"action\":\"snapshot\""));
+        assertTrue(poll(received).contains("\"action\":\"update\""));
+
+        client.send("{\"op\":\"unsubscribe\",\"args\":[{\"channel\":\"books\",\"instId\":\"ETH-USDT\"}]}");
+        assertTrue(pollEvent(received).startsWith("{\"event\":\"unsubscribe\""));
+
+        client.send("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"candle1m\",\"instId\":\"ETH-USDT\"}]}");
+        assertTrue(pollEvent(received).contains("\"code\":\"60018\""));
+        client.send("not json");
+        assertTrue(pollEvent(received).contains("\"code\":\"60012\""));
+    }
+
+    @Test
+    public void ordersRequireLoginAndAreAcknowledged() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        BaseNettyClient<String> client = connect(server.getPrivateUrl(), received);
+        String order = "{\"id\":\"1512\",\"op\":\"order\",\"args\":[{\"side\":\"buy\",\"instId\":\"BTC-USDT\","
+            + "\"tdMode\":\"cash\",\"ordType\":\"limit\",\"sz\":\"1\",\"px\":\"30000\",\"clOrdId\":\"c1\"}]}";
+
+        client.send(order);
+        assertTrue(poll(received).contains("\"code\":\"60011\""));
+
+        client.send("{\"op\":\"login\",\"args\":[{\"apiKey\":\"k\",\"passphrase\":\"p\","
+            + "\"timestamp\":\"1538054050\",\"sign\":\"s\"}]}");
+        assertTrue(poll(received).startsWith("{\"event\":\"login\",\"code\":\"0\""));
+        client.send("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"orders\",\"instType\":\"ANY\"}]}");
+        assertTrue(poll(received).startsWith("{\"event\":\"subscribe\""));
+
+        client.send(order);
+        String ack = poll(received);
+        assertTrue(ack, ack.startsWith("{\"id\":\"1512\",\"op\":\"order\""));
+        assertTrue(ack.contains("\"clOrdId\":\"c1\""));
+        assertTrue(ack.contains("\"sCode\":\"0\""));
+        String push = poll(received);
+        assertTrue(push.startsWith("{\"arg\":{\"channel\":\"orders\""));
+        assertTrue(push.contains("\"state\":\"live\""));
+        assertEquals(1, server.getOrders());
+    }
+
+    private BaseNettyClient<String> connect(String url, BlockingQueue<String> received) throws Exception {
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        dispatcher.addHandler((message, ctx) -> received.add(message));
+        BaseNettyClient<String> client = new BaseNettyClient<>(WebSocketURLParser.parse(url), 3600, "ping", dispatcher);
+        dispatcher.setClient(client);
+        DefaultConnectionManager manager = new DefaultConnectionManager("127.0.0.1", server.getPort(), client);
+        managers.add(manager);
+        manager.initConnection().get(10, TimeUnit.SECONDS);
+        return client;
+    }
+
+    private static String poll(BlockingQueue<String> received) throws InterruptedException {
+        String message = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No message within timeout", message);
+        return message;
+    }
+
+    private static String pollEvent(BlockingQueue<String> received) throws InterruptedException {
+        String message;
+        do {
+            message = poll(received);
+        } while (!message.startsWith("{\"event\""));
+        return message;
+    }
+
+    private static void decode(OkxFrameDecoder decoder, OrderBookManager manager, StringBuilder json) {
+        assertTrue(decoder.decode(Unpooled.wrappedBuffer(json.toString().getBytes(StandardCharsets.UTF_8)), 1L, manager));
+    }
+}
@@ -0,0 +1,330 @@
+package com.trade.socket.netty.mock;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟交易所的单条连接
+ * <p>
+ * 处理OKX v5的 ping/pong、login、subscribe/unsubscribe 和下单类请求，
+ * 并在连接自己的事件循环上按 {@link MockOkxServer#getMessagesPerSecond()} 轮流生成已订阅频道的推送。
+ * 所有状态只在事件循环上访问。
+ */
+@Slf4j
+class MockOkxSession extends SimpleChannelInboundHandler<WebSocketFrame> {
+    /**
+     * 生成推送的调度间隔
+     */
+    static final long TICK_MICROS = 1_000;
+
+    private final MockOkxServer server;
+    private final String connId;
+    private final SplittableRandom random;
+    private final Map<String, SyntheticMarket> markets = new HashMap<>();
+    private final List<Stream> streams = new ArrayList<>();
+    private final StringBuilder buffer = new StringBuilder(4096);
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?> generator;
+    private boolean loggedIn;
+    private boolean ordersSubscribed;
+    private long orderIds;
+    private long startNanos;
+    private long emitted;
+    private int cursor;
+
+    MockOkxSession(MockOkxServer server, long seed) {
+        this.server = server;
+        this.random = new SplittableRandom(seed);
+        this.connId = Long.toHexString(seed & 0xffffffffL);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            this.ctx = ctx;
+            server.register(ctx.channel());
+            startNanos = System.nanoTime();
+            generator = ctx.executor().scheduleAtFixedRate(this::generate, TICK_MICROS, TICK_MICROS,
+                TimeUnit.MICROSECONDS);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (generator != null) {
+            generator.cancel(false);
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+        if (frame instanceof PingWebSocketFrame) {
+            ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+            return;
+        }
+        if (!(frame instanceof TextWebSocketFrame)) {
+            return;
+        }
+        server.onReceived();
+        String text = ((TextWebSocketFrame) frame).text();
+        if ("ping".equals(text)) {
+            reply("pong");
+            return;
+        }
+        JSONObject request;
+        try {
+            request = JSON.parseObject(text);
+        } catch (JSONException e) {
+            request = null;
+        }
+        if (request == null || request.getString("op") == null) {
+            error("60012", "Invalid request: " + text);
+            return;
+        }
+        String op = request.getString("op");
+        JSONArray args = request.getJSONArray("args");
+        switch (op) {
+            case "login":
+                login(args);
+                break;
+            case "subscribe":
+            case "unsubscribe":
+                subscribe(op, args);
+                break;
+            case "order":
+            case "batch-orders":
+            case "cancel-order":
+            case "batch-cancel-orders":
+            case "amend-order":
+            case "batch-amend-orders":
+                order(request.getString("id"), op, args);
+                break;
+            default:
+                error("60012", "Invalid request: " + text);
+        }
+    }
+
+    private void login(JSONArray args) {
+        JSONObject arg = args != null && !args.isEmpty() ? args.getJSONObject(0) : null;
+        if (arg == null || arg.getString("apiKey") == null || arg.getString("passphrase") == null
+            || arg.getString("timestamp") == null || arg.getString("sign") == null) {
+            error("60009", "Login failed.");
+            return;
+        }
+        loggedIn = true;
+        JSONObject ack = new JSONObject();
+        ack.put("event", "login");
+        ack.put("code", "0");
+        ack.put("msg", "");
+        ack.put("connId", connId);
+        reply(ack.toJSONString());
+    }
+
+    private void subscribe(String op, JSONArray args) {
+        if (args == null || args.isEmpty()) {
+            error("60012", "Invalid request: args is empty");
+            return;
+        }
+        boolean subscribe = "subscribe".equals(op);
+        for (int i = 0; i < args.size(); i++) {
+            JSONObject arg = args.getJSONObject(i);
+            String channel = arg.getString("channel");
+            String instId = arg.getString("instId");
+            if ("orders".equals(channel)) {
+                if (!loggedIn) {
+                    error("60011", "Please log in");
+                    continue;
+                }
+                ordersSubscribed = subscribe;
+            } else if (!isMarketChannel(channel) || instId == null) {
+                error("60018", "Wrong URL or channel:" + channel + ",instId:" + instId + " doesn't exist.");
+                continue;
+            }
+            JSONObject ack = new JSONObject();
+            ack.put("event", op);
+            ack.put("arg", arg);
+            ack.put("connId", connId);
+            reply(ack.toJSONString());
+            if ("orders".equals(channel)) {
+                continue;
+            }
+            if (subscribe) {
+                addStream(channel, instId);
+            } else {
+                removeStream(channel, instId);
+            }
+        }
+    }
+
+    private void addStream(String channel, String instId) {
+        SyntheticMarket market = markets.computeIfAbsent(instId,
+            id -> new SyntheticMarket(id, server.getBookDepth(), random.split()));
+        removeStream(channel, instId);
+        streams.add(new Stream(channel, market));
+        if ("books".equals(channel)) {
+            buffer.setLength(0);
+            market.snapshot(buffer, System.currentTimeMillis());
+            reply(buffer.toString());
+        }
+    }
+
+    private void removeStream(String channel, String instId) {
+        Iterator<Stream> it = streams.iterator();
+        while (it.hasNext()) {
+            Stream stream = it.next();
+            if (stream.channel.equals(channel) && stream.market.getInstId().equals(instId)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 下单类请求一律成功，回显 clOrdId；已订阅 orders 频道时同时推送订单状态
+     */
+    private void order(String id, String op, JSONArray args) {
+        if (!loggedIn) {
+            error("60011", "Please log in");
+            return;
+        }
+        long inTime = System.currentTimeMillis() * 1000;
+        boolean place = "order".equals(op) || "batch-orders".equals(op);
+        JSONArray data = new JSONArray();
+        List<JSONObject> updates = new ArrayList<>();
+        for (int i = 0; args != null && i < args.size(); i++) {
+            JSONObject arg = args.getJSONObject(i);
+            String ordId = place ? String.valueOf(++orderIds) : arg.getString("ordId");
+            JSONObject result = new JSONObject();
+            result.put("clOrdId", arg.getString("clOrdId") != null ? arg.getString("clOrdId") : "");
+            result.put("ordId", ordId != null ? ordId : "");
+            result.put("tag", "");
+            result.put("ts", String.valueOf(inTime / 1000));
+            result.put("sCode", "0");
+            result.put("sMsg", "");
+            data.add(result);
+            if (ordersSubscribed) {
+                JSONObject update = new JSONObject(arg);
+                update.put("ordId", result.getString("ordId"));
+                update.put("state", op.contains("cancel") ? "canceled" : "live");
+                update.put("fillSz", "0");
+                update.put("uTime", result.getString("ts"));
+                updates.add(update);
+            }
+        }
+        server.onOrders(data.size());
+        JSONObject ack = new JSONObject();
+        ack.put("id", id != null ? id : "");
+        ack.put("op", op);
+        ack.put("data", data);
+        ack.put("code", "0");
+        ack.put("msg", "");
+        ack.put("inTime", String.valueOf(inTime));
+        ack.put("outTime", String.valueOf(System.currentTimeMillis() * 1000));
+        reply(ack.toJSONString());
+        for (JSONObject update : updates) {
+            JSONObject arg = new JSONObject();
+            arg.put("channel", "orders");
+            arg.put("instType", "ANY");
+            arg.put("uid", connId);
+            JSONObject push = new JSONObject();
+            push.put("arg", arg);
+            push.put("data", JSONArray.of(update));
+            reply(push.toJSONString());
+        }
+    }
+
+    /**
+     * 按目标速率补齐应发的推送，连接不可写时跳过本轮，落后超过一个调度周期的部分直接丢弃而不是突发补发
+     */
+    private void generate() {
+        if (streams.isEmpty() || !ctx.channel().isActive()) {
+            startNanos = System.nanoTime();
+            emitted = 0;
+            return;
+        }
+        long rate = server.getMessagesPerSecond();
+        long due = (System.nanoTime() - startNanos) * rate / 1_000_000_000L - emitted;
+        long burst = Math.max(1, rate * TICK_MICROS * 2 / 1_000_000L);
+        if (due > burst) {
+            server.onSkipped(due - burst);
+            emitted += due - burst;
+            due = burst;
+        }
+        long ts = System.currentTimeMillis();
+        long written = 0;
+        while (written < due && ctx.channel().isWritable()) {
+            Stream stream = streams.get(cursor++ % streams.size());
+            buffer.setLength(0);
+            switch (stream.channel) {
+                case "tickers":
+                    stream.market.ticker(buffer, ts);
+                    break;
+                case "trades":
+                    stream.market.trade(buffer, ts);
+                    break;
+                default:
+                    stream.market.update(buffer, ts);
+            }
+            ctx.write(new TextWebSocketFrame(buffer.toString()));
+            written++;
+        }
+        if (written > 0) {
+            emitted += written;
+            server.onSent(written);
+            ctx.flush();
+        }
+    }
+
+    private void error(String code, String msg) {
+        JSONObject error = new JSONObject();
+        error.put("event", "error");
+        error.put("code", code);
+        error.put("msg", msg);
+        error.put("connId", connId);
+        reply(error.toJSONString());
+    }
+
+    private void reply(String text) {
+        ctx.writeAndFlush(new TextWebSocketFrame(text));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Mock session {} failed", connId, cause);
+        ctx.close();
+    }
+
+    static boolean isMarketChannel(String channel) {
+        return "tickers".equals(channel) || "trades".equals(channel) || "books".equals(channel);
+    }
+
+    private static final class Stream {
+        final String channel;
+        final SyntheticMarket market;
+
+        Stream(String channel, SyntheticMarket market) {
+            this.channel = channel;
+            this.market = market;
+        }
+    }
+}
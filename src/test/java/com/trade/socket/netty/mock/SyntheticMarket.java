@@ -0,0 +1,197 @@
+package com.trade.socket.netty.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 单个交易对的合成行情
+ * <p>
+ * 价格以最小变动 0.1 的整数档位保存，深度围绕固定中间价在 ±depth 档内随机增删改，
+ * books 推送带正确的 seqId/prevSeqId 和按OKX规则计算的前25档校验和，可以直接驱动 {@link com.trade.socket.netty.book.OrderBook}。
+ * 只在所属连接的事件循环上使用，不需要同步。
+ */
+final class SyntheticMarket {
+    static final int CHECKSUM_DEPTH = 25;
+
+    private final String instId;
+    private final String instType;
+    private final int depth;
+    private final SplittableRandom random;
+    private final TreeMap<Long, Long> bids = new TreeMap<>(Collections.reverseOrder());
+    private final TreeMap<Long, Long> asks = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+    private final StringBuilder checksumText = new StringBuilder(CHECKSUM_DEPTH * 40);
+    private final long mid;
+    private long seqId;
+    private long tradeId;
+
+    SyntheticMarket(String instId, int depth, SplittableRandom random) {
+        this.instId = instId;
+        this.instType = instId.endsWith("-SWAP") ? "SWAP" : "SPOT";
+        this.depth = depth;
+        this.random = random;
+        // 不同交易对的价格不同，便于在输出中区分
+        this.mid = 1_000 + Math.floorMod(instId.hashCode(), 500_000);
+        this.seqId = random.nextInt(1_000_000);
+        for (int i = 1; i <= depth; i++) {
+            bids.put(mid - i, size());
+            asks.put(mid + i, size());
+        }
+    }
+
+    String getInstId() {
+        return instId;
+    }
+
+    /**
+     * tickers 推送
+     */
+    void ticker(StringBuilder out, long ts) {
+        long last = mid + random.nextInt(-2, 3);
+        arg(out, "tickers").append(",\"data\":[{\"instType\":\"").append(instType)
+            .append("\",\"instId\":\"").append(instId)
+            .append("\",\"last\":\"");
+        price(out, last).append("\",\"lastSz\":\"").append(1 + random.nextInt(100))
+            .append("\",\"askPx\":\"");
+        price(out, best(asks, mid + 1)).append("\",\"askSz\":\"").append(bestSize(asks))
+            .append("\",\"bidPx\":\"");
+        price(out, best(bids, mid - 1)).append("\",\"bidSz\":\"").append(bestSize(bids))
+            .append("\",\"ts\":\"").append(ts).append("\"}]}");
+    }
+
+    /**
+     * trades 推送
+     */
+    void trade(StringBuilder out, long ts) {
+        boolean buy = random.nextBoolean();
+        long px = buy ? best(asks, mid + 1) : best(bids, mid - 1);
+        arg(out, "trades").append(",\"data\":[{\"instId\":\"").append(instId)
+            .append("\",\"tradeId\":\"").append(++tradeId)
+            .append("\",\"px\":\"");
+        price(out, px).append("\",\"sz\":\"").append(1 + random.nextInt(50))
+            .append("\",\"side\":\"").append(buy ? "buy" : "sell")
+            .append("\",\"ts\":\"").append(ts).append("\"}]}");
+    }
+
+    /**
+     * books 全量推送，订阅成功后首先发送
+     */
+    void snapshot(StringBuilder out, long ts) {
+        long prevSeqId = -1;
+        seqId++;
+        arg(out, "books").append(",\"action\":\"snapshot\",\"data\":[{\"asks\":[");
+        levels(out, asks);
+        out.append("],\"bids\":[");
+        levels(out, bids);
+        book(out, ts, prevSeqId);
+    }
+
+    /**
+     * books 增量推送，随机修改一档，数量为 0 表示删除
+     */
+    void update(StringBuilder out, long ts) {
+        boolean bid = random.nextBoolean();
+        TreeMap<Long, Long> side = bid ? bids : asks;
+        long px = bid ? mid - 1 - random.nextInt(depth) : mid + 1 + random.nextInt(depth);
+        long sz = side.size() > depth / 2 && random.nextInt(10) == 0 ? 0 : size();
+        if (sz == 0) {
+            side.remove(px);
+        } else {
+            side.put(px, sz);
+        }
+        long prevSeqId = seqId;
+        seqId += 1 + random.nextInt(3);
+        arg(out, "books").append(",\"action\":\"update\",\"data\":[{\"asks\":[");
+        if (!bid) {
+            level(out, px, sz);
+        }
+        out.append("],\"bids\":[");
+        if (bid) {
+            level(out, px, sz);
+        }
+        book(out, ts, prevSeqId);
+    }
+
+    /**
+     * 按OKX规则计算前25档校验和：bid价:bid量:ask价:ask量 交替拼接，取CRC32的有符号值
+     */
+    int checksum() {
+        StringBuilder text = checksumText;
+        text.setLength(0);
+        Iterator<Map.Entry<Long, Long>> bid = bids.entrySet().iterator();
+        Iterator<Map.Entry<Long, Long>> ask = asks.entrySet().iterator();
+        for (int i = 0; i < CHECKSUM_DEPTH && (bid.hasNext() || ask.hasNext()); i++) {
+            if (bid.hasNext()) {
+                Map.Entry<Long, Long> level = bid.next();
+                separator(text);
+                price(text, level.getKey()).append(':').append(level.getValue());
+            }
+            if (ask.hasNext()) {
+                Map.Entry<Long, Long> level = ask.next();
+                separator(text);
+                price(text, level.getKey()).append(':').append(level.getValue());
+            }
+        }
+        crc.reset();
+        crc.update(text.toString().getBytes(StandardCharsets.US_ASCII));
+        return (int) crc.getValue();
+    }
+
+    private StringBuilder arg(StringBuilder out, String channel) {
+        return out.append("{\"arg\":{\"channel\":\"").append(channel)
+            .append("\",\"instId\":\"").append(instId).append("\"}");
+    }
+
+    private void book(StringBuilder out, long ts, long prevSeqId) {
+        out.append("],\"ts\":\"").append(ts)
+            .append("\",\"checksum\":").append(checksum())
+            .append(",\"prevSeqId\":").append(prevSeqId)
+            .append(",\"seqId\":").append(seqId).append("}]}");
+    }
+
+    private void levels(StringBuilder out, TreeMap<Long, Long> side) {
+        boolean first = true;
+        for (Map.Entry<Long, Long> level : side.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            level(out, level.getKey(), level.getValue());
+        }
+    }
+
+    private void level(StringBuilder out, long px, long sz) {
+        out.append("[\"");
+        price(out, px).append("\",\"").append(sz).append("\",\"0\",\"").append(sz == 0 ? 0 : 1 + sz % 7).append("\"]");
+    }
+
+    private long size() {
+        return 1 + random.nextInt(500);
+    }
+
+    private static void separator(StringBuilder text) {
+        if (text.length() > 0) {
+            text.append(':');
+        }
+    }
+
+    private static long best(TreeMap<Long, Long> side, long fallback) {
+        return side.isEmpty() ? fallback : side.firstKey();
+    }
+
+    private static long bestSize(TreeMap<Long, Long> side) {
+        return side.isEmpty() ? 0 : side.firstEntry().getValue();
+    }
+
+    /**
+     * 档位转为一位小数的价格文本
+     */
+    private static StringBuilder price(StringBuilder out, long ticks) {
+        return out.append(ticks / 10).append('.').append(ticks % 10);
+    }
+}
@@ -0,0 +1,115 @@
+package com.trade.socket.netty.replay;
+
+import com.trade.socket.netty.handler.MessageDispatcher;
+import com.trade.socket.netty.journal.Journal;
+import com.trade.socket.netty.journal.JournalReader;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ReplayEngineTest {
+
+    @Test
+    public void replayAsFastAsPossibleThroughDispatcher() throws Exception {
+        Path dir = record(2, 1000, 1_000_000L);
+        try {
+            MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+            List<String> received = new ArrayList<>();
+            dispatcher.addHandler((message, ctx) -> received.add(message));
+            // 只回放第1条连接
+            ReplayEngine engine = new ReplayEngine(dispatcher);
+            engine.setConnectionId(1);
+            ReplayResult result = engine.replay(new JournalReader(dir));
+
+            assertEquals(1000, result.getMessages());
+            assertEquals(1000, received.size());
+            assertEquals(tick(1, 0), received.get(0));
+            assertEquals(tick(1, 999), received.get(999));
+            // 1000 条间隔 1ms 的数据不按节奏等待
+            assertTrue(result.getElapsedNanos() < 900_000_000L);
+            assertTrue(dispatcher.getClient() instanceof ReplayClient);
+            assertTrue(dispatcher.getClient().connect().isSuccess());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void scaledReplayKeepsPacing() throws Exception {
+        Path dir = record(1, 50, 2_000_000L);
+        try {
+            MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+            ReplayResult result = new ReplayEngine(dispatcher, ReplayMode.SCALED, 4)
+                .replay(new JournalReader(dir));
+            assertEquals(50, result.getMessages());
+            // 录制跨度 98ms，4 倍速约 24.5ms
+            assertTrue(result.getElapsedNanos() >= 24_000_000L);
+            assertEquals(98_000_000L, result.getLastEpochNanos() - result.getFirstEpochNanos());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void replayDaysInParallel() throws Exception {
+        Path first = record(1, 500, 1000L);
+        Path second = record(1, 800, 1000L);
+        try {
+            List<JournalReader> days = List.of(new JournalReader(first), new JournalReader(second));
+            List<ReplayResult> results = ReplayEngine.replayAll(days, journal -> {
+                MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+                dispatcher.addHandler((message, ctx) -> message.startsWith("{"));
+                return new ReplayEngine(dispatcher);
+            }, 2);
+            assertEquals(500, results.get(0).getMessages());
+            assertEquals(800, results.get(1).getMessages());
+            assertEquals(second, results.get(1).getDirectory());
+        } finally {
+            delete(first);
+            delete(second);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scaledRequiresPositiveSpeed() {
+        new ReplayEngine(new MessageDispatcher<>(null), ReplayMode.SCALED, 0);
+    }
+
+    /**
+     * 录制 connections 条连接、每条 count 帧，帧之间间隔 intervalNanos
+     */
+    private static Path record(int connections, int count, long intervalNanos) throws IOException {
+        Path dir = Files.createTempDirectory("replay");
+        Journal journal = new Journal(dir, Journal.DEFAULT_PREFIX, 1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            for (int c = 1; c <= connections; c++) {
+                byte[] frame = tick(c, i).getBytes(StandardCharsets.UTF_8);
+                journal.append(c, Unpooled.wrappedBuffer(frame), start + i * intervalNanos);
+            }
+        }
+        journal.close();
+        return dir;
+    }
+
+    private static String tick(int connection, int i) {
+        return "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{\"last\":\"" + (40000 + i)
+            + "\",\"conn\":" + connection + "}]}";
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.trade.socket.netty.test;
 
 import com.trade.socket.netty.client.NettyClient;
-import com.trade.socket.netty.client.NettyClientFactory;
+import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.handler.MessageHandler;
 import com.trade.socket.netty.manager.DefaultConnectionManager;
 import com.trade.socket.netty.manager.DefaultSubscriptionManager;
+import com.trade.socket.netty.mock.MockOkxServer;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -18,61 +21,82 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Netty客户端集成测试类
+ * Netty客户端集成测试类，多个客户端同时连接本地的 {@link MockOkxServer}
  */
 public class IntegrationTest {
     private static final Logger logger = LoggerFactory.getLogger(IntegrationTest.class);
-    private static final String TEST_SERVER = "ws://echo.websocket.org";
     private static final int CLIENT_COUNT = 5;
     private static final int TEST_DURATION_SECONDS = 30;
     private static final int MESSAGE_INTERVAL_MS = 500;
 
+    private MockOkxServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.setMessagesPerSecond(1_000);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
     @Test
     public void testMultipleClients() throws Exception {
         // 创建线程池
         ExecutorService executor = Executors.newFixedThreadPool(CLIENT_COUNT);
         CountDownLatch testLatch = new CountDownLatch(CLIENT_COUNT);
         AtomicInteger totalMessages = new AtomicInteger(0);
-        List<NettyClient<String>> clients = new ArrayList<>();
+        AtomicInteger completedClients = new AtomicInteger(0);
+        List<NettyClient> clients = new CopyOnWriteArrayList<>();
 
         // 创建并启动多个客户端
         for (int i = 0; i < CLIENT_COUNT; i++) {
             final int clientId = i + 1;
             executor.submit(() -> {
                 try {
-                    NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+                    MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+                    NettyClient client = NettyClientTest.createClient(server.getUrl(), 30, "ping", dispatcher);
                     clients.add(client);
 
                     // 创建订阅管理器
-                    DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client);
+                    DefaultSubscriptionManager<String> subscriptionManager =
+                            new DefaultSubscriptionManager<>(client, dispatcher);
                     CountDownLatch messageLatch = new CountDownLatch(5);
 
                     // 添加消息处理器
                     subscriptionManager.addGlobalHandler(new MessageHandler<String>() {
                         @Override
                         public boolean handle(String message, MessageHandler.HandlerContext ctx) {
-                            logger.info("Client {} received: {}", clientId, message);
-                            messageLatch.countDown();
+                            if ("pong".equals(message)) {
+                                logger.info("Client {} received: {}", clientId, message);
+                                messageLatch.countDown();
+                            }
                             return true;
                         }
                     });
 
                     // 创建连接管理器
                     DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                            "echo.websocket.org", 80, client, 3, 1000);
-                    connectionManager.initConnection();
+                            "127.0.0.1", server.getPort(), client, 3, 1000);
+                    connectionManager.initConnection().get(10, TimeUnit.SECONDS);
 
-                    // 发送测试消息
+                    // 订阅行情的同时定时 ping
+                    client.send(String.format("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"tickers\","
+                            + "\"instId\":\"INST-%d\"}]}", clientId));
                     long endTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TEST_DURATION_SECONDS);
                     while (System.currentTimeMillis() < endTime) {
-                        String msg = String.format("Message %d from client %d",
-                                totalMessages.incrementAndGet(), clientId);
-                        client.send(msg);
+                        totalMessages.incrementAndGet();
+                        client.send("ping");
                         TimeUnit.MILLISECONDS.sleep(MESSAGE_INTERVAL_MS);
                     }
 
                     // 等待消息接收
-                    messageLatch.await(10, TimeUnit.SECONDS);
+                    if (messageLatch.await(10, TimeUnit.SECONDS)) {
+                        completedClients.incrementAndGet();
+                    }
 
                     // 关闭连接
                     connectionManager.shutdown();
@@ -93,43 +117,54 @@ public class IntegrationTest {
         logger.info("  Clients: {}", CLIENT_COUNT);
         logger.info("  Duration: {} seconds", TEST_DURATION_SECONDS);
         logger.info("  Total messages sent: {}", totalMessages.get());
+        logger.info("  Server pushed: {}", server.getSent());
+        assertTrue("Not all clients completed: " + completedClients.get(), completedClients.get() == CLIENT_COUNT);
     }
 
     @Test
     public void testErrorRecovery() throws Exception {
         // 创建客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        NettyClient client = NettyClientTest.createClient(server.getUrl(), 30, "ping", dispatcher);
 
         // 创建订阅管理器
-        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client);
+        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client, dispatcher);
+        CountDownLatch firstPong = new CountDownLatch(1);
         CountDownLatch messageLatch = new CountDownLatch(3);
 
         // 添加消息处理器
         subscriptionManager.addGlobalHandler(new MessageHandler<String>() {
             @Override
             public boolean handle(String message, MessageHandler.HandlerContext ctx) {
-                logger.info("Received: {}", message);
-                messageLatch.countDown();
+                if ("pong".equals(message)) {
+                    logger.info("Received: {}", message);
+                    firstPong.countDown();
+                    messageLatch.countDown();
+                }
                 return true;
             }
         });
 
         // 创建连接管理器
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client, 3, 1000);
-        connectionManager.initConnection();
+                "127.0.0.1", server.getPort(), client, 3, 1000);
+        connectionManager.initConnection().get(10, TimeUnit.SECONDS);
 
         // 发送初始消息
-        client.send("Initial message");
+        client.send("ping");
+        // 断开前必须收到回复，否则 ping 可能随连接一起丢失
+        assertTrue("Did not receive pong before interruption", firstPong.await(10, TimeUnit.SECONDS));
 
         // 模拟网络中断
         logger.info("Simulating network interruption...");
-        client.disconnect();
-        TimeUnit.SECONDS.sleep(2);
+        server.disconnectAll();
+        assertTrue("Client should be disconnected", NettyClientTest.waitFor(client, false, 10));
 
         // 验证自动重连
         logger.info("Waiting for reconnection...");
-        client.send("Message after interruption");
+        assertTrue("Client did not reconnect", NettyClientTest.waitFor(client, true, 10));
+        client.send("ping");
+        client.send("ping");
 
         // 等待消息接收
         assertTrue("Did not receive enough messages after reconnection",
@@ -1,10 +1,19 @@
 package com.trade.socket.netty.test;
 
+import com.trade.socket.netty.client.BaseNettyClient;
 import com.trade.socket.netty.client.NettyClient;
-import com.trade.socket.netty.client.NettyClientFactory;
+import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.handler.MessageHandler;
 import com.trade.socket.netty.manager.DefaultConnectionManager;
 import com.trade.socket.netty.manager.DefaultSubscriptionManager;
+import com.trade.socket.netty.mock.MockOkxServer;
+import com.trade.socket.netty.util.WebSocketURLParser;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,46 +24,66 @@ import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.*;
 
 /**
- * Netty客户端测试类
+ * Netty客户端测试类，连接本地的 {@link MockOkxServer}
  */
 public class NettyClientTest {
     private static final Logger logger = LoggerFactory.getLogger(NettyClientTest.class);
-    private static final String TEST_SERVER = "ws://echo.websocket.org";
-    private static final String TEST_SSL_SERVER = "wss://echo.websocket.org";
     private static final int TIMEOUT_SECONDS = 10;
-    private static final String HEARTBEAT_MESSAGE = "HEARTBEAT";
+    private static final String HEARTBEAT_MESSAGE = "ping";
     private static final int HEARTBEAT_INTERVAL = 1;
+    private static final String SUBSCRIBE_TICKERS =
+            "{\"op\":\"subscribe\",\"args\":[{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}]}";
+
+    private MockOkxServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
 
     @Test
     public void testWebSocketConnection() throws Exception {
         // 创建客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        NettyClient client = createClient(server.getUrl(), 30, HEARTBEAT_MESSAGE, dispatcher);
 
         // 创建订阅管理器
-        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client);
+        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client, dispatcher);
 
-        // 添加测试消息处理器
-        CountDownLatch latch = new CountDownLatch(1);
+        // 添加测试消息处理器：订阅回执和推送各一条
+        CountDownLatch ack = new CountDownLatch(1);
+        CountDownLatch push = new CountDownLatch(1);
         subscriptionManager.addGlobalHandler(new MessageHandler<String>() {
             @Override
             public boolean handle(String message, MessageHandler.HandlerContext ctx) {
                 logger.info("Received message: {}", message);
-                latch.countDown();
+                if (message.startsWith("{\"event\":\"subscribe\"")) {
+                    ack.countDown();
+                } else if (message.startsWith("{\"arg\":{\"channel\":\"tickers\"")) {
+                    push.countDown();
+                }
                 return true;
             }
         });
 
-        // 创建连接管理器并启动连接
+        // 创建连接管理器并等待握手完成
+        WebSocketURLParser.WebSocketURL url = WebSocketURLParser.parse(server.getUrl());
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client);
-        connectionManager.initConnection();
+                url.getHost(), url.getPort(), client);
+        connectionManager.initConnection().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
-        // 发送测试消息
-        client.send("Test message");
+        // 发送订阅
+        client.send(SUBSCRIBE_TICKERS);
 
         // 等待消息接收
-        assertTrue("Did not receive message within timeout",
-                latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("Did not receive subscribe ack within timeout", ack.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("Did not receive ticker within timeout", push.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
 
         // 关闭连接
         connectionManager.shutdown();
@@ -62,65 +91,67 @@ public class NettyClientTest {
 
     @Test
     public void testSSLWebSocketConnection() throws Exception {
-        // 创建SSL客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SSL_SERVER);
+        // 自签名证书依赖JDK内部API或BouncyCastle，不可用时跳过
+        SslContext sslContext;
+        try {
+            SelfSignedCertificate certificate = new SelfSignedCertificate();
+            sslContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey()).build();
+        } catch (Exception | LinkageError e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        try (MockOkxServer sslServer = new MockOkxServer(0, sslContext, 1)) {
+            sslServer.start();
 
-        // 创建订阅管理器
-        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client);
+            // 创建SSL客户端
+            MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+            NettyClient client = createClient(sslServer.getUrl(), 30, HEARTBEAT_MESSAGE, dispatcher);
 
-        // 添加测试消息处理器
-        CountDownLatch latch = new CountDownLatch(1);
-        subscriptionManager.addGlobalHandler(new MessageHandler<String>() {
-            @Override
-            public boolean handle(String message, MessageHandler.HandlerContext ctx) {
+            // 添加测试消息处理器
+            CountDownLatch latch = new CountDownLatch(1);
+            dispatcher.addHandler((message, ctx) -> {
                 logger.info("Received SSL message: {}", message);
                 latch.countDown();
                 return true;
-            }
-        });
+            });
 
-        // 创建连接管理器并启动连接
-        DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 443, client);
-        connectionManager.initConnection();
+            // 创建连接管理器并等待握手完成
+            DefaultConnectionManager connectionManager = new DefaultConnectionManager(
+                    "127.0.0.1", sslServer.getPort(), client);
+            connectionManager.initConnection().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
-        // 发送测试消息
-        client.send("Test SSL message");
+            // 发送测试消息
+            client.send(SUBSCRIBE_TICKERS);
 
-        // 等待消息接收
-        assertTrue("Did not receive SSL message within timeout",
-                latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            // 等待消息接收
+            assertTrue("Did not receive SSL message within timeout",
+                    latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
 
-        // 关闭连接
-        connectionManager.shutdown();
+            // 关闭连接
+            connectionManager.shutdown();
+        }
     }
 
     @Test
     public void testHeartbeat() throws Exception {
-        // 创建带心跳的客户端
-        NettyClient<String> client = NettyClientFactory.createCustomClient(
-                TEST_SERVER, HEARTBEAT_INTERVAL, HEARTBEAT_MESSAGE);
-
-        // 创建订阅管理器
-        DefaultSubscriptionManager<String> subscriptionManager = new DefaultSubscriptionManager<>(client);
+        // 创建带心跳的客户端，服务端对文本 ping 回复 pong
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        NettyClient client = createClient(server.getUrl(), HEARTBEAT_INTERVAL, HEARTBEAT_MESSAGE, dispatcher);
 
         // 添加心跳消息处理器
         CountDownLatch latch = new CountDownLatch(3); // 等待3次心跳
-        subscriptionManager.addGlobalHandler(new MessageHandler<String>() {
-            @Override
-            public boolean handle(String message, MessageHandler.HandlerContext ctx) {
-                if (HEARTBEAT_MESSAGE.equals(message)) {
-                    logger.info("Received heartbeat message");
-                    latch.countDown();
-                }
-                return true;
+        dispatcher.addHandler((message, ctx) -> {
+            if ("pong".equals(message)) {
+                logger.info("Received heartbeat message");
+                latch.countDown();
             }
+            return true;
         });
 
         // 创建连接管理器并启动连接
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client);
-        connectionManager.initConnection();
+                "127.0.0.1", server.getPort(), client);
+        connectionManager.initConnection().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
         // 等待心跳消息
         assertTrue("Did not receive enough heartbeat messages within timeout",
@@ -133,36 +164,56 @@ public class NettyClientTest {
     @Test
     public void testReconnection() throws Exception {
         // 创建客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        NettyClient client = createClient(server.getUrl(), 30, HEARTBEAT_MESSAGE, dispatcher);
 
         // 创建带重试的连接管理器
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client, 5, 1000);
-        connectionManager.initConnection();
-
-        // 等待初始连接
-        assertTrue("Client did not connect initially",
-                waitForConnection(client, TIMEOUT_SECONDS));
+                "127.0.0.1", server.getPort(), client, 5, 1000);
+        connectionManager.initConnection().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue("Client did not connect initially", client.isConnected());
 
-        // 模拟断开连接
-        client.disconnect();
-        assertFalse("Client should be disconnected", client.isConnected());
+        // 服务端断开连接；先等服务端登记该连接，否则 disconnectAll 可能在登记之前执行而什么也不断开
+        assertTrue("Server did not see the connection", waitForConnections(server, 1, TIMEOUT_SECONDS));
+        server.disconnectAll();
+        assertTrue("Client should be disconnected", waitFor(client, false, TIMEOUT_SECONDS));
 
         // 等待重连
-        assertTrue("Client did not reconnect within timeout",
-                waitForConnection(client, TIMEOUT_SECONDS));
+        assertTrue("Client did not reconnect within timeout", waitFor(client, true, TIMEOUT_SECONDS));
+        // 服务端登记连接与客户端 isConnected 不在同一线程，轮询等待
+        assertTrue("Server did not see exactly one connection", waitForConnections(server, 1, TIMEOUT_SECONDS));
 
         // 关闭连接
         connectionManager.shutdown();
     }
 
-    private boolean waitForConnection(NettyClient<?> client, int timeoutSeconds) throws InterruptedException {
+    static NettyClient createClient(String url, int heartbeatInterval, String heartbeatMessage,
+                                    MessageDispatcher<String> dispatcher) {
+        BaseNettyClient<String> client = new BaseNettyClient<>(WebSocketURLParser.parse(url),
+                heartbeatInterval, heartbeatMessage, dispatcher);
+        dispatcher.setClient(client);
+        return client;
+    }
+
+    static boolean waitFor(NettyClient client, boolean connected, int timeoutSeconds) throws InterruptedException {
+        long endTime = System.currentTimeMillis() + timeoutSeconds * 1000L;
+        while (System.currentTimeMillis() < endTime) {
+            if (client.isConnected() == connected) {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        return false;
+    }
+
+    static boolean waitForConnections(MockOkxServer server, int connections, int timeoutSeconds)
+            throws InterruptedException {
         long endTime = System.currentTimeMillis() + timeoutSeconds * 1000L;
         while (System.currentTimeMillis() < endTime) {
-            if (client.isConnected()) {
+            if (server.getConnections() == connections) {
                 return true;
             }
-            TimeUnit.MILLISECONDS.sleep(100);
+            TimeUnit.MILLISECONDS.sleep(20);
         }
         return false;
     }
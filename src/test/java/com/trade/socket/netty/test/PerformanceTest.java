@@ -1,94 +1,167 @@
 package com.trade.socket.netty.test;
 
+import com.trade.socket.netty.client.BaseNettyClient;
 import com.trade.socket.netty.client.NettyClient;
-import com.trade.socket.netty.client.NettyClientFactory;
+import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.manager.DefaultConnectionManager;
+import com.trade.socket.netty.mock.MockOkxServer;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.Arrays;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
 
 /**
  * Netty客户端性能测试类
+ * <p>
+ * 服务端为本地的 {@link MockOkxServer}，测得的是客户端自身的吞吐和延迟，不含公网抖动。
+ * 目标速率可用 -Dperf.rate 调整，默认每秒10万条。
  */
 public class PerformanceTest {
     private static final Logger logger = LoggerFactory.getLogger(PerformanceTest.class);
-    private static final String TEST_SERVER = "ws://echo.websocket.org";
-    private static final int WARMUP_ITERATIONS = 100;
-    private static final int TEST_ITERATIONS = 1000;
-    private static final int MESSAGE_SIZE_BYTES = 1024; // 1KB
+    private static final int TARGET_RATE = Integer.getInteger("perf.rate", 100_000);
+    private static final int WARMUP_SECONDS = 2;
+    private static final int TEST_SECONDS = 5;
+    private static final int WARMUP_ITERATIONS = 1_000;
+    private static final int TEST_ITERATIONS = 10_000;
+    private static final String[] INSTRUMENTS = {"BTC-USDT", "ETH-USDT", "SOL-USDT", "BTC-USDT-SWAP"};
+
+    private MockOkxServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockOkxServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
 
     @Test
     public void testThroughput() throws Exception {
-        // 创建测试消息
-        String testMessage = buildTestMessage(MESSAGE_SIZE_BYTES);
+        server.setMessagesPerSecond(TARGET_RATE);
 
-        // 创建客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+        // 行情走二进制解码，其余消息（订阅回执）走分发器
+        LongAdder marketData = new LongAdder();
+        LongAdder other = new LongAdder();
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        dispatcher.addHandler((message, ctx) -> {
+            other.increment();
+            return true;
+        });
+        BaseNettyClient<String> client = (BaseNettyClient<String>) NettyClientTest.createClient(
+                server.getUrl(), 30, "ping", dispatcher);
+        client.setMarketDataListener(event -> marketData.increment());
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client);
-        connectionManager.initConnection();
+                "127.0.0.1", server.getPort(), client);
+        connectionManager.initConnection().get(10, TimeUnit.SECONDS);
 
-        // 等待连接建立
-        waitForConnection(client);
+        client.send(subscribeAll());
 
         // 预热
         logger.info("Starting warmup...");
-        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
-            client.send(testMessage);
-        }
+        TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
         logger.info("Warmup completed");
 
         // 性能测试
         logger.info("Starting performance test...");
-        CountDownLatch latch = new CountDownLatch(TEST_ITERATIONS);
-        AtomicLong totalTime = new AtomicLong(0);
-
+        long sentBefore = server.getSent();
+        long receivedBefore = marketData.sum();
         long startTime = System.nanoTime();
-        for (int i = 0; i < TEST_ITERATIONS; i++) {
-            long sendTime = System.nanoTime();
-            client.send(testMessage);
-            totalTime.addAndGet(System.nanoTime() - sendTime);
-            latch.countDown();
-        }
+        TimeUnit.SECONDS.sleep(TEST_SECONDS);
+        long sent = server.getSent() - sentBefore;
         long endTime = System.nanoTime();
+        // 等待在途数据读完
+        TimeUnit.MILLISECONDS.sleep(200);
+        long received = marketData.sum() - receivedBefore;
 
         // 计算指标
-        long totalDurationNs = endTime - startTime;
-        double throughput = (double) TEST_ITERATIONS / (totalDurationNs / 1_000_000_000.0);
-        double avgLatency = totalTime.get() / (double) TEST_ITERATIONS / 1_000_000.0; // in ms
-
+        double seconds = (endTime - startTime) / 1_000_000_000.0;
         logger.info("Performance results:");
-        logger.info("  Messages sent: {}", TEST_ITERATIONS);
-        logger.info("  Message size: {} bytes", MESSAGE_SIZE_BYTES);
-        logger.info("  Total duration: {} ms", totalDurationNs / 1_000_000);
-        logger.info("  Throughput: {:.2f} msg/sec", throughput);
-        logger.info("  Average latency: {:.2f} ms", avgLatency);
+        logger.info("  Target rate: {} msg/sec", TARGET_RATE);
+        logger.info("  Server sent: {} ({} msg/sec), skipped: {}", sent, String.format("%.0f", sent / seconds),
+                server.getSkipped());
+        logger.info("  Client received: {} ({} msg/sec), other messages: {}", received,
+                String.format("%.0f", received / seconds), other.sum());
+
+        assertTrue("No market data received", received > 0);
+        assertTrue("Client lost messages: sent " + sent + ", received " + received, received >= sent * 0.95);
 
         // 关闭连接
         connectionManager.shutdown();
     }
 
-    private String buildTestMessage(int sizeBytes) {
-        StringBuilder sb = new StringBuilder(sizeBytes);
-        sb.append("PERF_TEST");
-        while (sb.length() < sizeBytes) {
-            sb.append("X");
+    @Test
+    public void testPingLatency() throws Exception {
+        // 不开启定时心跳，也不订阅行情，测量单次 ping/pong 往返
+        SynchronousQueue<Long> pongs = new SynchronousQueue<>();
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        dispatcher.addHandler((message, ctx) -> {
+            if ("pong".equals(message)) {
+                long now = System.nanoTime();
+                try {
+                    pongs.put(now);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        });
+        NettyClient client = NettyClientTest.createClient(server.getUrl(), 3600, "ping", dispatcher);
+        DefaultConnectionManager connectionManager = new DefaultConnectionManager(
+                "127.0.0.1", server.getPort(), client);
+        connectionManager.initConnection().get(10, TimeUnit.SECONDS);
+
+        // 预热
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            roundTrip(client, pongs);
+        }
+
+        long[] latencies = new long[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            latencies[i] = roundTrip(client, pongs);
         }
-        return sb.substring(0, sizeBytes);
+        Arrays.sort(latencies);
+
+        logger.info("Round trip latency over {} pings:", TEST_ITERATIONS);
+        logger.info("  p50: {} us", latencies[TEST_ITERATIONS / 2] / 1_000);
+        logger.info("  p99: {} us", latencies[TEST_ITERATIONS * 99 / 100] / 1_000);
+        logger.info("  p99.9: {} us", latencies[TEST_ITERATIONS * 999 / 1000] / 1_000);
+        logger.info("  max: {} us", latencies[TEST_ITERATIONS - 1] / 1_000);
+
+        assertEquals(WARMUP_ITERATIONS + TEST_ITERATIONS, server.getReceived());
+
+        // 关闭连接
+        connectionManager.shutdown();
+    }
+
+    private long roundTrip(NettyClient client, SynchronousQueue<Long> pongs) throws InterruptedException {
+        long sendTime = System.nanoTime();
+        client.send("ping");
+        Long receiveTime = pongs.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No pong within timeout", receiveTime);
+        return receiveTime - sendTime;
     }
 
-    private void waitForConnection(NettyClient<?> client) throws InterruptedException {
-        long endTime = System.currentTimeMillis() + 5000;
-        while (System.currentTimeMillis() < endTime) {
-            if (client.isConnected()) {
-                return;
+    private String subscribeAll() {
+        StringBuilder sb = new StringBuilder("{\"op\":\"subscribe\",\"args\":[");
+        for (String instId : INSTRUMENTS) {
+            for (String channel : new String[]{"tickers", "trades", "books"}) {
+                if (sb.charAt(sb.length() - 1) != '[') {
+                    sb.append(',');
+                }
+                sb.append("{\"channel\":\"").append(channel).append("\",\"instId\":\"").append(instId).append("\"}");
             }
-            TimeUnit.MILLISECONDS.sleep(100);
         }
-        throw new IllegalStateException("Connection not established within timeout");
+        return sb.append("]}").toString();
     }
 }
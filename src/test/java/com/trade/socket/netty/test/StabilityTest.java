@@ -1,8 +1,12 @@
 package com.trade.socket.netty.test;
 
 import com.trade.socket.netty.client.NettyClient;
-import com.trade.socket.netty.client.NettyClientFactory;
+import com.trade.socket.netty.handler.MessageDispatcher;
 import com.trade.socket.netty.manager.DefaultConnectionManager;
+import com.trade.socket.netty.mock.MockOkxServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,27 +14,60 @@ import org.slf4j.LoggerFactory;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertTrue;
 
 /**
  * Netty客户端稳定性测试类
+ * 本地 {@link MockOkxServer} 持续推送行情，同时定时发送 ping。
+ * 长时间运行，默认跳过，用 -Dstability.minutes=5 开启并指定时长
  */
 public class StabilityTest {
     private static final Logger logger = LoggerFactory.getLogger(StabilityTest.class);
-    private static final String TEST_SERVER = "ws://echo.websocket.org";
-    private static final int TEST_DURATION_MINUTES = 5;
+    private static final int TEST_DURATION_MINUTES = Integer.getInteger("stability.minutes", 0);
     private static final int MESSAGE_INTERVAL_MS = 100;
     private static final int MEMORY_CHECK_INTERVAL_MS = 5000;
+    private static final int STREAM_RATE = 20_000;
+
+    private MockOkxServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("stability test is opt-in, run with -Dstability.minutes=N", TEST_DURATION_MINUTES > 0);
+        server = new MockOkxServer();
+        server.setMessagesPerSecond(STREAM_RATE);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
 
     @Test
     public void testLongRunning() throws Exception {
         // 创建客户端
-        NettyClient<String> client = NettyClientFactory.createDefaultClient(TEST_SERVER);
+        MessageDispatcher<String> dispatcher = new MessageDispatcher<>(null);
+        LongAdder received = new LongAdder();
+        AtomicInteger pongCount = new AtomicInteger(0);
+        dispatcher.addHandler((message, ctx) -> {
+            received.increment();
+            if ("pong".equals(message)) {
+                pongCount.incrementAndGet();
+            }
+            return true;
+        });
+        NettyClient client = NettyClientTest.createClient(server.getUrl(), 30, "ping", dispatcher);
         DefaultConnectionManager connectionManager = new DefaultConnectionManager(
-                "echo.websocket.org", 80, client, 5, 1000);
-        connectionManager.initConnection();
+                "127.0.0.1", server.getPort(), client, 5, 1000);
+        connectionManager.initConnection().get(10, TimeUnit.SECONDS);
 
-        // 等待连接建立
-        waitForConnection(client);
+        // 订阅行情
+        client.send("{\"op\":\"subscribe\",\"args\":[{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},"
+                + "{\"channel\":\"trades\",\"instId\":\"BTC-USDT\"}]}");
 
         // 创建测试控制
         CountDownLatch testLatch = new CountDownLatch(1);
@@ -42,7 +79,8 @@ public class StabilityTest {
         Thread senderThread = new Thread(() -> {
             try {
                 while (System.currentTimeMillis() < endTime && !Thread.currentThread().isInterrupted()) {
-                    client.send("Stability test message #" + messageCount.incrementAndGet());
+                    messageCount.incrementAndGet();
+                    client.send("ping");
                     TimeUnit.MILLISECONDS.sleep(MESSAGE_INTERVAL_MS);
                 }
             } catch (InterruptedException e) {
@@ -80,9 +118,13 @@ public class StabilityTest {
         long durationMinutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - startTime);
         logger.info("Stability test completed:");
         logger.info("  Duration: {} minutes", durationMinutes);
-        logger.info("  Messages sent: {}", messageCount.get());
+        logger.info("  Messages sent: {}, pongs: {}", messageCount.get(), pongCount.get());
+        logger.info("  Messages received: {}, server skipped: {}", received.sum(), server.getSkipped());
         logger.info("  Final memory usage:");
         logMemoryUsage();
+
+        assertTrue("Too few pongs: " + pongCount.get() + "/" + messageCount.get(),
+                pongCount.get() >= messageCount.get() - 1);
     }
 
     private void logMemoryUsage() {
@@ -93,15 +135,4 @@ public class StabilityTest {
         logger.info("Memory usage: Used={}MB, Free={}MB, Total={}MB, Max={}MB",
                 usedMemory, freeMemory, totalMemory, runtime.maxMemory() / (1024 * 1024));
     }
-
-    private void waitForConnection(NettyClient<?> client) throws InterruptedException {
-        long endTime = System.currentTimeMillis() + 5000;
-        while (System.currentTimeMillis() < endTime) {
-            if (client.isConnected()) {
-                return;
-            }
-            TimeUnit.MILLISECONDS.sleep(100);
-        }
-        throw new IllegalStateException("Connection not established within timeout");
-    }
 }
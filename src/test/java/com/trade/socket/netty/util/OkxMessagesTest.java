@@ -0,0 +1,26 @@
+package com.trade.socket.netty.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OkxMessagesTest {
+    @Test
+    public void eventKeyIsFoundInAnyTopLevelPosition() {
+        assertTrue(OkxMessages.isEvent("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"}}"));
+        assertTrue(OkxMessages.isEvent("{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"event\":\"subscribe\"}"));
+        assertTrue(OkxMessages.isEvent("{\"code\":\"60012\", \"msg\":\"Invalid request\", \"event\" : \"error\"}"));
+        assertTrue(OkxMessages.isEvent("{\"msg\":\"a \\\"quoted\\\" text\",\"event\":\"error\"}"));
+    }
+
+    @Test
+    public void eventOutsideTheTopLevelIsNotAnEvent() {
+        assertFalse(OkxMessages.isEvent("{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},"
+            + "\"data\":[{\"instId\":\"BTC-USDT\",\"last\":\"43000.1\"}]}"));
+        // 嵌套对象中的键、字符串值中的 "event" 都不算
+        assertFalse(OkxMessages.isEvent("{\"arg\":{\"channel\":\"x\",\"event\":\"subscribe\"},\"data\":[]}"));
+        assertFalse(OkxMessages.isEvent("{\"data\":[{\"type\":\"event\"}]}"));
+        assertFalse(OkxMessages.isEvent("{\"msg\":\"\\\"event\\\":1\",\"data\":[]}"));
+        assertFalse(OkxMessages.isEvent("pong"));
+    }
+}
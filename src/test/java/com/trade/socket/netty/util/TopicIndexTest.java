@@ -0,0 +1,83 @@
+package com.trade.socket.netty.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TopicIndexTest {
+    @Test
+    public void lookupByRawMessageRangeMatchesRegistration() {
+        TopicIndex index = new TopicIndex();
+        int id = index.register("tickers", "BTC-USDT");
+        String message = "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[]}";
+        long arg = OkxMessages.locateArg(message);
+        assertEquals(id, index.find(message, arg));
+        assertEquals(id, index.register(message, arg));
+        assertEquals(-1, index.find("tickers", "ETH-USDT"));
+        assertEquals(id + 1, index.register("tickers", "ETH-USDT"));
+        assertEquals(id + 2, index.register("status", null));
+        assertEquals("", index.instId(id + 2));
+    }
+
+    @Test
+    public void concurrentRegistrationAssignsOneDenseIdPerTopic() throws Exception {
+        TopicIndex index = new TopicIndex();
+        int threads = 8;
+        int topics = 2_000;
+        int[][] ids = new int[threads][topics];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    // 每个线程从不同位置开始，注册与查询交错进行，表在期间多次扩容
+                    for (int n = 0; n < topics; n++) {
+                        int i = (n + thread * topics / threads) % topics;
+                        int id = index.register(channel(i), instId(i));
+                        ids[thread][i] = id;
+                        assertEquals(id, index.find(channel(i), instId(i)));
+                        assertEquals(channel(i), index.channel(id));
+                        assertEquals(instId(i), index.instId(id));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(30_000);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(topics, index.size());
+        boolean[] seen = new boolean[topics];
+        for (int i = 0; i < topics; i++) {
+            int id = ids[0][i];
+            for (int t = 1; t < threads; t++) {
+                assertEquals("threads disagree on " + channel(i) + "/" + instId(i), id, ids[t][i]);
+            }
+            assertFalse("id " + id + " assigned twice", seen[id]);
+            seen[id] = true;
+        }
+    }
+
+    private static String channel(int i) {
+        return i % 2 == 0 ? "tickers" : "books5";
+    }
+
+    private static String instId(int i) {
+        return "INST" + (i / 2) + "-USDT";
+    }
+}
@@ -0,0 +1,181 @@
+package com.trade.strategy;
+
+import com.trade.cache.OrderStatus;
+import com.trade.cache.PositionSnapshot;
+import com.trade.common.DataMessage;
+import com.trade.domain.Strategy;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class StrategyRunnerTest {
+
+    @Test
+    public void everyEventRunsInOrderOnTheStrategyThread() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        RecordingStrategy instance = new RecordingStrategy(10);
+        StrategyRunner runner = new StrategyRunner(strategy(1L), instance, LatencyClass.NORMAL, timer, 64);
+        try {
+            runner.start();
+            assertTrue(runner.offer(message("books")));
+            runner.onTransition(null, OrderStatus.NEW);
+            runner.updateParams("{\"step\":1}");
+            assertTrue(instance.ticked.await(5, TimeUnit.SECONDS));
+            runner.stop(5000);
+
+            List<String> events = instance.events.stream().filter(e -> !e.equals("timer")).collect(Collectors.toList());
+            assertEquals(List.of("init", "start", "change books", "transition NEW", "params {\"step\":1}", "stop"),
+                events);
+            assertEquals(1, instance.threads.size());
+            assertTrue(instance.threads.iterator().next().startsWith("ring-strategy-1-"));
+            assertTrue(runner.isStopped());
+            assertFalse(runner.offer(message("books")));
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fullInboxDropsMarketDataButKeepsOrderEvents() throws Exception {
+        RecordingStrategy instance = new RecordingStrategy(0);
+        StrategyRunner runner = new StrategyRunner(strategy(2L), instance, LatencyClass.NORMAL, null, 8);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        runner.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (runner.offer(message("tickers"))) {
+                accepted++;
+            }
+        }
+        assertEquals(20 - accepted, runner.getDropped());
+        assertTrue(runner.getDropped() > 0);
+
+        // 订单事件在收件箱已满时既不丢弃也不让挂单簿写线程等待
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            runner.onTransition(null, OrderStatus.FILLED);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(100, runner.getPendingOrderEvents());
+        release.countDown();
+        runner.stop(5000);
+        assertEquals(accepted, instance.events.stream().filter(e -> e.startsWith("change")).count());
+        assertEquals(100, instance.events.stream().filter(e -> e.equals("transition FILLED")).count());
+        // 订单事件先于收件箱中排队的行情处理
+        assertTrue(instance.events.indexOf("transition FILLED") < instance.events.indexOf("change tickers"));
+    }
+
+    @Test
+    public void orderEventsFromManyWritersAreAllDelivered() throws Exception {
+        RecordingStrategy instance = new RecordingStrategy(0);
+        StrategyRunner runner = new StrategyRunner(strategy(3L), instance, LatencyClass.NORMAL, null, 8);
+        runner.start();
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    runner.onTransition(null, OrderStatus.NEW);
+                    runner.offer(message("tickers"));
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join(10_000);
+        }
+        runner.submit(() -> null).get(10, TimeUnit.SECONDS);
+        assertEquals(20_000, instance.events.stream().filter(e -> e.equals("transition NEW")).count());
+        assertEquals(0, runner.getPendingOrderEvents());
+        runner.stop(5000);
+    }
+
+    private static Strategy strategy(Long id) {
+        Strategy strategy = new Strategy();
+        strategy.setId(id);
+        strategy.setName("recording");
+        return strategy;
+    }
+
+    private static DataMessage<String> message(String channel) {
+        DataMessage<String> message = new DataMessage<>();
+        message.setChannel(channel);
+        return message;
+    }
+
+    private static class RecordingStrategy extends AbstractStrategy {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch ticked = new CountDownLatch(1);
+        private final long timerInterval;
+
+        private RecordingStrategy(long timerInterval) {
+            this.timerInterval = timerInterval;
+        }
+
+        private void record(String event) {
+            threads.add(Thread.currentThread().getName());
+            events.add(event);
+        }
+
+        @Override
+        public void init(Strategy strategy) {
+            super.init(strategy);
+            record("init");
+        }
+
+        @Override
+        protected void onStart() {
+            record("start");
+        }
+
+        @Override
+        protected void onStop() {
+            record("stop");
+        }
+
+        @Override
+        protected void onParamsUpdate() {
+            record("params " + strategy.getParams());
+        }
+
+        @Override
+        public long getTimerInterval() {
+            return timerInterval;
+        }
+
+        @Override
+        protected void onTimer() {
+            record("timer");
+            ticked.countDown();
+        }
+
+        @Override
+        public void onTransition(PositionSnapshot.OrderState order, OrderStatus from) {
+            record("transition " + from);
+        }
+
+        @Override
+        public void change(DataMessage dataMessage) {
+            record("change " + dataMessage.getChannel());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.trade.strategy.impl;
+
+import com.trade.domain.Strategy;
+import com.trade.exception.BusinessException;
+import com.trade.exception.ErrorCode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class GridStrategyConfigTest {
+    private GridStrategy strategy;
+
+    @Before
+    public void setUp() {
+        Strategy domain = new Strategy();
+        domain.setName("grid-config");
+        domain.setParams("{}");
+        strategy = new GridStrategy();
+        strategy.init(domain);
+    }
+
+    @Test
+    public void readsParametersAndDefaults() {
+        strategy.updateParams("{\"symbol\":\"ETH-USDT-SWAP\",\"basePrice\":\"2500.25\",\"longGridSize\":3}");
+        GridStrategy.GridConfig config = strategy.getConfig();
+        assertEquals("ETH-USDT-SWAP", config.getSymbol());
+        assertEquals(new BigDecimal("2500.25"), config.getBasePrice());
+        assertEquals(3, config.getLongGridSize());
+        assertEquals(10, config.getShortGridSize());
+        assertEquals(new BigDecimal("0.01"), config.getOrderAmount());
+    }
+
+    @Test
+    public void rejectedUpdateKeepsPreviousConfig() {
+        strategy.updateParams("{\"symbol\":\"ETH-USDT-SWAP\",\"basePrice\":2500}");
+        GridStrategy.GridConfig before = strategy.getConfig();
+
+        assertRejected("{\"symbol\":\"BTC-USDT-SWAP\",\"basePrice\":\"45000.123456789\"}", "basePrice");
+        assertRejected("{\"orderAmount\":\"1e20\"}", "orderAmount");
+        assertRejected("{\"stopLoss\":null}", "stopLoss");
+        assertRejected("{\"basePrice\":", "JSON");
+
+        assertSame(before, strategy.getConfig());
+        assertEquals("ETH-USDT-SWAP", strategy.getConfig().getSymbol());
+    }
+
+    private void assertRejected(String params, String reason) {
+        BusinessException e = assertThrows(BusinessException.class, () -> strategy.updateParams(params));
+        assertEquals(ErrorCode.PARAM_VALIDATION_ERROR, e.getErrorCode());
+        assertTrue(e.getMessage(), e.getMessage().contains(reason));
+    }
+}
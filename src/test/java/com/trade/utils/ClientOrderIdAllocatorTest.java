@@ -0,0 +1,69 @@
+package com.trade.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ClientOrderIdAllocatorTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void encodesPrefixAndFixedWidthOrderedId() {
+        ClientOrderIdAllocator allocator = new ClientOrderIdAllocator(START, 4);
+        ClientOrderIdAllocator.Sequence sequence = allocator.sequence("grid01");
+        byte[] buffer = new byte[ClientOrderIdAllocator.MAX_LENGTH];
+        char[] chars = new char[ClientOrderIdAllocator.MAX_LENGTH];
+
+        int length = sequence.next(buffer, 0);
+        assertEquals(6 + ClientOrderIdAllocator.ID_LENGTH, length);
+        String first = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+        assertTrue(first, first.matches("grid01[0-9A-Za-z]{11}"));
+        String second = new String(chars, 0, sequence.next(chars, 0));
+        String third = sequence.nextString();
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertEquals(ClientOrderIdAllocator.decode(first) + 2, ClientOrderIdAllocator.decode(third));
+
+        // 重启后的序号大于重启前已分配的
+        ClientOrderIdAllocator restarted = new ClientOrderIdAllocator(START + 1, 4);
+        assertTrue(restarted.sequence("grid01").nextString().compareTo(third) > 0);
+
+        byte[] max = new byte[ClientOrderIdAllocator.ID_LENGTH];
+        ClientOrderIdAllocator.encode(Long.MAX_VALUE, max, 0);
+        assertEquals(Long.MAX_VALUE, ClientOrderIdAllocator.decode(new String(max, StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void rejectsPrefixesOkxWouldRefuse() {
+        ClientOrderIdAllocator allocator = new ClientOrderIdAllocator(START, 4);
+        assertThrows(IllegalArgumentException.class, () -> allocator.sequence("grid-01"));
+        assertThrows(IllegalArgumentException.class, () -> allocator.sequence("a".repeat(ClientOrderIdAllocator.MAX_PREFIX_LENGTH + 1)));
+        assertEquals(ClientOrderIdAllocator.MAX_LENGTH,
+            allocator.sequence("a".repeat(ClientOrderIdAllocator.MAX_PREFIX_LENGTH)).length());
+    }
+
+    @Test
+    public void concurrentSequencesNeverCollide() throws Exception {
+        ClientOrderIdAllocator allocator = new ClientOrderIdAllocator(START, 16);
+        int threads = 8;
+        int perThread = 10_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ClientOrderIdAllocator.Sequence sequence = allocator.sequence("s");
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(sequence.nextId());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, ids.size());
+    }
+}